@@ -0,0 +1,67 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.mapping;
+
+/**
+ * Vectorized versions of the bulk index computations of some {@link IndexMapping}s.
+ *
+ * <p>This is the version that is used on Java 17 and above. It is enabled if the {@code
+ * jdk.incubator.vector} module has been added to the module graph (for instance, using {@code
+ * --add-modules jdk.incubator.vector}), in which case it delegates to {@link VectorizedIndexing}.
+ * The latter is only loaded if enabled, so that this class can be loaded whether the module is
+ * present or not.
+ *
+ * <p>Each method computes the indices of a prefix of the provided range of values, whose length is
+ * a multiple of the number of vector lanes, and returns the length of that prefix. The caller is
+ * responsible for computing the indices of the remaining values. Vectorized computations produce
+ * the same indices as their scalar counterparts.
+ */
+final class SimdIndexing {
+
+  static final boolean ENABLED =
+      ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+          && VectorizedIndexing.isSupported();
+
+  private SimdIndexing() {}
+
+  static int cubicIndices(
+      double[] values,
+      int offset,
+      int length,
+      int[] out,
+      double multiplier,
+      double indexOffset,
+      double a,
+      double b,
+      double c) {
+    return ENABLED
+        ? VectorizedIndexing.cubicIndices(
+            values, offset, length, out, multiplier, indexOffset, a, b, c)
+        : 0;
+  }
+
+  static int quadraticIndices(
+      double[] values,
+      int offset,
+      int length,
+      int[] out,
+      double multiplier,
+      double indexOffset,
+      double oneThird) {
+    return ENABLED
+        ? VectorizedIndexing.quadraticIndices(
+            values, offset, length, out, multiplier, indexOffset, oneThird)
+        : 0;
+  }
+
+  static int bitwiseLinearIndices(
+      double[] values, int offset, int length, int[] out, int numSignificantBinaryDigits) {
+    return ENABLED
+        ? VectorizedIndexing.bitwiseLinearIndices(
+            values, offset, length, out, numSignificantBinaryDigits)
+        : 0;
+  }
+}
@@ -0,0 +1,134 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.mapping;
+
+import static com.datadoghq.sketch.ddsketch.mapping.DoubleBitOperationHelper.EXPONENT_BIAS;
+import static com.datadoghq.sketch.ddsketch.mapping.DoubleBitOperationHelper.EXPONENT_MASK;
+import static com.datadoghq.sketch.ddsketch.mapping.DoubleBitOperationHelper.EXPONENT_SHIFT;
+import static com.datadoghq.sketch.ddsketch.mapping.DoubleBitOperationHelper.SIGNIFICAND_MASK;
+import static com.datadoghq.sketch.ddsketch.mapping.DoubleBitOperationHelper.SIGNIFICAND_WIDTH;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Index computations that use the incubating Vector API. They mirror the scalar code of the
+ * mappings operation by operation (in particular, they do not fuse multiplications and additions),
+ * so that they produce the same indices.
+ */
+final class VectorizedIndexing {
+
+  private static final VectorSpecies<Double> DOUBLE_SPECIES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long> LONG_SPECIES =
+      VectorSpecies.of(long.class, DOUBLE_SPECIES.vectorShape());
+  // Ints are half the size of doubles, so that the same number of lanes fits in half the bits (64
+  // bits being the smallest shape).
+  private static final VectorSpecies<Integer> INT_SPECIES =
+      VectorSpecies.of(
+          int.class, VectorShape.forBitSize(Math.max(DOUBLE_SPECIES.vectorBitSize() / 2, 64)));
+
+  private static final long ONE = 0x3ff0000000000000L;
+
+  private VectorizedIndexing() {}
+
+  /** @return whether the platform has vectors that are wide enough for vectorization to pay off */
+  static boolean isSupported() {
+    return DOUBLE_SPECIES.length() >= 2 && INT_SPECIES.length() == DOUBLE_SPECIES.length();
+  }
+
+  static int cubicIndices(
+      double[] values,
+      int offset,
+      int length,
+      int[] out,
+      double multiplier,
+      double indexOffset,
+      double a,
+      double b,
+      double c) {
+    final int upperBound = DOUBLE_SPECIES.loopBound(length);
+    for (int i = 0; i < upperBound; i += DOUBLE_SPECIES.length()) {
+      final LongVector longBits =
+          DoubleVector.fromArray(DOUBLE_SPECIES, values, offset + i).reinterpretAsLongs();
+      final DoubleVector s = significandPlusOne(longBits).sub(1);
+      final DoubleVector e = exponent(longBits);
+      final DoubleVector log = s.mul(a).add(b).mul(s).add(c).mul(s).add(e);
+      floor(log.mul(multiplier).add(indexOffset)).intoArray(out, i);
+    }
+    return upperBound;
+  }
+
+  static int quadraticIndices(
+      double[] values,
+      int offset,
+      int length,
+      int[] out,
+      double multiplier,
+      double indexOffset,
+      double oneThird) {
+    final int upperBound = DOUBLE_SPECIES.loopBound(length);
+    for (int i = 0; i < upperBound; i += DOUBLE_SPECIES.length()) {
+      final LongVector longBits =
+          DoubleVector.fromArray(DOUBLE_SPECIES, values, offset + i).reinterpretAsLongs();
+      final DoubleVector s = significandPlusOne(longBits);
+      final DoubleVector e = exponent(longBits);
+      final DoubleVector log = e.sub(s.sub(5).mul(s.sub(1)).mul(oneThird));
+      floor(log.mul(multiplier).add(indexOffset)).intoArray(out, i);
+    }
+    return upperBound;
+  }
+
+  static int bitwiseLinearIndices(
+      double[] values, int offset, int length, int[] out, int numSignificantBinaryDigits) {
+    final int partialSignificandShift = SIGNIFICAND_WIDTH - numSignificantBinaryDigits - 1;
+    final int upperBound = DOUBLE_SPECIES.loopBound(length);
+    for (int i = 0; i < upperBound; i += DOUBLE_SPECIES.length()) {
+      final LongVector longBits =
+          DoubleVector.fromArray(DOUBLE_SPECIES, values, offset + i).reinterpretAsLongs();
+      final LongVector exponent =
+          longBits
+              .and(EXPONENT_MASK)
+              .lanewise(VectorOperators.ASHR, EXPONENT_SHIFT)
+              .sub(EXPONENT_BIAS);
+      final LongVector partialSignificand =
+          longBits.and(SIGNIFICAND_MASK).lanewise(VectorOperators.ASHR, partialSignificandShift);
+      ((IntVector)
+              exponent
+                  .lanewise(VectorOperators.LSHL, numSignificantBinaryDigits)
+                  .or(partialSignificand)
+                  .convertShape(VectorOperators.L2I, INT_SPECIES, 0))
+          .intoArray(out, i);
+    }
+    return upperBound;
+  }
+
+  private static DoubleVector significandPlusOne(LongVector longBits) {
+    return longBits.and(SIGNIFICAND_MASK).or(ONE).reinterpretAsDoubles();
+  }
+
+  private static DoubleVector exponent(LongVector longBits) {
+    return (DoubleVector)
+        longBits
+            .and(EXPONENT_MASK)
+            .lanewise(VectorOperators.ASHR, EXPONENT_SHIFT)
+            .sub(EXPONENT_BIAS)
+            .convert(VectorOperators.L2D, 0);
+  }
+
+  /** Same as {@code index >= 0 ? (int) index : (int) index - 1}, lane-wise. */
+  private static IntVector floor(DoubleVector index) {
+    final VectorMask<Integer> negative =
+        index.compare(VectorOperators.GE, 0).not().cast(INT_SPECIES);
+    final IntVector truncated =
+        (IntVector) index.convertShape(VectorOperators.D2I, INT_SPECIES, 0);
+    return truncated.sub(1, negative);
+  }
+}
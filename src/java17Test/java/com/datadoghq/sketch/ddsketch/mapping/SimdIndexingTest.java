@@ -0,0 +1,113 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.mapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the bulk index computations take the vectorized path when running on Java 17 and
+ * above with the {@code jdk.incubator.vector} module.
+ */
+class SimdIndexingTest {
+
+  private static final int NUM_VALUES = 1000;
+
+  @Test
+  void testEnabled() {
+    assertThat(SimdIndexing.ENABLED).isTrue();
+  }
+
+  @Test
+  void testMappingsCallVectorizedIndexing() throws IOException {
+    // Guards against the check being folded away when the mappings are compiled.
+    assertThat(constantPool(CubicallyInterpolatedMapping.class)).contains("cubicIndices");
+    assertThat(constantPool(QuadraticallyInterpolatedMapping.class)).contains("quadraticIndices");
+    assertThat(constantPool(BitwiseLinearlyInterpolatedMapping.class))
+        .contains("bitwiseLinearIndices");
+  }
+
+  @Test
+  void testCubicIndices() {
+    final CubicallyInterpolatedMapping mapping = new CubicallyInterpolatedMapping(1e-2);
+    final double[] values = values(mapping);
+    final int[] indices = new int[NUM_VALUES];
+    final int vectorized =
+        SimdIndexing.cubicIndices(
+            values,
+            1,
+            NUM_VALUES,
+            indices,
+            mapping.multiplier(),
+            mapping.indexOffset(),
+            6.0 / 35.0,
+            -3.0 / 5.0,
+            10.0 / 7.0);
+    assertVectorized(mapping, values, indices, vectorized);
+  }
+
+  @Test
+  void testQuadraticIndices() {
+    final QuadraticallyInterpolatedMapping mapping = new QuadraticallyInterpolatedMapping(1e-2);
+    final double[] values = values(mapping);
+    final int[] indices = new int[NUM_VALUES];
+    final int vectorized =
+        SimdIndexing.quadraticIndices(
+            values,
+            1,
+            NUM_VALUES,
+            indices,
+            mapping.multiplier(),
+            mapping.indexOffset(),
+            1.0 / 3.0);
+    assertVectorized(mapping, values, indices, vectorized);
+  }
+
+  @Test
+  void testBitwiseLinearIndices() {
+    final BitwiseLinearlyInterpolatedMapping mapping = new BitwiseLinearlyInterpolatedMapping(7);
+    final double[] values = values(mapping);
+    final int[] indices = new int[NUM_VALUES];
+    final int vectorized = SimdIndexing.bitwiseLinearIndices(values, 1, NUM_VALUES, indices, 7);
+    assertVectorized(mapping, values, indices, vectorized);
+  }
+
+  private static double[] values(IndexMapping mapping) {
+    final Random random = new Random(1);
+    final double minLog = Math.log(mapping.minIndexableValue());
+    final double maxLog = Math.log(mapping.maxIndexableValue());
+    final double[] values = new double[NUM_VALUES + 1];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.exp(minLog + (maxLog - minLog) * random.nextDouble());
+    }
+    return values;
+  }
+
+  private static void assertVectorized(
+      IndexMapping mapping, double[] values, int[] indices, int vectorized) {
+    assertThat(vectorized).isPositive().isLessThanOrEqualTo(NUM_VALUES);
+    for (int i = 0; i < vectorized; i++) {
+      assertThat(indices[i]).isEqualTo(mapping.index(values[1 + i]));
+    }
+    final int[] bulkIndices = new int[NUM_VALUES];
+    mapping.indices(values, 1, NUM_VALUES, bulkIndices);
+    for (int i = 0; i < NUM_VALUES; i++) {
+      assertThat(bulkIndices[i]).isEqualTo(mapping.index(values[1 + i]));
+    }
+  }
+
+  private static String constantPool(Class<?> clazz) throws IOException {
+    try (InputStream inputStream =
+        clazz.getResourceAsStream(clazz.getSimpleName() + ".class")) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.ISO_8859_1);
+    }
+  }
+}
@@ -9,7 +9,10 @@ import com.datadoghq.sketch.ddsketch.mapping.BitwiseLinearlyInterpolatedMapping;
 import com.datadoghq.sketch.ddsketch.mapping.CubicallyInterpolatedMapping;
 import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
 import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.HashSparseStore;
+import com.datadoghq.sketch.ddsketch.store.HybridStore;
 import com.datadoghq.sketch.ddsketch.store.PaginatedStore;
+import com.datadoghq.sketch.ddsketch.store.SparseStore;
 import com.datadoghq.sketch.ddsketch.store.Store;
 import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
 import java.util.function.DoubleFunction;
@@ -19,7 +22,10 @@ public enum DDSketchOption {
   FAST(BitwiseLinearlyInterpolatedMapping::new, UnboundedSizeDenseStore::new),
   MEMORY_OPTIMAL(LogarithmicMapping::new, UnboundedSizeDenseStore::new),
   BALANCED(CubicallyInterpolatedMapping::new, UnboundedSizeDenseStore::new),
-  PAGINATED(BitwiseLinearlyInterpolatedMapping::new, PaginatedStore::new);
+  PAGINATED(BitwiseLinearlyInterpolatedMapping::new, PaginatedStore::new),
+  SPARSE(CubicallyInterpolatedMapping::new, SparseStore::new),
+  HASH_SPARSE(CubicallyInterpolatedMapping::new, HashSparseStore::new),
+  HYBRID(CubicallyInterpolatedMapping::new, HybridStore::new);
 
   private final DoubleFunction<IndexMapping> indexMapping;
   private final Supplier<Store> storeSupplier;
@@ -0,0 +1,34 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.ddsketch.mapping.BitwiseLinearlyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.CubicallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LinearlyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.mapping.QuadraticallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.QuarticallyInterpolatedMapping;
+import java.util.function.DoubleFunction;
+
+public enum IndexMappingOption {
+  LOGARITHMIC(LogarithmicMapping::new),
+  LINEAR(LinearlyInterpolatedMapping::new),
+  QUADRATIC(QuadraticallyInterpolatedMapping::new),
+  CUBIC(CubicallyInterpolatedMapping::new),
+  QUARTIC(QuarticallyInterpolatedMapping::new),
+  BITWISE_LINEAR(BitwiseLinearlyInterpolatedMapping::new);
+
+  private final DoubleFunction<IndexMapping> indexMapping;
+
+  IndexMappingOption(DoubleFunction<IndexMapping> indexMapping) {
+    this.indexMapping = indexMapping;
+  }
+
+  public IndexMapping create(double relativeAccuracy) {
+    return indexMapping.apply(relativeAccuracy);
+  }
+}
@@ -0,0 +1,84 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.benchmarks;
+
+import com.datadoghq.sketch.ddsketch.DDSketch;
+import com.datadoghq.sketch.ddsketch.DDSketchOption;
+import com.datadoghq.sketch.ddsketch.DataGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+public class AcceptValues {
+
+  @Param DataGenerator generator;
+
+  @Param({"NANOSECONDS", "MICROSECONDS", "MILLISECONDS"})
+  TimeUnit unit;
+
+  @Param DDSketchOption sketchOption;
+
+  @Param({"16", "256", "4096"})
+  int batchSize;
+
+  @Param("20")
+  int logCount;
+
+  @Param({"0.01"})
+  double relativeAccuracy;
+
+  DDSketch sketch;
+  private double[] data;
+  private long[] longData;
+  int position = 0;
+
+  @Setup(Level.Trial)
+  public void init() {
+    this.sketch = sketchOption.create(relativeAccuracy);
+    this.data = new double[1 << logCount];
+    this.longData = new long[batchSize];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = unit.toNanos(Math.round(generator.nextValue()));
+    }
+  }
+
+  @Benchmark
+  public Object acceptScalar() {
+    final int from = nextBatch();
+    for (int i = from; i < from + batchSize; i++) {
+      sketch.accept(data[i]);
+    }
+    // blackhole the sketch to avoid elimination of accept
+    return sketch;
+  }
+
+  @Benchmark
+  public Object acceptBatch() {
+    final int from = nextBatch();
+    sketch.accept(data, from, from + batchSize);
+    // blackhole the sketch to avoid elimination of accept
+    return sketch;
+  }
+
+  @Benchmark
+  public Object acceptLongBatch() {
+    final int from = nextBatch();
+    for (int i = 0; i < batchSize; i++) {
+      longData[i] = (long) data[from + i];
+    }
+    sketch.accept(longData);
+    // blackhole the sketch to avoid elimination of accept
+    return sketch;
+  }
+
+  private int nextBatch() {
+    final int from = position;
+    position = (position + batchSize) & (data.length - 1);
+    return from;
+  }
+}
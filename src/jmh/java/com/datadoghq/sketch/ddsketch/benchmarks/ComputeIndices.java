@@ -0,0 +1,70 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.benchmarks;
+
+import com.datadoghq.sketch.ddsketch.DataGenerator;
+import com.datadoghq.sketch.ddsketch.IndexMappingOption;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.Throughput)
+public class ComputeIndices {
+
+  @Param DataGenerator generator;
+
+  @Param IndexMappingOption mappingOption;
+
+  @Param({"256", "4096"})
+  int batchSize;
+
+  @Param("20")
+  int logCount;
+
+  @Param({"0.01"})
+  double relativeAccuracy;
+
+  IndexMapping mapping;
+  private double[] data;
+  private int[] indices;
+  int position = 0;
+
+  @Setup(Level.Trial)
+  public void init() {
+    this.mapping = mappingOption.create(relativeAccuracy);
+    this.data = new double[1 << logCount];
+    this.indices = new int[batchSize];
+    for (int i = 0; i < data.length; ++i) {
+      // Only positive values are indexable.
+      data[i] = Math.max(Math.abs(generator.nextValue()), mapping.minIndexableValue());
+    }
+  }
+
+  @Benchmark
+  public Object scalar() {
+    final int from = nextBatch();
+    for (int i = 0; i < batchSize; i++) {
+      indices[i] = mapping.index(data[from + i]);
+    }
+    // blackhole the indices to avoid elimination of index
+    return indices;
+  }
+
+  @Benchmark
+  public Object bulk() {
+    mapping.indices(data, nextBatch(), batchSize, indices);
+    // blackhole the indices to avoid elimination of indices
+    return indices;
+  }
+
+  private int nextBatch() {
+    final int from = position;
+    position = (position + batchSize) & (data.length - 1);
+    return from;
+  }
+}
@@ -9,8 +9,10 @@ import com.datadoghq.sketch.ddsketch.DDSketch;
 import com.datadoghq.sketch.ddsketch.DDSketchProtoBinding;
 import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
 import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import com.datadoghq.sketch.ddsketch.encoding.MalformedInputException;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -25,12 +27,14 @@ public class Deserialize extends BuiltSketchState {
 
   byte[] fromProtoData;
   byte[] decodeData;
+  ByteBuffer deserializeData;
   DDSketch decodedSketch;
 
   @Setup(Level.Trial)
   public void init() throws IOException {
     super.init();
     this.fromProtoData = DDSketchProtoBinding.toProto(sketch).toByteArray();
+    this.deserializeData = sketch.serialize();
     final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
     sketch.encode(output, false);
     this.decodeData = output.trimmedCopy();
@@ -45,6 +49,11 @@ public class Deserialize extends BuiltSketchState {
         com.datadoghq.sketch.ddsketch.proto.DDSketch.parseFrom(fromProtoData));
   }
 
+  @Benchmark
+  public DDSketch deserialize() throws MalformedInputException {
+    return DDSketch.deserialize(deserializeData.duplicate(), sketchOption.getStoreSupplier());
+  }
+
   @Benchmark
   public DDSketch decode() throws IOException {
     return DDSketch.decode(ByteArrayInput.wrap(decodeData), sketchOption.getStoreSupplier());
@@ -0,0 +1,115 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.benchmarks;
+
+import com.datadoghq.sketch.ddsketch.DDSketch;
+import com.datadoghq.sketch.ddsketch.EncodedDDSketchView;
+import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import com.datadoghq.sketch.ddsketch.mapping.CubicallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.Bin;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class GetValueAtQuantile {
+
+  private static final double[] QUANTILES = {0.5, 0.75, 0.9, 0.95, 0.99, 0.999};
+
+  @Param({"100", "1000", "10000", "50000"})
+  int numBins;
+
+  @Param({"0.01"})
+  double relativeAccuracy;
+
+  @Param({"false", "true"})
+  boolean rankIndex;
+
+  DDSketch sketch;
+  ByteBuffer encodedSketch;
+  EncodedDDSketchView encodedSketchView;
+  IndexMapping indexMapping;
+  double[] values;
+  int position = 0;
+
+  @Setup(Level.Trial)
+  public void init() throws IOException {
+    this.indexMapping = new CubicallyInterpolatedMapping(relativeAccuracy);
+    this.sketch =
+        new DDSketch(
+            indexMapping,
+            rankIndex
+                ? () -> new UnboundedSizeDenseStore().enableRankIndex()
+                : UnboundedSizeDenseStore::new);
+    // Center the bins around 1 so that they fit the range of trackable values.
+    for (int index = -numBins / 2; index < numBins - numBins / 2; index++) {
+      sketch.accept(indexMapping.value(index), 1 + (index & 7));
+    }
+    this.values = new double[QUANTILES.length];
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    sketch.encode(output, false);
+    this.encodedSketch = ByteBuffer.wrap(output.trimmedCopy());
+    this.encodedSketchView = EncodedDDSketchView.wrap(encodedSketch);
+  }
+
+  private double nextQuantile() {
+    final double quantile = QUANTILES[position];
+    position = position == QUANTILES.length - 1 ? 0 : position + 1;
+    return quantile;
+  }
+
+  @Benchmark
+  public double getValueAtQuantile() {
+    return sketch.getValueAtQuantile(nextQuantile());
+  }
+
+  @Benchmark
+  public double getValueAtQuantileAfterUpdate() {
+    // The update invalidates the cumulative counts, if any, which are computed again by the query.
+    sketch.accept(indexMapping.value(0));
+    return sketch.getValueAtQuantile(nextQuantile());
+  }
+
+  @Benchmark
+  public double[] getValuesAtQuantiles() {
+    sketch.getValuesAtQuantiles(QUANTILES, values);
+    return values;
+  }
+
+  @Benchmark
+  public double getValueAtQuantileFromEncodedView() {
+    return encodedSketchView.getValueAtQuantile(nextQuantile());
+  }
+
+  @Benchmark
+  public double wrapEncodedAndGetValueAtQuantile() throws IOException {
+    // Includes the scan that indexes the encoded bins, to compare with decoding the sketch.
+    return EncodedDDSketchView.wrap(encodedSketch).getValueAtQuantile(nextQuantile());
+  }
+
+  @Benchmark
+  public double linearScan() {
+    // The bin iteration that quantile queries used to rely on.
+    final Store store = sketch.getPositiveValueStore();
+    final double rank = nextQuantile() * (sketch.getCount() - 1);
+    double n = 0;
+    final Iterator<Bin> binIterator = store.getAscendingIterator();
+    while (binIterator.hasNext()) {
+      final Bin bin = binIterator.next();
+      if ((n += bin.getCount()) > rank) {
+        return indexMapping.value(bin.getIndex());
+      }
+    }
+    return Double.NaN;
+  }
+}
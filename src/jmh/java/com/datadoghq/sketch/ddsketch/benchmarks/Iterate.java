@@ -5,6 +5,7 @@
 
 package com.datadoghq.sketch.ddsketch.benchmarks;
 
+import com.datadoghq.sketch.ddsketch.store.BinCursor;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -39,4 +40,13 @@ public class Iterate extends BuiltSketchState {
               bh.consume(bin.getCount());
             });
   }
+
+  @Benchmark
+  public void ascendingCursor(Blackhole bh) {
+    final BinCursor cursor = sketch.getPositiveValueStore().getAscendingCursor();
+    while (cursor.advance()) {
+      bh.consume(cursor.index());
+      bh.consume(cursor.count());
+    }
+  }
 }
@@ -8,6 +8,10 @@ package com.datadoghq.sketch.ddsketch.benchmarks;
 import com.datadoghq.sketch.ddsketch.DDSketch;
 import com.datadoghq.sketch.ddsketch.DDSketchOption;
 import com.datadoghq.sketch.ddsketch.DataGenerator;
+import com.datadoghq.sketch.ddsketch.EncodedSketchMerger;
+import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
+import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.*;
 
@@ -31,15 +35,24 @@ public class Merge {
 
   DDSketch left;
   DDSketch right;
+  byte[] encodedLeft;
+  byte[] encodedRight;
+  final EncodedSketchMerger merger = new EncodedSketchMerger();
+  final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
 
   @Setup(Level.Trial)
-  public void init() {
+  public void init() throws IOException {
     this.left = sketchOption.create(relativeAccuracy);
     this.right = sketchOption.create(relativeAccuracy);
     for (int i = 0; i < count; ++i) {
       left.accept(unit.toNanos(Math.round(generator.nextValue())));
       right.accept(unit.toNanos(Math.round(generator.nextValue())));
     }
+    left.encode(output, false);
+    this.encodedLeft = output.trimmedCopy();
+    output.clear();
+    right.encode(output, false);
+    this.encodedRight = output.trimmedCopy();
   }
 
   @Benchmark
@@ -49,4 +62,21 @@ public class Merge {
     target.mergeWith(right);
     return target;
   }
+
+  @Benchmark
+  public Object decodeMergeAndEncode() throws IOException {
+    output.clear();
+    DDSketch target =
+        DDSketch.decode(ByteArrayInput.wrap(encodedLeft), sketchOption.getStoreSupplier());
+    target.decodeAndMergeWith(ByteArrayInput.wrap(encodedRight));
+    target.encode(output, false);
+    return output;
+  }
+
+  @Benchmark
+  public Object mergeEncoded() throws IOException {
+    output.clear();
+    merger.merge(output, ByteArrayInput.wrap(encodedLeft), ByteArrayInput.wrap(encodedRight));
+    return output;
+  }
 }
@@ -0,0 +1,73 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.benchmarks;
+
+import com.datadoghq.sketch.ddsketch.DDSketch;
+import com.datadoghq.sketch.ddsketch.DDSketchOption;
+import com.datadoghq.sketch.ddsketch.DDSketches;
+import com.datadoghq.sketch.ddsketch.DataGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class MergeAll {
+
+  @Param DataGenerator generator;
+
+  @Param({"NANOSECONDS", "MILLISECONDS"})
+  TimeUnit unit;
+
+  @Param DDSketchOption sketchOption;
+
+  @Param({"1000", "10000", "100000"})
+  int numSketches;
+
+  @Param("100")
+  int count;
+
+  @Param({"0.01"})
+  double relativeAccuracy;
+
+  List<DDSketch> sketches;
+  ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void init() {
+    this.sketches = new ArrayList<>(numSketches);
+    for (int i = 0; i < numSketches; i++) {
+      final DDSketch sketch = sketchOption.create(relativeAccuracy);
+      for (int j = 0; j < count; j++) {
+        sketch.accept(unit.toNanos(Math.round(generator.nextValue())));
+      }
+      sketches.add(sketch);
+    }
+    this.pool = new ForkJoinPool();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Object mergeSequentially() {
+    DDSketch target = sketchOption.create(relativeAccuracy);
+    for (final DDSketch sketch : sketches) {
+      target.mergeWith(sketch);
+    }
+    return target;
+  }
+
+  @Benchmark
+  public Object mergeAll() {
+    return DDSketches.mergeAll(sketches, pool);
+  }
+}
@@ -8,6 +8,7 @@ package com.datadoghq.sketch.ddsketch.benchmarks;
 import com.datadoghq.sketch.ddsketch.DDSketchProtoBinding;
 import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -21,11 +22,13 @@ import org.openjdk.jmh.annotations.Setup;
 public class Serialize extends BuiltSketchState {
 
   GrowingByteArrayOutput output;
+  ByteBuffer target;
 
   @Setup(Level.Trial)
   public void init() throws IOException {
     super.init();
     this.output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    this.target = ByteBuffer.allocateDirect(sketch.serializedSize());
   }
 
   @Benchmark
@@ -33,6 +36,13 @@ public class Serialize extends BuiltSketchState {
     return sketch.serialize().array();
   }
 
+  @Benchmark
+  public ByteBuffer serializeIntoDirectBuffer() {
+    target.clear();
+    sketch.serialize(target);
+    return target;
+  }
+
   @Benchmark
   public byte[] toProto() {
     return DDSketchProtoBinding.toProto(sketch).toByteArray();
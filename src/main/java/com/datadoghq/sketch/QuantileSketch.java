@@ -37,6 +37,53 @@ public interface QuantileSketch<QS extends QuantileSketch<QS>> extends DoubleCon
    */
   void accept(double value, double count);
 
+  /**
+   * Adds the values of the specified array to the sketch.
+   *
+   * <p>This is equivalent to calling {@link #accept(double)} on each value, but implementations
+   * may process the values in bulk.
+   *
+   * @param values the values to be added
+   */
+  default void accept(double[] values) {
+    accept(values, 0, values.length);
+  }
+
+  /**
+   * Adds the values of the specified range of an array to the sketch.
+   *
+   * <p>This is equivalent to calling {@link #accept(double)} on each value of the range, but
+   * implementations may process the values in bulk.
+   *
+   * @param values the array that holds the values to be added
+   * @param from the position in {@code values} of the first value to be added (inclusive)
+   * @param to the position in {@code values} of the last value to be added (exclusive)
+   * @throws IndexOutOfBoundsException if {@code from} is negative, {@code to} is greater than the
+   *     length of {@code values} or {@code from} is greater than {@code to}
+   */
+  default void accept(double[] values, int from, int to) {
+    if (from < 0 || from > to || to > values.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    for (int i = from; i < to; i++) {
+      accept(values[i]);
+    }
+  }
+
+  /**
+   * Adds the values of the specified array to the sketch.
+   *
+   * <p>This is equivalent to calling {@link #accept(double)} on each value, but implementations
+   * may process the values in bulk.
+   *
+   * @param values the values to be added
+   */
+  default void accept(long[] values) {
+    for (final long value : values) {
+      accept((double) value);
+    }
+  }
+
   /**
    * Merges the other sketch into this one. After this operation, this sketch encodes the values
    * that were added to both this and the other sketches.
@@ -99,6 +146,24 @@ public interface QuantileSketch<QS extends QuantileSketch<QS>> extends DoubleCon
    */
   double[] getValuesAtQuantiles(double[] quantiles);
 
+  /**
+   * Computes the values at the specified quantiles and writes them into the provided array, which
+   * avoids allocating a new array for each query.
+   *
+   * @param quantiles numbers between 0 and 1 (both included)
+   * @param values the array to write the values at the respective specified quantiles into, whose
+   *     length must be at least that of {@code quantiles}
+   * @throws IllegalArgumentException if {@code values} is shorter than {@code quantiles}
+   * @throws java.util.NoSuchElementException if the sketch is empty
+   */
+  default void getValuesAtQuantiles(double[] quantiles, double[] values) {
+    if (values.length < quantiles.length) {
+      throw new IllegalArgumentException("The array of values is shorter than that of quantiles.");
+    }
+    final double[] valuesAtQuantiles = getValuesAtQuantiles(quantiles);
+    System.arraycopy(valuesAtQuantiles, 0, values, 0, valuesAtQuantiles.length);
+  }
+
   /**
    * @return the arithmetic mean of values that have been added to this sketch
    * @throws java.util.NoSuchElementException if the sketch is empty
@@ -77,6 +77,29 @@ public class WithExactSummaryStatistics<QS extends QuantileSketch<QS>>
     updateMax(value);
   }
 
+  @Override
+  public void accept(double[] values, int from, int to) {
+    sketch.accept(values, from, to);
+    for (int i = from; i < to; i++) {
+      final double value = values[i];
+      addToSum(value);
+      updateMin(value);
+      updateMax(value);
+    }
+    addToCount(to - from);
+  }
+
+  @Override
+  public void accept(long[] values) {
+    sketch.accept(values);
+    for (final long value : values) {
+      addToSum(value);
+      updateMin(value);
+      updateMax(value);
+    }
+    addToCount(values.length);
+  }
+
   @Override
   public void mergeWith(WithExactSummaryStatistics<QS> other) {
     sketch.mergeWith(other.sketch);
@@ -197,6 +220,14 @@ public class WithExactSummaryStatistics<QS extends QuantileSketch<QS>>
     return valuesAtQuantiles;
   }
 
+  @Override
+  public void getValuesAtQuantiles(double[] quantiles, double[] values) {
+    sketch.getValuesAtQuantiles(quantiles, values);
+    for (int i = 0; i < quantiles.length; i++) {
+      values[i] = clamp(values[i]);
+    }
+  }
+
   private double clamp(double value) {
     if (max < min) {
       // Only if the sketch is empty, in which case this method should not be called.
@@ -0,0 +1,381 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.QuantileSketch;
+import com.datadoghq.sketch.ddsketch.encoding.Output;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe version of {@link DDSketch} that is well-suited to being fed by many threads.
+ *
+ * <p>Instead of guarding a single {@link DDSketch} with a single lock, this sketch maintains a
+ * number of stripes, each of which holds its own pair of {@link Store}s and its own zero count, and
+ * is guarded by its own lock. Writing threads are spread across stripes based on a hash of their
+ * identifiers, so that concurrent writes mostly go to distinct stripes and rarely contend. All
+ * stripes share the same {@link IndexMapping}, which makes it possible to fold them together using
+ * {@link Store#mergeWith(Store)}, thereby benefiting from the fast paths that stores implement when
+ * merging stores of the same type.
+ *
+ * <p>Stripes are only folded together when needed, that is, when the sketch is queried for
+ * quantile values, encoded or merged into another sketch. The folding is done into an aggregate
+ * {@link DDSketch} that is cleared and reused from one query to the next, so that querying does not
+ * allocate new stores once the aggregate has grown to fit the range of the input values.
+ *
+ * <p>Note that a concurrent update may or may not be reflected in the result of a query that it
+ * overlaps with.
+ */
+public class ConcurrentDDSketch implements QuantileSketch<ConcurrentDDSketch> {
+
+  private static final int MAX_NUM_STRIPES = 1 << 30;
+
+  private final IndexMapping indexMapping;
+  private final Supplier<Store> storeSupplier;
+  private final DDSketch[] stripes;
+  private final DDSketch aggregate;
+
+  /**
+   * Constructs an initially empty concurrent quantile sketch using the specified {@link
+   * IndexMapping} and {@link Store} supplier, with a number of stripes that depends on the number
+   * of available processors.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketch
+   * @param storeSupplier the store constructor for keeping track of added values
+   */
+  public ConcurrentDDSketch(IndexMapping indexMapping, Supplier<Store> storeSupplier) {
+    this(indexMapping, storeSupplier, defaultNumStripes());
+  }
+
+  /**
+   * Constructs an initially empty concurrent quantile sketch using the specified {@link
+   * IndexMapping} and {@link Store} supplier.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketch
+   * @param storeSupplier the store constructor for keeping track of added values
+   * @param numStripes the minimum number of stripes, which is rounded up to the next power of two
+   * @throws IllegalArgumentException if {@code numStripes} is not positive or is greater than
+   *     {@code 2^30}
+   */
+  public ConcurrentDDSketch(
+      IndexMapping indexMapping, Supplier<Store> storeSupplier, int numStripes) {
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("The number of stripes must be positive.");
+    }
+    if (numStripes > MAX_NUM_STRIPES) {
+      throw new IllegalArgumentException(
+          "The number of stripes cannot be greater than " + MAX_NUM_STRIPES + ".");
+    }
+    this.indexMapping = Objects.requireNonNull(indexMapping);
+    this.storeSupplier = Objects.requireNonNull(storeSupplier);
+    this.stripes = new DDSketch[nextPowerOfTwo(numStripes)];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new DDSketch(indexMapping, storeSupplier);
+    }
+    this.aggregate = new DDSketch(indexMapping, storeSupplier);
+  }
+
+  private ConcurrentDDSketch(ConcurrentDDSketch sketch) {
+    this.indexMapping = sketch.indexMapping;
+    this.storeSupplier = sketch.storeSupplier;
+    this.stripes = new DDSketch[sketch.stripes.length];
+    for (int i = 0; i < stripes.length; i++) {
+      final DDSketch stripe = sketch.stripes[i];
+      synchronized (stripe) {
+        stripes[i] = stripe.copy();
+      }
+    }
+    this.aggregate = new DDSketch(indexMapping, storeSupplier);
+  }
+
+  private static int defaultNumStripes() {
+    return 2 * Runtime.getRuntime().availableProcessors();
+  }
+
+  private static int nextPowerOfTwo(int n) {
+    return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+  }
+
+  public IndexMapping getIndexMapping() {
+    return indexMapping;
+  }
+
+  int getNumStripes() {
+    return stripes.length;
+  }
+
+  private DDSketch stripe() {
+    // Spread the thread identifiers, which are usually sequential, with Fibonacci hashing.
+    final long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  @Override
+  public void accept(double value) {
+    final DDSketch stripe = stripe();
+    synchronized (stripe) {
+      stripe.accept(value);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  @Override
+  public void accept(double value, double count) {
+    final DDSketch stripe = stripe();
+    synchronized (stripe) {
+      stripe.accept(value, count);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if one of the values is outside the range that is tracked by
+   *     the sketch
+   */
+  @Override
+  public void accept(double[] values, int from, int to) {
+    final DDSketch stripe = stripe();
+    synchronized (stripe) {
+      stripe.accept(values, from, to);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if one of the values is outside the range that is tracked by
+   *     the sketch
+   */
+  @Override
+  public void accept(long[] values) {
+    final DDSketch stripe = stripe();
+    synchronized (stripe) {
+      stripe.accept(values);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The other sketch is folded and its content is added to the stripe of the calling thread.
+   *
+   * @throws IllegalArgumentException if the other sketch does not use the same index mapping
+   */
+  @Override
+  public void mergeWith(ConcurrentDDSketch other) {
+    if (other == this) {
+      mergeWith(copy());
+      return;
+    }
+    synchronized (other.aggregate) {
+      other.fold();
+      mergeWith(other.aggregate);
+    }
+  }
+
+  /**
+   * Merges a {@link DDSketch} into this sketch, by adding its content to the stripe of the calling
+   * thread.
+   *
+   * @param other the sketch to be merged into this one
+   * @throws IllegalArgumentException if the other sketch does not use the same index mapping
+   * @throws NullPointerException if {@code other} is {@code null}
+   */
+  public void mergeWith(DDSketch other) {
+    final DDSketch stripe = stripe();
+    synchronized (stripe) {
+      stripe.mergeWith(other);
+    }
+  }
+
+  @Override
+  public ConcurrentDDSketch copy() {
+    return new ConcurrentDDSketch(this);
+  }
+
+  /**
+   * Builds a new {@link DDSketch} that holds the content of this sketch. This sketch is not
+   * modified by the operation.
+   *
+   * @return a non-thread-safe copy of this sketch
+   */
+  public DDSketch toDDSketch() {
+    synchronized (aggregate) {
+      fold();
+      return aggregate.copy();
+    }
+  }
+
+  /**
+   * Adds the content of this sketch to the provided sketch.
+   *
+   * @param target the sketch to add the content of this sketch to, which must use the same index
+   *     mapping as this sketch
+   */
+  void foldInto(DDSketch target) {
+    for (final DDSketch stripe : stripes) {
+      synchronized (stripe) {
+        target.mergeWith(stripe);
+      }
+    }
+  }
+
+  /** Folds the stripes into the aggregate sketch. Must be called while holding its lock. */
+  private void fold() {
+    aggregate.clear();
+    foldInto(aggregate);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (final DDSketch stripe : stripes) {
+      synchronized (stripe) {
+        if (!stripe.isEmpty()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    for (final DDSketch stripe : stripes) {
+      synchronized (stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  @Override
+  public double getCount() {
+    double count = 0;
+    for (final DDSketch stripe : stripes) {
+      synchronized (stripe) {
+        count += stripe.getCount();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns an approximation of the sum of the values that have been added to the sketch. If the
+   * values that have been added to the sketch all have the same sign, the approximation error has
+   * the relative accuracy guarantees of the {@link IndexMapping} used for this sketch.
+   *
+   * @return an approximation of the sum of the values that have been added to the sketch
+   */
+  @Override
+  public double getSum() {
+    double sum = 0;
+    for (final DDSketch stripe : stripes) {
+      synchronized (stripe) {
+        sum += stripe.getSum();
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public double getMinValue() {
+    synchronized (aggregate) {
+      fold();
+      return aggregate.getMinValue();
+    }
+  }
+
+  @Override
+  public double getMaxValue() {
+    synchronized (aggregate) {
+      fold();
+      return aggregate.getMaxValue();
+    }
+  }
+
+  @Override
+  public double getValueAtQuantile(double quantile) {
+    synchronized (aggregate) {
+      fold();
+      return aggregate.getValueAtQuantile(quantile);
+    }
+  }
+
+  @Override
+  public double[] getValuesAtQuantiles(double[] quantiles) {
+    synchronized (aggregate) {
+      fold();
+      return aggregate.getValuesAtQuantiles(quantiles);
+    }
+  }
+
+  @Override
+  public void getValuesAtQuantiles(double[] quantiles, double[] values) {
+    synchronized (aggregate) {
+      fold();
+      aggregate.getValuesAtQuantiles(quantiles, values);
+    }
+  }
+
+  public void encode(Output output, boolean omitIndexMapping) throws IOException {
+    synchronized (aggregate) {
+      fold();
+      aggregate.encode(output, omitIndexMapping);
+    }
+  }
+
+  /** @return the size of the sketch when serialized in protobuf */
+  public int serializedSize() {
+    synchronized (aggregate) {
+      fold();
+      return aggregate.serializedSize();
+    }
+  }
+
+  /**
+   * Produces protobuf encoded bytes which are equivalent to using the official protobuf bindings,
+   * without requiring a runtime dependency on protobuf-java.
+   *
+   * @return the sketch serialized as a {@code ByteBuffer}.
+   * @see DDSketch#serialize()
+   */
+  public ByteBuffer serialize() {
+    synchronized (aggregate) {
+      fold();
+      return aggregate.serialize();
+    }
+  }
+
+  /**
+   * Writes the same bytes as {@link #serialize()} into the provided buffer.
+   *
+   * @param target the buffer to write the serialized sketch into
+   * @see DDSketch#serialize(ByteBuffer)
+   */
+  public void serialize(ByteBuffer target) {
+    synchronized (aggregate) {
+      fold();
+      aggregate.serialize(target);
+    }
+  }
+}
@@ -7,6 +7,7 @@ package com.datadoghq.sketch.ddsketch;
 
 import static com.datadoghq.sketch.ddsketch.Serializer.doubleFieldSize;
 import static com.datadoghq.sketch.ddsketch.Serializer.embeddedFieldSize;
+import static com.datadoghq.sketch.ddsketch.Serializer.embeddedSize;
 
 import com.datadoghq.sketch.QuantileSketch;
 import com.datadoghq.sketch.ddsketch.encoding.BinEncodingMode;
@@ -21,14 +22,14 @@ import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
 import com.datadoghq.sketch.ddsketch.mapping.IndexMappingConverter;
 import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
 import com.datadoghq.sketch.ddsketch.store.Bin;
+import com.datadoghq.sketch.ddsketch.store.BinCursor;
 import com.datadoghq.sketch.ddsketch.store.CollapsingHighestDenseStore;
 import com.datadoghq.sketch.ddsketch.store.CollapsingLowestDenseStore;
 import com.datadoghq.sketch.ddsketch.store.Store;
 import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.function.Supplier;
@@ -58,6 +59,9 @@ import java.util.function.Supplier;
  */
 public class DDSketch implements QuantileSketch<DDSketch> {
 
+  // The number of values that are processed at once by batched insertions.
+  private static final int BATCH_CHUNK_LENGTH = 256;
+
   private final IndexMapping indexMapping;
   private final double minIndexedValue;
   private final double maxIndexedValue;
@@ -252,6 +256,127 @@ public class DDSketch implements QuantileSketch<DDSketch> {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The values are checked for being trackable before any of them is added, so that the sketch
+   * is left unchanged if an exception is thrown.
+   *
+   * @throws IllegalArgumentException if one of the values is outside the range that is tracked by
+   *     the sketch
+   */
+  @Override
+  public void accept(double[] values, int from, int to) {
+    checkBatchRange(values.length, from, to);
+    if (from == to) {
+      return;
+    }
+    double minValue = Double.POSITIVE_INFINITY;
+    double maxValue = Double.NEGATIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      final double value = values[i];
+      minValue = value < minValue ? value : minValue;
+      maxValue = value > maxValue ? value : maxValue;
+    }
+    checkValueTrackable(minValue);
+    checkValueTrackable(maxValue);
+
+    final BatchBuffers buffers = new BatchBuffers(to - from);
+    for (int chunkFrom = from; chunkFrom < to; ) {
+      final int chunkTo = to - chunkFrom > BATCH_CHUNK_LENGTH ? chunkFrom + BATCH_CHUNK_LENGTH : to;
+      acceptChunk(values, chunkFrom, chunkTo, buffers);
+      chunkFrom = chunkTo;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The values are checked for being trackable before any of them is added, so that the sketch
+   * is left unchanged if an exception is thrown.
+   *
+   * @throws IllegalArgumentException if one of the values is outside the range that is tracked by
+   *     the sketch
+   */
+  @Override
+  public void accept(long[] values) {
+    if (values.length == 0) {
+      return;
+    }
+    long minValue = Long.MAX_VALUE;
+    long maxValue = Long.MIN_VALUE;
+    for (final long value : values) {
+      minValue = Math.min(minValue, value);
+      maxValue = Math.max(maxValue, value);
+    }
+    checkValueTrackable(minValue);
+    checkValueTrackable(maxValue);
+
+    final BatchBuffers buffers = new BatchBuffers(values.length);
+    final double[] chunk = new double[Math.min(values.length, BATCH_CHUNK_LENGTH)];
+    for (int chunkFrom = 0; chunkFrom < values.length; ) {
+      final int chunkLength = Math.min(values.length - chunkFrom, BATCH_CHUNK_LENGTH);
+      for (int i = 0; i < chunkLength; i++) {
+        chunk[i] = values[chunkFrom + i];
+      }
+      acceptChunk(chunk, 0, chunkLength, buffers);
+      chunkFrom += chunkLength;
+    }
+  }
+
+  /**
+   * Adds the values of a chunk of at most {@link #BATCH_CHUNK_LENGTH} values, which are assumed to
+   * be trackable. Values are split by sign, and the indices of each sign are computed and added to
+   * the matching store in bulk.
+   */
+  private void acceptChunk(double[] values, int from, int to, BatchBuffers buffers) {
+    final double[] positiveValues = buffers.positiveValues;
+    final double[] negativeValues = buffers.negativeValues;
+    int numPositiveValues = 0;
+    int numNegativeValues = 0;
+    for (int i = from; i < to; i++) {
+      final double value = values[i];
+      if (value > minIndexedValue) {
+        positiveValues[numPositiveValues++] = value;
+      } else if (value < -minIndexedValue) {
+        negativeValues[numNegativeValues++] = -value;
+      } else {
+        zeroCount++;
+      }
+    }
+    addAll(positiveValueStore, positiveValues, numPositiveValues, buffers.indexes);
+    addAll(negativeValueStore, negativeValues, numNegativeValues, buffers.indexes);
+  }
+
+  private void addAll(Store store, double[] values, int length, int[] indexes) {
+    if (length == 0) {
+      return;
+    }
+    indexMapping.indices(values, 0, length, indexes);
+    store.add(indexes, 0, length);
+  }
+
+  private static void checkBatchRange(int length, int from, int to) {
+    if (from < 0 || from > to || to > length) {
+      throw new IndexOutOfBoundsException(
+          "The range [" + from + ", " + to + ") is out of bounds for length " + length + ".");
+    }
+  }
+
+  /** Scratch arrays for batched insertions, sized for at most one chunk. */
+  private static final class BatchBuffers {
+    private final double[] positiveValues;
+    private final double[] negativeValues;
+    private final int[] indexes;
+
+    private BatchBuffers(int numValues) {
+      final int length = Math.min(numValues, BATCH_CHUNK_LENGTH);
+      this.positiveValues = new double[length];
+      this.negativeValues = new double[length];
+      this.indexes = new int[length];
+    }
+  }
+
   private void checkValueTrackable(double value) {
     if (value < -maxIndexedValue || value > maxIndexedValue) {
       throw new IllegalArgumentException(
@@ -272,7 +397,32 @@ public class DDSketch implements QuantileSketch<DDSketch> {
     zeroCount += other.zeroCount;
   }
 
-  private static void checkMergeability(IndexMapping indexMapping1, IndexMapping indexMapping2)
+  /**
+   * Merges other sketches into this one, which is equivalent to merging them one after the other
+   * using {@link #mergeWith(DDSketch)}, but sizes the stores of this sketch once for the bins of
+   * all the sketches.
+   *
+   * @param others the sketches to be merged into this one
+   * @throws IllegalArgumentException if one of the other sketches does not use the same index
+   *     mapping
+   * @see Store#mergeWith(Store...)
+   */
+  public void mergeWith(DDSketch... others) {
+    final Store[] negativeValueStores = new Store[others.length];
+    final Store[] positiveValueStores = new Store[others.length];
+    double addedZeroCount = 0;
+    for (int i = 0; i < others.length; i++) {
+      checkMergeability(indexMapping, others[i].indexMapping);
+      negativeValueStores[i] = others[i].negativeValueStore;
+      positiveValueStores[i] = others[i].positiveValueStore;
+      addedZeroCount += others[i].zeroCount;
+    }
+    negativeValueStore.mergeWith(negativeValueStores);
+    positiveValueStore.mergeWith(positiveValueStores);
+    zeroCount += addedZeroCount;
+  }
+
+  static void checkMergeability(IndexMapping indexMapping1, IndexMapping indexMapping2)
       throws IllegalArgumentException {
     if (!indexMapping1.equals(indexMapping2)) {
       throw new IllegalArgumentException(
@@ -297,6 +447,18 @@ public class DDSketch implements QuantileSketch<DDSketch> {
     zeroCount = 0D;
   }
 
+  /**
+   * Clears the sketch and hands the memory that its stores hold back to the allocators that it has
+   * been obtained from, unlike {@link #clear()}, which keeps it (see {@link Store#release()}). The
+   * sketch can still be used afterwards, in which case its stores allocate memory again.
+   */
+  public void release() {
+    negativeValueStore.release();
+    positiveValueStore.release();
+    // Clear the stores that do not release memory.
+    clear();
+  }
+
   @Override
   public double getCount() {
     return zeroCount + negativeValueStore.getTotalCount() + positiveValueStore.getTotalCount();
@@ -341,50 +503,156 @@ public class DDSketch implements QuantileSketch<DDSketch> {
 
   @Override
   public double getValueAtQuantile(double quantile) {
-    return getValueAtQuantile(quantile, getCount());
+    return getValueAtQuantile(quantile, 1);
+  }
+
+  /**
+   * Returns the value at the specified quantile, given that the counts of the sketch are scaled so
+   * that a single value has the specified count, which must not be greater than the total count.
+   */
+  double getValueAtQuantile(double quantile, double unitCount) {
+    checkQuantile(quantile);
+    final double count = getCount();
+    if (count == 0) {
+      throw new NoSuchElementException();
+    }
+    return getValueAtRank(quantile * (count - unitCount), negativeValueStore.getTotalCount());
   }
 
   @Override
   public double[] getValuesAtQuantiles(double[] quantiles) {
-    final double count = getCount();
-    return Arrays.stream(quantiles).map(quantile -> getValueAtQuantile(quantile, count)).toArray();
+    final double[] values = new double[quantiles.length];
+    getValuesAtQuantiles(quantiles, values);
+    return values;
   }
 
-  private double getValueAtQuantile(double quantile, double count) {
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The quantiles are all evaluated in a single pass over the bins of the sketch, which does not
+   * allocate with stores that implement {@link Store#getAscendingCursor()} and {@link
+   * Store#getDescendingCursor()} natively. If the quantiles are not sorted in ascending order, the
+   * order in which to evaluate them is computed first, in an array that is allocated for the call.
+   */
+  @Override
+  public void getValuesAtQuantiles(double[] quantiles, double[] values) {
+    getValuesAtQuantiles(quantiles, values, 1);
+  }
 
-    if (quantile < 0 || quantile > 1) {
-      throw new IllegalArgumentException("The quantile must be between 0 and 1.");
+  /**
+   * Same as {@link #getValuesAtQuantiles(double[], double[])}, given that the counts of the sketch
+   * are scaled so that a single value has the specified count, which must not be greater than the
+   * total count.
+   */
+  void getValuesAtQuantiles(double[] quantiles, double[] values, double unitCount) {
+    if (values.length < quantiles.length) {
+      throw new IllegalArgumentException("The array of values is shorter than that of quantiles.");
     }
-
+    for (final double quantile : quantiles) {
+      checkQuantile(quantile);
+    }
+    if (quantiles.length == 0) {
+      return;
+    }
+    final double count = getCount();
     if (count == 0) {
       throw new NoSuchElementException();
     }
+    final double negativeValueCount = negativeValueStore.getTotalCount();
 
-    final double rank = quantile * (count - 1);
-
+    // The quantiles are evaluated in ascending order, in a single pass, the i-th lowest one being
+    // at position order[i], or at position i if the quantiles are already sorted.
+    final int[] order = getAscendingOrder(quantiles);
+    final double maxRank = count - unitCount;
+    int i = 0;
     double n = 0;
+    double value = 0;
+    if (negativeValueCount > 0) {
+      final BinCursor cursor = negativeValueStore.getDescendingCursor();
+      while (i < quantiles.length && cursor.advance()) {
+        n += cursor.count();
+        value = -indexMapping.value(cursor.index());
+        while (i < quantiles.length && quantiles[position(order, i)] * maxRank < n) {
+          values[position(order, i++)] = value;
+        }
+      }
+    }
+    if (zeroCount > 0) {
+      n += zeroCount;
+      value = 0;
+      while (i < quantiles.length && quantiles[position(order, i)] * maxRank < n) {
+        values[position(order, i++)] = value;
+      }
+    }
+    if (i < quantiles.length) {
+      final BinCursor cursor = positiveValueStore.getAscendingCursor();
+      while (i < quantiles.length && cursor.advance()) {
+        n += cursor.count();
+        value = indexMapping.value(cursor.index());
+        while (i < quantiles.length && quantiles[position(order, i)] * maxRank < n) {
+          values[position(order, i++)] = value;
+        }
+      }
+    }
+    // Rounding errors may leave the highest ranks slightly above the sum of the counts.
+    while (i < quantiles.length) {
+      values[position(order, i++)] = value;
+    }
+  }
 
-    Iterator<Bin> negativeBinIterator = negativeValueStore.getDescendingIterator();
-    while (negativeBinIterator.hasNext()) {
-      Bin bin = negativeBinIterator.next();
-      if ((n += bin.getCount()) > rank) {
-        return -indexMapping.value(bin.getIndex());
+  /**
+   * @return the positions of the quantiles from the lowest to the highest one, or {@code null} if
+   *     they are already sorted in ascending order
+   */
+  private static int[] getAscendingOrder(double[] quantiles) {
+    int sortedLength = 1;
+    while (sortedLength < quantiles.length
+        && quantiles[sortedLength] >= quantiles[sortedLength - 1]) {
+      sortedLength++;
+    }
+    if (sortedLength >= quantiles.length) {
+      return null;
+    }
+    // Insertion sort, as only a few quantiles are usually queried at once.
+    final int[] order = new int[quantiles.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    for (int i = sortedLength; i < order.length; i++) {
+      final int position = order[i];
+      int j = i - 1;
+      while (j >= 0 && quantiles[order[j]] > quantiles[position]) {
+        order[j + 1] = order[j];
+        j--;
       }
+      order[j + 1] = position;
     }
+    return order;
+  }
 
-    if ((n += zeroCount) > rank) {
-      return 0;
+  private static int position(int[] order, int i) {
+    return null == order ? i : order[i];
+  }
+
+  private static void checkQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("The quantile must be between 0 and 1.");
     }
+  }
 
-    Iterator<Bin> positiveBinIterator = positiveValueStore.getAscendingIterator();
-    while (positiveBinIterator.hasNext()) {
-      Bin bin = positiveBinIterator.next();
-      if ((n += bin.getCount()) > rank) {
-        return indexMapping.value(bin.getIndex());
-      }
+  private double getValueAtRank(double rank, double negativeValueCount) {
+    // The rank is negative if the total count is lower than a single value.
+    rank = Math.max(rank, 0);
+    if (rank < negativeValueCount) {
+      return -indexMapping.value(negativeValueStore.getDescendingIndexAtRank(rank));
+    }
+
+    if (rank < negativeValueCount + zeroCount) {
+      return 0;
     }
 
-    throw new NoSuchElementException();
+    return indexMapping.value(
+        positiveValueStore.getAscendingIndexAtRank(rank - negativeValueCount - zeroCount));
   }
 
   /**
@@ -404,12 +672,12 @@ public class DDSketch implements QuantileSketch<DDSketch> {
         IndexMappingConverter.distributingUniformly(indexMapping, newIndexMapping);
 
     final Store newNegativeValueStore = storeSupplier.get();
-    indexMappingConverter.convertAscendingIterator(
-        negativeValueStore.getAscendingIterator(), newNegativeValueStore::add);
+    indexMappingConverter.convertAscendingCursor(
+        negativeValueStore.getAscendingCursor(), newNegativeValueStore::add);
 
     final Store newPositiveValueStore = storeSupplier.get();
-    indexMappingConverter.convertAscendingIterator(
-        positiveValueStore.getAscendingIterator(), newPositiveValueStore::add);
+    indexMappingConverter.convertAscendingCursor(
+        positiveValueStore.getAscendingCursor(), newPositiveValueStore::add);
 
     return new DDSketch(
         newIndexMapping, newNegativeValueStore, newPositiveValueStore, zeroCount, minIndexedValue);
@@ -533,32 +801,126 @@ public class DDSketch implements QuantileSketch<DDSketch> {
 
   /** @return the size of the sketch when serialized in protobuf */
   public int serializedSize() {
-    return embeddedFieldSize(1, indexMapping.serializedSize())
-        + embeddedFieldSize(2, positiveValueStore.serializedSize())
-        + embeddedFieldSize(3, negativeValueStore.serializedSize())
-        + doubleFieldSize(4, zeroCount);
+    return serializedSize(
+        indexMapping.serializedSize(),
+        positiveValueStore.serializedSize(),
+        negativeValueStore.serializedSize());
   }
 
   /**
    * Produces protobuf encoded bytes which are equivalent to using the official protobuf bindings,
    * without requiring a runtime dependency on protobuf-java.
    *
-   * <p>Currently this API is asymmetric in that there is not an equivalent method to deserialize a
-   * sketch from a protobuf message. {@code DDSketchProtoBinding} can be used for this purpose, but
-   * requires a runtime dependency on protobuf-java. This API may be made symmetric in the future.
+   * <p>The bytes can be read back using {@link #deserialize(ByteBuffer, Supplier)}.
    *
    * @return the sketch serialized as a {@code ByteBuffer}.
+   * @see #serialize(ByteBuffer)
    */
   public ByteBuffer serialize() {
-    int indexMappingSize = indexMapping.serializedSize();
-    int positiveValueStoreSize = positiveValueStore.serializedSize();
-    int negativeValueStoreSize = negativeValueStore.serializedSize();
-    int totalSize =
-        embeddedFieldSize(1, indexMappingSize)
-            + embeddedFieldSize(2, positiveValueStoreSize)
-            + embeddedFieldSize(3, negativeValueStoreSize)
-            + doubleFieldSize(4, zeroCount);
-    Serializer serializer = new Serializer(totalSize);
+    final int indexMappingSize = indexMapping.serializedSize();
+    final int positiveValueStoreSize = positiveValueStore.serializedSize();
+    final int negativeValueStoreSize = negativeValueStore.serializedSize();
+    final Serializer serializer =
+        new Serializer(
+            serializedSize(indexMappingSize, positiveValueStoreSize, negativeValueStoreSize));
+    serialize(serializer, indexMappingSize, positiveValueStoreSize, negativeValueStoreSize);
+    return serializer.getBuffer();
+  }
+
+  /**
+   * Writes the same protobuf encoded bytes as {@link #serialize()} into the provided buffer, which
+   * may be a heap or a direct buffer, from its position onwards, without allocating an intermediate
+   * buffer. The position of the buffer is moved forward by {@link #serializedSize()} bytes.
+   *
+   * @param target the buffer to write the serialized sketch into
+   * @throws java.nio.BufferOverflowException if the buffer has fewer remaining bytes than {@link
+   *     #serializedSize()}, in which case nothing is written
+   */
+  public void serialize(ByteBuffer target) {
+    serialize(new Serializer(target));
+  }
+
+  /**
+   * Writes the same protobuf encoded bytes as {@link #serialize()} using the provided serializer,
+   * which makes it possible to reuse a serializer over many sketches and buffers.
+   *
+   * @param serializer the serializer to write the sketch with
+   * @throws java.nio.BufferOverflowException if the buffer of the serializer has fewer remaining
+   *     bytes than {@link #serializedSize()}
+   * @see Serializer#reset(ByteBuffer)
+   */
+  public void serialize(Serializer serializer) {
+    final int indexMappingSize = indexMapping.serializedSize();
+    final int positiveValueStoreSize = positiveValueStore.serializedSize();
+    final int negativeValueStoreSize = negativeValueStore.serializedSize();
+    serializer.checkRemaining(
+        serializedSize(indexMappingSize, positiveValueStoreSize, negativeValueStoreSize));
+    serialize(serializer, indexMappingSize, positiveValueStoreSize, negativeValueStoreSize);
+  }
+
+  /**
+   * Writes the protobuf encoded bytes of the sketch, preceded by their length as a varint, as
+   * {@code writeDelimitedTo} of the official protobuf bindings does, so that multiple sketches can
+   * be written back-to-back into the same payload and read back using {@link
+   * #deserializeDelimited(ByteBuffer, Supplier)}.
+   *
+   * @param target the buffer to write the length-prefixed serialized sketch into
+   * @throws java.nio.BufferOverflowException if the buffer has fewer remaining bytes than {@link
+   *     #serializedSizeDelimited()}, in which case nothing is written
+   */
+  public void serializeDelimited(ByteBuffer target) {
+    serializeDelimited(new Serializer(target));
+  }
+
+  private void serializeDelimited(Serializer serializer) {
+    final int indexMappingSize = indexMapping.serializedSize();
+    final int positiveValueStoreSize = positiveValueStore.serializedSize();
+    final int negativeValueStoreSize = negativeValueStore.serializedSize();
+    final int size =
+        serializedSize(indexMappingSize, positiveValueStoreSize, negativeValueStoreSize);
+    serializer.checkRemaining(embeddedSize(size));
+    serializer.writeLengthPrefix(size);
+    serialize(serializer, indexMappingSize, positiveValueStoreSize, negativeValueStoreSize);
+  }
+
+  /** @return the size of the sketch when serialized with {@link #serializeDelimited(ByteBuffer)} */
+  public int serializedSizeDelimited() {
+    return embeddedSize(serializedSize());
+  }
+
+  /**
+   * Frames the provided sketches into a single payload, in which each serialized sketch is
+   * preceded by its length, as {@link #serializeDelimited(ByteBuffer)} does. The payload is
+   * allocated once, with the size that the sketches require.
+   *
+   * @param sketches the sketches to serialize
+   * @return the payload as a {@code ByteBuffer}
+   */
+  public static ByteBuffer serializeDelimited(Collection<DDSketch> sketches) {
+    int size = 0;
+    for (final DDSketch sketch : sketches) {
+      size += sketch.serializedSizeDelimited();
+    }
+    final Serializer serializer = new Serializer(size);
+    for (final DDSketch sketch : sketches) {
+      sketch.serializeDelimited(serializer);
+    }
+    return serializer.getBuffer();
+  }
+
+  private int serializedSize(
+      int indexMappingSize, int positiveValueStoreSize, int negativeValueStoreSize) {
+    return embeddedFieldSize(1, indexMappingSize)
+        + embeddedFieldSize(2, positiveValueStoreSize)
+        + embeddedFieldSize(3, negativeValueStoreSize)
+        + doubleFieldSize(4, zeroCount);
+  }
+
+  private void serialize(
+      Serializer serializer,
+      int indexMappingSize,
+      int positiveValueStoreSize,
+      int negativeValueStoreSize) {
     serializer.writeHeader(1, indexMappingSize);
     indexMapping.serialize(serializer);
     serializer.writeHeader(2, positiveValueStoreSize);
@@ -566,13 +928,63 @@ public class DDSketch implements QuantileSketch<DDSketch> {
     serializer.writeHeader(3, negativeValueStoreSize);
     negativeValueStore.serialize(serializer);
     serializer.writeDouble(4, zeroCount);
-    return serializer.getBuffer();
+  }
+
+  /**
+   * Builds a new sketch from protobuf encoded bytes, such as produced by {@link #serialize()} or by
+   * the official protobuf bindings, without requiring a runtime dependency on protobuf-java.
+   *
+   * @param buffer the buffer whose remaining bytes are the serialized sketch, and whose position is
+   *     moved to its limit
+   * @param storeSupplier the constructor of the stores to add the bins of the sketch to
+   * @return the deserialized sketch
+   * @throws MalformedInputException if the bytes are not a valid protobuf {@code DDSketch} message
+   * @throws IllegalArgumentException if the message does not hold a valid index mapping
+   * @see Deserializer
+   */
+  public static DDSketch deserialize(ByteBuffer buffer, Supplier<Store> storeSupplier)
+      throws MalformedInputException {
+    return Deserializer.deserialize(buffer, storeSupplier);
+  }
+
+  /**
+   * Reads a sketch that has been written with {@link #serializeDelimited(ByteBuffer)}, that is,
+   * preceded by its length. The position of the buffer is moved to the end of the sketch, so that
+   * the next sketch of the payload can be read with another call.
+   *
+   * @param buffer the buffer whose remaining bytes start with a length-prefixed serialized sketch
+   * @param storeSupplier the constructor of the stores to add the bins of the sketch to
+   * @return the deserialized sketch
+   * @throws MalformedInputException if the bytes are not a valid length-prefixed protobuf {@code
+   *     DDSketch} message
+   * @throws IllegalArgumentException if the message does not hold a valid index mapping
+   */
+  public static DDSketch deserializeDelimited(ByteBuffer buffer, Supplier<Store> storeSupplier)
+      throws MalformedInputException {
+    return Deserializer.deserializeDelimited(buffer, storeSupplier);
   }
 
   double getZeroCount() {
     return zeroCount;
   }
 
+  /** Multiplies all the counts of this sketch, including the zero count, by the factor. */
+  void scale(double factor) {
+    negativeValueStore.scale(factor);
+    positiveValueStore.scale(factor);
+    zeroCount *= factor;
+  }
+
+  /**
+   * Removes counts from the zero bucket, without letting it become negative. As with {@link
+   * UnboundedSizeDenseStore#subtract(Store)}, a remaining count that is within a few ulps of zero
+   * is deemed to be a rounding error and set to zero.
+   */
+  void subtractFromZeroCount(double count) {
+    final double remainingCount = zeroCount - count;
+    zeroCount = remainingCount <= 16 * Math.ulp(zeroCount) ? 0 : remainingCount;
+  }
+
   // Preset sketches
 
   /** @deprecated Use {@link DDSketches#unboundedDense(double)}. */
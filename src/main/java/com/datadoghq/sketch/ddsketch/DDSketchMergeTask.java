@@ -0,0 +1,93 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Merges a range of sketches by splitting it in halves that are merged in parallel, down to a size
+ * below which the sketches are merged sequentially. The sketches are not modified.
+ */
+// Tasks are never serialized, and sketches are not serializable anyway.
+@SuppressWarnings("serial")
+final class DDSketchMergeTask extends RecursiveTask<DDSketch> {
+
+  // Merging two sketches takes in the order of a microsecond, so that smaller ranges are not worth
+  // the overhead of forking.
+  static final int SEQUENTIAL_THRESHOLD = 128;
+
+  // The sketch to merge the range into, or null to merge it into a copy of its first sketch.
+  private final DDSketch target;
+  private final DDSketch[] sketches;
+  private final int from;
+  private final int to;
+
+  private DDSketchMergeTask(DDSketch target, DDSketch[] sketches, int from, int to) {
+    this.target = target;
+    this.sketches = sketches;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Merges the sketches in parallel into a copy of the first one, whose stores are sized once to
+   * fit the bins of all the sketches, so that they do not grow as the merged halves are added to
+   * them.
+   */
+  static DDSketch mergeInParallel(DDSketch[] sketches, ForkJoinPool pool) {
+    final DDSketch merged = sketches[0].copy();
+    reserve(merged.getNegativeValueStore(), sketches, DDSketch::getNegativeValueStore);
+    reserve(merged.getPositiveValueStore(), sketches, DDSketch::getPositiveValueStore);
+    return pool.invoke(new DDSketchMergeTask(merged, sketches, 1, sketches.length));
+  }
+
+  private static void reserve(
+      Store target, DDSketch[] sketches, Function<DDSketch, Store> storeGetter) {
+    int minIndex = Integer.MAX_VALUE;
+    int maxIndex = Integer.MIN_VALUE;
+    for (final DDSketch sketch : sketches) {
+      final Store store = storeGetter.apply(sketch);
+      if (!store.isEmpty()) {
+        minIndex = Math.min(minIndex, store.getMinIndex());
+        maxIndex = Math.max(maxIndex, store.getMaxIndex());
+      }
+    }
+    if (minIndex <= maxIndex) {
+      target.reserve(minIndex, maxIndex);
+    }
+  }
+
+  @Override
+  protected DDSketch compute() {
+    if (to - from <= SEQUENTIAL_THRESHOLD) {
+      if (target == null) {
+        return mergeSequentially(sketches, from, to);
+      }
+      target.mergeWith(Arrays.copyOfRange(sketches, from, to));
+      return target;
+    }
+    final int middle = (from + to) >>> 1;
+    final DDSketchMergeTask right = new DDSketchMergeTask(null, sketches, middle, to);
+    right.fork();
+    final DDSketch merged = new DDSketchMergeTask(target, sketches, from, middle).compute();
+    merged.mergeWith(right.join());
+    return merged;
+  }
+
+  /**
+   * Merges the sketches into a copy of the first one, whose stores are sized once to fit the bins
+   * of all the sketches.
+   */
+  static DDSketch mergeSequentially(DDSketch[] sketches, int from, int to) {
+    final DDSketch merged = sketches[from].copy();
+    merged.mergeWith(Arrays.copyOfRange(sketches, from + 1, to));
+    return merged;
+  }
+}
@@ -0,0 +1,173 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.util.Objects;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Records values into interval sketches, without ever blocking the recording threads on the thread
+ * that collects the intervals, in the fashion of HdrHistogram's {@code Recorder}.
+ *
+ * <p>The recorder keeps an active and an inactive sketch. Values are added to the active one.
+ * {@link #getIntervalSketch(DDSketch)} swaps them, waits for the in-flight writes to the previously
+ * active sketch to complete, and moves its content to the provided sketch, which is then returned.
+ * Recording threads only go through a couple of atomic increments to synchronize with the thread
+ * that swaps the sketches, and never wait for it.
+ *
+ * <p>Unlike HdrHistogram's {@code Recorder}, recording is not lock-free. Both sketches are {@link
+ * ConcurrentDDSketch}es, and recording a value takes the lock of the stripe of the recording
+ * thread, because stores cannot be updated concurrently. Recording threads only contend with each
+ * other when they happen to write to the same stripe, and otherwise pay for an uncontended lock
+ * acquisition per value, on top of the atomic increments. Sketches are cleared rather than replaced
+ * after each interval, so that the underlying stores keep their allocated arrays.
+ *
+ * <p>A typical usage is as follows:
+ *
+ * <pre>{@code
+ * DDSketch intervalSketch = null;
+ * while (running) {
+ *   Thread.sleep(flushIntervalMillis);
+ *   intervalSketch = recorder.getIntervalSketch(intervalSketch);
+ *   report(intervalSketch);
+ * }
+ * }</pre>
+ */
+public class DDSketchRecorder implements DoubleConsumer {
+
+  private final IndexMapping indexMapping;
+  private final Supplier<Store> storeSupplier;
+  private final WriterReaderPhaser recordingPhaser = new WriterReaderPhaser();
+
+  private volatile ConcurrentDDSketch activeSketch;
+  private ConcurrentDDSketch inactiveSketch;
+
+  /**
+   * Constructs a recorder whose interval sketches use the specified {@link IndexMapping} and {@link
+   * Store} supplier.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketches
+   * @param storeSupplier the store constructor for keeping track of recorded values
+   */
+  public DDSketchRecorder(IndexMapping indexMapping, Supplier<Store> storeSupplier) {
+    this.indexMapping = Objects.requireNonNull(indexMapping);
+    this.storeSupplier = Objects.requireNonNull(storeSupplier);
+    this.activeSketch = new ConcurrentDDSketch(indexMapping, storeSupplier);
+    this.inactiveSketch = new ConcurrentDDSketch(indexMapping, storeSupplier);
+  }
+
+  public IndexMapping getIndexMapping() {
+    return indexMapping;
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param value the value to be recorded
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  @Override
+  public void accept(double value) {
+    final long criticalValueAtEnter = recordingPhaser.writerCriticalSectionEnter();
+    try {
+      activeSketch.accept(value);
+    } finally {
+      recordingPhaser.writerCriticalSectionExit(criticalValueAtEnter);
+    }
+  }
+
+  /**
+   * Records a value with a specific count.
+   *
+   * @param value the value to be recorded
+   * @param count the weight associated with the value to be recorded
+   * @throws IllegalArgumentException if {@code count} is negative or if the value is outside the
+   *     range that is tracked by the sketch
+   */
+  public void accept(double value, double count) {
+    final long criticalValueAtEnter = recordingPhaser.writerCriticalSectionEnter();
+    try {
+      activeSketch.accept(value, count);
+    } finally {
+      recordingPhaser.writerCriticalSectionExit(criticalValueAtEnter);
+    }
+  }
+
+  /**
+   * Returns a new sketch that holds the values that have been recorded since the last call to
+   * {@link #getIntervalSketch} or {@link #reset}, or since the recorder was constructed.
+   *
+   * @return the interval sketch
+   */
+  public DDSketch getIntervalSketch() {
+    return getIntervalSketch(null);
+  }
+
+  /**
+   * Returns a sketch that holds the values that have been recorded since the last call to {@link
+   * #getIntervalSketch} or {@link #reset}, or since the recorder was constructed.
+   *
+   * <p>The provided sketch, typically the one that was returned by the previous call to this
+   * method, is cleared and reused to hold the values of the interval, so as to avoid allocating a
+   * new sketch and new stores on every interval.
+   *
+   * @param sketchToRecycle a sketch to be cleared and reused, or {@code null} to get a new sketch
+   * @return the interval sketch, which is {@code sketchToRecycle} if it is not {@code null}
+   * @throws IllegalArgumentException if {@code sketchToRecycle} does not use the index mapping of
+   *     this recorder
+   */
+  public DDSketch getIntervalSketch(DDSketch sketchToRecycle) {
+    final DDSketch intervalSketch;
+    if (sketchToRecycle == null) {
+      intervalSketch = new DDSketch(indexMapping, storeSupplier);
+    } else if (!indexMapping.equals(sketchToRecycle.getIndexMapping())) {
+      throw new IllegalArgumentException(
+          "The sketch to recycle does not use the index mapping of the recorder.");
+    } else {
+      intervalSketch = sketchToRecycle;
+      intervalSketch.clear();
+    }
+
+    recordingPhaser.readerLock();
+    try {
+      final ConcurrentDDSketch intervalConcurrentSketch = swapSketches();
+      intervalConcurrentSketch.foldInto(intervalSketch);
+      intervalConcurrentSketch.clear();
+    } finally {
+      recordingPhaser.readerUnlock();
+    }
+    return intervalSketch;
+  }
+
+  /** Discards the values that have been recorded so far. */
+  public void reset() {
+    recordingPhaser.readerLock();
+    try {
+      swapSketches().clear();
+    } finally {
+      recordingPhaser.readerUnlock();
+    }
+  }
+
+  /**
+   * Swaps the active and inactive sketches and waits until no writer is recording to the previously
+   * active sketch. Must be called while holding the reader lock.
+   *
+   * @return the previously active sketch, which has been made inactive
+   */
+  private ConcurrentDDSketch swapSketches() {
+    final ConcurrentDDSketch previouslyActiveSketch = activeSketch;
+    activeSketch = inactiveSketch;
+    inactiveSketch = previouslyActiveSketch;
+    recordingPhaser.flipPhase();
+    return previouslyActiveSketch;
+  }
+}
@@ -0,0 +1,363 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
+import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import com.datadoghq.sketch.ddsketch.encoding.Input;
+import com.datadoghq.sketch.ddsketch.encoding.MalformedInputException;
+import com.datadoghq.sketch.ddsketch.encoding.Output;
+import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe registry of {@link DDSketchWithExactSummaryStatistics} instances, each of which is
+ * identified by a {@code long} key, such as the identifier of a metric context.
+ *
+ * <p>Sketches are kept in open-addressing hash tables with primitive keys, so that recording a
+ * value neither boxes its key nor allocates once the sketch of the key exists. Keys are spread
+ * across a number of stripes, each of which holds its own table and is guarded by its own lock, so
+ * that concurrent writes to different keys rarely contend. All sketches are created using the same
+ * {@link IndexMapping} and {@link Store} supplier.
+ *
+ * <p>{@link #flush(Output, boolean)} encodes and clears, in a single pass, all the sketches that
+ * have been written to since the previous flush. Sketches that have not been written to for a
+ * configurable number of flushes in a row are evicted from the registry.
+ */
+public class DDSketchRegistry {
+
+  private static final int INITIAL_STRIPE_CAPACITY = 16;
+  private static final int MAX_NUM_STRIPES = 1 << 16;
+
+  private final IndexMapping indexMapping;
+  private final double maxIndexedValue;
+  private final Supplier<Store> storeSupplier;
+  private final int maxIdleFlushes;
+  private final Stripe[] stripes;
+
+  /**
+   * Constructs an initially empty registry with a number of stripes that depends on the number of
+   * available processors.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketches
+   * @param storeSupplier the store constructor for keeping track of added values
+   * @param maxIdleFlushes the number of flushes in a row after which a sketch that has not been
+   *     written to is evicted
+   * @throws IllegalArgumentException if {@code maxIdleFlushes} is not positive
+   */
+  public DDSketchRegistry(
+      IndexMapping indexMapping, Supplier<Store> storeSupplier, int maxIdleFlushes) {
+    this(indexMapping, storeSupplier, maxIdleFlushes, defaultNumStripes());
+  }
+
+  /**
+   * Constructs an initially empty registry.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketches
+   * @param storeSupplier the store constructor for keeping track of added values
+   * @param maxIdleFlushes the number of flushes in a row after which a sketch that has not been
+   *     written to is evicted
+   * @param numStripes the minimum number of stripes, which is rounded up to the next power of two
+   * @throws IllegalArgumentException if {@code maxIdleFlushes} or {@code numStripes} is not
+   *     positive, or if {@code numStripes} is greater than {@code 2^16}
+   */
+  public DDSketchRegistry(
+      IndexMapping indexMapping,
+      Supplier<Store> storeSupplier,
+      int maxIdleFlushes,
+      int numStripes) {
+    if (maxIdleFlushes <= 0) {
+      throw new IllegalArgumentException("The maximum number of idle flushes must be positive.");
+    }
+    if (numStripes <= 0) {
+      throw new IllegalArgumentException("The number of stripes must be positive.");
+    }
+    if (numStripes > MAX_NUM_STRIPES) {
+      throw new IllegalArgumentException(
+          "The number of stripes cannot be greater than " + MAX_NUM_STRIPES + ".");
+    }
+    this.indexMapping = Objects.requireNonNull(indexMapping);
+    this.maxIndexedValue = indexMapping.maxIndexableValue();
+    this.storeSupplier = Objects.requireNonNull(storeSupplier);
+    this.maxIdleFlushes = maxIdleFlushes;
+    this.stripes = new Stripe[nextPowerOfTwo(numStripes)];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  private static int defaultNumStripes() {
+    return 2 * Runtime.getRuntime().availableProcessors();
+  }
+
+  private static int nextPowerOfTwo(int n) {
+    return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+  }
+
+  public IndexMapping getIndexMapping() {
+    return indexMapping;
+  }
+
+  int getNumStripes() {
+    return stripes.length;
+  }
+
+  private static long hash(long key) {
+    // Fibonacci hashing, as keys may be sequential.
+    return key * 0x9E3779B97F4A7C15L;
+  }
+
+  private Stripe stripe(long hash) {
+    return stripes[(int) (hash >>> 40) & (stripes.length - 1)];
+  }
+
+  /**
+   * Adds a value to the sketch of the specified key, creating the sketch if needed.
+   *
+   * @param key the key of the sketch
+   * @param value the value to be added
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  public void accept(long key, double value) {
+    checkValueTrackable(value);
+    final long hash = hash(key);
+    final Stripe stripe = stripe(hash);
+    synchronized (stripe) {
+      stripe.sketch(key, hash).accept(value);
+    }
+  }
+
+  /**
+   * Adds a value to the sketch of the specified key, creating the sketch if needed.
+   *
+   * @param key the key of the sketch
+   * @param value the value to be added
+   * @param count the weight associated with the value to be added
+   * @throws IllegalArgumentException if {@code count} is negative, or if the value is outside the
+   *     range that is tracked by the sketch
+   */
+  public void accept(long key, double value, double count) {
+    checkValueTrackable(value);
+    if (count < 0) {
+      throw new IllegalArgumentException("The count cannot be negative.");
+    }
+    final long hash = hash(key);
+    final Stripe stripe = stripe(hash);
+    synchronized (stripe) {
+      stripe.sketch(key, hash).accept(value, count);
+    }
+  }
+
+  // Rejecting invalid input before looking the sketch up keeps it from being created or flushed.
+  private void checkValueTrackable(double value) {
+    if (value < -maxIndexedValue || value > maxIndexedValue) {
+      throw new IllegalArgumentException(
+          "The input value is outside the range that is tracked by the sketch.");
+    }
+  }
+
+  /** @return the number of sketches that are held by the registry, including empty ones */
+  public int getNumSketches() {
+    int numSketches = 0;
+    for (final Stripe stripe : stripes) {
+      synchronized (stripe) {
+        numSketches += stripe.size;
+      }
+    }
+    return numSketches;
+  }
+
+  /**
+   * Encodes the sketches that have been written to since the previous flush, clears them, and
+   * evicts the sketches that have not been written to for the configured number of flushes.
+   *
+   * <p>For each flushed sketch, the key is written as 8 little-endian bytes, followed by the length
+   * of the encoded sketch as an unsigned variable-length integer, followed by the sketch as encoded
+   * by {@link DDSketchWithExactSummaryStatistics#encode(Output, boolean)}. The output can be read
+   * back with {@link #decodeFlushed}.
+   *
+   * <p>The sketches of a stripe are encoded to a buffer while holding the lock of the stripe, and
+   * the buffer is written to the output after releasing it, so that a slow output does not block
+   * concurrent writes.
+   *
+   * <p>Note that values that are concurrently added may be reflected in the current flush or in the
+   * next one. If writing to the output fails, the sketches that were encoded before the failure are
+   * cleared nonetheless.
+   *
+   * @param output the output to write the sketches to
+   * @param omitIndexMapping whether the index mapping should be omitted from the encoded sketches
+   * @throws IOException if writing to the output fails
+   */
+  public void flush(Output output, boolean omitIndexMapping) throws IOException {
+    final GrowingByteArrayOutput stripeBuffer = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    final GrowingByteArrayOutput sketchBuffer = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    for (final Stripe stripe : stripes) {
+      stripeBuffer.clear();
+      synchronized (stripe) {
+        stripe.flush(stripeBuffer, omitIndexMapping, sketchBuffer);
+      }
+      output.writeBytes(stripeBuffer.backingArray(), 0, stripeBuffer.numWrittenBytes());
+    }
+  }
+
+  /**
+   * Decodes the sketches that have been written by {@link #flush(Output, boolean)}.
+   *
+   * @param input the input to read the flushed sketches from, until it has no remaining bytes
+   * @param storeSupplier the store constructor for the decoded sketches
+   * @param indexMapping the index mapping of the sketches if it was omitted when flushing them, or
+   *     {@code null}
+   * @param consumer the consumer of each decoded sketch and its key
+   * @throws IOException if reading from the input fails or if the input is malformed
+   */
+  public static void decodeFlushed(
+      Input input,
+      Supplier<Store> storeSupplier,
+      IndexMapping indexMapping,
+      ObjLongConsumer<DDSketchWithExactSummaryStatistics> consumer)
+      throws IOException {
+    byte[] bytes = new byte[0];
+    while (input.hasRemaining()) {
+      final long key = input.readLongLE();
+      final long length = VarEncodingHelper.decodeUnsignedVarLong(input);
+      if (length < 0 || length > Integer.MAX_VALUE) {
+        throw new MalformedInputException("Invalid sketch length: " + length);
+      }
+      if (bytes.length < length) {
+        bytes = new byte[(int) length];
+      }
+      for (int i = 0; i < length; i++) {
+        bytes[i] = input.readByte();
+      }
+      consumer.accept(
+          DDSketchWithExactSummaryStatistics.decode(
+              ByteArrayInput.wrap(bytes, 0, (int) length), storeSupplier, indexMapping),
+          key);
+    }
+  }
+
+  /** An open-addressing hash table with linear probing. */
+  private final class Stripe {
+
+    private long[] keys;
+    private DDSketchWithExactSummaryStatistics[] sketches;
+    private boolean[] dirty;
+    private int[] idleFlushes;
+    private int size;
+
+    Stripe() {
+      allocate(INITIAL_STRIPE_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+      this.keys = new long[capacity];
+      this.sketches = new DDSketchWithExactSummaryStatistics[capacity];
+      this.dirty = new boolean[capacity];
+      this.idleFlushes = new int[capacity];
+    }
+
+    private int slot(long hash) {
+      return ((int) hash ^ (int) (hash >>> 32)) & (keys.length - 1);
+    }
+
+    /** Returns the sketch of the key, after creating it if needed, and marks it as dirty. */
+    DDSketchWithExactSummaryStatistics sketch(long key, long hash) {
+      int mask = keys.length - 1;
+      int slot = slot(hash);
+      while (sketches[slot] != null) {
+        if (keys[slot] == key) {
+          dirty[slot] = true;
+          return sketches[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      // Keep the load factor at most 1/2.
+      if (2 * (size + 1) > keys.length) {
+        rehash(2 * keys.length);
+        mask = keys.length - 1;
+        slot = slot(hash);
+        while (sketches[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+      }
+      final DDSketchWithExactSummaryStatistics sketch =
+          new DDSketchWithExactSummaryStatistics(indexMapping, storeSupplier);
+      keys[slot] = key;
+      sketches[slot] = sketch;
+      dirty[slot] = true;
+      idleFlushes[slot] = 0;
+      size++;
+      return sketch;
+    }
+
+    /** Encodes the dirty sketches to the stripe buffer, with the sketch buffer as scratch space. */
+    void flush(
+        GrowingByteArrayOutput stripeBuffer,
+        boolean omitIndexMapping,
+        GrowingByteArrayOutput sketchBuffer)
+        throws IOException {
+      boolean evicted = false;
+      for (int slot = 0; slot < keys.length; slot++) {
+        final DDSketchWithExactSummaryStatistics sketch = sketches[slot];
+        if (sketch == null) {
+          continue;
+        }
+        if (dirty[slot]) {
+          dirty[slot] = false;
+          idleFlushes[slot] = 0;
+          sketchBuffer.clear();
+          try {
+            sketch.encode(sketchBuffer, omitIndexMapping);
+          } finally {
+            sketch.clear();
+          }
+          stripeBuffer.writeLongLE(keys[slot]);
+          VarEncodingHelper.encodeUnsignedVarLong(stripeBuffer, sketchBuffer.numWrittenBytes());
+          stripeBuffer.writeBytes(sketchBuffer.backingArray(), 0, sketchBuffer.numWrittenBytes());
+        } else if (++idleFlushes[slot] >= maxIdleFlushes) {
+          sketches[slot] = null;
+          size--;
+          evicted = true;
+        }
+      }
+      if (evicted) {
+        // Rebuilding the table is simpler than shifting entries back, and is no more costly than
+        // the pass above.
+        rehash(keys.length);
+      }
+    }
+
+    private void rehash(int capacity) {
+      final long[] oldKeys = keys;
+      final DDSketchWithExactSummaryStatistics[] oldSketches = sketches;
+      final boolean[] oldDirty = dirty;
+      final int[] oldIdleFlushes = idleFlushes;
+      allocate(capacity);
+      final int mask = capacity - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldSketches[i] == null) {
+          continue;
+        }
+        int slot = slot(hash(oldKeys[i]));
+        while (sketches[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        sketches[slot] = oldSketches[i];
+        dirty[slot] = oldDirty[i];
+        idleFlushes[slot] = oldIdleFlushes[i];
+      }
+    }
+  }
+}
@@ -11,9 +11,13 @@ import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
 import com.datadoghq.sketch.ddsketch.store.CollapsingHighestDenseStore;
 import com.datadoghq.sketch.ddsketch.store.CollapsingLowestDenseStore;
 import com.datadoghq.sketch.ddsketch.store.DenseStore;
+import com.datadoghq.sketch.ddsketch.store.HashSparseStore;
+import com.datadoghq.sketch.ddsketch.store.HybridStore;
 import com.datadoghq.sketch.ddsketch.store.SparseStore;
 import com.datadoghq.sketch.ddsketch.store.Store;
 import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Preset versions of {@link DDSketch}.
@@ -35,8 +39,10 @@ import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
  * counters. Multiple implementations can be used with different behaviors and properties.
  * Implementations of {@link DenseStore} are backed by an array and offer constant-time sketch
  * insertion, but they may waste memory if input values are sparse as they keep track of contiguous
- * bins. {@link SparseStore} only keeps track of non-empty bins, hence a better memory efficiency,
- * but its insertion speed is logarithmic in the number of non-empty bins.
+ * bins. {@link HashSparseStore} and {@link SparseStore} only keep track of non-empty bins, hence a
+ * better memory efficiency if input values are sparse. {@link HashSparseStore} offers amortized
+ * constant-time insertion, while the insertion speed of {@link SparseStore} is logarithmic in the
+ * number of non-empty bins.
  *
  * <p>As an order of magnitude, when using {@link UnboundedSizeDenseStore} (e.g., {@link
  * #unboundedDense} and {@link #logarithmicUnboundedDense}), the size of the sketch depends on the
@@ -108,17 +114,35 @@ public interface DDSketches {
   }
 
   /**
-   * Constructs an instance of {@code DDSketch} that offers insertion time that is logarithmic in
-   * the number of non-empty bins that the sketch contains and whose size grows indefinitely to
-   * accommodate for the range of input values. As opposed to {@link #unboundedDense}, this sketch
-   * only tracks non-empty bins, hence its smaller memory footprint, especially if input values are
-   * sparse.
+   * Constructs an instance of {@code DDSketch} that offers amortized constant-time insertion and
+   * whose size grows indefinitely to accommodate for the range of input values. As opposed to
+   * {@link #unboundedDense}, this sketch only tracks non-empty bins, hence its smaller memory
+   * footprint, especially if input values are sparse. Bins are sorted when the sketch is queried
+   * for quantiles or encoded.
+   *
+   * <p>The stores of this sketch are {@link HashSparseStore}s. They used to be {@link
+   * SparseStore}s, whose insertion time is logarithmic in the number of non-empty bins, and which
+   * can still be used by constructing a {@link DDSketch} with {@code SparseStore::new} as the store
+   * supplier.
    *
    * @param relativeAccuracy the relative accuracy guaranteed by the sketch
    * @return an initially empty instance of {@code DDSketch}
    */
   static DDSketch sparse(double relativeAccuracy) {
-    return new DDSketch(new CubicallyInterpolatedMapping(relativeAccuracy), SparseStore::new);
+    return new DDSketch(new CubicallyInterpolatedMapping(relativeAccuracy), HashSparseStore::new);
+  }
+
+  /**
+   * Constructs an instance of {@code DDSketch} whose stores start by only tracking non-empty bins
+   * and switch to the dense representation of {@link #unboundedDense} once they track enough bins.
+   * This sketch has the small memory footprint of {@link #sparse} when it sees few distinct bins,
+   * and the constant-time insertion of {@link #unboundedDense} when it sees many of them.
+   *
+   * @param relativeAccuracy the relative accuracy guaranteed by the sketch
+   * @return an initially empty instance of {@code DDSketch}
+   */
+  static DDSketch hybrid(double relativeAccuracy) {
+    return new DDSketch(new CubicallyInterpolatedMapping(relativeAccuracy), HybridStore::new);
   }
 
   /**
@@ -169,4 +193,45 @@ public interface DDSketches {
         new LogarithmicMapping(relativeAccuracy),
         () -> new CollapsingHighestDenseStore(maxNumBins));
   }
+
+  /**
+   * Merges sketches into a new one, in parallel in the common {@link ForkJoinPool}.
+   *
+   * @param sketches the sketches to be merged, which are not modified
+   * @return a new sketch that holds the content of all the sketches
+   * @see #mergeAll(Collection, ForkJoinPool)
+   */
+  static DDSketch mergeAll(Collection<DDSketch> sketches) {
+    return mergeAll(sketches, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Merges sketches into a new one, in parallel in the provided {@link ForkJoinPool}.
+   *
+   * <p>The sketches are merged pairwise in a balanced tree, down to groups of sketches that are
+   * small enough to be merged sequentially. The stores of the resulting sketch are sized upfront to
+   * fit the bins of all the sketches, and those of the sketch that each group is merged into to fit
+   * the bins of the sketches of the group. The resulting sketch uses the same types of stores as
+   * the first sketch of the collection.
+   *
+   * @param sketches the sketches to be merged, which are not modified
+   * @param pool the pool to merge the sketches in
+   * @return a new sketch that holds the content of all the sketches
+   * @throws IllegalArgumentException if {@code sketches} is empty, or if the sketches do not all
+   *     use the same index mapping
+   */
+  static DDSketch mergeAll(Collection<DDSketch> sketches, ForkJoinPool pool) {
+    final DDSketch[] sketchArray = sketches.toArray(new DDSketch[0]);
+    if (sketchArray.length == 0) {
+      throw new IllegalArgumentException("There are no sketches to merge.");
+    }
+    for (int i = 1; i < sketchArray.length; i++) {
+      DDSketch.checkMergeability(
+          sketchArray[0].getIndexMapping(), sketchArray[i].getIndexMapping());
+    }
+    if (sketchArray.length <= DDSketchMergeTask.SEQUENTIAL_THRESHOLD) {
+      return DDSketchMergeTask.mergeSequentially(sketchArray, 0, sketchArray.length);
+    }
+    return DDSketchMergeTask.mergeInParallel(sketchArray, pool);
+  }
 }
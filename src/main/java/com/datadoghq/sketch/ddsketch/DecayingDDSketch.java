@@ -0,0 +1,288 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.QuantileSketch;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A {@link QuantileSketch} whose values are weighted by how recent they are, so that quantiles
+ * reflect recent values more than older ones, without the hard cut-off of a sliding window.
+ *
+ * <p>The weight of a value decays exponentially with its age, and halves every half-life. This is
+ * implemented with forward decay: rather than decaying the counts of the sketch as time goes by,
+ * each value is added with a weight that grows exponentially with the time elapsed between a
+ * landmark time and the time when it is added. Given that the weighted counts are proportional to
+ * the decayed ones, quantiles can be computed on the weighted counts as they are, by only scaling
+ * the count of a single value, while the count and the sum are decayed to the time of the query in
+ * constant time. To keep weights from overflowing, the landmark is periodically moved forward to
+ * the current time, which scales down all counts in a single pass over the stores.
+ *
+ * <p>The clock is read when values are added and when the sketch is queried. Counts that have
+ * decayed so much that they underflow are removed from the sketch when the landmark is moved.
+ *
+ * <p>Note that this implementation is not thread-safe.
+ */
+public class DecayingDDSketch implements QuantileSketch<DecayingDDSketch> {
+
+  // The landmark is moved once the weight of added values would exceed 2^32, that is, after 32
+  // half-lives.
+  private static final double MAX_WEIGHT_EXPONENT = 32 * Math.log(2);
+
+  private final long halfLife;
+  private final double decayRate;
+  private final LongSupplier clock;
+  private final DDSketch sketch;
+  private long landmark;
+
+  /**
+   * Constructs an initially empty decaying sketch that reads the time from {@link
+   * System#nanoTime()}.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketch
+   * @param storeSupplier the store constructor for keeping track of added values
+   * @param halfLife the time after which the weight of a value is halved
+   * @param unit the time unit of {@code halfLife}
+   * @throws IllegalArgumentException if {@code halfLife} is not positive
+   */
+  public DecayingDDSketch(
+      IndexMapping indexMapping, Supplier<Store> storeSupplier, long halfLife, TimeUnit unit) {
+    this(indexMapping, storeSupplier, unit.toNanos(halfLife), System::nanoTime);
+  }
+
+  /**
+   * Constructs an initially empty decaying sketch that reads the time from the provided clock.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketch
+   * @param storeSupplier the store constructor for keeping track of added values
+   * @param halfLife the time after which the weight of a value is halved, in the unit of the clock
+   * @param clock the source of the current time
+   * @throws IllegalArgumentException if {@code halfLife} is not positive
+   */
+  public DecayingDDSketch(
+      IndexMapping indexMapping, Supplier<Store> storeSupplier, long halfLife, LongSupplier clock) {
+    if (halfLife <= 0) {
+      throw new IllegalArgumentException("The half-life must be positive.");
+    }
+    this.halfLife = halfLife;
+    this.decayRate = Math.log(2) / halfLife;
+    this.clock = Objects.requireNonNull(clock);
+    this.sketch = new DDSketch(indexMapping, storeSupplier);
+    this.landmark = clock.getAsLong();
+  }
+
+  private DecayingDDSketch(DecayingDDSketch sketch) {
+    this.halfLife = sketch.halfLife;
+    this.decayRate = sketch.decayRate;
+    this.clock = sketch.clock;
+    this.sketch = sketch.sketch.copy();
+    this.landmark = sketch.landmark;
+  }
+
+  public IndexMapping getIndexMapping() {
+    return sketch.getIndexMapping();
+  }
+
+  /**
+   * Returns the weight that values that are added at the current time get, moving the landmark
+   * forward first if that weight is too large.
+   */
+  private double currentWeight() {
+    final long time = clock.getAsLong();
+    final double exponent = decayRate * (time - landmark);
+    if (exponent <= MAX_WEIGHT_EXPONENT) {
+      return Math.exp(exponent);
+    }
+    moveLandmark(time);
+    return 1;
+  }
+
+  private void moveLandmark(long time) {
+    decay(sketch, time - landmark);
+    landmark = time;
+  }
+
+  private void decay(DDSketch target, long elapsed) {
+    final double factor = Math.exp(-decayRate * elapsed);
+    if (factor > 0) {
+      target.scale(factor);
+    } else {
+      // All the counts would underflow.
+      target.clear();
+    }
+  }
+
+  /** @return the factor to multiply the weighted counts by to get their values at current time */
+  private double currentDecay() {
+    return Math.exp(-decayRate * (clock.getAsLong() - landmark));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  @Override
+  public void accept(double value) {
+    sketch.accept(value, currentWeight());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  @Override
+  public void accept(double value, double count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("The count cannot be negative.");
+    }
+    sketch.accept(value, count * currentWeight());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>All the values get the same weight, as the clock is read only once.
+   *
+   * @throws IllegalArgumentException if one of the values is outside the range that is tracked by
+   *     the sketch
+   */
+  @Override
+  public void accept(double[] values, int from, int to) {
+    if (from < 0 || from > to || to > values.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    final double weight = currentWeight();
+    for (int i = from; i < to; i++) {
+      sketch.accept(values[i], weight);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the other sketch does not use the same index mapping or
+   *     the same half-life
+   */
+  @Override
+  public void mergeWith(DecayingDDSketch other) {
+    DDSketch.checkMergeability(getIndexMapping(), other.getIndexMapping());
+    if (halfLife != other.halfLife) {
+      throw new IllegalArgumentException(
+          "The sketches are not mergeable because they do not use the same half-lives.");
+    }
+    if (other == this) {
+      mergeWith(copy());
+      return;
+    }
+    if (other.landmark > landmark) {
+      moveLandmark(other.landmark);
+    }
+    if (other.landmark == landmark) {
+      sketch.mergeWith(other.sketch);
+    } else {
+      final DDSketch rescaled = other.sketch.copy();
+      decay(rescaled, landmark - other.landmark);
+      sketch.mergeWith(rescaled);
+    }
+  }
+
+  @Override
+  public DecayingDDSketch copy() {
+    return new DecayingDDSketch(this);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return sketch.isEmpty();
+  }
+
+  @Override
+  public void clear() {
+    sketch.clear();
+    landmark = clock.getAsLong();
+  }
+
+  /**
+   * Returns the decayed count of the values that have been added to the sketch, that is, the sum
+   * of their weights at the current time.
+   *
+   * @return the decayed count of the values that have been added to the sketch
+   */
+  @Override
+  public double getCount() {
+    return sketch.getCount() * currentDecay();
+  }
+
+  /**
+   * Returns an approximation of the decayed sum of the values that have been added to the sketch,
+   * that is, the sum of the values multiplied by their weights at the current time.
+   *
+   * @return an approximation of the decayed sum of the values that have been added to the sketch
+   */
+  @Override
+  public double getSum() {
+    return sketch.getSum() * currentDecay();
+  }
+
+  @Override
+  public double getMinValue() {
+    return sketch.getMinValue();
+  }
+
+  @Override
+  public double getMaxValue() {
+    return sketch.getMaxValue();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The quantile is the same as that of a {@link DDSketch} to which the values would have been
+   * added with their weights at the current time.
+   */
+  @Override
+  public double getValueAtQuantile(double quantile) {
+    return sketch.getValueAtQuantile(quantile, unitCount());
+  }
+
+  @Override
+  public double[] getValuesAtQuantiles(double[] quantiles) {
+    final double[] values = new double[quantiles.length];
+    getValuesAtQuantiles(quantiles, values);
+    return values;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The quantiles are the same as those of a {@link DDSketch} to which the values would have
+   * been added with their weights at the current time.
+   */
+  @Override
+  public void getValuesAtQuantiles(double[] quantiles, double[] values) {
+    sketch.getValuesAtQuantiles(quantiles, values, unitCount());
+  }
+
+  /**
+   * Returns the weighted count that a single value has at the current time. Ranks are computed as
+   * if the total count was decayed, which matters when it is low, as when the values are old.
+   */
+  private double unitCount() {
+    // If the total count is decayed below one, all quantiles are the minimum value.
+    return Math.min(Math.exp(decayRate * (clock.getAsLong() - landmark)), sketch.getCount());
+  }
+}
@@ -0,0 +1,325 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.ddsketch.encoding.MalformedInputException;
+import com.datadoghq.sketch.ddsketch.mapping.CubicallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.Interpolation;
+import com.datadoghq.sketch.ddsketch.mapping.LinearlyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.mapping.QuadraticallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.QuarticallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Supplier;
+
+/**
+ * This class is the counterpart of {@link Serializer}: it parses protobuf messages that comply with
+ * the official schema (DDSketch.proto) without requiring the protobuf-java dependency. Instead of
+ * building an intermediate message, it streams the fields into the stores of the sketch, and hands
+ * over the packed contiguous bin counts to {@link Store#add(int, java.nio.DoubleBuffer)} in bulk.
+ */
+public final class Deserializer {
+
+  // any integer type including booleans
+  private static final int VARINT = 0;
+  // doubles
+  private static final int FIXED_64 = 1;
+  // strings, binary, arrays (i.e. repeated fields), embedded structs (i.e. messages)
+  private static final int LENGTH_DELIMITED = 2;
+  // floats
+  private static final int FIXED_32 = 5;
+
+  private final ByteBuffer buffer;
+
+  private Deserializer(ByteBuffer buffer) {
+    this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Builds a new instance of {@link DDSketch} from the remaining bytes of the provided buffer,
+   * which are expected to be a protobuf {@code DDSketch} message, such as produced by {@link
+   * DDSketch#serialize()}. The position of the buffer is moved to its limit.
+   *
+   * @param buffer the buffer whose remaining bytes are the serialized sketch
+   * @param storeSupplier the constructor of the stores to add the bins of the sketch to
+   * @return the deserialized sketch
+   * @throws MalformedInputException if the bytes are not a valid protobuf {@code DDSketch} message
+   * @throws IllegalArgumentException if the message does not hold a valid index mapping
+   */
+  public static DDSketch deserialize(ByteBuffer buffer, Supplier<Store> storeSupplier)
+      throws MalformedInputException {
+    final DDSketch sketch;
+    try {
+      sketch = new Deserializer(buffer).readSketch(storeSupplier);
+    } catch (BufferUnderflowException e) {
+      throw new MalformedInputException("The input is truncated.");
+    }
+    buffer.position(buffer.limit());
+    return sketch;
+  }
+
+  /**
+   * Builds a new instance of {@link DDSketch} from a protobuf {@code DDSketch} message that is
+   * preceded by its length as a varint, such as written by {@link
+   * DDSketch#serializeDelimited(ByteBuffer)}. The position of the buffer is moved to the end of the
+   * message.
+   *
+   * @param buffer the buffer whose remaining bytes start with the length-prefixed serialized sketch
+   * @param storeSupplier the constructor of the stores to add the bins of the sketch to
+   * @return the deserialized sketch
+   * @throws MalformedInputException if the bytes are not a valid length-prefixed protobuf {@code
+   *     DDSketch} message
+   * @throws IllegalArgumentException if the message does not hold a valid index mapping
+   */
+  public static DDSketch deserializeDelimited(ByteBuffer buffer, Supplier<Store> storeSupplier)
+      throws MalformedInputException {
+    final Deserializer deserializer = new Deserializer(buffer);
+    final DDSketch sketch;
+    try {
+      deserializer.pushLimit();
+      sketch = deserializer.readSketch(storeSupplier);
+    } catch (BufferUnderflowException e) {
+      throw new MalformedInputException("The input is truncated.");
+    }
+    buffer.position(deserializer.buffer.position());
+    return sketch;
+  }
+
+  private DDSketch readSketch(Supplier<Store> storeSupplier) throws MalformedInputException {
+    IndexMapping indexMapping = null;
+    final Store positiveValueStore = storeSupplier.get();
+    final Store negativeValueStore = storeSupplier.get();
+    double zeroCount = 0;
+    while (buffer.hasRemaining()) {
+      final int tag = readTag();
+      switch (tag) {
+        case (1 << 3) | LENGTH_DELIMITED:
+          {
+            final int limit = pushLimit();
+            indexMapping = readIndexMapping();
+            popLimit(limit);
+          }
+          break;
+        case (2 << 3) | LENGTH_DELIMITED:
+          {
+            final int limit = pushLimit();
+            readStore(positiveValueStore);
+            popLimit(limit);
+          }
+          break;
+        case (3 << 3) | LENGTH_DELIMITED:
+          {
+            final int limit = pushLimit();
+            readStore(negativeValueStore);
+            popLimit(limit);
+          }
+          break;
+        case (4 << 3) | FIXED_64:
+          zeroCount = buffer.getDouble();
+          break;
+        default:
+          skipField(tag);
+      }
+    }
+    if (indexMapping == null) {
+      throw new IllegalArgumentException("The index mapping is missing.");
+    }
+    return new DDSketch(indexMapping, negativeValueStore, positiveValueStore, zeroCount);
+  }
+
+  private IndexMapping readIndexMapping() throws MalformedInputException {
+    double gamma = 0;
+    double indexOffset = 0;
+    int interpolation = 0;
+    while (buffer.hasRemaining()) {
+      final int tag = readTag();
+      switch (tag) {
+        case (1 << 3) | FIXED_64:
+          gamma = buffer.getDouble();
+          break;
+        case (2 << 3) | FIXED_64:
+          indexOffset = buffer.getDouble();
+          break;
+        case (3 << 3) | VARINT:
+          interpolation = (int) readVarLong();
+          break;
+        default:
+          skipField(tag);
+      }
+    }
+    if (interpolation < 0 || interpolation >= Interpolation.values().length) {
+      throw new MalformedInputException("The interpolation is invalid.");
+    }
+    switch (Interpolation.values()[interpolation]) {
+      case NONE:
+        return new LogarithmicMapping(gamma, indexOffset);
+      case LINEAR:
+        return new LinearlyInterpolatedMapping(gamma, indexOffset);
+      case QUADRATIC:
+        return new QuadraticallyInterpolatedMapping(gamma, indexOffset);
+      case CUBIC:
+        return new CubicallyInterpolatedMapping(gamma, indexOffset);
+      case QUARTIC:
+        return new QuarticallyInterpolatedMapping(gamma, indexOffset);
+      default:
+        throw new IllegalStateException("The interpolation is not handled.");
+    }
+  }
+
+  private void readStore(Store store) throws MalformedInputException {
+    // The index offset of the contiguous counts may be written after them, as Serializer does, so
+    // it needs to be found first.
+    final int start = buffer.position();
+    int index = 0;
+    while (buffer.hasRemaining()) {
+      final int tag = readTag();
+      if (tag == ((3 << 3) | VARINT)) {
+        index = readSignedInt32();
+      } else {
+        skipField(tag);
+      }
+    }
+    buffer.position(start);
+    while (buffer.hasRemaining()) {
+      final int tag = readTag();
+      switch (tag) {
+        case (1 << 3) | LENGTH_DELIMITED:
+          {
+            final int limit = pushLimit();
+            readBin(store);
+            popLimit(limit);
+          }
+          break;
+        case (2 << 3) | LENGTH_DELIMITED:
+          {
+            final int length = readLength();
+            if (length % Double.BYTES != 0) {
+              throw new MalformedInputException("The length of the packed counts is invalid.");
+            }
+            final int numCounts = length / Double.BYTES;
+            checkIndexRange(index, numCounts);
+            final ByteBuffer counts = buffer.slice();
+            counts.limit(length);
+            store.add(index, counts.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+            buffer.position(buffer.position() + length);
+            index += numCounts;
+          }
+          break;
+        case (2 << 3) | FIXED_64:
+          // Non-packed encoding of the repeated counts.
+          checkIndexRange(index, 1);
+          store.add(index++, buffer.getDouble());
+          break;
+        default:
+          skipField(tag);
+      }
+    }
+  }
+
+  private void readBin(Store store) throws MalformedInputException {
+    int index = 0;
+    double count = 0;
+    while (buffer.hasRemaining()) {
+      final int tag = readTag();
+      switch (tag) {
+        case (1 << 3) | VARINT:
+          index = readSignedInt32();
+          break;
+        case (2 << 3) | FIXED_64:
+          count = buffer.getDouble();
+          break;
+        default:
+          skipField(tag);
+      }
+    }
+    store.add(index, count);
+  }
+
+  private static void checkIndexRange(int index, int numCounts) throws MalformedInputException {
+    if ((long) index + numCounts - 1 > Integer.MAX_VALUE) {
+      throw new MalformedInputException("The bin indexes are out of range.");
+    }
+  }
+
+  /**
+   * Reads the length of an embedded message and restricts the buffer to it.
+   *
+   * @return the limit to be restored once the embedded message has been read
+   */
+  private int pushLimit() throws MalformedInputException {
+    final int length = readLength();
+    final int limit = buffer.limit();
+    buffer.limit(buffer.position() + length);
+    return limit;
+  }
+
+  private void popLimit(int limit) {
+    buffer.limit(limit);
+  }
+
+  private int readLength() throws MalformedInputException {
+    final long length = readVarLong();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new MalformedInputException("The length is invalid.");
+    }
+    return (int) length;
+  }
+
+  private int readTag() throws MalformedInputException {
+    final long tag = readVarLong();
+    if (tag >>> 32 != 0 || (tag >>> 3) == 0) {
+      throw new MalformedInputException("The tag is invalid.");
+    }
+    return (int) tag;
+  }
+
+  private int readSignedInt32() throws MalformedInputException {
+    final int value = (int) readVarLong();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private long readVarLong() throws MalformedInputException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new MalformedInputException("The varint is too long.");
+  }
+
+  private void skip(int length) {
+    if (length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    buffer.position(buffer.position() + length);
+  }
+
+  private void skipField(int tag) throws MalformedInputException {
+    switch (tag & 7) {
+      case VARINT:
+        readVarLong();
+        break;
+      case FIXED_64:
+        skip(Long.BYTES);
+        break;
+      case LENGTH_DELIMITED:
+        skip(readLength());
+        break;
+      case FIXED_32:
+        skip(Integer.BYTES);
+        break;
+      default:
+        throw new MalformedInputException("The wire type is not supported.");
+    }
+  }
+}
@@ -0,0 +1,588 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.QuantileSketch;
+import com.datadoghq.sketch.ddsketch.encoding.BinEncodingMode;
+import com.datadoghq.sketch.ddsketch.encoding.ByteBufferInput;
+import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.IndexMappingLayout;
+import com.datadoghq.sketch.ddsketch.encoding.Input;
+import com.datadoghq.sketch.ddsketch.encoding.MalformedInputException;
+import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.SparseStore;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of a sketch encoded with {@link DDSketch#encode} or {@link
+ * DDSketchWithExactSummaryStatistics#encode}, which answers the queries of {@link QuantileSketch}
+ * from the encoded bytes, without decoding the bins into {@link Store}s.
+ *
+ * <p>When the view is created, the encoded bins are scanned once in order to compute the counts of
+ * the stores and to record, every 64 bins, the offset of the next bin and the cumulative count up
+ * to it. A quantile query then looks up the closest checkpoint and only decodes the bins that
+ * follow it, up to the one that holds the requested rank. The view only holds a few bytes per
+ * checkpoint on top of the encoded bytes.
+ *
+ * <p>This assumes that the bins of each store are encoded in ascending order of indexes, as {@link
+ * DDSketch#encode} does. If they are not, the bins of that store are decoded into a {@link
+ * SparseStore} instead.
+ *
+ * <p>If exact summary statistics are encoded, {@link #getCount()}, {@link #getSum()}, {@link
+ * #getMinValue()} and {@link #getMaxValue()} return them, and quantile values are clamped between
+ * the minimum and the maximum, as {@link DDSketchWithExactSummaryStatistics} does.
+ *
+ * <p>The encoded bytes must not be modified while the view is in use. Once created, the view can be
+ * queried by multiple threads concurrently.
+ */
+public final class EncodedDDSketchView {
+
+  private static final int CHECKPOINT_INTERVAL = 64;
+
+  private final ByteBuffer buffer;
+  private IndexMapping indexMapping;
+  private final EncodedStore negativeValueStore = new EncodedStore();
+  private final EncodedStore positiveValueStore = new EncodedStore();
+  private double zeroCount = 0;
+  private boolean hasExactSummaryStatistics = false;
+  private double exactCount = 0;
+  private double exactSum = 0;
+  private double exactMin = Double.POSITIVE_INFINITY;
+  private double exactMax = Double.NEGATIVE_INFINITY;
+
+  private EncodedDDSketchView(ByteBuffer buffer, IndexMapping indexMapping) throws IOException {
+    this.buffer = buffer;
+    this.indexMapping = indexMapping;
+    index();
+  }
+
+  /**
+   * Creates a view of the sketch whose encoding is the remaining bytes of the provided buffer. The
+   * bytes are not copied, and the position of the buffer is not modified.
+   *
+   * @param buffer the buffer whose remaining bytes are the encoded sketch
+   * @return a view of the encoded sketch
+   * @throws IOException if the remaining bytes are not a valid encoded sketch
+   * @throws IllegalArgumentException if the index mapping is missing
+   */
+  public static EncodedDDSketchView wrap(ByteBuffer buffer) throws IOException {
+    return wrap(buffer, null);
+  }
+
+  /**
+   * Creates a view of the sketch whose encoding is the remaining bytes of the provided buffer,
+   * which may omit the index mapping. The bytes are not copied, and the position of the buffer is
+   * not modified.
+   *
+   * @param buffer the buffer whose remaining bytes are the encoded sketch
+   * @param indexMapping the index mapping of the sketch if not encoded, or {@code null}
+   * @return a view of the encoded sketch
+   * @throws IOException if the remaining bytes are not a valid encoded sketch
+   * @throws IllegalArgumentException if the index mapping is missing, or if the encoded one is not
+   *     the same as the provided one
+   */
+  public static EncodedDDSketchView wrap(ByteBuffer buffer, IndexMapping indexMapping)
+      throws IOException {
+    return new EncodedDDSketchView(buffer.slice(), indexMapping);
+  }
+
+  /**
+   * Creates a view of the sketch whose encoding is the remaining data of the provided input. As
+   * {@link Input} does not allow random access, the remaining data is read and copied, but not
+   * decoded.
+   *
+   * @param input the encoded sketch
+   * @return a view of the encoded sketch
+   * @throws IOException if the remaining data is not a valid encoded sketch
+   * @throws IllegalArgumentException if the index mapping is missing
+   */
+  public static EncodedDDSketchView of(Input input) throws IOException {
+    return of(input, null);
+  }
+
+  /**
+   * Creates a view of the sketch whose encoding is the remaining data of the provided input, which
+   * may omit the index mapping. As {@link Input} does not allow random access, the remaining data
+   * is read and copied, but not decoded.
+   *
+   * @param input the encoded sketch
+   * @param indexMapping the index mapping of the sketch if not encoded, or {@code null}
+   * @return a view of the encoded sketch
+   * @throws IOException if the remaining data is not a valid encoded sketch
+   * @throws IllegalArgumentException if the index mapping is missing, or if the encoded one is not
+   *     the same as the provided one
+   */
+  public static EncodedDDSketchView of(Input input, IndexMapping indexMapping)
+      throws IOException {
+    byte[] bytes = new byte[64];
+    int length = 0;
+    while (input.hasRemaining()) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, 2 * length);
+      }
+      bytes[length++] = input.readByte();
+    }
+    return new EncodedDDSketchView(ByteBuffer.wrap(bytes, 0, length), indexMapping);
+  }
+
+  private void index() throws IOException {
+    final ByteBuffer buffer = this.buffer.duplicate();
+    final Input input = ByteBufferInput.wrap(buffer);
+    while (input.hasRemaining()) {
+      final Flag flag = Flag.decode(input);
+      switch (flag.type()) {
+        case POSITIVE_STORE:
+          positiveValueStore.index(buffer, BinEncodingMode.ofFlag(flag), indexMapping);
+          break;
+        case NEGATIVE_STORE:
+          negativeValueStore.index(buffer, BinEncodingMode.ofFlag(flag), indexMapping);
+          break;
+        case INDEX_MAPPING:
+          final IndexMapping decodedIndexMapping =
+              IndexMapping.decode(input, IndexMappingLayout.ofFlag(flag));
+          if (indexMapping == null) {
+            indexMapping = decodedIndexMapping;
+          } else {
+            DDSketch.checkMergeability(indexMapping, decodedIndexMapping);
+          }
+          break;
+        case SKETCH_FEATURES:
+          decodeSketchFeature(input, flag);
+          break;
+        default:
+          throw new MalformedInputException("The flag type is invalid.");
+      }
+    }
+    if (indexMapping == null) {
+      throw new IllegalArgumentException("The index mapping is missing.");
+    }
+    negativeValueStore.completeIndex(this.buffer, indexMapping);
+    positiveValueStore.completeIndex(this.buffer, indexMapping);
+  }
+
+  private void decodeSketchFeature(Input input, Flag flag) throws IOException {
+    if (Flag.ZERO_COUNT.equals(flag)) {
+      zeroCount += VarEncodingHelper.decodeVarDouble(input);
+    } else if (Flag.COUNT.equals(flag)) {
+      hasExactSummaryStatistics = true;
+      exactCount += VarEncodingHelper.decodeVarDouble(input);
+    } else if (Flag.SUM.equals(flag)) {
+      exactSum += input.readDoubleLE();
+    } else if (Flag.MIN.equals(flag)) {
+      exactMin = Math.min(exactMin, input.readDoubleLE());
+    } else if (Flag.MAX.equals(flag)) {
+      exactMax = Math.max(exactMax, input.readDoubleLE());
+    } else {
+      DDSketch.throwInvalidFlagException(input, flag);
+    }
+  }
+
+  public IndexMapping getIndexMapping() {
+    return indexMapping;
+  }
+
+  /** @return whether the encoded sketch is empty */
+  public boolean isEmpty() {
+    return getCount() == 0;
+  }
+
+  /** @return the total count of the encoded sketch */
+  public double getCount() {
+    return hasExactSummaryStatistics ? exactCount : getBinCount();
+  }
+
+  private double getBinCount() {
+    return zeroCount + negativeValueStore.totalCount + positiveValueStore.totalCount;
+  }
+
+  /**
+   * Returns the sum of the values of the encoded sketch, which is exact if exact summary
+   * statistics are encoded, and otherwise approximated as {@link DDSketch#getSum()} does.
+   *
+   * @return the sum of the values of the encoded sketch
+   */
+  public double getSum() {
+    return hasExactSummaryStatistics
+        ? exactSum
+        : positiveValueStore.weightedSum - negativeValueStore.weightedSum;
+  }
+
+  /** @return the average of the values of the encoded sketch */
+  public double getAverage() {
+    return getSum() / getCount();
+  }
+
+  /**
+   * @return the minimum value of the encoded sketch
+   * @throws NoSuchElementException if the sketch is empty
+   */
+  public double getMinValue() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    if (hasExactSummaryStatistics) {
+      return exactMin;
+    } else if (negativeValueStore.totalCount != 0) {
+      return -indexMapping.value(negativeValueStore.maxIndex);
+    } else if (zeroCount > 0) {
+      return 0;
+    } else {
+      return indexMapping.value(positiveValueStore.minIndex);
+    }
+  }
+
+  /**
+   * @return the maximum value of the encoded sketch
+   * @throws NoSuchElementException if the sketch is empty
+   */
+  public double getMaxValue() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    if (hasExactSummaryStatistics) {
+      return exactMax;
+    } else if (positiveValueStore.totalCount != 0) {
+      return indexMapping.value(positiveValueStore.maxIndex);
+    } else if (zeroCount > 0) {
+      return 0;
+    } else {
+      return -indexMapping.value(negativeValueStore.minIndex);
+    }
+  }
+
+  /**
+   * Returns the same approximation of the value at the specified quantile as the sketch that is
+   * encoded, only decoding the bins that follow the closest checkpoint.
+   *
+   * @param quantile a number between 0 and 1 (both included)
+   * @return the value at the specified quantile
+   * @throws NoSuchElementException if the sketch is empty
+   */
+  public double getValueAtQuantile(double quantile) {
+    checkQuantile(quantile);
+    final double count = getBinCount();
+    if (count == 0) {
+      throw new NoSuchElementException();
+    }
+    return getValueAtRank(quantile * (count - 1));
+  }
+
+  /**
+   * @param quantiles numbers between 0 and 1 (both included)
+   * @return the values at the respective specified quantiles
+   * @throws NoSuchElementException if the sketch is empty
+   * @see #getValueAtQuantile(double)
+   */
+  public double[] getValuesAtQuantiles(double[] quantiles) {
+    for (final double quantile : quantiles) {
+      checkQuantile(quantile);
+    }
+    final double[] values = new double[quantiles.length];
+    if (quantiles.length == 0) {
+      return values;
+    }
+    final double count = getBinCount();
+    if (count == 0) {
+      throw new NoSuchElementException();
+    }
+    for (int i = 0; i < quantiles.length; i++) {
+      values[i] = getValueAtRank(quantiles[i] * (count - 1));
+    }
+    return values;
+  }
+
+  private static void checkQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("The quantile must be between 0 and 1.");
+    }
+  }
+
+  private double getValueAtRank(double rank) {
+    final double value;
+    final double negativeValueCount = negativeValueStore.totalCount;
+    if (rank < negativeValueCount) {
+      value = -indexMapping.value(negativeValueStore.getDescendingIndexAtRank(buffer, rank));
+    } else if (rank < negativeValueCount + zeroCount) {
+      value = 0;
+    } else {
+      value =
+          indexMapping.value(
+              positiveValueStore.getAscendingIndexAtRank(
+                  buffer, rank - negativeValueCount - zeroCount));
+    }
+    return hasExactSummaryStatistics ? Math.max(Math.min(value, exactMax), exactMin) : value;
+  }
+
+  /** The bins of one of the stores of the encoded sketch, and the checkpoints to query them. */
+  private static final class EncodedStore {
+
+    private int numBlocks = 0;
+    // The position of each block of bins, right after its flag, and its encoding mode.
+    private int[] blockPositions = new int[0];
+    private BinEncodingMode[] blockEncodingModes = new BinEncodingMode[0];
+
+    // The state of the reader right before a non-empty bin, and the total count of the bins before.
+    private int numCheckpoints = 0;
+    private int[] checkpointBlocks = new int[0];
+    private int[] checkpointPositions = new int[0];
+    private long[] checkpointNumRemainingBins = new long[0];
+    private long[] checkpointIndexDeltas = new long[0];
+    private long[] checkpointIndexes = new long[0];
+    private double[] checkpointCounts = new double[0];
+    private int numBinsSinceCheckpoint = CHECKPOINT_INTERVAL;
+
+    private double totalCount = 0;
+    private double weightedSum = 0;
+    private boolean weightedSumMissing = false;
+    private int minIndex = Integer.MAX_VALUE;
+    private int maxIndex = Integer.MIN_VALUE;
+    private boolean sorted = true;
+    // Only if the bins are not sorted.
+    private Store store = null;
+
+    private void index(ByteBuffer buffer, BinEncodingMode encodingMode, IndexMapping indexMapping)
+        throws IOException {
+      if (numBlocks == blockPositions.length) {
+        final int newLength = Math.max(4, 2 * numBlocks);
+        blockPositions = Arrays.copyOf(blockPositions, newLength);
+        blockEncodingModes = Arrays.copyOf(blockEncodingModes, newLength);
+      }
+      blockPositions[numBlocks] = buffer.position();
+      blockEncodingModes[numBlocks] = encodingMode;
+      final int block = numBlocks++;
+
+      final BinReader reader = new BinReader(buffer, this);
+      reader.openBlock(block);
+      while (true) {
+        final int position = buffer.position();
+        final long numRemainingBins = reader.numRemainingBins;
+        final long index = reader.index;
+        if (!reader.nextInBlock()) {
+          break;
+        }
+        numBinsSinceCheckpoint++;
+        final double count = reader.count;
+        if (count == 0) {
+          continue;
+        }
+        if (count < 0) {
+          throw new IllegalArgumentException("The count cannot be negative.");
+        }
+        final int binIndex = Math.toIntExact(reader.index);
+        if (totalCount != 0 && binIndex < maxIndex) {
+          sorted = false;
+        }
+        if (numBinsSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+          addCheckpoint(block, position, numRemainingBins, reader.indexDelta, index);
+          numBinsSinceCheckpoint = 0;
+        }
+        totalCount += count;
+        minIndex = Math.min(minIndex, binIndex);
+        maxIndex = Math.max(maxIndex, binIndex);
+        if (indexMapping != null) {
+          weightedSum += indexMapping.value(binIndex) * count;
+        } else {
+          weightedSum = Double.NaN;
+          weightedSumMissing = true;
+        }
+      }
+    }
+
+    private void addCheckpoint(
+        int block, int position, long numRemainingBins, long indexDelta, long index) {
+      if (numCheckpoints == checkpointBlocks.length) {
+        final int newLength = Math.max(4, 2 * numCheckpoints);
+        checkpointBlocks = Arrays.copyOf(checkpointBlocks, newLength);
+        checkpointPositions = Arrays.copyOf(checkpointPositions, newLength);
+        checkpointNumRemainingBins = Arrays.copyOf(checkpointNumRemainingBins, newLength);
+        checkpointIndexDeltas = Arrays.copyOf(checkpointIndexDeltas, newLength);
+        checkpointIndexes = Arrays.copyOf(checkpointIndexes, newLength);
+        checkpointCounts = Arrays.copyOf(checkpointCounts, newLength);
+      }
+      checkpointBlocks[numCheckpoints] = block;
+      checkpointPositions[numCheckpoints] = position;
+      checkpointNumRemainingBins[numCheckpoints] = numRemainingBins;
+      checkpointIndexDeltas[numCheckpoints] = indexDelta;
+      checkpointIndexes[numCheckpoints] = index;
+      checkpointCounts[numCheckpoints] = totalCount;
+      numCheckpoints++;
+    }
+
+    /**
+     * Computes what could not be computed while scanning the bins: the weighted sum if the index
+     * mapping was not known yet, and the decoded store if the bins are not sorted.
+     */
+    private void completeIndex(ByteBuffer buffer, IndexMapping indexMapping) throws IOException {
+      if (weightedSumMissing) {
+        weightedSum = 0;
+        final BinReader reader = new BinReader(buffer.duplicate(), this);
+        reader.openBlock(0);
+        while (reader.next()) {
+          weightedSum += indexMapping.value((int) reader.index) * reader.count;
+        }
+      }
+      if (!sorted) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        final Input input = ByteBufferInput.wrap(duplicate);
+        store = new SparseStore();
+        for (int block = 0; block < numBlocks; block++) {
+          duplicate.position(blockPositions[block]);
+          store.decodeAndMergeWith(input, blockEncodingModes[block]);
+        }
+      }
+    }
+
+    private int getAscendingIndexAtRank(ByteBuffer buffer, double rank) {
+      if (store != null) {
+        return store.getAscendingIndexAtRank(rank);
+      }
+      // The last checkpoint such that the count of the bins before it is not greater than rank.
+      final int checkpoint = findLastCheckpoint(rank, false);
+      final BinReader reader = new BinReader(buffer.duplicate(), this);
+      reader.seek(checkpoint);
+      double n = checkpointCounts[checkpoint];
+      try {
+        while (reader.next()) {
+          n += reader.count;
+          if (n > rank) {
+            return (int) reader.index;
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return maxIndex;
+    }
+
+    private int getDescendingIndexAtRank(ByteBuffer buffer, double rank) {
+      if (store != null) {
+        return store.getDescendingIndexAtRank(rank);
+      }
+      // This is the highest index such that the count of the bins below it is less than threshold.
+      final double threshold = totalCount - rank;
+      if (!(threshold > 0)) {
+        return minIndex;
+      }
+      final int checkpoint = findLastCheckpoint(threshold, true);
+      final BinReader reader = new BinReader(buffer.duplicate(), this);
+      reader.seek(checkpoint);
+      double n = checkpointCounts[checkpoint];
+      int index = minIndex;
+      try {
+        while (reader.next() && n < threshold) {
+          if (reader.count != 0) {
+            index = (int) reader.index;
+            n += reader.count;
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return index;
+    }
+
+    private int findLastCheckpoint(double count, boolean strict) {
+      int low = 0;
+      int high = numCheckpoints - 1;
+      while (low < high) {
+        final int mid = (low + high + 1) >>> 1;
+        final double checkpointCount = checkpointCounts[mid];
+        if (checkpointCount < count || (!strict && checkpointCount == count)) {
+          low = mid;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+  }
+
+  /** Reads the bins of a store, one block after the other. */
+  private static final class BinReader {
+
+    private final ByteBuffer buffer;
+    private final Input input;
+    private final EncodedStore store;
+    private int block;
+    private BinEncodingMode encodingMode;
+    private long numRemainingBins;
+    private long indexDelta;
+    private long index;
+    private double count;
+
+    private BinReader(ByteBuffer buffer, EncodedStore store) {
+      this.buffer = buffer;
+      this.input = ByteBufferInput.wrap(buffer);
+      this.store = store;
+    }
+
+    private void openBlock(int block) throws IOException {
+      this.block = block;
+      this.encodingMode = store.blockEncodingModes[block];
+      buffer.position(store.blockPositions[block]);
+      numRemainingBins = VarEncodingHelper.decodeUnsignedVarLong(input);
+      if (encodingMode == BinEncodingMode.CONTIGUOUS_COUNTS) {
+        final long firstIndex = VarEncodingHelper.decodeSignedVarLong(input);
+        indexDelta = VarEncodingHelper.decodeSignedVarLong(input);
+        index = firstIndex - indexDelta;
+      } else {
+        indexDelta = 0;
+        index = 0;
+      }
+    }
+
+    private void seek(int checkpoint) {
+      block = store.checkpointBlocks[checkpoint];
+      encodingMode = store.blockEncodingModes[block];
+      buffer.position(store.checkpointPositions[checkpoint]);
+      numRemainingBins = store.checkpointNumRemainingBins[checkpoint];
+      indexDelta = store.checkpointIndexDeltas[checkpoint];
+      index = store.checkpointIndexes[checkpoint];
+    }
+
+    /** Reads the next bin of the store, which may be empty. */
+    private boolean next() throws IOException {
+      while (!nextInBlock()) {
+        if (block + 1 == store.numBlocks) {
+          return false;
+        }
+        openBlock(block + 1);
+      }
+      return true;
+    }
+
+    /** Reads the next bin of the current block, which may be empty. */
+    private boolean nextInBlock() throws IOException {
+      if (numRemainingBins == 0) {
+        return false;
+      }
+      numRemainingBins--;
+      switch (encodingMode) {
+        case INDEX_DELTAS_AND_COUNTS:
+          index += VarEncodingHelper.decodeSignedVarLong(input);
+          count = VarEncodingHelper.decodeVarDouble(input);
+          break;
+        case INDEX_DELTAS:
+          index += VarEncodingHelper.decodeSignedVarLong(input);
+          count = 1;
+          break;
+        case CONTIGUOUS_COUNTS:
+          index += indexDelta;
+          count = VarEncodingHelper.decodeVarDouble(input);
+          break;
+        default:
+          throw new IllegalStateException("The bin encoding mode is not handled.");
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,413 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.ddsketch.encoding.BinEncodingMode;
+import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.IndexMappingLayout;
+import com.datadoghq.sketch.ddsketch.encoding.Input;
+import com.datadoghq.sketch.ddsketch.encoding.MalformedInputException;
+import com.datadoghq.sketch.ddsketch.encoding.Output;
+import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Merges sketches that are encoded with {@link DDSketch#encode} (or {@link
+ * DDSketchWithExactSummaryStatistics#encode}) into the encoding of the sketch that results from
+ * the merge, without decoding them into {@link Store}s first.
+ *
+ * <p>The bins of the input sketches are combined with a k-way merge: the merger only holds one
+ * cursor per input and a fixed-size buffer of merged bins, regardless of the number of bins of the
+ * input sketches. The merged bins are written in blocks, each of which is encoded either densely or
+ * sparsely, whichever is smaller. The output can be decoded as any other encoded sketch, or merged
+ * again.
+ *
+ * <p>Streaming the bins requires the inputs to encode the bins of each store in ascending order of
+ * indexes, and the bins of the positive-value store before those of the negative-value store. This
+ * is how {@link DDSketch#encode} lays them out, whatever the stores of the sketch. Exact summary
+ * statistics are merged as well, which only makes sense if they are encoded in all of the input
+ * sketches or in none of them.
+ *
+ * <p>Instances are not thread-safe, but they can be reused, which avoids allocating new cursors for
+ * each merge.
+ */
+public final class EncodedSketchMerger {
+
+  private static final int MAX_NUM_BUFFERED_BINS = 128;
+
+  private final int[] bufferedIndexes = new int[MAX_NUM_BUFFERED_BINS];
+  private final double[] bufferedCounts = new double[MAX_NUM_BUFFERED_BINS];
+  private int numBufferedBins;
+
+  private Cursor[] cursors = new Cursor[0];
+  private Cursor[] heap = new Cursor[0];
+  private int heapSize;
+
+  private IndexMapping indexMapping;
+  private boolean indexMappingEncoded;
+  private double zeroCount;
+  private double count;
+  private double sum;
+  private double min;
+  private double max;
+
+  /**
+   * Merges the sketches whose encodings are the remaining data of the provided inputs, and writes
+   * the encoding of the resulting sketch to the provided output. The inputs are read to the end.
+   *
+   * @param inputs the encoded sketches to merge
+   * @param output where to write the encoding of the merged sketch
+   * @throws IOException if an IO exception is thrown while reading from the inputs or writing to
+   *     the output
+   * @throws MalformedInputException if one of the inputs is not a valid encoded sketch
+   * @throws IllegalArgumentException if the sketches do not use the same index mapping, or if the
+   *     bins of one of them are not laid out as described above
+   */
+  public void merge(Collection<? extends Input> inputs, Output output) throws IOException {
+    reset(inputs);
+
+    // Read what precedes the bins, so that it can be encoded first, as DDSketch.encode() does.
+    for (int i = 0; i < inputs.size(); i++) {
+      cursors[i].nextBlock();
+    }
+    encodeIndexMapping(output);
+    encodeSketchFeatures(output);
+
+    mergeStores(Flag.Type.POSITIVE_STORE, output);
+    mergeStores(Flag.Type.NEGATIVE_STORE, output);
+
+    // In case some of the inputs encode the index mapping or sketch features after their bins.
+    encodeIndexMapping(output);
+    encodeSketchFeatures(output);
+  }
+
+  /**
+   * Merges the sketches whose encodings are the remaining data of the provided inputs.
+   *
+   * @param output where to write the encoding of the merged sketch
+   * @param inputs the encoded sketches to merge
+   * @throws IOException if an IO exception is thrown while reading from the inputs or writing to
+   *     the output
+   * @see #merge(Collection, Output)
+   */
+  public void merge(Output output, Input... inputs) throws IOException {
+    merge(Arrays.asList(inputs), output);
+  }
+
+  private void reset(Collection<? extends Input> inputs) {
+    if (cursors.length < inputs.size()) {
+      final int previousLength = cursors.length;
+      cursors = Arrays.copyOf(cursors, inputs.size());
+      for (int i = previousLength; i < cursors.length; i++) {
+        cursors[i] = new Cursor();
+      }
+      heap = new Cursor[cursors.length];
+    }
+    int i = 0;
+    for (final Input input : inputs) {
+      cursors[i++].reset(input);
+    }
+    for (; i < cursors.length && cursors[i].input != null; i++) {
+      cursors[i].reset(null);
+    }
+    heapSize = 0;
+    numBufferedBins = 0;
+    indexMapping = null;
+    indexMappingEncoded = false;
+    resetSketchFeatures();
+  }
+
+  private void resetSketchFeatures() {
+    zeroCount = 0;
+    count = 0;
+    sum = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  private void mergeStores(Flag.Type storeFlagType, Output output) throws IOException {
+    heapSize = 0;
+    for (final Cursor cursor : cursors) {
+      if (cursor.input != null
+          && cursor.storeFlagType == storeFlagType
+          && cursor.advance(storeFlagType)) {
+        heap[heapSize++] = cursor;
+      }
+    }
+    for (int i = heapSize / 2 - 1; i >= 0; i--) {
+      siftDown(i);
+    }
+
+    while (heapSize > 0) {
+      final Cursor cursor = heap[0];
+      final long index = cursor.index;
+      bufferBin(storeFlagType, index, cursor.count, output);
+      if (cursor.advance(storeFlagType)) {
+        if (cursor.index < index) {
+          throw new IllegalArgumentException(
+              "The bins of each store must be encoded in ascending order of indexes.");
+        }
+      } else {
+        heap[0] = heap[--heapSize];
+        heap[heapSize] = null;
+      }
+      siftDown(0);
+    }
+    flushBins(storeFlagType, output);
+  }
+
+  private void siftDown(int i) {
+    final Cursor cursor = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && heap[child + 1].index < heap[child].index) {
+        child++;
+      }
+      if (cursor.index <= heap[child].index) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = cursor;
+  }
+
+  private void bufferBin(Flag.Type storeFlagType, long index, double count, Output output)
+      throws IOException {
+    if (numBufferedBins > 0 && bufferedIndexes[numBufferedBins - 1] == index) {
+      bufferedCounts[numBufferedBins - 1] += count;
+      return;
+    }
+    if (numBufferedBins == MAX_NUM_BUFFERED_BINS) {
+      flushBins(storeFlagType, output);
+    }
+    bufferedIndexes[numBufferedBins] = Math.toIntExact(index);
+    bufferedCounts[numBufferedBins] = count;
+    numBufferedBins++;
+  }
+
+  private void flushBins(Flag.Type storeFlagType, Output output) throws IOException {
+    if (numBufferedBins == 0) {
+      return;
+    }
+    final int minIndex = bufferedIndexes[0];
+    final long numBins = (long) bufferedIndexes[numBufferedBins - 1] - minIndex + 1;
+
+    long denseEncodingSize = 0;
+    denseEncodingSize += VarEncodingHelper.unsignedVarLongEncodedLength(numBins);
+    denseEncodingSize += VarEncodingHelper.signedVarLongEncodedLength(minIndex);
+    denseEncodingSize += VarEncodingHelper.signedVarLongEncodedLength(1);
+    denseEncodingSize +=
+        (numBins - numBufferedBins) * VarEncodingHelper.varDoubleEncodedLength(0);
+
+    long sparseEncodingSize = VarEncodingHelper.unsignedVarLongEncodedLength(numBufferedBins);
+
+    long previousIndex = 0;
+    for (int i = 0; i < numBufferedBins; i++) {
+      final long countVarDoubleEncodedLength =
+          VarEncodingHelper.varDoubleEncodedLength(bufferedCounts[i]);
+      denseEncodingSize += countVarDoubleEncodedLength;
+      sparseEncodingSize +=
+          VarEncodingHelper.signedVarLongEncodedLength(bufferedIndexes[i] - previousIndex);
+      sparseEncodingSize += countVarDoubleEncodedLength;
+      previousIndex = bufferedIndexes[i];
+    }
+
+    if (denseEncodingSize <= sparseEncodingSize) {
+      BinEncodingMode.CONTIGUOUS_COUNTS.toFlag(storeFlagType).encode(output);
+      VarEncodingHelper.encodeUnsignedVarLong(output, numBins);
+      VarEncodingHelper.encodeSignedVarLong(output, minIndex);
+      VarEncodingHelper.encodeSignedVarLong(output, 1);
+      int index = minIndex;
+      for (int i = 0; i < numBufferedBins; i++) {
+        for (; index < bufferedIndexes[i]; index++) {
+          VarEncodingHelper.encodeVarDouble(output, 0);
+        }
+        VarEncodingHelper.encodeVarDouble(output, bufferedCounts[i]);
+        index++;
+      }
+    } else {
+      BinEncodingMode.INDEX_DELTAS_AND_COUNTS.toFlag(storeFlagType).encode(output);
+      VarEncodingHelper.encodeUnsignedVarLong(output, numBufferedBins);
+      previousIndex = 0;
+      for (int i = 0; i < numBufferedBins; i++) {
+        VarEncodingHelper.encodeSignedVarLong(output, bufferedIndexes[i] - previousIndex);
+        VarEncodingHelper.encodeVarDouble(output, bufferedCounts[i]);
+        previousIndex = bufferedIndexes[i];
+      }
+    }
+    numBufferedBins = 0;
+  }
+
+  private void encodeIndexMapping(Output output) throws IOException {
+    if (indexMapping != null && !indexMappingEncoded) {
+      indexMapping.encode(output);
+      indexMappingEncoded = true;
+    }
+  }
+
+  private void encodeSketchFeatures(Output output) throws IOException {
+    // Same layout as DDSketchWithExactSummaryStatistics.encode() and DDSketch.encode().
+    if (count != 0) {
+      Flag.COUNT.encode(output);
+      VarEncodingHelper.encodeVarDouble(output, count);
+      Flag.MIN.encode(output);
+      output.writeDoubleLE(min);
+      Flag.MAX.encode(output);
+      output.writeDoubleLE(max);
+    }
+    if (sum != 0) {
+      Flag.SUM.encode(output);
+      output.writeDoubleLE(sum);
+    }
+    if (zeroCount != 0) {
+      Flag.ZERO_COUNT.encode(output);
+      VarEncodingHelper.encodeVarDouble(output, zeroCount);
+    }
+    // Decoding adds up counts and sums, so only what is read from now on needs to be encoded again.
+    resetSketchFeatures();
+  }
+
+  private void decodeIndexMapping(Input input, Flag flag) throws IOException {
+    final IndexMapping decodedIndexMapping =
+        IndexMapping.decode(input, IndexMappingLayout.ofFlag(flag));
+    if (indexMapping == null) {
+      indexMapping = decodedIndexMapping;
+    } else {
+      DDSketch.checkMergeability(indexMapping, decodedIndexMapping);
+    }
+  }
+
+  private void decodeSketchFeature(Input input, Flag flag) throws IOException {
+    if (Flag.ZERO_COUNT.equals(flag)) {
+      zeroCount += VarEncodingHelper.decodeVarDouble(input);
+    } else if (Flag.COUNT.equals(flag)) {
+      count += VarEncodingHelper.decodeVarDouble(input);
+    } else if (Flag.SUM.equals(flag)) {
+      sum += input.readDoubleLE();
+    } else if (Flag.MIN.equals(flag)) {
+      min = Math.min(min, input.readDoubleLE());
+    } else if (Flag.MAX.equals(flag)) {
+      max = Math.max(max, input.readDoubleLE());
+    } else {
+      DDSketch.throwInvalidFlagException(input, flag);
+    }
+  }
+
+  /** Iterates over the non-empty bins of an encoded sketch, one store after the other. */
+  private final class Cursor {
+
+    private Input input;
+    // The type of the store that the current block of bins belongs to, null if there is none.
+    private Flag.Type storeFlagType;
+    private BinEncodingMode encodingMode;
+    private long numRemainingBins;
+    private long indexDelta;
+    private long index;
+    private double count;
+
+    private void reset(Input input) {
+      this.input = input;
+      this.storeFlagType = null;
+      this.numRemainingBins = 0;
+    }
+
+    /**
+     * Moves to the next non-empty bin of the specified store.
+     *
+     * @return {@code false} if the store has no bins left, in which case the cursor stays at the
+     *     beginning of the block of bins of the next store, if any
+     */
+    private boolean advance(Flag.Type storeFlagType) throws IOException {
+      while (true) {
+        while (numRemainingBins != 0) {
+          numRemainingBins--;
+          readBin();
+          if (count != 0) {
+            return true;
+          }
+        }
+        if (!nextBlock()) {
+          return false;
+        }
+        if (this.storeFlagType != storeFlagType) {
+          if (this.storeFlagType == Flag.Type.POSITIVE_STORE) {
+            throw new IllegalArgumentException(
+                "The bins of the positive-value store must precede those of the negative-value"
+                    + " store.");
+          }
+          return false;
+        }
+      }
+    }
+
+    private void readBin() throws IOException {
+      switch (encodingMode) {
+        case INDEX_DELTAS_AND_COUNTS:
+          index += VarEncodingHelper.decodeSignedVarLong(input);
+          count = VarEncodingHelper.decodeVarDouble(input);
+          break;
+        case INDEX_DELTAS:
+          index += VarEncodingHelper.decodeSignedVarLong(input);
+          count = 1;
+          break;
+        case CONTIGUOUS_COUNTS:
+          index += indexDelta;
+          count = VarEncodingHelper.decodeVarDouble(input);
+          break;
+        default:
+          throw new IllegalStateException("The bin encoding mode is not handled.");
+      }
+      if (count < 0) {
+        throw new IllegalArgumentException("The count cannot be negative.");
+      }
+    }
+
+    /**
+     * Reads the input up to the beginning of the next block of bins, merging the index mapping and
+     * the sketch features that precede it.
+     *
+     * @return {@code false} if the end of the input is reached
+     */
+    private boolean nextBlock() throws IOException {
+      while (input.hasRemaining()) {
+        final Flag flag = Flag.decode(input);
+        switch (flag.type()) {
+          case POSITIVE_STORE:
+          case NEGATIVE_STORE:
+            storeFlagType = flag.type();
+            encodingMode = BinEncodingMode.ofFlag(flag);
+            numRemainingBins = VarEncodingHelper.decodeUnsignedVarLong(input);
+            if (encodingMode == BinEncodingMode.CONTIGUOUS_COUNTS) {
+              final long firstIndex = VarEncodingHelper.decodeSignedVarLong(input);
+              indexDelta = VarEncodingHelper.decodeSignedVarLong(input);
+              index = firstIndex - indexDelta;
+            } else {
+              index = 0;
+            }
+            return true;
+          case INDEX_MAPPING:
+            decodeIndexMapping(input, flag);
+            break;
+          case SKETCH_FEATURES:
+            decodeSketchFeature(input, flag);
+            break;
+          default:
+            throw new MalformedInputException("The flag type is invalid.");
+        }
+      }
+      storeFlagType = null;
+      return false;
+    }
+  }
+}
@@ -5,8 +5,10 @@
 
 package com.datadoghq.sketch.ddsketch;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Objects;
 
 /**
  * This class is used to perform protobuf serialization compliant with the official schema used to
@@ -31,34 +33,83 @@ public final class Serializer {
     }
   }
 
-  private final ByteBuffer buffer;
+  private ByteBuffer buffer;
 
   public Serializer(int size) {
     this.buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
   }
 
+  /**
+   * Constructs a serializer that writes into the provided buffer, which may be a heap or a direct
+   * buffer, from its position onwards. Writing moves the position of the buffer forward. The byte
+   * order of the buffer does not matter and is not modified.
+   *
+   * @param target the buffer to write into
+   */
+  public Serializer(ByteBuffer target) {
+    this.buffer = Objects.requireNonNull(target);
+  }
+
+  /**
+   * Makes this serializer write into the provided buffer from now on, so that a single serializer
+   * can be reused across buffers.
+   *
+   * @param target the buffer to write into
+   * @return this serializer
+   */
+  public Serializer reset(ByteBuffer target) {
+    this.buffer = Objects.requireNonNull(target);
+    return this;
+  }
+
+  /**
+   * Flips and returns the buffer that has been written into. This is meant to be used with
+   * serializers that have been constructed with {@link #Serializer(int)}.
+   *
+   * @return the buffer whose remaining bytes are the written data
+   */
   public ByteBuffer getBuffer() {
     buffer.flip();
     return buffer;
   }
 
+  void checkRemaining(int size) {
+    if (buffer.remaining() < size) {
+      throw new BufferOverflowException();
+    }
+  }
+
   public void writeHeader(int fieldNumber, int length) {
     writeTag(fieldNumber, LENGTH_DELIMITED);
     writeVarInt(length);
   }
 
+  /**
+   * Writes the length of a message that follows, as a prefix for delimiting multiple messages.
+   *
+   * @param length the size of the message
+   */
+  public void writeLengthPrefix(int length) {
+    writeVarInt(length);
+  }
+
   public void writeCompactArray(int fieldIndex, double[] array, int from, int length) {
     writeTag(fieldIndex, LENGTH_DELIMITED);
     writeVarInt(length * Double.BYTES);
-    for (int i = from; i < from + length; ++i) {
-      buffer.putDouble(array[i]);
+    if (buffer.order() == ByteOrder.LITTLE_ENDIAN) {
+      buffer.asDoubleBuffer().put(array, from, length);
+      buffer.position(buffer.position() + length * Double.BYTES);
+    } else {
+      for (int i = from; i < from + length; ++i) {
+        putDouble(array[i]);
+      }
     }
   }
 
   public void writeDouble(int fieldIndex, double value) {
     if (value != 0D) {
       writeTag(fieldIndex, FIXED_64);
-      buffer.putDouble(value);
+      putDouble(value);
     }
   }
 
@@ -85,6 +136,14 @@ public final class Serializer {
     writeVarInt((fieldIndex << 3) | wireType);
   }
 
+  private void putDouble(double value) {
+    if (buffer.order() == ByteOrder.LITTLE_ENDIAN) {
+      buffer.putDouble(value);
+    } else {
+      buffer.putLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
+    }
+  }
+
   private void writeVarInt(int value) {
     int length = varIntLength(value);
     for (int i = 0; i < length; ++i) {
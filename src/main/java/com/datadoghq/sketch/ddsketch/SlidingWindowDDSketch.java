@@ -0,0 +1,343 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import com.datadoghq.sketch.QuantileSketch;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link QuantileSketch} that only tracks the values that have been added during a sliding time
+ * window, for instance to compute the 99th percentile over the last 60 seconds, updated every
+ * second.
+ *
+ * <p>The window is divided into a fixed number of intervals of equal length, whose content is
+ * held in a ring of {@link DDSketch}es sharing the same {@link IndexMapping}. The window covers the
+ * current interval and the intervals that precede it, and as the clock moves on to the next
+ * intervals, the sketches of the intervals that fall out of the window are cleared and reused.
+ *
+ * <p>In addition to the sketches of the intervals, this sketch maintains an aggregate sketch that
+ * holds the content of the whole window: added values go to both the sketch of the current
+ * interval and the aggregate sketch, and the content of the intervals that expire is subtracted
+ * from the aggregate sketch. Queries are therefore answered by the aggregate sketch, without
+ * merging the sketches of the intervals. As subtracting counts is only exact with stores that do
+ * not collapse bins, this sketch uses {@link UnboundedSizeDenseStore}s.
+ *
+ * <p>The clock is read when values are added and when the sketch is queried, so that the content
+ * of the intervals that have expired in the meantime is discarded. If the clock goes backwards,
+ * values keep being added to the latest interval.
+ *
+ * <p>Note that this implementation is not thread-safe.
+ */
+public class SlidingWindowDDSketch implements QuantileSketch<SlidingWindowDDSketch> {
+
+  private final IndexMapping indexMapping;
+  private final long intervalLength;
+  private final LongSupplier clock;
+
+  private final DDSketch[] intervals;
+  private final UnboundedSizeDenseStore aggregateNegativeValueStore;
+  private final UnboundedSizeDenseStore aggregatePositiveValueStore;
+  private final DDSketch aggregate;
+
+  // The number of the current interval, that is, the time of its start divided by intervalLength.
+  private long currentInterval;
+
+  /**
+   * Constructs an initially empty sliding-window sketch that reads the time from {@link
+   * System#nanoTime()}.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketch
+   * @param numIntervals the number of intervals that the window is made of
+   * @param intervalLength the length of each interval
+   * @param unit the time unit of {@code intervalLength}
+   * @throws IllegalArgumentException if {@code numIntervals} or {@code intervalLength} is not
+   *     positive
+   */
+  public SlidingWindowDDSketch(
+      IndexMapping indexMapping, int numIntervals, long intervalLength, TimeUnit unit) {
+    this(indexMapping, numIntervals, unit.toNanos(intervalLength), System::nanoTime);
+  }
+
+  /**
+   * Constructs an initially empty sliding-window sketch that reads the time from the provided
+   * clock.
+   *
+   * @param indexMapping the mapping between floating-point values and integer indices to be used by
+   *     the sketch
+   * @param numIntervals the number of intervals that the window is made of
+   * @param intervalLength the length of each interval, in the unit of the clock
+   * @param clock the source of the current time, which is expected not to go backwards
+   * @throws IllegalArgumentException if {@code numIntervals} or {@code intervalLength} is not
+   *     positive
+   */
+  public SlidingWindowDDSketch(
+      IndexMapping indexMapping, int numIntervals, long intervalLength, LongSupplier clock) {
+    if (numIntervals <= 0) {
+      throw new IllegalArgumentException("The number of intervals must be positive.");
+    }
+    if (intervalLength <= 0) {
+      throw new IllegalArgumentException("The interval length must be positive.");
+    }
+    this.indexMapping = Objects.requireNonNull(indexMapping);
+    this.intervalLength = intervalLength;
+    this.clock = Objects.requireNonNull(clock);
+    this.intervals = new DDSketch[numIntervals];
+    for (int i = 0; i < numIntervals; i++) {
+      intervals[i] = new DDSketch(indexMapping, UnboundedSizeDenseStore::new);
+    }
+    this.aggregateNegativeValueStore = new UnboundedSizeDenseStore();
+    this.aggregatePositiveValueStore = new UnboundedSizeDenseStore();
+    this.aggregate =
+        new DDSketch(indexMapping, aggregateNegativeValueStore, aggregatePositiveValueStore, 0);
+    this.currentInterval = Math.floorDiv(clock.getAsLong(), intervalLength);
+  }
+
+  private SlidingWindowDDSketch(SlidingWindowDDSketch sketch) {
+    this.indexMapping = sketch.indexMapping;
+    this.intervalLength = sketch.intervalLength;
+    this.clock = sketch.clock;
+    this.intervals = new DDSketch[sketch.intervals.length];
+    for (int i = 0; i < intervals.length; i++) {
+      intervals[i] = sketch.intervals[i].copy();
+    }
+    this.aggregateNegativeValueStore =
+        (UnboundedSizeDenseStore) sketch.aggregateNegativeValueStore.copy();
+    this.aggregatePositiveValueStore =
+        (UnboundedSizeDenseStore) sketch.aggregatePositiveValueStore.copy();
+    this.aggregate =
+        new DDSketch(
+            indexMapping,
+            aggregateNegativeValueStore,
+            aggregatePositiveValueStore,
+            sketch.aggregate.getZeroCount());
+    this.currentInterval = sketch.currentInterval;
+  }
+
+  public IndexMapping getIndexMapping() {
+    return indexMapping;
+  }
+
+  /** @return the number of intervals that the window is made of */
+  public int getNumIntervals() {
+    return intervals.length;
+  }
+
+  /**
+   * Moves the window forward to the interval that the current time belongs to, discarding the
+   * content of the intervals that fall out of it.
+   */
+  private void advance() {
+    final long interval = Math.floorDiv(clock.getAsLong(), intervalLength);
+    if (interval <= currentInterval) {
+      return;
+    }
+    if (interval - currentInterval >= intervals.length) {
+      // The whole window has expired.
+      for (final DDSketch sketch : intervals) {
+        sketch.clear();
+      }
+      aggregate.clear();
+    } else {
+      for (long expired = currentInterval + 1; expired <= interval; expired++) {
+        // The sketch of the interval that is about to start holds the content of the interval
+        // that has just fallen out of the window.
+        expire(intervals[slot(expired)]);
+      }
+    }
+    currentInterval = interval;
+  }
+
+  private void expire(DDSketch sketch) {
+    if (sketch.isEmpty()) {
+      return;
+    }
+    aggregateNegativeValueStore.subtract(sketch.getNegativeValueStore());
+    aggregatePositiveValueStore.subtract(sketch.getPositiveValueStore());
+    aggregate.subtractFromZeroCount(sketch.getZeroCount());
+    sketch.clear();
+  }
+
+  private int slot(long interval) {
+    return (int) Math.floorMod(interval, (long) intervals.length);
+  }
+
+  private DDSketch current() {
+    return intervals[slot(currentInterval)];
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  @Override
+  public void accept(double value) {
+    advance();
+    current().accept(value);
+    aggregate.accept(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if the value is outside the range that is tracked by the
+   *     sketch
+   */
+  @Override
+  public void accept(double value, double count) {
+    advance();
+    current().accept(value, count);
+    aggregate.accept(value, count);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if one of the values is outside the range that is tracked by
+   *     the sketch
+   */
+  @Override
+  public void accept(double[] values, int from, int to) {
+    advance();
+    current().accept(values, from, to);
+    aggregate.accept(values, from, to);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if one of the values is outside the range that is tracked by
+   *     the sketch
+   */
+  @Override
+  public void accept(long[] values) {
+    advance();
+    current().accept(values);
+    aggregate.accept(values);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The content of each interval of the other sketch is added to the interval of this sketch
+   * that starts at the same time, or to the current interval of this sketch if the other sketch is
+   * ahead of it. The intervals of the other sketch that are out of the window of this sketch are
+   * ignored.
+   *
+   * @throws IllegalArgumentException if the other sketch does not use the same index mapping or
+   *     the same interval length
+   */
+  @Override
+  public void mergeWith(SlidingWindowDDSketch other) {
+    DDSketch.checkMergeability(indexMapping, other.indexMapping);
+    if (intervalLength != other.intervalLength) {
+      throw new IllegalArgumentException(
+          "The sketches are not mergeable because they do not use the same interval lengths.");
+    }
+    if (other == this) {
+      mergeWith(copy());
+      return;
+    }
+    advance();
+    other.advance();
+    for (int age = 0; age < other.intervals.length; age++) {
+      final long interval = other.currentInterval - age;
+      if (interval <= currentInterval - intervals.length) {
+        break;
+      }
+      final DDSketch sketch = other.intervals[other.slot(interval)];
+      if (!sketch.isEmpty()) {
+        intervals[slot(Math.min(interval, currentInterval))].mergeWith(sketch);
+        aggregate.mergeWith(sketch);
+      }
+    }
+  }
+
+  @Override
+  public SlidingWindowDDSketch copy() {
+    return new SlidingWindowDDSketch(this);
+  }
+
+  /**
+   * Builds a new {@link DDSketch} that holds the content of the current window. This sketch is not
+   * modified by the operation, apart from discarding the intervals that have expired.
+   *
+   * @return a copy of the content of the current window
+   */
+  public DDSketch toDDSketch() {
+    advance();
+    return aggregate.copy();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    advance();
+    return aggregate.isEmpty();
+  }
+
+  @Override
+  public void clear() {
+    for (final DDSketch sketch : intervals) {
+      sketch.clear();
+    }
+    aggregate.clear();
+  }
+
+  @Override
+  public double getCount() {
+    advance();
+    return aggregate.getCount();
+  }
+
+  /**
+   * Returns an approximation of the sum of the values that have been added to the sketch during
+   * the current window. If the values all have the same sign, the approximation error has the
+   * relative accuracy guarantees of the {@link IndexMapping} used for this sketch.
+   *
+   * @return an approximation of the sum of the values of the current window
+   */
+  @Override
+  public double getSum() {
+    advance();
+    return aggregate.getSum();
+  }
+
+  @Override
+  public double getMinValue() {
+    advance();
+    return aggregate.getMinValue();
+  }
+
+  @Override
+  public double getMaxValue() {
+    advance();
+    return aggregate.getMaxValue();
+  }
+
+  @Override
+  public double getValueAtQuantile(double quantile) {
+    advance();
+    return aggregate.getValueAtQuantile(quantile);
+  }
+
+  @Override
+  public double[] getValuesAtQuantiles(double[] quantiles) {
+    advance();
+    return aggregate.getValuesAtQuantiles(quantiles);
+  }
+
+  @Override
+  public void getValuesAtQuantiles(double[] quantiles, double[] values) {
+    advance();
+    aggregate.getValuesAtQuantiles(quantiles, values);
+  }
+}
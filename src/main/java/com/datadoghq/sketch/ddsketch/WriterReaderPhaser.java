@@ -0,0 +1,101 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A synchronization primitive that lets wait-free writers hand off the data structures they write
+ * to to a reader, as popularized by HdrHistogram's {@code Recorder}.
+ *
+ * <p>Writers wrap their writes between {@link #writerCriticalSectionEnter()} and {@link
+ * #writerCriticalSectionExit(long)}, which only involve atomic increments. The reader, while
+ * holding the reader lock, swaps the active and inactive data structures and then calls {@link
+ * #flipPhase()}, which returns once all the writers that may have seen the previously active data
+ * structure have exited their critical sections. From then on, the reader has exclusive access to
+ * that data structure.
+ */
+final class WriterReaderPhaser {
+
+  private static final AtomicLongFieldUpdater<WriterReaderPhaser> START_EPOCH =
+      AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "startEpoch");
+  private static final AtomicLongFieldUpdater<WriterReaderPhaser> EVEN_END_EPOCH =
+      AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "evenEndEpoch");
+  private static final AtomicLongFieldUpdater<WriterReaderPhaser> ODD_END_EPOCH =
+      AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "oddEndEpoch");
+
+  private static final long FLIP_WAIT_NANOS = 10_000;
+
+  // The sign of the start epoch tells which phase writers are in: even if non-negative, odd if
+  // negative.
+  private volatile long startEpoch = 0;
+  private volatile long evenEndEpoch = 0;
+  private volatile long oddEndEpoch = Long.MIN_VALUE;
+
+  private final ReentrantLock readerLock = new ReentrantLock();
+
+  /**
+   * Enters a writer critical section. This is wait-free.
+   *
+   * @return a value that must be passed to the matching {@link #writerCriticalSectionExit(long)}
+   */
+  long writerCriticalSectionEnter() {
+    return START_EPOCH.getAndIncrement(this);
+  }
+
+  /**
+   * Exits a writer critical section. This is wait-free.
+   *
+   * @param criticalValueAtEnter the value returned by the matching {@link
+   *     #writerCriticalSectionEnter()}
+   */
+  void writerCriticalSectionExit(long criticalValueAtEnter) {
+    if (criticalValueAtEnter < 0) {
+      ODD_END_EPOCH.getAndIncrement(this);
+    } else {
+      EVEN_END_EPOCH.getAndIncrement(this);
+    }
+  }
+
+  void readerLock() {
+    readerLock.lock();
+  }
+
+  void readerUnlock() {
+    readerLock.unlock();
+  }
+
+  /**
+   * Flips the phase and waits until all the writers that entered their critical sections during the
+   * previous phase have exited them. Must be called while holding the reader lock.
+   */
+  void flipPhase() {
+    if (!readerLock.isHeldByCurrentThread()) {
+      throw new IllegalStateException("The reader lock must be held when flipping the phase.");
+    }
+
+    final boolean nextPhaseIsEven = startEpoch < 0;
+
+    // Reset the end epoch of the next phase before any writer can enter it.
+    final long initialStartValue;
+    if (nextPhaseIsEven) {
+      initialStartValue = 0;
+      evenEndEpoch = initialStartValue;
+    } else {
+      initialStartValue = Long.MIN_VALUE;
+      oddEndEpoch = initialStartValue;
+    }
+
+    final long startValueAtFlip = START_EPOCH.getAndSet(this, initialStartValue);
+
+    // Wait for the writers of the previous phase to exit their critical sections.
+    while ((nextPhaseIsEven ? oddEndEpoch : evenEndEpoch) != startValueAtFlip) {
+      LockSupport.parkNanos(FLIP_WAIT_NANOS);
+    }
+  }
+}
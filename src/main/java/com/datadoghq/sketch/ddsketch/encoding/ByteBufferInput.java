@@ -0,0 +1,52 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.encoding;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * An implementation of {@link Input} that reads the remaining bytes of a {@link ByteBuffer}, which
+ * may be a heap, a direct or a memory-mapped buffer, without copying them. Reading moves the
+ * position of the buffer forward. The byte order of the buffer does not matter and is not
+ * modified.
+ */
+public final class ByteBufferInput implements Input {
+
+  private final ByteBuffer buffer;
+
+  private ByteBufferInput(ByteBuffer buffer) {
+    this.buffer = Objects.requireNonNull(buffer);
+  }
+
+  public static ByteBufferInput wrap(ByteBuffer buffer) {
+    return new ByteBufferInput(buffer);
+  }
+
+  @Override
+  public final boolean hasRemaining() {
+    return buffer.hasRemaining();
+  }
+
+  @Override
+  public final byte readByte() throws EOFException {
+    if (!buffer.hasRemaining()) {
+      throw new EOFException();
+    }
+    return buffer.get();
+  }
+
+  @Override
+  public final long readLongLE() throws EOFException {
+    if (buffer.remaining() < 8) {
+      throw new EOFException();
+    }
+    final long value = buffer.getLong();
+    return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+  }
+}
@@ -0,0 +1,52 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.encoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * An implementation of {@link Output} that writes to a {@link ByteBuffer} of fixed capacity, which
+ * may be a heap, a direct or a memory-mapped buffer, without intermediate copy. Writing moves the
+ * position of the buffer forward. The byte order of the buffer does not matter and is not
+ * modified.
+ *
+ * @see GrowingByteBufferOutput
+ */
+public final class ByteBufferOutput implements Output {
+
+  private final ByteBuffer buffer;
+
+  private ByteBufferOutput(ByteBuffer buffer) {
+    this.buffer = Objects.requireNonNull(buffer);
+  }
+
+  public static ByteBufferOutput wrap(ByteBuffer buffer) {
+    return new ByteBufferOutput(buffer);
+  }
+
+  /** @throws java.nio.BufferOverflowException if the buffer has no remaining space */
+  @Override
+  public final void writeByte(byte value) {
+    buffer.put(value);
+  }
+
+  /** @throws java.nio.BufferOverflowException if the buffer has fewer than 8 remaining bytes */
+  @Override
+  public final void writeLongLE(long value) {
+    buffer.putLong(buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value));
+  }
+
+  /**
+   * @throws java.nio.BufferOverflowException if the buffer has fewer than {@code length} remaining
+   *     bytes
+   */
+  @Override
+  public final void writeBytes(byte[] bytes, int offset, int length) {
+    buffer.put(bytes, offset, length);
+  }
+}
@@ -64,6 +64,15 @@ public final class GrowingByteArrayOutput implements Output {
     pos += 8;
   }
 
+  @Override
+  public final void writeBytes(byte[] bytes, int offset, int length) {
+    if (pos > array.length - length) {
+      grow(pos + length);
+    }
+    System.arraycopy(bytes, offset, array, pos, length);
+    pos += length;
+  }
+
   /** Discard the data that has been written to the backing array but avoid deallocating memory. */
   public final void clear() {
     pos = 0;
@@ -0,0 +1,104 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.encoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An implementation of {@link Output} that is backed by a heap or a direct {@link ByteBuffer},
+ * whose capacity is grown as necessary.
+ */
+public final class GrowingByteBufferOutput implements Output {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final boolean direct;
+  private ByteBuffer buffer; // little-endian, the position being the number of written bytes
+
+  private GrowingByteBufferOutput(int initialCapacity, boolean direct) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Capacity cannot be negative");
+    }
+    this.direct = direct;
+    this.buffer = allocate(initialCapacity);
+  }
+
+  public static GrowingByteBufferOutput withInitialCapacity(int initialCapacity) {
+    return new GrowingByteBufferOutput(initialCapacity, false);
+  }
+
+  public static GrowingByteBufferOutput withDefaultInitialCapacity() {
+    return withInitialCapacity(INITIAL_CAPACITY);
+  }
+
+  public static GrowingByteBufferOutput directWithInitialCapacity(int initialCapacity) {
+    return new GrowingByteBufferOutput(initialCapacity, true);
+  }
+
+  public static GrowingByteBufferOutput directWithDefaultInitialCapacity() {
+    return directWithInitialCapacity(INITIAL_CAPACITY);
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    final ByteBuffer newBuffer =
+        direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    return newBuffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private void grow(int requiredCapacity) {
+    final ByteBuffer newBuffer = allocate(Math.max(requiredCapacity, buffer.capacity() << 1));
+    buffer.flip();
+    newBuffer.put(buffer);
+    buffer = newBuffer;
+  }
+
+  @Override
+  public final void writeByte(byte value) {
+    if (!buffer.hasRemaining()) {
+      grow(buffer.position() + 1);
+    }
+    buffer.put(value);
+  }
+
+  @Override
+  public final void writeLongLE(long value) {
+    if (buffer.remaining() < 8) {
+      grow(buffer.position() + 8);
+    }
+    buffer.putLong(value);
+  }
+
+  @Override
+  public final void writeBytes(byte[] bytes, int offset, int length) {
+    if (buffer.remaining() < length) {
+      grow(buffer.position() + length);
+    }
+    buffer.put(bytes, offset, length);
+  }
+
+  /** Discard the data that has been written to the backing buffer but avoid deallocating memory. */
+  public final void clear() {
+    buffer.clear();
+  }
+
+  /** @return the number of bytes that have been written to the backing buffer */
+  public final int numWrittenBytes() {
+    return buffer.position();
+  }
+
+  /**
+   * Returns a view of the written data, which shares the content of the backing buffer without
+   * copying it. The view is only valid until the next write or call to {@link #clear()}.
+   *
+   * @return a buffer whose remaining bytes are the written data
+   */
+  public final ByteBuffer writtenBytes() {
+    final ByteBuffer view = buffer.duplicate();
+    view.flip();
+    return view;
+  }
+}
@@ -12,6 +12,18 @@ public interface Output {
 
   void writeByte(byte value) throws IOException;
 
+  /**
+   * Writes {@code length} bytes of the specified array, starting at {@code offset}.
+   *
+   * <p>This is equivalent to calling {@link #writeByte(byte)} on each byte, but implementations may
+   * copy the bytes in bulk.
+   */
+  default void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+    for (int i = offset; i < offset + length; i++) {
+      writeByte(bytes[i]);
+    }
+  }
+
   default void writeLongLE(long value) throws IOException {
     writeByte((byte) value);
     writeByte((byte) (value >> 8));
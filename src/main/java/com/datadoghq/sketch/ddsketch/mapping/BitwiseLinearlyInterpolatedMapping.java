@@ -67,6 +67,25 @@ public class BitwiseLinearlyInterpolatedMapping implements IndexMapping {
             | getPartialSignificand(longBits));
   }
 
+  @Override
+  public void indices(double[] values, int offset, int length, int[] out) {
+    if (offset < 0 || length < 0 || offset > values.length - length || length > out.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    final int vectorized =
+        SimdIndexing.ENABLED
+            ? SimdIndexing.bitwiseLinearIndices(
+                values, offset, length, out, numSignificantBinaryDigits)
+            : 0;
+    for (int i = vectorized; i < length; i++) {
+      final long longBits = Double.doubleToRawLongBits(values[offset + i]);
+      out[i] =
+          (int)
+              ((DoubleBitOperationHelper.getExponent(longBits) << numSignificantBinaryDigits)
+                  | getPartialSignificand(longBits));
+    }
+  }
+
   private long getPartialSignificand(long longBits) {
     return (longBits & DoubleBitOperationHelper.SIGNIFICAND_MASK) >> partialSignificandShift;
   }
@@ -100,6 +100,25 @@ public class CubicallyInterpolatedMapping extends LogLikeIndexMapping {
     return ((A * s + B) * s + C) * s + e;
   }
 
+  @Override
+  public void indices(double[] values, int offset, int length, int[] out) {
+    checkIndicesRange(values, offset, length, out);
+    final double multiplier = multiplier();
+    final double indexOffset = indexOffset();
+    final int vectorized =
+        SimdIndexing.ENABLED
+            ? SimdIndexing.cubicIndices(
+                values, offset, length, out, multiplier, indexOffset, A, B, C)
+            : 0;
+    for (int i = vectorized; i < length; i++) {
+      final long longBits = Double.doubleToRawLongBits(values[offset + i]);
+      final double s = DoubleBitOperationHelper.getSignificandPlusOne(longBits) - 1;
+      final double e = (double) DoubleBitOperationHelper.getExponent(longBits);
+      final double index = (((A * s + B) * s + C) * s + e) * multiplier + indexOffset;
+      out[i] = index >= 0 ? (int) index : (int) index - 1;
+    }
+  }
+
   @Override
   double logInverse(double index) {
     final long exponent = (long) Math.floor(index);
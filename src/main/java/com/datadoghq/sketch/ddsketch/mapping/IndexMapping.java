@@ -97,6 +97,30 @@ public interface IndexMapping {
 
   int index(double value);
 
+  /**
+   * Computes the indices of the values of the specified range of an array.
+   *
+   * <p>This is equivalent to calling {@link #index} on each value of the range, but
+   * implementations may compute the indices in bulk, in a way that is friendlier to the JIT
+   * compiler.
+   *
+   * @param values the array that holds the values whose indices are to be computed
+   * @param offset the position in {@code values} of the first value of the range
+   * @param length the number of values of the range
+   * @param out the array that the indices are written to, the index of {@code values[offset + i]}
+   *     being written to {@code out[i]}
+   * @throws IndexOutOfBoundsException if the range is out of the bounds of {@code values} or if
+   *     {@code out} is shorter than {@code length}
+   */
+  default void indices(double[] values, int offset, int length, int[] out) {
+    if (offset < 0 || length < 0 || offset > values.length - length || length > out.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    for (int i = 0; i < length; i++) {
+      out[i] = index(values[offset + i]);
+    }
+  }
+
   double value(int index);
 
   double lowerBound(int index);
@@ -7,7 +7,9 @@ package com.datadoghq.sketch.ddsketch.mapping;
 
 import com.datadoghq.sketch.ddsketch.store.Bin;
 import com.datadoghq.sketch.ddsketch.store.BinAcceptor;
+import com.datadoghq.sketch.ddsketch.store.BinCursor;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 
 /**
@@ -26,6 +28,45 @@ public interface IndexMappingConverter {
    */
   void convertAscendingIterator(Iterator<Bin> inBins, BinAcceptor outBins);
 
+  /**
+   * Converts bins. Unless overridden, this adapts the cursor to {@link
+   * #convertAscendingIterator(Iterator, BinAcceptor)}, which allocates a {@link Bin} for each of
+   * them. The converter that {@link #distributingUniformly(IndexMapping, IndexMapping)} returns
+   * does not allocate.
+   *
+   * @param inBins an ascending cursor, that is, a cursor that moves over bins whose indexes are
+   *     sorted in ascending order
+   * @param outBins a consumer that is fed the converted bins
+   * @throws IllegalArgumentException if the provided cursor is not ascending
+   */
+  default void convertAscendingCursor(BinCursor inBins, BinAcceptor outBins) {
+    convertAscendingIterator(
+        new Iterator<Bin>() {
+
+          private boolean advanced = false;
+          private boolean hasNext;
+
+          @Override
+          public boolean hasNext() {
+            if (!advanced) {
+              hasNext = inBins.advance();
+              advanced = true;
+            }
+            return hasNext;
+          }
+
+          @Override
+          public Bin next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            advanced = false;
+            return new Bin(inBins.index(), inBins.count());
+          }
+        },
+        outBins);
+  }
+
   /**
    * Returns a converter that uniformly distributes the count of a bin to the overlapping bins of
    * the new mapping based on the shares of the initial bin that the new bins cover.
@@ -85,59 +126,70 @@ public interface IndexMappingConverter {
       IndexMapping inMapping, IndexMapping outMapping) {
     Objects.requireNonNull(inMapping);
     Objects.requireNonNull(outMapping);
-    return (inBins, outBins) -> {
-      Integer inIndex = null;
-      int outIndex = Integer.MIN_VALUE;
-      double value = 0;
-      double outCount = 0;
+    return new IndexMappingConverter() {
+
+      @Override
+      public void convertAscendingIterator(Iterator<Bin> inBins, BinAcceptor outBins) {
+        convertAscendingCursor(BinCursor.of(inBins), outBins);
+      }
 
-      while (inBins.hasNext()) {
-        final Bin inBin = inBins.next();
+      @Override
+      public void convertAscendingCursor(BinCursor inBins, BinAcceptor outBins) {
+        long inIndex = Long.MIN_VALUE;
+        int outIndex = Integer.MIN_VALUE;
+        double value = 0;
+        double outCount = 0;
 
-        if (inIndex != null && inBin.getIndex() <= inIndex) {
-          throw new IllegalArgumentException("The bin iterator is not ascending.");
-        }
-        inIndex = inBin.getIndex();
+        while (inBins.advance()) {
+          final int inBinIndex = inBins.index();
+          final double inBinCount = inBins.count();
 
-        final double inLowerBound = inMapping.lowerBound(inBin.getIndex());
-        final double inUpperBound = inMapping.upperBound(inBin.getIndex());
+          if (inBinIndex <= inIndex) {
+            throw new IllegalArgumentException("The bin iterator is not ascending.");
+          }
+          inIndex = inBinIndex;
 
-        if (inLowerBound < value) {
-          throw new RuntimeException("The input mapping is invalid.");
-        }
-        value = inLowerBound;
+          final double inLowerBound = inMapping.lowerBound(inBinIndex);
+          final double inUpperBound = inMapping.upperBound(inBinIndex);
 
-        final int newOutIndex = outMapping.index(value);
-        if (newOutIndex < outIndex) {
-          throw new RuntimeException("The output mapping is invalid.");
-        } else if (newOutIndex > outIndex && outCount != 0) {
-          outBins.accept(outIndex, outCount);
-          outCount = 0;
-        }
-        outIndex = newOutIndex;
-
-        // Allocate shares of the count of the current input bin to the overlapping bins of the
-        // output mapping whose upper bounds are still within the input bin.
-        double outUpperBound;
-        while ((outUpperBound = outMapping.upperBound(outIndex)) < inUpperBound) {
-          outCount += inBin.getCount() * (outUpperBound - value) / (inUpperBound - inLowerBound);
-          value = outUpperBound;
-          if (outCount != 0) {
+          if (inLowerBound < value) {
+            throw new RuntimeException("The input mapping is invalid.");
+          }
+          value = inLowerBound;
+
+          final int newOutIndex = outMapping.index(value);
+          if (newOutIndex < outIndex) {
+            throw new RuntimeException("The output mapping is invalid.");
+          } else if (newOutIndex > outIndex && outCount != 0) {
             outBins.accept(outIndex, outCount);
             outCount = 0;
           }
-          outIndex++;
+          outIndex = newOutIndex;
+
+          // Allocate shares of the count of the current input bin to the overlapping bins of the
+          // output mapping whose upper bounds are still within the input bin.
+          double outUpperBound;
+          while ((outUpperBound = outMapping.upperBound(outIndex)) < inUpperBound) {
+            outCount += inBinCount * (outUpperBound - value) / (inUpperBound - inLowerBound);
+            value = outUpperBound;
+            if (outCount != 0) {
+              outBins.accept(outIndex, outCount);
+              outCount = 0;
+            }
+            outIndex++;
+          }
+          // Allocate the remaining of the count of the current input bin to the rightmost
+          // overlapping bin. Do not transfer it to outBins just yet as other input bins may also
+          // overlap the output bin of index outIndex (we want to forward the whole resulting count
+          // at once).
+          outCount += inBinCount * (inUpperBound - value) / (inUpperBound - inLowerBound);
         }
-        // Allocate the remaining of the count of the current input bin to the rightmost overlapping
-        // bin. Do not transfer it to outBins just yet as other input bins may also overlap the
-        // output bin of index outIndex (we want to forward the whole resulting count at once).
-        outCount += inBin.getCount() * (inUpperBound - value) / (inUpperBound - inLowerBound);
-      }
 
-      // No other input bin overlaps the output bin of index outIndex. Forward its count to
-      // outBins.
-      if (outCount != 0) {
-        outBins.accept(outIndex, outCount);
+        // No other input bin overlaps the output bin of index outIndex. Forward its count to
+        // outBins.
+        if (outCount != 0) {
+          outBins.accept(outIndex, outCount);
+        }
       }
     };
   }
@@ -46,6 +46,20 @@ public class LinearlyInterpolatedMapping extends LogLikeIndexMapping {
         - 1;
   }
 
+  @Override
+  public void indices(double[] values, int offset, int length, int[] out) {
+    checkIndicesRange(values, offset, length, out);
+    final double multiplier = multiplier();
+    final double indexOffset = indexOffset();
+    for (int i = 0; i < length; i++) {
+      final long longBits = Double.doubleToRawLongBits(values[offset + i]);
+      final double s = DoubleBitOperationHelper.getSignificandPlusOne(longBits);
+      final double e = (double) DoubleBitOperationHelper.getExponent(longBits);
+      final double index = (e + s - 1) * multiplier + indexOffset;
+      out[i] = index >= 0 ? (int) index : (int) index - 1;
+    }
+  }
+
   @Override
   double logInverse(double index) {
     final long exponent = (long) Math.floor(index);
@@ -115,6 +115,16 @@ abstract class LogLikeIndexMapping implements IndexMapping {
     return index >= 0 ? (int) index : (int) index - 1; // faster than Math::floor
   }
 
+  /**
+   * Checks that the arguments of {@link #indices} are consistent, so that implementations can run
+   * their loops without range checks in the way.
+   */
+  static void checkIndicesRange(double[] values, int offset, int length, int[] out) {
+    if (offset < 0 || length < 0 || offset > values.length - length || length > out.length) {
+      throw new IndexOutOfBoundsException();
+    }
+  }
+
   @Override
   public final double value(int index) {
     return lowerBound(index) * (1 + relativeAccuracy);
@@ -205,4 +215,8 @@ abstract class LogLikeIndexMapping implements IndexMapping {
   double indexOffset() {
     return indexOffset;
   }
+
+  double multiplier() {
+    return multiplier;
+  }
 }
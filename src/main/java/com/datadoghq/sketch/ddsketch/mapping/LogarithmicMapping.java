@@ -30,6 +30,18 @@ public class LogarithmicMapping extends LogLikeIndexMapping {
     return Math.log(value);
   }
 
+  @Override
+  public void indices(double[] values, int offset, int length, int[] out) {
+    checkIndicesRange(values, offset, length, out);
+    final double multiplier = multiplier();
+    final double indexOffset = indexOffset();
+    for (int i = 0; i < length; i++) {
+      final double log = Math.log(values[offset + i]);
+      final double index = log * multiplier + indexOffset;
+      out[i] = index >= 0 ? (int) index : (int) index - 1;
+    }
+  }
+
   @Override
   double logInverse(double index) {
     return Math.exp(index);
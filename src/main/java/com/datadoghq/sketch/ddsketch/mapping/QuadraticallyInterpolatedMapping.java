@@ -37,6 +37,25 @@ public class QuadraticallyInterpolatedMapping extends LogLikeIndexMapping {
     return e - (s - 5) * (s - 1) * ONE_THIRD;
   }
 
+  @Override
+  public void indices(double[] values, int offset, int length, int[] out) {
+    checkIndicesRange(values, offset, length, out);
+    final double multiplier = multiplier();
+    final double indexOffset = indexOffset();
+    final int vectorized =
+        SimdIndexing.ENABLED
+            ? SimdIndexing.quadraticIndices(
+                values, offset, length, out, multiplier, indexOffset, ONE_THIRD)
+            : 0;
+    for (int i = vectorized; i < length; i++) {
+      final long longBits = Double.doubleToRawLongBits(values[offset + i]);
+      final double s = DoubleBitOperationHelper.getSignificandPlusOne(longBits);
+      final double e = DoubleBitOperationHelper.getExponent(longBits);
+      final double index = (e - (s - 5) * (s - 1) * ONE_THIRD) * multiplier + indexOffset;
+      out[i] = index >= 0 ? (int) index : (int) index - 1;
+    }
+  }
+
   @Override
   double logInverse(double index) {
     final long exponent = (long) Math.floor(index);
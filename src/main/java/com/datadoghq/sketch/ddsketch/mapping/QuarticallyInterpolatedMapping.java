@@ -41,6 +41,20 @@ public class QuarticallyInterpolatedMapping extends LogLikeIndexMapping {
     return (((A * s + B) * s + C) * s + D) * s + e;
   }
 
+  @Override
+  public void indices(double[] values, int offset, int length, int[] out) {
+    checkIndicesRange(values, offset, length, out);
+    final double multiplier = multiplier();
+    final double indexOffset = indexOffset();
+    for (int i = 0; i < length; i++) {
+      final long longBits = Double.doubleToRawLongBits(values[offset + i]);
+      final double s = DoubleBitOperationHelper.getSignificandPlusOne(longBits) - 1;
+      final double e = (double) DoubleBitOperationHelper.getExponent(longBits);
+      final double index = ((((A * s + B) * s + C) * s + D) * s + e) * multiplier + indexOffset;
+      out[i] = index >= 0 ? (int) index : (int) index - 1;
+    }
+  }
+
   @Override
   double logInverse(double index) {
     final double exponent = Math.floor(index);
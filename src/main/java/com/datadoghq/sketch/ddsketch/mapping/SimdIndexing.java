@@ -0,0 +1,61 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.mapping;
+
+/**
+ * Vectorized versions of the bulk index computations of some {@link IndexMapping}s.
+ *
+ * <p>This is the version that is used on Java 8 to 16, which is never enabled. The multi-release
+ * JAR ships another version for Java 17 and above, which relies on the incubating Vector API if
+ * the {@code jdk.incubator.vector} module has been added to the module graph (for instance, using
+ * {@code --add-modules jdk.incubator.vector}).
+ *
+ * <p>Each method computes the indices of a prefix of the provided range of values, whose length is
+ * a multiple of the number of vector lanes, and returns the length of that prefix. The caller is
+ * responsible for computing the indices of the remaining values. Vectorized computations produce
+ * the same indices as their scalar counterparts.
+ */
+final class SimdIndexing {
+
+  // Not a constant expression, so that the check is not folded away in the mappings, which are
+  // compiled against this class but also run against the version for Java 17 and above.
+  static final boolean ENABLED = isEnabled();
+
+  private SimdIndexing() {}
+
+  private static boolean isEnabled() {
+    return false;
+  }
+
+  static int cubicIndices(
+      double[] values,
+      int offset,
+      int length,
+      int[] out,
+      double multiplier,
+      double indexOffset,
+      double a,
+      double b,
+      double c) {
+    return 0;
+  }
+
+  static int quadraticIndices(
+      double[] values,
+      int offset,
+      int length,
+      int[] out,
+      double multiplier,
+      double indexOffset,
+      double oneThird) {
+    return 0;
+  }
+
+  static int bitwiseLinearIndices(
+      double[] values, int offset, int length, int[] out, int numSignificantBinaryDigits) {
+    return 0;
+  }
+}
@@ -0,0 +1,76 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * A cursor over the non-empty bins of a {@link Store}. Unlike {@link Store#getAscendingIterator()}
+ * and {@link Store#getDescendingIterator()}, it exposes the index and the count of the current bin
+ * as primitives and does not allocate a {@link Bin} for each of them.
+ *
+ * <p>A cursor is initially positioned before the first bin. Typical usage is:
+ *
+ * <pre>{@code
+ * final BinCursor cursor = store.getAscendingCursor();
+ * while (cursor.advance()) {
+ *   accept(cursor.index(), cursor.count());
+ * }
+ * }</pre>
+ *
+ * <p>The behavior of a cursor is undefined if the store is modified while it is being used.
+ */
+public interface BinCursor {
+
+  /**
+   * Moves the cursor to the next non-empty bin.
+   *
+   * @return {@code true} iff there is such a bin, in which case {@link #index()} and {@link
+   *     #count()} return its index and count
+   */
+  boolean advance();
+
+  /** @return the index of the bin that the cursor is positioned at */
+  int index();
+
+  /** @return the count of the bin that the cursor is positioned at */
+  double count();
+
+  /**
+   * Returns a cursor over the bins that the provided iterator returns, for stores that do not
+   * implement cursors natively.
+   *
+   * @param bins the iterator to be wrapped
+   * @return a cursor over the bins of {@code bins}
+   */
+  static BinCursor of(Iterator<Bin> bins) {
+    Objects.requireNonNull(bins);
+    return new BinCursor() {
+
+      private Bin bin;
+
+      @Override
+      public boolean advance() {
+        if (!bins.hasNext()) {
+          return false;
+        }
+        bin = bins.next();
+        return true;
+      }
+
+      @Override
+      public int index() {
+        return bin.getIndex();
+      }
+
+      @Override
+      public double count() {
+        return bin.getCount();
+      }
+    };
+  }
+}
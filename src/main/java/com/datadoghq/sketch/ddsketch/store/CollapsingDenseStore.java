@@ -12,6 +12,17 @@ abstract class CollapsingDenseStore extends DenseStore {
   boolean isCollapsed;
 
   CollapsingDenseStore(int maxNumBins) {
+    this(maxNumBins, StoreAllocator.heap());
+  }
+
+  CollapsingDenseStore(int maxNumBins, StoreAllocator allocator) {
+    super(allocator);
+    this.maxNumBins = maxNumBins;
+    this.isCollapsed = false;
+  }
+
+  CollapsingDenseStore(int maxNumBins, CountArray countArray) {
+    super(countArray);
     this.maxNumBins = maxNumBins;
     this.isCollapsed = false;
   }
@@ -27,9 +38,21 @@ abstract class CollapsingDenseStore extends DenseStore {
     return Math.min(super.getNewLength(newMinIndex, newMaxIndex), maxNumBins);
   }
 
+  @Override
+  boolean canExtendRangeWithoutCollapsing(int newMinIndex, int newMaxIndex) {
+    return !isCollapsed
+        && (long) Math.max(newMaxIndex, maxIndex) - Math.min(newMinIndex, minIndex) < maxNumBins;
+  }
+
   @Override
   public void clear() {
     super.clear();
     isCollapsed = false;
   }
+
+  @Override
+  public void release() {
+    super.release();
+    isCollapsed = false;
+  }
 }
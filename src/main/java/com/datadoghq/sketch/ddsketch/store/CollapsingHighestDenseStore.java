@@ -11,7 +11,15 @@ public class CollapsingHighestDenseStore extends CollapsingDenseStore {
     super(maxNumBins);
   }
 
-  private CollapsingHighestDenseStore(CollapsingHighestDenseStore store) {
+  public CollapsingHighestDenseStore(int maxNumBins, StoreAllocator allocator) {
+    super(maxNumBins, allocator);
+  }
+
+  CollapsingHighestDenseStore(int maxNumBins, CountArray countArray) {
+    super(maxNumBins, countArray);
+  }
+
+  CollapsingHighestDenseStore(CollapsingHighestDenseStore store) {
     super(store);
   }
 
@@ -20,11 +28,11 @@ public class CollapsingHighestDenseStore extends CollapsingDenseStore {
 
     if (index > maxIndex) {
       if (isCollapsed) {
-        return counts.length - 1;
+        return getArrayLength() - 1;
       } else {
         extendRange(index);
         if (isCollapsed) {
-          return counts.length - 1;
+          return getArrayLength() - 1;
         }
       }
     } else if (index < minIndex) {
@@ -37,21 +45,20 @@ public class CollapsingHighestDenseStore extends CollapsingDenseStore {
   @Override
   void adjust(int newMinIndex, int newMaxIndex) {
 
-    if ((long) newMaxIndex - newMinIndex + 1 > counts.length) {
+    if ((long) newMaxIndex - newMinIndex + 1 > getArrayLength()) {
 
       // The range of indices is too wide, buckets of lowest indices need to be collapsed.
 
-      newMaxIndex = newMinIndex + counts.length - 1;
+      newMaxIndex = newMinIndex + getArrayLength() - 1;
 
       if (newMaxIndex <= minIndex) {
 
         // There will be only one non-empty bucket.
 
-        final double totalCount = getTotalCount();
         resetCounts();
         offset = newMinIndex;
         maxIndex = newMaxIndex;
-        counts[counts.length - 1] = totalCount;
+        setCount(getArrayLength() - 1, totalCount);
 
       } else {
 
@@ -62,7 +69,7 @@ public class CollapsingHighestDenseStore extends CollapsingDenseStore {
           // Collapse the buckets.
           final double collapsedCount = getTotalCount(newMaxIndex + 1, maxIndex);
           resetCounts(newMaxIndex + 1, maxIndex);
-          counts[newMaxIndex - offset] += collapsedCount;
+          addToCount(newMaxIndex - offset, collapsedCount);
           maxIndex = newMaxIndex;
 
           // Shift the buckets to make room for newMinIndex.
@@ -96,7 +103,10 @@ public class CollapsingHighestDenseStore extends CollapsingDenseStore {
     if (store instanceof CollapsingHighestDenseStore) {
       mergeWith((CollapsingHighestDenseStore) store);
     } else {
-      getAscendingStream().forEachOrdered(this::add);
+      final BinCursor cursor = store.getAscendingCursor();
+      while (cursor.advance()) {
+        add(cursor.index(), cursor.count());
+      }
     }
   }
 
@@ -106,21 +116,19 @@ public class CollapsingHighestDenseStore extends CollapsingDenseStore {
       return;
     }
 
+    invalidateRankIndex();
+
     if (store.minIndex < minIndex || store.maxIndex > maxIndex) {
       extendRange(store.minIndex, store.maxIndex);
     }
 
     int index = store.maxIndex;
     for (; index > maxIndex && index >= store.minIndex; index--) {
-      counts[counts.length - 1] += store.counts[index - store.offset];
-    }
-    for (; index > store.minIndex; index--) {
-      counts[index - offset] += store.counts[index - store.offset];
-    }
-    // This is a separate test so that the comparison in the previous loop is strict (>) and handles
-    // store.minIndex = Integer.MIN_VALUE.
-    if (index == store.minIndex) {
-      counts[index - offset] += store.counts[index - store.offset];
+      addToCount(getArrayLength() - 1, store.getCount(index - store.offset));
     }
+    // The remaining indexes, from store.minIndex to index, are within the range of this store.
+    addCounts(
+        store.minIndex - offset, store, store.minIndex - store.offset, index - store.minIndex + 1);
+    totalCount += store.totalCount;
   }
 }
@@ -0,0 +1,34 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+/** A {@link CollapsingHighestDenseStore} that keeps its counts off-heap. */
+public class CollapsingHighestOffHeapDenseStore extends CollapsingHighestDenseStore
+    implements OffHeapDenseStore {
+
+  public CollapsingHighestOffHeapDenseStore(int maxNumBins) {
+    this(maxNumBins, OffHeapAllocator.direct());
+  }
+
+  public CollapsingHighestOffHeapDenseStore(int maxNumBins, OffHeapAllocator allocator) {
+    super(maxNumBins, new OffHeapCountArray(allocator));
+  }
+
+  private CollapsingHighestOffHeapDenseStore(CollapsingHighestOffHeapDenseStore store) {
+    super(store);
+  }
+
+  @Override
+  public Store copy() {
+    return new CollapsingHighestOffHeapDenseStore(this);
+  }
+
+  @Override
+  public void close() {
+    release();
+    ((OffHeapCountArray) countArray).close();
+  }
+}
@@ -11,7 +11,15 @@ public class CollapsingLowestDenseStore extends CollapsingDenseStore {
     super(maxNumBins);
   }
 
-  private CollapsingLowestDenseStore(CollapsingLowestDenseStore store) {
+  public CollapsingLowestDenseStore(int maxNumBins, StoreAllocator allocator) {
+    super(maxNumBins, allocator);
+  }
+
+  CollapsingLowestDenseStore(int maxNumBins, CountArray countArray) {
+    super(maxNumBins, countArray);
+  }
+
+  CollapsingLowestDenseStore(CollapsingLowestDenseStore store) {
     super(store);
   }
 
@@ -37,21 +45,20 @@ public class CollapsingLowestDenseStore extends CollapsingDenseStore {
   @Override
   void adjust(int newMinIndex, int newMaxIndex) {
 
-    if ((long) newMaxIndex - newMinIndex + 1 > counts.length) {
+    if ((long) newMaxIndex - newMinIndex + 1 > getArrayLength()) {
 
       // The range of indices is too wide, buckets of lowest indices need to be collapsed.
 
-      newMinIndex = newMaxIndex - counts.length + 1;
+      newMinIndex = newMaxIndex - getArrayLength() + 1;
 
       if (newMinIndex >= maxIndex) {
 
         // There will be only one non-empty bucket.
 
-        final double totalCount = getTotalCount();
         resetCounts();
         offset = newMinIndex;
         minIndex = newMinIndex;
-        counts[0] = totalCount;
+        setCount(0, totalCount);
 
       } else {
 
@@ -62,7 +69,7 @@ public class CollapsingLowestDenseStore extends CollapsingDenseStore {
           // Collapse the buckets.
           final double collapsedCount = getTotalCount(minIndex, newMinIndex - 1);
           resetCounts(minIndex, newMinIndex - 1);
-          counts[newMinIndex - offset] += collapsedCount;
+          addToCount(newMinIndex - offset, collapsedCount);
           minIndex = newMinIndex;
 
           // Shift the buckets to make room for newMaxIndex.
@@ -96,7 +103,10 @@ public class CollapsingLowestDenseStore extends CollapsingDenseStore {
     if (store instanceof CollapsingLowestDenseStore) {
       mergeWith((CollapsingLowestDenseStore) store);
     } else {
-      getDescendingStream().forEachOrdered(this::add);
+      final BinCursor cursor = store.getDescendingCursor();
+      while (cursor.advance()) {
+        add(cursor.index(), cursor.count());
+      }
     }
   }
 
@@ -106,21 +116,18 @@ public class CollapsingLowestDenseStore extends CollapsingDenseStore {
       return;
     }
 
+    invalidateRankIndex();
+
     if (store.minIndex < minIndex || store.maxIndex > maxIndex) {
       extendRange(store.minIndex, store.maxIndex);
     }
 
     int index = store.minIndex;
     for (; index < minIndex && index <= store.maxIndex; index++) {
-      counts[0] += store.counts[index - store.offset];
-    }
-    for (; index < store.maxIndex; index++) {
-      counts[index - offset] += store.counts[index - store.offset];
-    }
-    // This is a separate test so that the comparison in the previous loop is strict (<) and handles
-    // store.maxIndex = Integer.MAX_VALUE.
-    if (index == store.maxIndex) {
-      counts[index - offset] += store.counts[index - store.offset];
+      addToCount(0, store.getCount(index - store.offset));
     }
+    // The remaining indexes, from index to store.maxIndex, are within the range of this store.
+    addCounts(index - offset, store, index - store.offset, store.maxIndex - index + 1);
+    totalCount += store.totalCount;
   }
 }
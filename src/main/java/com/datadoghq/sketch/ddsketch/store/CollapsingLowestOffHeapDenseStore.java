@@ -0,0 +1,34 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+/** A {@link CollapsingLowestDenseStore} that keeps its counts off-heap. */
+public class CollapsingLowestOffHeapDenseStore extends CollapsingLowestDenseStore
+    implements OffHeapDenseStore {
+
+  public CollapsingLowestOffHeapDenseStore(int maxNumBins) {
+    this(maxNumBins, OffHeapAllocator.direct());
+  }
+
+  public CollapsingLowestOffHeapDenseStore(int maxNumBins, OffHeapAllocator allocator) {
+    super(maxNumBins, new OffHeapCountArray(allocator));
+  }
+
+  private CollapsingLowestOffHeapDenseStore(CollapsingLowestOffHeapDenseStore store) {
+    super(store);
+  }
+
+  @Override
+  public Store copy() {
+    return new CollapsingLowestOffHeapDenseStore(this);
+  }
+
+  @Override
+  public void close() {
+    release();
+    ((OffHeapCountArray) countArray).close();
+  }
+}
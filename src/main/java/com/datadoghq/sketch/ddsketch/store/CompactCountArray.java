@@ -0,0 +1,306 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import java.util.Arrays;
+
+/**
+ * A {@link CountArray} that adapts the width of its counters to the counts that they hold.
+ *
+ * <p>As long as counts are integers, they are held in an array of unsigned {@code byte}s, which is
+ * replaced with an array of unsigned {@code short}s, unsigned {@code int}s, then {@code long}s,
+ * when a counter overflows. The array is only replaced with an array of {@code double}s if a count
+ * that is not an integer is added, or if a counter overflows as a {@code long}. Counters never get
+ * narrower, unless the array is released.
+ */
+final class CompactCountArray extends CountArray {
+
+  // Counter widths, from the narrowest to the widest.
+  private static final int BYTE = 0;
+  private static final int SHORT = 1;
+  private static final int INT = 2;
+  private static final int LONG = 3;
+  private static final int DOUBLE = 4;
+
+  private static final long MAX_UNSIGNED_BYTE = 0xFFL;
+  private static final long MAX_UNSIGNED_SHORT = 0xFFFFL;
+  private static final long MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+
+  // A byte[], a short[], an int[], a long[] or a double[], depending on width.
+  private Object counts;
+  private int width;
+
+  CompactCountArray() {
+    this.counts = null;
+    this.width = BYTE;
+  }
+
+  @Override
+  int length() {
+    if (counts == null) {
+      return 0;
+    }
+    switch (width) {
+      case BYTE:
+        return ((byte[]) counts).length;
+      case SHORT:
+        return ((short[]) counts).length;
+      case INT:
+        return ((int[]) counts).length;
+      case LONG:
+        return ((long[]) counts).length;
+      default:
+        return ((double[]) counts).length;
+    }
+  }
+
+  @Override
+  double get(int index) {
+    if (width == DOUBLE) {
+      return ((double[]) counts)[index];
+    }
+    return (double) getLong(counts, width, index);
+  }
+
+  @Override
+  void set(int index, double count) {
+    if (width != DOUBLE && isLong(count) && count >= 0) {
+      final long longCount = (long) count;
+      widen(widthOf(longCount));
+      setLong(counts, width, index, longCount);
+    } else {
+      widen(DOUBLE);
+      ((double[]) counts)[index] = count;
+    }
+  }
+
+  @Override
+  void add(int index, double count) {
+    if (width != DOUBLE && isLong(count)) {
+      final long longCount = (long) count;
+      if (longCount >= 0) {
+        increment(index, longCount);
+        return;
+      }
+      final long newCount = getLong(counts, width, index) + longCount;
+      if (newCount >= 0) {
+        // The counter gets smaller, and therefore still fits.
+        setLong(counts, width, index, newCount);
+        return;
+      }
+    }
+    widen(DOUBLE);
+    ((double[]) counts)[index] += count;
+  }
+
+  /** @return whether the count is an integer that can be converted to a {@code long} exactly */
+  private static boolean isLong(double count) {
+    return count == Math.rint(count) && Math.abs(count) < 0x1p63;
+  }
+
+  /**
+   * Increments a counter, widening the counters if it overflows.
+   *
+   * @param index the index of the counter
+   * @param count a non-negative integer value
+   */
+  private void increment(int index, long count) {
+    switch (width) {
+      case BYTE:
+        {
+          final byte[] byteCounts = (byte[]) counts;
+          final long newCount = (byteCounts[index] & MAX_UNSIGNED_BYTE) + count;
+          if (count <= MAX_UNSIGNED_BYTE && newCount <= MAX_UNSIGNED_BYTE) {
+            byteCounts[index] = (byte) newCount;
+            return;
+          }
+          break;
+        }
+      case SHORT:
+        {
+          final short[] shortCounts = (short[]) counts;
+          final long newCount = (shortCounts[index] & MAX_UNSIGNED_SHORT) + count;
+          if (count <= MAX_UNSIGNED_SHORT && newCount <= MAX_UNSIGNED_SHORT) {
+            shortCounts[index] = (short) newCount;
+            return;
+          }
+          break;
+        }
+      case INT:
+        {
+          final int[] intCounts = (int[]) counts;
+          final long newCount = (intCounts[index] & MAX_UNSIGNED_INT) + count;
+          if (count <= MAX_UNSIGNED_INT && newCount <= MAX_UNSIGNED_INT) {
+            intCounts[index] = (int) newCount;
+            return;
+          }
+          break;
+        }
+      case LONG:
+        break;
+      default:
+        ((double[]) counts)[index] += count;
+        return;
+    }
+
+    // The counter overflows, or is held in a long.
+    final long currentCount = getLong(counts, width, index);
+    if (count > Long.MAX_VALUE - currentCount) {
+      widen(DOUBLE);
+      ((double[]) counts)[index] = (double) currentCount + count;
+    } else {
+      final long newCount = currentCount + count;
+      widen(widthOf(newCount));
+      setLong(counts, width, index, newCount);
+    }
+  }
+
+  /** @return the narrowest integer width that can hold the provided non-negative count */
+  private static int widthOf(long count) {
+    if (count <= MAX_UNSIGNED_BYTE) {
+      return BYTE;
+    } else if (count <= MAX_UNSIGNED_SHORT) {
+      return SHORT;
+    } else if (count <= MAX_UNSIGNED_INT) {
+      return INT;
+    } else {
+      return LONG;
+    }
+  }
+
+  /**
+   * Makes the counters at least as wide as specified, by replacing the array of counters with a
+   * wider one if necessary.
+   */
+  private void widen(int newWidth) {
+    if (newWidth <= width) {
+      return;
+    }
+    final int length = length();
+    final Object newCounts = newArray(newWidth, length);
+    for (int i = 0; i < length; i++) {
+      if (newWidth == DOUBLE) {
+        ((double[]) newCounts)[i] = get(i);
+      } else {
+        setLong(newCounts, newWidth, i, getLong(counts, width, i));
+      }
+    }
+    counts = newCounts;
+    width = newWidth;
+  }
+
+  private static long getLong(Object counts, int width, int index) {
+    switch (width) {
+      case BYTE:
+        return ((byte[]) counts)[index] & MAX_UNSIGNED_BYTE;
+      case SHORT:
+        return ((short[]) counts)[index] & MAX_UNSIGNED_SHORT;
+      case INT:
+        return ((int[]) counts)[index] & MAX_UNSIGNED_INT;
+      case LONG:
+        return ((long[]) counts)[index];
+      default:
+        throw new IllegalStateException("The counters are not integers.");
+    }
+  }
+
+  private static void setLong(Object counts, int width, int index, long count) {
+    switch (width) {
+      case BYTE:
+        ((byte[]) counts)[index] = (byte) count;
+        break;
+      case SHORT:
+        ((short[]) counts)[index] = (short) count;
+        break;
+      case INT:
+        ((int[]) counts)[index] = (int) count;
+        break;
+      case LONG:
+        ((long[]) counts)[index] = count;
+        break;
+      default:
+        throw new IllegalStateException("The counters are not integers.");
+    }
+  }
+
+  private static Object newArray(int width, int length) {
+    switch (width) {
+      case BYTE:
+        return new byte[length];
+      case SHORT:
+        return new short[length];
+      case INT:
+        return new int[length];
+      case LONG:
+        return new long[length];
+      default:
+        return new double[length];
+    }
+  }
+
+  @Override
+  void reallocate(int newLength, int from, int newFrom, int length) {
+    final Object newCounts = newArray(width, newLength);
+    if (counts != null) {
+      System.arraycopy(counts, from, newCounts, newFrom, length);
+    }
+    counts = newCounts;
+  }
+
+  @Override
+  CountArray copy(int newLength, int from, int newFrom, int length) {
+    final CompactCountArray copy = new CompactCountArray();
+    copy.width = width;
+    if (newLength > 0) {
+      copy.counts = newArray(width, newLength);
+      System.arraycopy(counts, from, copy.counts, newFrom, length);
+    }
+    return copy;
+  }
+
+  @Override
+  void release() {
+    counts = null;
+    width = BYTE;
+  }
+
+  @Override
+  void reset(int from, int to) {
+    if (counts == null) {
+      return;
+    }
+    switch (width) {
+      case BYTE:
+        Arrays.fill((byte[]) counts, from, to, (byte) 0);
+        break;
+      case SHORT:
+        Arrays.fill((short[]) counts, from, to, (short) 0);
+        break;
+      case INT:
+        Arrays.fill((int[]) counts, from, to, 0);
+        break;
+      case LONG:
+        Arrays.fill((long[]) counts, from, to, 0L);
+        break;
+      default:
+        Arrays.fill((double[]) counts, from, to, 0D);
+    }
+  }
+
+  @Override
+  void move(int from, int to, int length) {
+    System.arraycopy(counts, from, counts, to, length);
+  }
+
+  @Override
+  void scale(int from, int to, double factor) {
+    widen(DOUBLE);
+    final double[] doubleCounts = (double[]) counts;
+    for (int i = from; i < to; i++) {
+      doubleCounts[i] *= factor;
+    }
+  }
+}
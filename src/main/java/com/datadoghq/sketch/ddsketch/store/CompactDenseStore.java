@@ -0,0 +1,45 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+/**
+ * An unbounded dense store, similar to {@link UnboundedSizeDenseStore}, that adapts the width of
+ * its counters to the counts that it holds.
+ *
+ * <p>As long as counts are integers, they are held in an array of unsigned {@code byte}s. When a
+ * counter overflows, the array is replaced with a wider one, of unsigned {@code short}s, unsigned
+ * {@code int}s, then {@code long}s, to which the counters are copied. The counters are only held in
+ * an array of {@code double}s if a count that is not an integer is added, if the store is scaled,
+ * or if a counter overflows as a {@code long}. Counters never get narrower, unless the store is
+ * {@link #release() released}.
+ *
+ * <p>Given that most bins of a sketch usually hold small counts, this store typically takes up 4
+ * to 8 times less memory than {@link UnboundedSizeDenseStore}, at the cost of slightly slower
+ * insertions.
+ */
+public final class CompactDenseStore extends UnboundedSizeDenseStore {
+
+  public CompactDenseStore() {
+    super(new CompactCountArray());
+  }
+
+  public CompactDenseStore(int arrayLengthGrowthIncrement) {
+    super(arrayLengthGrowthIncrement, new CompactCountArray());
+  }
+
+  public CompactDenseStore(int arrayLengthGrowthIncrement, int arrayLengthOverhead) {
+    super(arrayLengthGrowthIncrement, arrayLengthOverhead, new CompactCountArray());
+  }
+
+  private CompactDenseStore(CompactDenseStore store) {
+    super(store);
+  }
+
+  @Override
+  public Store copy() {
+    return new CompactDenseStore(this);
+  }
+}
@@ -0,0 +1,85 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import com.datadoghq.sketch.ddsketch.Serializer;
+
+/**
+ * The array of counters of a {@link DenseStore} that does not hold them in a {@code double[]} on
+ * the heap, be it because they are held off-heap (see {@link OffHeapCountArray}) or in narrower
+ * integers (see {@link CompactCountArray}). Such a store shares the logic that maps bins to
+ * counters, extends, shifts and collapses the range of indices and encodes the store with the
+ * stores that hold their counters in a {@code double[]}, and only differs in how it accesses them.
+ *
+ * <p>Counters are all zero when allocated. The bulk operations are implemented in terms of {@link
+ * #get} and {@link #set}, and can be overridden by implementations that can do better.
+ */
+abstract class CountArray {
+
+  /** @return the number of counters, which is zero if none have been allocated */
+  abstract int length();
+
+  abstract double get(int index);
+
+  abstract void set(int index, double count);
+
+  abstract void add(int index, double count);
+
+  /**
+   * Replaces the counters with {@code newLength} new ones, then copies {@code length} counters,
+   * starting at {@code from} in the previous ones, to the new ones, starting at {@code newFrom}.
+   * The previous counters are released.
+   */
+  abstract void reallocate(int newLength, int from, int newFrom, int length);
+
+  /**
+   * Returns a new array of counters that is held in the same way as this one, after copying to it
+   * {@code length} counters, starting at {@code from} in this array, starting at {@code newFrom}.
+   */
+  abstract CountArray copy(int newLength, int from, int newFrom, int length);
+
+  /** Releases the counters, after which the length of the array is zero. */
+  abstract void release();
+
+  /** Sets to zero the counters from {@code from} (inclusive) to {@code to} (exclusive). */
+  void reset(int from, int to) {
+    for (int i = from; i < to; i++) {
+      set(i, 0);
+    }
+  }
+
+  /**
+   * Moves {@code length} counters, starting at {@code from}, to start at {@code to}, as {@link
+   * System#arraycopy} would.
+   */
+  void move(int from, int to, int length) {
+    if (to < from) {
+      for (int i = 0; i < length; i++) {
+        set(to + i, get(from + i));
+      }
+    } else {
+      for (int i = length - 1; i >= 0; i--) {
+        set(to + i, get(from + i));
+      }
+    }
+  }
+
+  /** Multiplies the counters from {@code from} (inclusive) to {@code to} (exclusive). */
+  void scale(int from, int to, double factor) {
+    for (int i = from; i < to; i++) {
+      set(i, get(i) * factor);
+    }
+  }
+
+  /** Writes {@code length} counters, starting at {@code from}, as a packed array of doubles. */
+  void write(Serializer serializer, int fieldIndex, int from, int length) {
+    final double[] array = new double[length];
+    for (int i = 0; i < length; i++) {
+      array[i] = get(from + i);
+    }
+    serializer.writeCompactArray(fieldIndex, array, 0, length);
+  }
+}
@@ -0,0 +1,108 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link StoreAllocator} that recycles the arrays of counts that stores release, so that they can
+ * be reused by other stores instead of being garbage-collected. This is useful when many
+ * short-lived sketches are created, for instance one per interval or per series.
+ *
+ * <p>Arrays are pooled by size class, each size class holding arrays of a given length. Stores that
+ * share a pool should therefore be built with the same parameters: {@link DenseStore}s only
+ * allocate arrays whose lengths are multiples of their growth increment (or their maximum number of
+ * bins, for collapsing stores), and {@link PaginatedStore}s only allocate pages of a fixed length.
+ * Stores release their arrays to the pool when they grow and when they are explicitly released
+ * (see {@link Store#release()} and {@link com.datadoghq.sketch.ddsketch.DDSketch#release()}).
+ * Clearing a store keeps its arrays, so that it does not need to allocate them again.
+ *
+ * <p>The pool holds at most a configurable number of bytes. Arrays that are released when the pool
+ * is full are left to the garbage collector.
+ */
+public final class CountArrayPool implements StoreAllocator {
+
+  private static final long DEFAULT_MAX_POOLED_BYTES = 64L << 20;
+
+  private final long maxPooledBytes;
+  private final Map<Integer, ArrayDeque<double[]>> sizeClasses = new HashMap<>();
+  private long pooledBytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+
+  public CountArrayPool() {
+    this(DEFAULT_MAX_POOLED_BYTES);
+  }
+
+  /** @param maxPooledBytes the maximum number of bytes of arrays that the pool can hold */
+  public CountArrayPool(long maxPooledBytes) {
+    if (maxPooledBytes < 0) {
+      throw new IllegalArgumentException("The maximum number of pooled bytes cannot be negative.");
+    }
+    this.maxPooledBytes = maxPooledBytes;
+  }
+
+  @Override
+  public double[] allocate(int length) {
+    final double[] array;
+    synchronized (this) {
+      final ArrayDeque<double[]> arrays = sizeClasses.get(length);
+      if (arrays == null || arrays.isEmpty()) {
+        misses++;
+        array = null;
+      } else {
+        hits++;
+        pooledBytes -= sizeOf(length);
+        array = arrays.pop();
+      }
+    }
+    if (array == null) {
+      return new double[length];
+    }
+    // Zero the array when handing it out rather than when pooling it, so that arrays that are not
+    // pooled are not zeroed, and outside of the lock, as the array is no longer shared.
+    Arrays.fill(array, 0D);
+    return array;
+  }
+
+  @Override
+  public synchronized void release(double[] array) {
+    final long size = sizeOf(array.length);
+    if (pooledBytes + size > maxPooledBytes) {
+      return;
+    }
+    sizeClasses.computeIfAbsent(array.length, length -> new ArrayDeque<>()).push(array);
+    pooledBytes += size;
+  }
+
+  private static long sizeOf(int length) {
+    return (long) length * Double.BYTES;
+  }
+
+  /** @return the number of allocations that have been served with a pooled array */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** @return the number of allocations that have required a new array */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /** @return the number of bytes of the arrays that are currently pooled */
+  public synchronized long getPooledBytes() {
+    return pooledBytes;
+  }
+
+  /** Drops the pooled arrays, leaving them to the garbage collector. */
+  public synchronized void clear() {
+    sizeClasses.clear();
+    pooledBytes = 0;
+  }
+}
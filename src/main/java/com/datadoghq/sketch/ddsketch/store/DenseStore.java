@@ -8,12 +8,15 @@ package com.datadoghq.sketch.ddsketch.store;
 import com.datadoghq.sketch.ddsketch.Serializer;
 import com.datadoghq.sketch.ddsketch.encoding.BinEncodingMode;
 import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.Input;
 import com.datadoghq.sketch.ddsketch.encoding.Output;
 import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -21,32 +24,91 @@ public abstract class DenseStore implements Store {
 
   private static final int DEFAULT_ARRAY_LENGTH_GROWTH_INCREMENT = 64;
   private static final double DEFAULT_ARRAY_LENGTH_OVERHEAD_RATIO = 0.1;
+  private static final int RANK_BLOCK_SHIFT = 6;
+  private static final int RANK_BLOCK_LENGTH = 1 << RANK_BLOCK_SHIFT;
 
   private final int arrayLengthGrowthIncrement;
   private final int arrayLengthOverhead;
+  private final StoreAllocator allocator;
 
+  // The counters of the bins, the counter of index i being held at index i - offset of the array.
+  // Off-heap and compact stores hold them in countArray instead, which is null for the other
+  // stores, so that the accesses of the latter, which go through final methods, remain plain array
+  // accesses once inlined.
   double[] counts;
+  final CountArray countArray;
   int offset;
   int minIndex;
   int maxIndex;
+  // The sum of the counts of the bins, which is maintained as the store is updated.
+  double totalCount;
+
+  // The cumulative counts of the blocks of RANK_BLOCK_LENGTH bins that start at minIndex (resp. end
+  // at maxIndex), which are lazily computed to answer rank queries if enabled, and ignored once
+  // stale, that is, once the version of the store has changed. Updates only bump the version if
+  // enabled. Queries only ever publish a fully built index with a single write, so that concurrent
+  // queries can safely share them.
+  private boolean rankIndexEnabled = false;
+  private long version = 0;
+  private RankIndex ascendingRankIndex;
+  private RankIndex descendingRankIndex;
 
   DenseStore() {
     this(DEFAULT_ARRAY_LENGTH_GROWTH_INCREMENT);
   }
 
+  DenseStore(StoreAllocator allocator) {
+    this(
+        DEFAULT_ARRAY_LENGTH_GROWTH_INCREMENT,
+        (int) (DEFAULT_ARRAY_LENGTH_GROWTH_INCREMENT * DEFAULT_ARRAY_LENGTH_OVERHEAD_RATIO),
+        allocator);
+  }
+
+  DenseStore(CountArray countArray) {
+    this(
+        DEFAULT_ARRAY_LENGTH_GROWTH_INCREMENT,
+        (int) (DEFAULT_ARRAY_LENGTH_GROWTH_INCREMENT * DEFAULT_ARRAY_LENGTH_OVERHEAD_RATIO),
+        countArray);
+  }
+
   DenseStore(int arrayLengthGrowthIncrement) {
     this(
         arrayLengthGrowthIncrement,
         (int) (arrayLengthGrowthIncrement * DEFAULT_ARRAY_LENGTH_OVERHEAD_RATIO));
   }
 
+  DenseStore(int arrayLengthGrowthIncrement, CountArray countArray) {
+    this(
+        arrayLengthGrowthIncrement,
+        (int) (arrayLengthGrowthIncrement * DEFAULT_ARRAY_LENGTH_OVERHEAD_RATIO),
+        countArray);
+  }
+
   DenseStore(int arrayLengthGrowthIncrement, int arrayLengthOverhead) {
+    this(arrayLengthGrowthIncrement, arrayLengthOverhead, StoreAllocator.heap());
+  }
+
+  DenseStore(int arrayLengthGrowthIncrement, int arrayLengthOverhead, StoreAllocator allocator) {
+    this(arrayLengthGrowthIncrement, arrayLengthOverhead, Objects.requireNonNull(allocator), null);
+  }
+
+  DenseStore(int arrayLengthGrowthIncrement, int arrayLengthOverhead, CountArray countArray) {
+    this(arrayLengthGrowthIncrement, arrayLengthOverhead, null, Objects.requireNonNull(countArray));
+  }
+
+  private DenseStore(
+      int arrayLengthGrowthIncrement,
+      int arrayLengthOverhead,
+      StoreAllocator allocator,
+      CountArray countArray) {
     if (arrayLengthGrowthIncrement <= 0 || arrayLengthOverhead < 0) {
       throw new IllegalArgumentException("The array growth parameters are not valid.");
     }
     this.arrayLengthGrowthIncrement = arrayLengthGrowthIncrement;
     this.arrayLengthOverhead = arrayLengthOverhead;
+    this.allocator = allocator;
     this.counts = null;
+    this.countArray = countArray;
     this.offset = 0;
     this.minIndex = Integer.MAX_VALUE;
     this.maxIndex = Integer.MIN_VALUE;
@@ -55,23 +117,125 @@ public abstract class DenseStore implements Store {
   DenseStore(DenseStore store) {
     this.arrayLengthGrowthIncrement = store.arrayLengthGrowthIncrement;
     this.arrayLengthOverhead = store.arrayLengthOverhead;
+    this.allocator = store.allocator;
     this.minIndex = store.minIndex;
     this.maxIndex = store.maxIndex;
-    if (store.counts != null && !store.isEmpty()) {
+    this.totalCount = store.totalCount;
+    this.rankIndexEnabled = store.rankIndexEnabled;
+    final int length = store.maxIndex - store.minIndex + 1;
+    if (null != store.countArray) {
+      this.counts = null;
+      if (!store.isEmpty()) {
+        this.countArray = store.countArray.copy(length, store.minIndex - store.offset, 0, length);
+        this.offset = store.minIndex;
+      } else {
+        this.countArray = store.countArray.copy(0, 0, 0, 0);
+        this.offset = store.offset;
+      }
+    } else if (store.counts != null && !store.isEmpty() && !allocator.isRecycling()) {
+      this.countArray = null;
       this.counts =
           Arrays.copyOfRange(
               store.counts, store.minIndex - store.offset, store.maxIndex - store.offset + 1);
       this.offset = store.minIndex;
+    } else if (store.counts != null && !store.isEmpty()) {
+      this.countArray = null;
+      // Keep the length of the array, which is one of the lengths that the allocator serves.
+      this.counts = allocator.allocate(store.counts.length);
+      System.arraycopy(
+          store.counts,
+          store.minIndex - store.offset,
+          counts,
+          store.minIndex - store.offset,
+          store.maxIndex - store.minIndex + 1);
+      this.offset = store.offset;
     } else {
+      this.countArray = null;
+      this.counts = null;
       // should be zero anyway, but just in case
       this.offset = store.offset;
     }
   }
 
+  /** @return the number of counters, which is zero if none have been allocated */
+  final int getArrayLength() {
+    if (null == countArray) {
+      return null == counts ? 0 : counts.length;
+    }
+    return countArray.length();
+  }
+
+  /** @return the counter at the specified index of the array */
+  final double getCount(int arrayIndex) {
+    return null == countArray ? counts[arrayIndex] : countArray.get(arrayIndex);
+  }
+
+  final void setCount(int arrayIndex, double count) {
+    if (null == countArray) {
+      counts[arrayIndex] = count;
+    } else {
+      countArray.set(arrayIndex, count);
+    }
+  }
+
+  final void addToCount(int arrayIndex, double count) {
+    if (null == countArray) {
+      counts[arrayIndex] += count;
+    } else {
+      countArray.add(arrayIndex, count);
+    }
+  }
+
+  /**
+   * Adds {@code length} counters of another store, starting at {@code storeArrayIndex} in its
+   * array, to the counters of this store, starting at {@code arrayIndex}.
+   */
+  final void addCounts(int arrayIndex, DenseStore store, int storeArrayIndex, int length) {
+    if (null == countArray && null == store.countArray) {
+      // A single pass over the arrays, which the JIT compiler can vectorize.
+      for (int i = 0; i < length; i++) {
+        counts[arrayIndex + i] += store.counts[storeArrayIndex + i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        addToCount(arrayIndex + i, store.getCount(storeArrayIndex + i));
+      }
+    }
+  }
+
+  /**
+   * Replaces the array of counters with a new one of the specified length, then copies {@code
+   * length} counters, starting at {@code from} in the previous array, to the new one, starting at
+   * {@code newFrom}.
+   */
+  private void reallocateCounts(int newLength, int from, int newFrom, int length) {
+    if (null != countArray) {
+      countArray.reallocate(newLength, from, newFrom, length);
+      return;
+    }
+    final double[] newCounts = allocator.allocate(newLength);
+    if (null != counts) {
+      System.arraycopy(counts, from, newCounts, newFrom, length);
+      allocator.release(counts);
+    }
+    counts = newCounts;
+  }
+
+  /** Sets to zero the counters from {@code from} (inclusive) to {@code to} (exclusive). */
+  private void resetArrayCounts(int from, int to) {
+    if (null != countArray) {
+      countArray.reset(from, to);
+    } else if (null != counts) {
+      Arrays.fill(counts, from, to, 0);
+    }
+  }
+
   @Override
   public void add(int index) {
+    invalidateRankIndex();
     final int arrayIndex = normalize(index);
-    counts[arrayIndex]++;
+    addToCount(arrayIndex, 1);
+    totalCount++;
   }
 
   @Override
@@ -82,8 +246,10 @@ public abstract class DenseStore implements Store {
     if (count == 0) {
       return;
     }
+    invalidateRankIndex();
     final int arrayIndex = normalize(index);
-    counts[arrayIndex] += count;
+    addToCount(arrayIndex, count);
+    totalCount += count;
   }
 
   @Override
@@ -91,18 +257,390 @@ public abstract class DenseStore implements Store {
     if (bin.getCount() == 0) {
       return;
     }
+    invalidateRankIndex();
     final int arrayIndex = normalize(bin.getIndex());
-    counts[arrayIndex] += bin.getCount();
+    addToCount(arrayIndex, bin.getCount());
+    totalCount += bin.getCount();
+  }
+
+  @Override
+  public void add(int[] indexes, int from, int to) {
+    if (from < 0 || from > to || to > indexes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (from == to) {
+      return;
+    }
+    invalidateRankIndex();
+
+    int minBatchIndex = Integer.MAX_VALUE;
+    int maxBatchIndex = Integer.MIN_VALUE;
+    for (int i = from; i < to; i++) {
+      final int index = indexes[i];
+      minBatchIndex = Math.min(minBatchIndex, index);
+      maxBatchIndex = Math.max(maxBatchIndex, index);
+    }
+
+    // Normalize the store for the extreme indexes of the batch, as adding them one by one would, so
+    // that the loop below mostly updates counters that are already allocated.
+    normalize(minBatchIndex);
+    normalize(maxBatchIndex);
+
+    for (int i = from; i < to; i++) {
+      final int index = indexes[i];
+      if (index >= minIndex && index <= maxIndex) {
+        addToCount(index - offset, 1);
+      } else {
+        // The index has been collapsed.
+        addToCount(normalize(index), 1);
+      }
+    }
+    totalCount += to - from;
+  }
+
+  @Override
+  public void add(int index, DoubleBuffer contiguousCounts) {
+    final int from = contiguousCounts.position();
+    final int to = contiguousCounts.limit();
+    // Check the counts before updating the store, and skip the leading and trailing zero counts.
+    int first = -1;
+    int last = -1;
+    double addedCount = 0;
+    for (int i = from; i < to; i++) {
+      final double count = contiguousCounts.get(i);
+      if (count < 0) {
+        throw new IllegalArgumentException("The count cannot be negative.");
+      }
+      if (count != 0) {
+        if (first < 0) {
+          first = i;
+        }
+        last = i;
+        addedCount += count;
+      }
+    }
+    contiguousCounts.position(to);
+    if (first < 0) {
+      return;
+    }
+    invalidateRankIndex();
+
+    final int firstIndex = index + (first - from);
+    final int lastIndex = index + (last - from);
+    normalize(firstIndex);
+    normalize(lastIndex);
+
+    if (firstIndex >= minIndex && lastIndex <= maxIndex) {
+      final int arrayOffset = firstIndex - offset - first;
+      for (int i = first; i <= last; i++) {
+        addToCount(arrayOffset + i, contiguousCounts.get(i));
+      }
+    } else {
+      // Some of the indexes have been collapsed.
+      for (int i = first; i <= last; i++) {
+        final double count = contiguousCounts.get(i);
+        if (count != 0) {
+          addToCount(normalize(index + (i - from)), count);
+        }
+      }
+    }
+    totalCount += addedCount;
+  }
+
+  @Override
+  public void decodeAndMergeWith(Input input, BinEncodingMode encodingMode) throws IOException {
+    if (encodingMode != BinEncodingMode.CONTIGUOUS_COUNTS) {
+      Store.super.decodeAndMergeWith(input, encodingMode);
+      return;
+    }
+    final long numBins = VarEncodingHelper.decodeUnsignedVarLong(input);
+    long index = VarEncodingHelper.decodeSignedVarLong(input);
+    final long indexDelta = VarEncodingHelper.decodeSignedVarLong(input);
+    if (indexDelta != 1) {
+      for (long i = 0; i != numBins; i++, index += indexDelta) {
+        add(Math.toIntExact(index), VarEncodingHelper.decodeVarDouble(input));
+      }
+      return;
+    }
+
+    // Skip the leading zero counts, so as not to extend the range to bins that remain empty.
+    long i = 0;
+    double count = 0;
+    while (i != numBins && (count = VarEncodingHelper.decodeVarDouble(input)) == 0) {
+      i++;
+    }
+    if (i == numBins) {
+      return;
+    }
+    if (count < 0) {
+      throw new IllegalArgumentException("The count cannot be negative.");
+    }
+    invalidateRankIndex();
+
+    final int firstIndex = Math.toIntExact(index + i);
+    final int lastIndex = Math.toIntExact(index + numBins - 1);
+    normalize(firstIndex);
+
+    if (firstIndex >= minIndex
+        && (lastIndex <= maxIndex || canExtendRangeWithoutCollapsing(minIndex, lastIndex))) {
+      // Extend the range once for the whole block, then decode the counts in place.
+      normalize(lastIndex);
+      int arrayIndex = firstIndex - offset;
+      addToCount(arrayIndex, count);
+      totalCount += count;
+      while (++i != numBins) {
+        count = VarEncodingHelper.decodeVarDouble(input);
+        if (count < 0) {
+          throw new IllegalArgumentException("The count cannot be negative.");
+        }
+        addToCount(++arrayIndex, count);
+        totalCount += count;
+      }
+      // Encoded blocks normally end with a non-zero count, but if they do not, restore the
+      // invariant that the bin at maxIndex is not empty.
+      while (maxIndex > minIndex && getCount(maxIndex - offset) == 0) {
+        maxIndex--;
+      }
+    } else {
+      // Some of the indexes are collapsed, which depends on the trailing zero counts, if any.
+      int currentIndex = firstIndex;
+      addToCount(normalize(currentIndex), count);
+      totalCount += count;
+      while (++i != numBins) {
+        currentIndex++;
+        count = VarEncodingHelper.decodeVarDouble(input);
+        if (count < 0) {
+          throw new IllegalArgumentException("The count cannot be negative.");
+        }
+        if (count != 0) {
+          addToCount(normalize(currentIndex), count);
+          totalCount += count;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void scale(double factor) {
+    if (!(factor > 0) || factor == Double.POSITIVE_INFINITY) {
+      throw new IllegalArgumentException("The scaling factor must be positive and finite.");
+    }
+    if (isEmpty()) {
+      return;
+    }
+    invalidateRankIndex();
+    if (null == countArray) {
+      // A single pass over the counts, which the JIT compiler can vectorize.
+      final int toArrayIndex = maxIndex - offset;
+      for (int arrayIndex = minIndex - offset; arrayIndex <= toArrayIndex; arrayIndex++) {
+        counts[arrayIndex] *= factor;
+      }
+    } else {
+      countArray.scale(minIndex - offset, maxIndex - offset + 1, factor);
+    }
+    totalCount *= factor;
+    if (factor < 1) {
+      // Some counts may have underflowed to zero.
+      trimRange();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The range of this store is extended once to the union of the ranges of the stores, which
+   * collapses bins at most once if this store collapses bins, and the counts of the stores are then
+   * added in a single pass over each of them, array to array for dense stores.
+   */
+  @Override
+  public void mergeWith(Store... stores) {
+    int newMinIndex = Integer.MAX_VALUE;
+    int newMaxIndex = Integer.MIN_VALUE;
+    for (final Store store : stores) {
+      if (store == this) {
+        // The counts that this store holds when merged depend on the stores merged before it.
+        Store.super.mergeWith(stores);
+        return;
+      }
+      if (!store.isEmpty()) {
+        newMinIndex = Math.min(newMinIndex, store.getMinIndex());
+        newMaxIndex = Math.max(newMaxIndex, store.getMaxIndex());
+      }
+    }
+    if (newMinIndex > newMaxIndex) {
+      return;
+    }
+
+    invalidateRankIndex();
+
+    if (canExtendRangeWithoutCollapsing(newMinIndex, newMaxIndex)) {
+      if (newMinIndex < minIndex || newMaxIndex > maxIndex) {
+        extendRange(newMinIndex, newMaxIndex);
+      }
+    } else {
+      // Collapse bins by extending the range one side at a time, as adding bins would.
+      if (newMinIndex < minIndex) {
+        extendRange(newMinIndex);
+      }
+      if (newMaxIndex > maxIndex) {
+        extendRange(newMaxIndex);
+      }
+    }
+
+    for (final Store store : stores) {
+      if (store.isEmpty()) {
+        continue;
+      }
+      if (store instanceof DenseStore) {
+        addCounts((DenseStore) store);
+      } else {
+        store.forEach(this::addToRange);
+      }
+    }
+  }
+
+  /** Adds the counts of a store whose range is within the range of this one, unless collapsed. */
+  private void addCounts(DenseStore store) {
+    // Indexes below minIndex or above maxIndex can only be collapsed ones.
+    for (long index = store.minIndex; index < minIndex && index <= store.maxIndex; index++) {
+      addCollapsed((int) index, store.getCount((int) index - store.offset));
+    }
+    final int fromIndex = Math.max(store.minIndex, minIndex);
+    final int toIndex = Math.min(store.maxIndex, maxIndex);
+    if (fromIndex <= toIndex) {
+      addCounts(fromIndex - offset, store, fromIndex - store.offset, toIndex - fromIndex + 1);
+    }
+    for (long index = Math.max(store.minIndex, (long) maxIndex + 1);
+        index <= store.maxIndex;
+        index++) {
+      addCollapsed((int) index, store.getCount((int) index - store.offset));
+    }
+    totalCount += store.totalCount;
+  }
+
+  private void addToRange(int index, double count) {
+    if (index >= minIndex && index <= maxIndex) {
+      addToCount(index - offset, count);
+    } else {
+      addCollapsed(index, count);
+    }
+    totalCount += count;
+  }
+
+  private void addCollapsed(int index, double count) {
+    if (count != 0) {
+      addToCount(normalize(index), count);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The array of counts is grown and the counts are shifted at most once so that the specified
+   * range fits in the array, unless that would require collapsing bins, in which case collapsing
+   * is left to the additions.
+   */
+  @Override
+  public void reserve(int minIndex, int maxIndex) {
+    final int newMinIndex = Math.min(minIndex, this.minIndex);
+    final int newMaxIndex = Math.max(maxIndex, this.maxIndex);
+    if (newMinIndex > newMaxIndex
+        || (newMinIndex >= offset && newMaxIndex < (long) offset + getArrayLength())
+        || !canExtendRangeWithoutCollapsing(newMinIndex, newMaxIndex)) {
+      return;
+    }
+    final int newLength = Math.toIntExact(getNewLength(newMinIndex, newMaxIndex));
+    final int middleIndex = (int) (newMinIndex + ((long) newMaxIndex - newMinIndex + 1) / 2);
+    if (newLength > getArrayLength()) {
+      final int newOffset = middleIndex - newLength / 2;
+      if (isEmpty()) {
+        reallocateCounts(newLength, 0, 0, 0);
+      } else {
+        reallocateCounts(
+            newLength,
+            this.minIndex - offset,
+            this.minIndex - newOffset,
+            this.maxIndex - this.minIndex + 1);
+      }
+      offset = newOffset;
+    } else if (isEmpty()) {
+      offset = middleIndex - getArrayLength() / 2;
+    } else {
+      shiftCounts(offset + getArrayLength() / 2 - middleIndex);
+    }
+  }
+
+  /**
+   * Shrinks the range of indices, if necessary, so that the bins at minIndex and maxIndex are not
+   * empty, after counts have been removed.
+   */
+  void trimRange() {
+    while (minIndex < maxIndex && getCount(minIndex - offset) == 0) {
+      minIndex++;
+    }
+    while (maxIndex > minIndex && getCount(maxIndex - offset) == 0) {
+      maxIndex--;
+    }
+    if (getCount(minIndex - offset) == 0) {
+      minIndex = Integer.MAX_VALUE;
+      maxIndex = Integer.MIN_VALUE;
+      totalCount = 0;
+    }
   }
 
   @Override
   public void clear() {
-    if (null != counts) {
-      Arrays.fill(counts, 0D);
+    invalidateRankIndex();
+    // Keep the array, so that it does not need to be allocated again.
+    resetArrayCounts(0, getArrayLength());
+    maxIndex = Integer.MIN_VALUE;
+    minIndex = Integer.MAX_VALUE;
+    offset = 0;
+    totalCount = 0;
+  }
+
+  /**
+   * Clears the store and hands its array of counts back to the allocator it has been obtained
+   * from, unlike {@link #clear()}, which keeps it. The store can still be used afterwards, in which
+   * case it allocates a new array.
+   */
+  @Override
+  public void release() {
+    invalidateRankIndex();
+    // The counts do not need to be zeroed, as allocators only hand out arrays of zeros.
+    if (null != countArray) {
+      countArray.release();
+    } else if (null != counts) {
+      allocator.release(counts);
+      counts = null;
     }
     maxIndex = Integer.MIN_VALUE;
     minIndex = Integer.MAX_VALUE;
     offset = 0;
+    totalCount = 0;
+  }
+
+  /**
+   * Makes rank queries, hence quantile queries, maintain and use cumulative counts of blocks of
+   * bins. The first query after an update computes them in linear time, after which queries run in
+   * logarithmic time until the next update. This is worth it for stores that are queried for
+   * multiple ranks between updates. Otherwise, rank queries scan the counters and updates do not
+   * pay for the staleness tracking.
+   *
+   * @return this store
+   */
+  public DenseStore enableRankIndex() {
+    rankIndexEnabled = true;
+    // Any index that has been computed before has not been kept up to date.
+    version++;
+    return this;
+  }
+
+  /** Discards the cumulative counts that speed up rank queries. Must be called on update. */
+  void invalidateRankIndex() {
+    if (rankIndexEnabled) {
+      version++;
+    }
   }
 
   /**
@@ -122,6 +660,18 @@ public abstract class DenseStore implements Store {
    */
   abstract void adjust(int newMinIndex, int newMaxIndex);
 
+  /**
+   * Returns whether the range of the store can be extended to the specified indexes without
+   * collapsing any of its bins.
+   *
+   * @param newMinIndex the minimum index to be stored
+   * @param newMaxIndex the maximum index to be stored
+   * @return whether the range can be extended without collapsing bins
+   */
+  boolean canExtendRangeWithoutCollapsing(int newMinIndex, int newMaxIndex) {
+    return true;
+  }
+
   void extendRange(int index) {
     extendRange(index, index);
   }
@@ -134,15 +684,15 @@ public abstract class DenseStore implements Store {
     if (isEmpty()) {
 
       final int initialLength = Math.toIntExact(getNewLength(newMinIndex, newMaxIndex));
-      if (null == counts || initialLength >= counts.length) {
-        counts = new double[initialLength];
+      if (initialLength >= getArrayLength()) {
+        reallocateCounts(initialLength, 0, 0, 0);
       }
       offset = newMinIndex;
       minIndex = newMinIndex;
       maxIndex = newMaxIndex;
       adjust(newMinIndex, newMaxIndex);
 
-    } else if (newMinIndex >= offset && newMaxIndex < (long) offset + counts.length) {
+    } else if (newMinIndex >= offset && newMaxIndex < (long) offset + getArrayLength()) {
 
       minIndex = newMinIndex;
       maxIndex = newMaxIndex;
@@ -153,8 +703,9 @@ public abstract class DenseStore implements Store {
       // we actually reach the capacity.
 
       final int newLength = Math.toIntExact(getNewLength(newMinIndex, newMaxIndex));
-      if (newLength > counts.length) {
-        counts = Arrays.copyOf(counts, newLength);
+      final int length = getArrayLength();
+      if (newLength > length) {
+        reallocateCounts(newLength, 0, 0, length);
       }
 
       adjust(newMinIndex, newMaxIndex);
@@ -166,13 +717,17 @@ public abstract class DenseStore implements Store {
     final int minArrayIndex = minIndex - offset;
     final int maxArrayIndex = maxIndex - offset;
 
-    System.arraycopy(
-        counts, minArrayIndex, counts, minArrayIndex + shift, maxArrayIndex - minArrayIndex + 1);
+    if (null == countArray) {
+      System.arraycopy(
+          counts, minArrayIndex, counts, minArrayIndex + shift, maxArrayIndex - minArrayIndex + 1);
+    } else {
+      countArray.move(minArrayIndex, minArrayIndex + shift, maxArrayIndex - minArrayIndex + 1);
+    }
 
     if (shift > 0) {
-      Arrays.fill(counts, minArrayIndex, minArrayIndex + shift, 0);
+      resetArrayCounts(minArrayIndex, minArrayIndex + shift);
     } else {
-      Arrays.fill(counts, maxArrayIndex + 1 + shift, maxArrayIndex + 1, 0);
+      resetArrayCounts(maxArrayIndex + 1 + shift, maxArrayIndex + 1);
     }
 
     offset -= shift;
@@ -181,7 +736,7 @@ public abstract class DenseStore implements Store {
   void centerCounts(int newMinIndex, int newMaxIndex) {
 
     final int middleIndex = newMinIndex + (newMaxIndex - newMinIndex + 1) / 2;
-    shiftCounts(offset + counts.length / 2 - middleIndex);
+    shiftCounts(offset + getArrayLength() / 2 - middleIndex);
 
     minIndex = newMinIndex;
     maxIndex = newMaxIndex;
@@ -192,7 +747,7 @@ public abstract class DenseStore implements Store {
   }
 
   void resetCounts(int fromIndex, int toIndex) {
-    Arrays.fill(counts, fromIndex - offset, toIndex - offset + 1, 0);
+    resetArrayCounts(fromIndex - offset, toIndex - offset + 1);
   }
 
   @Override
@@ -224,7 +779,7 @@ public abstract class DenseStore implements Store {
 
   @Override
   public double getTotalCount() {
-    return getTotalCount(minIndex, maxIndex);
+    return totalCount;
   }
 
   double getTotalCount(int fromIndex, int toIndex) {
@@ -234,28 +789,168 @@ public abstract class DenseStore implements Store {
     }
 
     final int fromArrayIndex = Math.max(fromIndex - offset, 0);
-    final int toArrayIndex = Math.min(toIndex - offset, counts.length - 1);
+    final int toArrayIndex = Math.min(toIndex - offset, getArrayLength() - 1);
 
     double totalCount = 0;
     for (int arrayIndex = fromArrayIndex; arrayIndex <= toArrayIndex; arrayIndex++) {
-      totalCount += counts[arrayIndex];
+      totalCount += getCount(arrayIndex);
     }
 
     return totalCount;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If {@link #enableRankIndex() enabled}, the first call after an update computes the
+   * cumulative counts of blocks of bins, in linear time. Subsequent calls binary search the blocks
+   * and only scan the counts of one of them. Otherwise, calls scan the counts. Calls do not
+   * otherwise modify the store, so that they can be made concurrently by multiple threads, as long
+   * as the store is not updated at the same time.
+   */
+  @Override
+  public int getAscendingIndexAtRank(double rank) {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    final int minArrayIndex = minIndex - offset;
+    final int maxArrayIndex = maxIndex - offset;
+    double n = 0;
+    int from = minArrayIndex;
+    int to = maxArrayIndex;
+    if (rankIndexEnabled) {
+      RankIndex rankIndex = ascendingRankIndex;
+      if (null == rankIndex || rankIndex.version != version) {
+        final int numBlocks = (int) (((long) maxIndex - minIndex) >> RANK_BLOCK_SHIFT) + 1;
+        final double[] cumulativeCounts = new double[numBlocks + 1];
+        double cumulativeCount = 0;
+        for (int block = 0; block < numBlocks; block++) {
+          cumulativeCounts[block] = cumulativeCount;
+          final int blockFrom = minArrayIndex + (block << RANK_BLOCK_SHIFT);
+          final int blockTo = Math.min(blockFrom + RANK_BLOCK_LENGTH - 1, maxArrayIndex);
+          for (int arrayIndex = blockFrom; arrayIndex <= blockTo; arrayIndex++) {
+            cumulativeCount += getCount(arrayIndex);
+          }
+        }
+        cumulativeCounts[numBlocks] = cumulativeCount;
+        ascendingRankIndex = rankIndex = new RankIndex(version, cumulativeCounts);
+      }
+      final int block = findBlock(rankIndex.cumulativeCounts, rank);
+      // Resume the summation from the start of the block, which yields the same partial sums as a
+      // linear scan of the counts.
+      n = rankIndex.cumulativeCounts[block];
+      from = minArrayIndex + (block << RANK_BLOCK_SHIFT);
+      to = Math.min(from + RANK_BLOCK_LENGTH - 1, maxArrayIndex);
+    }
+    for (int arrayIndex = from; arrayIndex <= to; arrayIndex++) {
+      if ((n += getCount(arrayIndex)) > rank) {
+        return arrayIndex + offset;
+      }
+    }
+    // The rank is not lower than the total count.
+    int arrayIndex = maxArrayIndex;
+    while (arrayIndex > minArrayIndex && getCount(arrayIndex) == 0) {
+      arrayIndex--;
+    }
+    return arrayIndex + offset;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>If {@link #enableRankIndex() enabled}, the first call after an update computes the
+   * cumulative counts of blocks of bins, in linear time. Subsequent calls binary search the blocks
+   * and only scan the counts of one of them. Otherwise, calls scan the counts. Calls do not
+   * otherwise modify the store, so that they can be made concurrently by multiple threads, as long
+   * as the store is not updated at the same time.
+   */
+  @Override
+  public int getDescendingIndexAtRank(double rank) {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    final int minArrayIndex = minIndex - offset;
+    final int maxArrayIndex = maxIndex - offset;
+    double n = 0;
+    int from = maxArrayIndex;
+    int to = minArrayIndex;
+    if (rankIndexEnabled) {
+      RankIndex rankIndex = descendingRankIndex;
+      if (null == rankIndex || rankIndex.version != version) {
+        final int numBlocks = (int) (((long) maxIndex - minIndex) >> RANK_BLOCK_SHIFT) + 1;
+        final double[] cumulativeCounts = new double[numBlocks + 1];
+        double cumulativeCount = 0;
+        for (int block = 0; block < numBlocks; block++) {
+          cumulativeCounts[block] = cumulativeCount;
+          final int blockFrom = maxArrayIndex - (block << RANK_BLOCK_SHIFT);
+          final int blockTo = Math.max(blockFrom - RANK_BLOCK_LENGTH + 1, minArrayIndex);
+          for (int arrayIndex = blockFrom; arrayIndex >= blockTo; arrayIndex--) {
+            cumulativeCount += getCount(arrayIndex);
+          }
+        }
+        cumulativeCounts[numBlocks] = cumulativeCount;
+        descendingRankIndex = rankIndex = new RankIndex(version, cumulativeCounts);
+      }
+      final int block = findBlock(rankIndex.cumulativeCounts, rank);
+      n = rankIndex.cumulativeCounts[block];
+      from = maxArrayIndex - (block << RANK_BLOCK_SHIFT);
+      to = Math.max(from - RANK_BLOCK_LENGTH + 1, minArrayIndex);
+    }
+    for (int arrayIndex = from; arrayIndex >= to; arrayIndex--) {
+      if ((n += getCount(arrayIndex)) > rank) {
+        return arrayIndex + offset;
+      }
+    }
+    // The rank is not lower than the total count.
+    int arrayIndex = minArrayIndex;
+    while (arrayIndex < maxArrayIndex && getCount(arrayIndex) == 0) {
+      arrayIndex++;
+    }
+    return arrayIndex + offset;
+  }
+
+  /**
+   * @return the first block whose cumulative count, including its own counts, is greater than the
+   *     rank, or the last block if there is none
+   */
+  private static int findBlock(double[] cumulativeCounts, double rank) {
+    int low = 0;
+    int high = cumulativeCounts.length - 2;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (cumulativeCounts[middle + 1] > rank) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return low;
+  }
+
+  /** The cumulative counts of blocks of bins, for a given version of the store. */
+  private static final class RankIndex {
+
+    private final long version;
+    private final double[] cumulativeCounts;
+
+    private RankIndex(long version, double[] cumulativeCounts) {
+      this.version = version;
+      this.cumulativeCounts = cumulativeCounts;
+    }
+  }
+
   @Override
   public void forEach(BinAcceptor acceptor) {
     if (isEmpty()) {
       return;
     }
     for (int i = minIndex; i < maxIndex; i++) {
-      double value = counts[i - offset];
+      double value = getCount(i - offset);
       if (value != 0) {
         acceptor.accept(i, value);
       }
     }
-    double lastCount = counts[maxIndex - offset];
+    double lastCount = getCount(maxIndex - offset);
     if (lastCount != 0) {
       acceptor.accept(maxIndex, lastCount);
     }
@@ -267,8 +962,8 @@ public abstract class DenseStore implements Store {
       return Stream.of();
     }
     return IntStream.rangeClosed(minIndex, maxIndex)
-        .filter(index -> counts[index - offset] > 0)
-        .mapToObj(index -> new Bin(index, counts[index - offset]));
+        .filter(index -> getCount(index - offset) > 0)
+        .mapToObj(index -> new Bin(index, getCount(index - offset)));
   }
 
   @Override
@@ -278,8 +973,70 @@ public abstract class DenseStore implements Store {
     }
     return IntStream.iterate(maxIndex, index -> index - 1)
         .limit(maxIndex - minIndex + 1)
-        .filter(index -> counts[index - offset] > 0)
-        .mapToObj(index -> new Bin(index, counts[index - offset]));
+        .filter(index -> getCount(index - offset) > 0)
+        .mapToObj(index -> new Bin(index, getCount(index - offset)));
+  }
+
+  @Override
+  public BinCursor getAscendingCursor() {
+
+    return new BinCursor() {
+
+      private long index = (long) minIndex - 1;
+      private double count;
+
+      @Override
+      public boolean advance() {
+        while (++index <= maxIndex) {
+          count = getCount((int) (index - offset));
+          if (count != 0) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public int index() {
+        return (int) index;
+      }
+
+      @Override
+      public double count() {
+        return count;
+      }
+    };
+  }
+
+  @Override
+  public BinCursor getDescendingCursor() {
+
+    return new BinCursor() {
+
+      private long index = (long) maxIndex + 1;
+      private double count;
+
+      @Override
+      public boolean advance() {
+        while (--index >= minIndex) {
+          count = getCount((int) (index - offset));
+          if (count != 0) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public int index() {
+        return (int) index;
+      }
+
+      @Override
+      public double count() {
+        return count;
+      }
+    };
   }
 
   @Override
@@ -299,8 +1056,8 @@ public abstract class DenseStore implements Store {
         final int nextIndex = (int) index;
         do {
           index++;
-        } while (index <= maxIndex && counts[(int) index - offset] == 0);
-        return new Bin(nextIndex, counts[nextIndex - offset]);
+        } while (index <= maxIndex && getCount((int) index - offset) == 0);
+        return new Bin(nextIndex, getCount(nextIndex - offset));
       }
     };
   }
@@ -322,8 +1079,8 @@ public abstract class DenseStore implements Store {
         final int nextIndex = (int) index;
         do {
           index--;
-        } while (index >= minIndex && counts[(int) index - offset] == 0);
-        return new Bin(nextIndex, counts[nextIndex - offset]);
+        } while (index >= minIndex && getCount((int) index - offset) == 0);
+        return new Bin(nextIndex, getCount(nextIndex - offset));
       }
     };
   }
@@ -345,7 +1102,7 @@ public abstract class DenseStore implements Store {
 
     long previousIndex = 0;
     for (int i = minIndex - offset; i <= maxIndex - offset; i++) {
-      final double count = counts[i];
+      final double count = getCount(i);
       final long countVarDoubleEncodedLength = VarEncodingHelper.varDoubleEncodedLength(count);
       denseEncodingSize += countVarDoubleEncodedLength;
       if (count != 0) {
@@ -371,7 +1128,7 @@ public abstract class DenseStore implements Store {
     VarEncodingHelper.encodeSignedVarLong(output, minIndex);
     VarEncodingHelper.encodeSignedVarLong(output, 1);
     for (int i = minIndex - offset; i <= maxIndex - offset; i++) {
-      VarEncodingHelper.encodeVarDouble(output, counts[i]);
+      VarEncodingHelper.encodeVarDouble(output, getCount(i));
     }
   }
 
@@ -381,7 +1138,7 @@ public abstract class DenseStore implements Store {
     VarEncodingHelper.encodeUnsignedVarLong(output, numNonEmptyBins);
     long previousIndex = 0;
     for (int i = minIndex - offset; i <= maxIndex - offset; i++) {
-      final double count = counts[i];
+      final double count = getCount(i);
       if (count != 0) {
         final long index = offset + i;
         VarEncodingHelper.encodeSignedVarLong(output, index - previousIndex);
@@ -403,7 +1160,11 @@ public abstract class DenseStore implements Store {
   @Override
   public void serialize(Serializer serializer) {
     if (!isEmpty()) {
-      serializer.writeCompactArray(2, counts, minIndex - offset, maxIndex - minIndex + 1);
+      if (null == countArray) {
+        serializer.writeCompactArray(2, counts, minIndex - offset, maxIndex - minIndex + 1);
+      } else {
+        countArray.write(serializer, 2, minIndex - offset, maxIndex - minIndex + 1);
+      }
       serializer.writeSignedInt32(3, minIndex);
     }
   }
@@ -0,0 +1,77 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+enum DirectAllocator implements OffHeapAllocator {
+  INSTANCE;
+
+  private static final Cleaner CLEANER = getCleaner();
+
+  @Override
+  public ByteBuffer allocate(int length) {
+    return ByteBuffer.allocateDirect(Math.multiplyExact(length, Double.BYTES))
+        .order(ByteOrder.nativeOrder());
+  }
+
+  @Override
+  public void free(ByteBuffer buffer) {
+    CLEANER.clean(buffer);
+  }
+
+  /** Releases the memory of a direct buffer, which must not be a slice or a duplicate. */
+  @FunctionalInterface
+  private interface Cleaner {
+    void clean(ByteBuffer buffer);
+  }
+
+  private static Cleaner getCleaner() {
+    try {
+      // Java 9+
+      final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      final Object unsafe = theUnsafe.get(null);
+      final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      return buffer -> invoke(invokeCleaner, unsafe, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Not available before Java 9.
+    }
+    try {
+      // Java 8
+      final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      return buffer -> {
+        final Object bufferCleaner = invoke(cleaner, buffer);
+        if (null != bufferCleaner) {
+          invoke(clean, bufferCleaner);
+        }
+      };
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // The memory is released when the buffer is garbage-collected.
+      return buffer -> {};
+    }
+  }
+
+  private static Object invoke(Method method, Object object, Object... args) {
+    try {
+      return method.invoke(object, args);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    } catch (InvocationTargetException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
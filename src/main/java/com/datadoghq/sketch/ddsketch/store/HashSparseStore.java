@@ -0,0 +1,396 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import com.datadoghq.sketch.ddsketch.encoding.BinEncodingMode;
+import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.Output;
+import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link Store} that only keeps track of non-empty bins, like {@link SparseStore}, but that is
+ * backed by an open-addressing hash table of primitive indexes and counts instead of a {@code
+ * TreeMap}. Adding values takes amortized constant time, and each non-empty bin takes between 16
+ * and 32 bytes of memory, depending on the load of the table.
+ *
+ * <p>Bins are not kept in index order. They are sorted lazily, when the store is iterated over in
+ * order, queried for ranks or encoded, and the sorted order is cached until a new non-empty bin is
+ * added. Minimum and maximum indexes are maintained as bins are added.
+ */
+public class HashSparseStore implements Store {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 16;
+  private static final double MAX_LOAD_FACTOR = 0.75;
+
+  // An empty slot is one whose count is zero, as this store never holds zero counts.
+  private int[] indexes;
+  private double[] counts;
+  private int shift;
+  private int size;
+  private int minIndex;
+  private int maxIndex;
+  // The sum of the counts of the bins, which is maintained as the store is updated.
+  private double totalCount;
+
+  // The slots of the non-empty bins, sorted by index, or null if not computed yet.
+  private int[] sortedSlots;
+
+  public HashSparseStore() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Constructs an initially empty store.
+   *
+   * @param expectedNumBins the number of non-empty bins that the store can hold without growing
+   */
+  public HashSparseStore(int expectedNumBins) {
+    if (expectedNumBins < 0) {
+      throw new IllegalArgumentException("The expected number of bins cannot be negative.");
+    }
+    final int capacity = capacityFor(expectedNumBins);
+    this.indexes = new int[capacity];
+    this.counts = new double[capacity];
+    this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    this.size = 0;
+    this.minIndex = Integer.MAX_VALUE;
+    this.maxIndex = Integer.MIN_VALUE;
+    this.sortedSlots = null;
+  }
+
+  private HashSparseStore(HashSparseStore store) {
+    this.indexes = Arrays.copyOf(store.indexes, store.indexes.length);
+    this.counts = Arrays.copyOf(store.counts, store.counts.length);
+    this.shift = store.shift;
+    this.size = store.size;
+    this.minIndex = store.minIndex;
+    this.maxIndex = store.maxIndex;
+    this.totalCount = store.totalCount;
+    this.sortedSlots = store.sortedSlots;
+  }
+
+  private static int capacityFor(int numBins) {
+    final long minCapacity = Math.max(2, (long) Math.ceil(numBins / MAX_LOAD_FACTOR));
+    if (minCapacity > 1 << 30) {
+      throw new IllegalArgumentException("The number of bins is too large.");
+    }
+    return Integer.highestOneBit((int) minCapacity - 1) << 1;
+  }
+
+  /** @return the slot where the index is, or the empty slot where it would be inserted */
+  private int slot(int index) {
+    // Fibonacci hashing spreads consecutive indexes, which are common, across the table.
+    int slot = (index * 0x9E3779B9) >>> shift;
+    final int mask = counts.length - 1;
+    while (counts[slot] != 0 && indexes[slot] != index) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  @Override
+  public void add(int index) {
+    addToSlot(index, 1);
+  }
+
+  @Override
+  public void add(int index, double count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("The count cannot be negative.");
+    }
+    if (count == 0) {
+      return;
+    }
+    addToSlot(index, count);
+  }
+
+  @Override
+  public void add(Bin bin) {
+    if (bin.getCount() == 0) {
+      return;
+    }
+    addToSlot(bin.getIndex(), bin.getCount());
+  }
+
+  private void addToSlot(int index, double count) {
+    int slot = slot(index);
+    if (counts[slot] == 0) {
+      if (size + 1 > MAX_LOAD_FACTOR * counts.length) {
+        grow();
+        slot = slot(index);
+      }
+      indexes[slot] = index;
+      size++;
+      minIndex = Math.min(minIndex, index);
+      maxIndex = Math.max(maxIndex, index);
+      sortedSlots = null;
+    }
+    counts[slot] += count;
+    totalCount += count;
+  }
+
+  private void grow() {
+    final int[] oldIndexes = indexes;
+    final double[] oldCounts = counts;
+    indexes = new int[oldIndexes.length << 1];
+    counts = new double[oldCounts.length << 1];
+    shift--;
+    for (int i = 0; i < oldCounts.length; i++) {
+      if (oldCounts[i] != 0) {
+        final int slot = slot(oldIndexes[i]);
+        indexes[slot] = oldIndexes[i];
+        counts[slot] = oldCounts[i];
+      }
+    }
+  }
+
+  @Override
+  public void mergeWith(Store store) {
+    if (store instanceof HashSparseStore) {
+      mergeWith((HashSparseStore) store);
+    } else {
+      store.forEach(this::add);
+    }
+  }
+
+  private void mergeWith(HashSparseStore store) {
+    for (int i = 0; i < store.counts.length; i++) {
+      if (store.counts[i] != 0) {
+        addToSlot(store.indexes[i], store.counts[i]);
+      }
+    }
+  }
+
+  @Override
+  public Store copy() {
+    return new HashSparseStore(this);
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(counts, 0D);
+    size = 0;
+    minIndex = Integer.MAX_VALUE;
+    maxIndex = Integer.MIN_VALUE;
+    totalCount = 0;
+    sortedSlots = null;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int getMinIndex() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return minIndex;
+  }
+
+  @Override
+  public int getMaxIndex() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return maxIndex;
+  }
+
+  @Override
+  public double getTotalCount() {
+    return totalCount;
+  }
+
+  /** Supplies each bin to the acceptor, in no particular order. */
+  @Override
+  public void forEach(BinAcceptor acceptor) {
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        acceptor.accept(indexes[i], counts[i]);
+      }
+    }
+  }
+
+  private int[] sortedSlots() {
+    if (sortedSlots == null) {
+      // Sort the slots by index by packing the index in the high bits and the slot in the low bits.
+      final long[] packed = new long[size];
+      int j = 0;
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] != 0) {
+          packed[j++] = ((long) indexes[i] << 32) | i;
+        }
+      }
+      Arrays.sort(packed);
+      final int[] slots = new int[size];
+      for (int k = 0; k < size; k++) {
+        slots[k] = (int) packed[k];
+      }
+      sortedSlots = slots;
+    }
+    return sortedSlots;
+  }
+
+  @Override
+  public Iterator<Bin> getAscendingIterator() {
+
+    final int[] slots = sortedSlots();
+
+    return new Iterator<Bin>() {
+
+      private int position = 0;
+
+      @Override
+      public boolean hasNext() {
+        return position < slots.length;
+      }
+
+      @Override
+      public Bin next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final int slot = slots[position++];
+        return new Bin(indexes[slot], counts[slot]);
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Bin> getDescendingIterator() {
+
+    final int[] slots = sortedSlots();
+
+    return new Iterator<Bin>() {
+
+      private int position = slots.length - 1;
+
+      @Override
+      public boolean hasNext() {
+        return position >= 0;
+      }
+
+      @Override
+      public Bin next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final int slot = slots[position--];
+        return new Bin(indexes[slot], counts[slot]);
+      }
+    };
+  }
+
+  @Override
+  public BinCursor getAscendingCursor() {
+
+    final int[] slots = sortedSlots();
+
+    return new BinCursor() {
+
+      private int position = -1;
+
+      @Override
+      public boolean advance() {
+        if (position + 1 >= slots.length) {
+          return false;
+        }
+        position++;
+        return true;
+      }
+
+      @Override
+      public int index() {
+        return indexes[slots[position]];
+      }
+
+      @Override
+      public double count() {
+        return counts[slots[position]];
+      }
+    };
+  }
+
+  @Override
+  public BinCursor getDescendingCursor() {
+
+    final int[] slots = sortedSlots();
+
+    return new BinCursor() {
+
+      private int position = slots.length;
+
+      @Override
+      public boolean advance() {
+        if (position <= 0) {
+          return false;
+        }
+        position--;
+        return true;
+      }
+
+      @Override
+      public int index() {
+        return indexes[slots[position]];
+      }
+
+      @Override
+      public double count() {
+        return counts[slots[position]];
+      }
+    };
+  }
+
+  @Override
+  public int getAscendingIndexAtRank(double rank) {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    final int[] slots = sortedSlots();
+    double n = 0;
+    for (int position = 0; position < slots.length - 1; position++) {
+      if ((n += counts[slots[position]]) > rank) {
+        return indexes[slots[position]];
+      }
+    }
+    return maxIndex;
+  }
+
+  @Override
+  public int getDescendingIndexAtRank(double rank) {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    final int[] slots = sortedSlots();
+    double n = 0;
+    for (int position = slots.length - 1; position > 0; position--) {
+      if ((n += counts[slots[position]]) > rank) {
+        return indexes[slots[position]];
+      }
+    }
+    return minIndex;
+  }
+
+  @Override
+  public void encode(Output output, Flag.Type storeFlagType) throws IOException {
+    if (isEmpty()) {
+      return;
+    }
+    BinEncodingMode.INDEX_DELTAS_AND_COUNTS.toFlag(storeFlagType).encode(output);
+    VarEncodingHelper.encodeUnsignedVarLong(output, size);
+    long previousIndex = 0;
+    for (final int slot : sortedSlots()) {
+      VarEncodingHelper.encodeSignedVarLong(output, indexes[slot] - previousIndex);
+      VarEncodingHelper.encodeVarDouble(output, counts[slot]);
+      previousIndex = indexes[slot];
+    }
+  }
+}
@@ -0,0 +1,25 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+enum HeapAllocator implements StoreAllocator {
+  INSTANCE;
+
+  @Override
+  public double[] allocate(int length) {
+    return new double[length];
+  }
+
+  @Override
+  public void release(double[] array) {
+    // The array is reclaimed when it is garbage-collected.
+  }
+
+  @Override
+  public boolean isRecycling() {
+    return false;
+  }
+}
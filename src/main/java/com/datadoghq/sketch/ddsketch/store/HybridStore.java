@@ -0,0 +1,533 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import com.datadoghq.sketch.ddsketch.encoding.BinEncodingMode;
+import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.Output;
+import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link Store} that starts as a compact sorted array of non-empty bins and that promotes itself
+ * to an {@link UnboundedSizeDenseStore} once it holds more than a maximum number of bins, or once
+ * its bins are dense enough.
+ *
+ * <p>While sparse, each non-empty bin takes 12 bytes of memory and adding to a bin takes time that
+ * is logarithmic in the number of bins, which makes this store well-suited to sketches that only
+ * see a few distinct bins. Once promoted, the store behaves like an {@link
+ * UnboundedSizeDenseStore}, and it remains dense until it is garbage-collected, even if cleared.
+ * Like {@link UnboundedSizeDenseStore}, it is not meant to be used with many values that are
+ * extremely far from one another.
+ */
+public class HybridStore implements Store {
+
+  private static final int DEFAULT_MAX_NUM_SPARSE_BINS = 32;
+  private static final int INITIAL_SPARSE_CAPACITY = 4;
+  // The minimum ratio of the number of non-empty bins to the index range for bins to be dense.
+  private static final double MIN_DENSE_RATIO = 0.5;
+
+  private final int maxNumSparseBins;
+
+  // While sparse, the non-empty bins, sorted by index.
+  private int[] indexes;
+  private double[] counts;
+  private int numBins;
+  private double totalCount;
+
+  // Once promoted, the store that holds the bins.
+  private UnboundedSizeDenseStore dense;
+
+  public HybridStore() {
+    this(DEFAULT_MAX_NUM_SPARSE_BINS);
+  }
+
+  /**
+   * Constructs an initially empty store.
+   *
+   * @param maxNumSparseBins the maximum number of non-empty bins that the store holds before being
+   *     promoted to a dense representation
+   */
+  public HybridStore(int maxNumSparseBins) {
+    if (maxNumSparseBins < 0) {
+      throw new IllegalArgumentException("The maximum number of sparse bins cannot be negative.");
+    }
+    this.maxNumSparseBins = maxNumSparseBins;
+    this.indexes = new int[0];
+    this.counts = new double[0];
+    this.numBins = 0;
+    this.totalCount = 0;
+    this.dense = null;
+  }
+
+  private HybridStore(HybridStore store) {
+    this.maxNumSparseBins = store.maxNumSparseBins;
+    this.indexes = Arrays.copyOf(store.indexes, store.numBins);
+    this.counts = Arrays.copyOf(store.counts, store.numBins);
+    this.numBins = store.numBins;
+    this.totalCount = store.totalCount;
+    this.dense = store.dense == null ? null : (UnboundedSizeDenseStore) store.dense.copy();
+  }
+
+  /** @return {@code true} iff the store has been promoted to a dense representation */
+  public boolean isDense() {
+    return dense != null;
+  }
+
+  @Override
+  public void add(int index) {
+    if (dense != null) {
+      dense.add(index);
+    } else {
+      addSparse(index, 1);
+    }
+  }
+
+  @Override
+  public void add(int index, double count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("The count cannot be negative.");
+    }
+    if (count == 0) {
+      return;
+    }
+    if (dense != null) {
+      dense.add(index, count);
+    } else {
+      addSparse(index, count);
+    }
+  }
+
+  @Override
+  public void add(Bin bin) {
+    add(bin.getIndex(), bin.getCount());
+  }
+
+  @Override
+  public void add(int[] indexes, int from, int to) {
+    if (dense != null) {
+      dense.add(indexes, from, to);
+    } else {
+      Store.super.add(indexes, from, to);
+    }
+  }
+
+  private void addSparse(int index, double count) {
+    totalCount += count;
+    final int position = Arrays.binarySearch(indexes, 0, numBins, index);
+    if (position >= 0) {
+      counts[position] += count;
+      return;
+    }
+    final int insertionPosition = -position - 1;
+    if (numBins == indexes.length) {
+      final int newCapacity =
+          (int)
+              Math.min(
+                  Math.max(INITIAL_SPARSE_CAPACITY, 2L * numBins), (long) maxNumSparseBins + 1);
+      indexes = Arrays.copyOf(indexes, newCapacity);
+      counts = Arrays.copyOf(counts, newCapacity);
+    }
+    System.arraycopy(
+        indexes, insertionPosition, indexes, insertionPosition + 1, numBins - insertionPosition);
+    System.arraycopy(
+        counts, insertionPosition, counts, insertionPosition + 1, numBins - insertionPosition);
+    indexes[insertionPosition] = index;
+    counts[insertionPosition] = count;
+    numBins++;
+    if (shouldPromote(numBins, indexes[0], indexes[numBins - 1])) {
+      promote();
+    }
+  }
+
+  private boolean shouldPromote(int numBins, int minIndex, int maxIndex) {
+    if (numBins > maxNumSparseBins) {
+      return true;
+    }
+    // Only consider the density once there are enough bins for the dense representation to pay
+    // off.
+    return numBins >= maxNumSparseBins / 2
+        && numBins >= MIN_DENSE_RATIO * ((long) maxIndex - minIndex + 1);
+  }
+
+  private void promote() {
+    final UnboundedSizeDenseStore store = new UnboundedSizeDenseStore();
+    if (numBins > 0) {
+      store.extendRange(indexes[0], indexes[numBins - 1]);
+      for (int i = 0; i < numBins; i++) {
+        store.add(indexes[i], counts[i]);
+      }
+    }
+    dense = store;
+    indexes = new int[0];
+    counts = new double[0];
+    numBins = 0;
+    totalCount = 0;
+  }
+
+  @Override
+  public void mergeWith(Store store) {
+    if (store instanceof HybridStore) {
+      mergeWith((HybridStore) store);
+    } else if (dense != null) {
+      dense.mergeWith(store);
+    } else if (!store.isEmpty()) {
+      mergeSparse(store);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Once this store is dense, the remaining stores are merged into the dense store at once, so
+   * that it benefits from its bulk merging.
+   */
+  @Override
+  public void mergeWith(Store... stores) {
+    int i = 0;
+    while (dense == null && i < stores.length) {
+      mergeWith(stores[i++]);
+    }
+    if (i == stores.length) {
+      return;
+    }
+    final Store[] remainingStores = new Store[stores.length - i];
+    for (int j = 0; j < remainingStores.length; j++, i++) {
+      final Store store = stores[i];
+      // Let the dense store merge the dense stores of hybrid stores array to array.
+      remainingStores[j] =
+          store instanceof HybridStore && ((HybridStore) store).dense != null
+              ? ((HybridStore) store).dense
+              : store;
+    }
+    dense.mergeWith(remainingStores);
+  }
+
+  @Override
+  public void reserve(int minIndex, int maxIndex) {
+    if (dense != null) {
+      dense.reserve(minIndex, maxIndex);
+    }
+  }
+
+  private void mergeWith(HybridStore store) {
+    if (store.dense != null) {
+      if (dense == null) {
+        // Start from a copy of the dense store rather than promoting and adding.
+        final UnboundedSizeDenseStore merged = (UnboundedSizeDenseStore) store.dense.copy();
+        for (int i = 0; i < numBins; i++) {
+          merged.add(indexes[i], counts[i]);
+        }
+        dense = merged;
+        indexes = new int[0];
+        counts = new double[0];
+        numBins = 0;
+        totalCount = 0;
+      } else {
+        dense.mergeWith(store.dense);
+      }
+    } else if (dense != null) {
+      for (int i = 0; i < store.numBins; i++) {
+        dense.add(store.indexes[i], store.counts[i]);
+      }
+    } else if (store.numBins > 0) {
+      totalCount += store.totalCount;
+      mergeSparse(store.indexes, store.counts, store.numBins);
+    }
+  }
+
+  private void mergeSparse(Store store) {
+    int[] otherIndexes = new int[INITIAL_SPARSE_CAPACITY];
+    double[] otherCounts = new double[INITIAL_SPARSE_CAPACITY];
+    int otherNumBins = 0;
+    double otherTotalCount = 0;
+    final BinCursor cursor = store.getAscendingCursor();
+    while (cursor.advance()) {
+      if (otherNumBins == maxNumSparseBins) {
+        // This store would be promoted anyway, so let the dense store merge the other one.
+        promote();
+        dense.mergeWith(store);
+        return;
+      }
+      if (otherNumBins == otherIndexes.length) {
+        otherIndexes = Arrays.copyOf(otherIndexes, 2 * otherNumBins);
+        otherCounts = Arrays.copyOf(otherCounts, 2 * otherNumBins);
+      }
+      otherIndexes[otherNumBins] = cursor.index();
+      otherCounts[otherNumBins++] = cursor.count();
+      otherTotalCount += cursor.count();
+    }
+    totalCount += otherTotalCount;
+    mergeSparse(otherIndexes, otherCounts, otherNumBins);
+  }
+
+  private void mergeSparse(int[] otherIndexes, double[] otherCounts, int otherNumBins) {
+    // Merge the two sorted arrays of bins.
+    final int[] mergedIndexes = new int[numBins + otherNumBins];
+    final double[] mergedCounts = new double[numBins + otherNumBins];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < numBins && j < otherNumBins) {
+      if (indexes[i] < otherIndexes[j]) {
+        mergedIndexes[k] = indexes[i];
+        mergedCounts[k++] = counts[i++];
+      } else if (indexes[i] > otherIndexes[j]) {
+        mergedIndexes[k] = otherIndexes[j];
+        mergedCounts[k++] = otherCounts[j++];
+      } else {
+        mergedIndexes[k] = indexes[i];
+        mergedCounts[k++] = counts[i++] + otherCounts[j++];
+      }
+    }
+    for (; i < numBins; i++, k++) {
+      mergedIndexes[k] = indexes[i];
+      mergedCounts[k] = counts[i];
+    }
+    for (; j < otherNumBins; j++, k++) {
+      mergedIndexes[k] = otherIndexes[j];
+      mergedCounts[k] = otherCounts[j];
+    }
+    indexes = mergedIndexes;
+    counts = mergedCounts;
+    numBins = k;
+    if (shouldPromote(numBins, indexes[0], indexes[numBins - 1])) {
+      promote();
+    }
+  }
+
+  @Override
+  public void scale(double factor) {
+    if (dense != null) {
+      dense.scale(factor);
+      return;
+    }
+    if (!(factor > 0) || factor == Double.POSITIVE_INFINITY) {
+      throw new IllegalArgumentException("The scaling factor must be positive and finite.");
+    }
+    // Remove the counts that underflow to zero.
+    int k = 0;
+    for (int i = 0; i < numBins; i++) {
+      final double count = counts[i] * factor;
+      if (count != 0) {
+        indexes[k] = indexes[i];
+        counts[k++] = count;
+      }
+    }
+    Arrays.fill(counts, k, numBins, 0D);
+    numBins = k;
+    totalCount = numBins == 0 ? 0 : totalCount * factor;
+  }
+
+  @Override
+  public Store copy() {
+    return new HybridStore(this);
+  }
+
+  @Override
+  public void clear() {
+    if (dense != null) {
+      dense.clear();
+    } else {
+      Arrays.fill(counts, 0, numBins, 0D);
+      numBins = 0;
+      totalCount = 0;
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return dense != null ? dense.isEmpty() : numBins == 0;
+  }
+
+  @Override
+  public int getMinIndex() {
+    if (dense != null) {
+      return dense.getMinIndex();
+    }
+    if (numBins == 0) {
+      throw new NoSuchElementException();
+    }
+    return indexes[0];
+  }
+
+  @Override
+  public int getMaxIndex() {
+    if (dense != null) {
+      return dense.getMaxIndex();
+    }
+    if (numBins == 0) {
+      throw new NoSuchElementException();
+    }
+    return indexes[numBins - 1];
+  }
+
+  @Override
+  public double getTotalCount() {
+    return dense != null ? dense.getTotalCount() : totalCount;
+  }
+
+  @Override
+  public void forEach(BinAcceptor acceptor) {
+    if (dense != null) {
+      dense.forEach(acceptor);
+    } else {
+      for (int i = 0; i < numBins; i++) {
+        acceptor.accept(indexes[i], counts[i]);
+      }
+    }
+  }
+
+  @Override
+  public Iterator<Bin> getAscendingIterator() {
+    if (dense != null) {
+      return dense.getAscendingIterator();
+    }
+
+    return new Iterator<Bin>() {
+
+      private int position = 0;
+
+      @Override
+      public boolean hasNext() {
+        return position < numBins;
+      }
+
+      @Override
+      public Bin next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final int i = position++;
+        return new Bin(indexes[i], counts[i]);
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Bin> getDescendingIterator() {
+    if (dense != null) {
+      return dense.getDescendingIterator();
+    }
+
+    return new Iterator<Bin>() {
+
+      private int position = numBins - 1;
+
+      @Override
+      public boolean hasNext() {
+        return position >= 0;
+      }
+
+      @Override
+      public Bin next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final int i = position--;
+        return new Bin(indexes[i], counts[i]);
+      }
+    };
+  }
+
+  @Override
+  public BinCursor getAscendingCursor() {
+    if (dense != null) {
+      return dense.getAscendingCursor();
+    }
+
+    return new BinCursor() {
+
+      private int position = -1;
+
+      @Override
+      public boolean advance() {
+        if (position + 1 >= numBins) {
+          return false;
+        }
+        position++;
+        return true;
+      }
+
+      @Override
+      public int index() {
+        return indexes[position];
+      }
+
+      @Override
+      public double count() {
+        return counts[position];
+      }
+    };
+  }
+
+  @Override
+  public BinCursor getDescendingCursor() {
+    if (dense != null) {
+      return dense.getDescendingCursor();
+    }
+
+    return new BinCursor() {
+
+      private int position = numBins;
+
+      @Override
+      public boolean advance() {
+        if (position <= 0) {
+          return false;
+        }
+        position--;
+        return true;
+      }
+
+      @Override
+      public int index() {
+        return indexes[position];
+      }
+
+      @Override
+      public double count() {
+        return counts[position];
+      }
+    };
+  }
+
+  @Override
+  public int getAscendingIndexAtRank(double rank) {
+    return dense != null
+        ? dense.getAscendingIndexAtRank(rank)
+        : Store.super.getAscendingIndexAtRank(rank);
+  }
+
+  @Override
+  public int getDescendingIndexAtRank(double rank) {
+    return dense != null
+        ? dense.getDescendingIndexAtRank(rank)
+        : Store.super.getDescendingIndexAtRank(rank);
+  }
+
+  @Override
+  public void encode(Output output, Flag.Type storeFlagType) throws IOException {
+    if (dense != null) {
+      dense.encode(output, storeFlagType);
+      return;
+    }
+    if (numBins == 0) {
+      return;
+    }
+    BinEncodingMode.INDEX_DELTAS_AND_COUNTS.toFlag(storeFlagType).encode(output);
+    VarEncodingHelper.encodeUnsignedVarLong(output, numBins);
+    long previousIndex = 0;
+    for (int i = 0; i < numBins; i++) {
+      VarEncodingHelper.encodeSignedVarLong(output, indexes[i] - previousIndex);
+      VarEncodingHelper.encodeVarDouble(output, counts[i]);
+      previousIndex = indexes[i];
+    }
+  }
+}
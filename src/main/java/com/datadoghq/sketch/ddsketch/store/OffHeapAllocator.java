@@ -0,0 +1,46 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An object that provides {@link OffHeapDenseStore}s with the off-heap memory that holds their
+ * counts.
+ *
+ * <p>Implementations must be thread-safe, as they may be shared by stores that are used by distinct
+ * threads.
+ */
+public interface OffHeapAllocator {
+
+  /**
+   * Allocates off-heap memory.
+   *
+   * @param length the number of {@code double} counts that the memory must hold
+   * @return a buffer in native byte order, whose capacity is {@code length * Double.BYTES} bytes
+   *     and whose counts are all zero
+   */
+  ByteBuffer allocate(int length);
+
+  /**
+   * Releases memory that has been allocated by this allocator. The buffer must not be used
+   * afterwards.
+   *
+   * @param buffer a buffer that has been returned by {@link #allocate} and not released yet
+   */
+  void free(ByteBuffer buffer);
+
+  /**
+   * Returns an allocator that allocates a direct buffer for each request, and that releases the
+   * memory of a buffer as soon as it is freed, if the JVM allows it. Otherwise, the memory of a
+   * freed buffer is reclaimed once it has been garbage-collected.
+   *
+   * @return an allocator of direct buffers
+   */
+  static OffHeapAllocator direct() {
+    return DirectAllocator.INSTANCE;
+  }
+}
@@ -0,0 +1,107 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link OffHeapAllocator} that carves buffers out of large direct slabs, so that many stores
+ * can share a few large allocations instead of each owning its own direct buffer.
+ *
+ * <p>Buffers are allocated sequentially from the current slab, and a new slab is allocated when the
+ * current one is full. Freed buffers are zeroed and kept to be reused by later allocations of the
+ * same length. Given that {@link OffHeapDenseStore}s grow their buffers by multiples of their
+ * growth increment, freed buffers are usually reused quickly. Requests that are larger than a slab
+ * are served with dedicated buffers of the {@link OffHeapAllocator#direct() direct allocator}, to
+ * which they are freed.
+ *
+ * <p>Closing the arena drops its slabs, whose memory is then reclaimed once the buffers that have
+ * been carved out of them are no longer referenced. Stores that use an arena must not be used once
+ * it has been closed.
+ */
+public final class OffHeapArena implements OffHeapAllocator, AutoCloseable {
+
+  private static final int DEFAULT_SLAB_LENGTH = 1 << 17; // 1MiB of counts
+
+  private final int slabLength;
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private final Map<Integer, ArrayDeque<ByteBuffer>> freeBuffers = new HashMap<>();
+  private ByteBuffer currentSlab = null;
+  private int slabPosition = 0;
+  private boolean closed = false;
+
+  public OffHeapArena() {
+    this(DEFAULT_SLAB_LENGTH);
+  }
+
+  /** @param slabLength the number of {@code double} counts that each slab can hold */
+  public OffHeapArena(int slabLength) {
+    if (slabLength <= 0) {
+      throw new IllegalArgumentException("The slab length must be positive.");
+    }
+    this.slabLength = slabLength;
+  }
+
+  @Override
+  public synchronized ByteBuffer allocate(int length) {
+    if (closed) {
+      throw new IllegalStateException("The arena has been closed.");
+    }
+    final ArrayDeque<ByteBuffer> buffers = freeBuffers.get(length);
+    if (buffers != null && !buffers.isEmpty()) {
+      return buffers.pop();
+    }
+    if (length > slabLength) {
+      return DirectAllocator.INSTANCE.allocate(length);
+    }
+    if (currentSlab == null || slabPosition + length > slabLength) {
+      currentSlab = DirectAllocator.INSTANCE.allocate(slabLength);
+      slabs.add(currentSlab);
+      slabPosition = 0;
+    }
+    final ByteBuffer slab = currentSlab.duplicate();
+    slab.position(slabPosition * Double.BYTES);
+    slab.limit((slabPosition + length) * Double.BYTES);
+    slabPosition += length;
+    return slab.slice().order(ByteOrder.nativeOrder());
+  }
+
+  @Override
+  public synchronized void free(ByteBuffer buffer) {
+    final int length = buffer.capacity() / Double.BYTES;
+    if (length > slabLength) {
+      // Dedicated buffer, not carved out of a slab.
+      DirectAllocator.INSTANCE.free(buffer);
+      return;
+    }
+    if (closed) {
+      return;
+    }
+    for (int i = 0; i < buffer.capacity(); i += Double.BYTES) {
+      buffer.putLong(i, 0);
+    }
+    freeBuffers.computeIfAbsent(length, l -> new ArrayDeque<>()).push(buffer);
+  }
+
+  /** @return the number of slabs that have been allocated */
+  public synchronized int getNumSlabs() {
+    return slabs.size();
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    slabs.clear();
+    freeBuffers.clear();
+    currentSlab = null;
+  }
+}
@@ -0,0 +1,93 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A {@link CountArray} that holds its counters off-heap, in a buffer that is provided by an {@link
+ * OffHeapAllocator}. Once closed, the array cannot be allocated again.
+ */
+final class OffHeapCountArray extends CountArray {
+
+  private final OffHeapAllocator allocator;
+  private ByteBuffer counts;
+  private boolean closed;
+
+  OffHeapCountArray(OffHeapAllocator allocator) {
+    this.allocator = Objects.requireNonNull(allocator);
+    this.counts = null;
+    this.closed = false;
+  }
+
+  @Override
+  int length() {
+    return null == counts ? 0 : counts.capacity() / Double.BYTES;
+  }
+
+  @Override
+  double get(int index) {
+    return counts.getDouble(index * Double.BYTES);
+  }
+
+  @Override
+  void set(int index, double count) {
+    counts.putDouble(index * Double.BYTES, count);
+  }
+
+  @Override
+  void add(int index, double count) {
+    final int byteIndex = index * Double.BYTES;
+    counts.putDouble(byteIndex, counts.getDouble(byteIndex) + count);
+  }
+
+  @Override
+  void reallocate(int newLength, int from, int newFrom, int length) {
+    if (closed) {
+      throw new IllegalStateException("The store has been closed.");
+    }
+    final ByteBuffer newCounts = allocator.allocate(newLength);
+    if (null != counts) {
+      copy(counts, from, newCounts, newFrom, length);
+      allocator.free(counts);
+    }
+    counts = newCounts;
+  }
+
+  @Override
+  CountArray copy(int newLength, int from, int newFrom, int length) {
+    final OffHeapCountArray copy = new OffHeapCountArray(allocator);
+    if (newLength > 0) {
+      copy.reallocate(newLength, 0, 0, 0);
+      copy(counts, from, copy.counts, newFrom, length);
+    }
+    return copy;
+  }
+
+  @Override
+  void release() {
+    if (null != counts) {
+      allocator.free(counts);
+      counts = null;
+    }
+  }
+
+  /** Releases the counters, and prevents them from being allocated again. */
+  void close() {
+    release();
+    closed = true;
+  }
+
+  private static void copy(ByteBuffer src, int from, ByteBuffer dest, int newFrom, int length) {
+    final ByteBuffer source = src.duplicate();
+    source.position(from * Double.BYTES);
+    source.limit((from + length) * Double.BYTES);
+    final ByteBuffer destination = dest.duplicate();
+    destination.position(newFrom * Double.BYTES);
+    destination.put(source);
+  }
+}
@@ -0,0 +1,28 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+/**
+ * A dense store that keeps its counts off-heap, in memory provided by an {@link OffHeapAllocator},
+ * so that the garbage collector does not have to handle large count arrays.
+ *
+ * <p>Off-heap stores extend their on-heap counterparts, from which they only differ in where counts
+ * are held: the range of indices is extended, shifted and collapsed in the same way, and they are
+ * encoded in the same way.
+ *
+ * <p>The memory of the store is handed back to the allocator when the store is {@link #close()
+ * closed}. A closed store behaves as if it were empty, and adding counts to it throws an {@link
+ * IllegalStateException}.
+ */
+public interface OffHeapDenseStore extends Store, AutoCloseable {
+
+  /**
+   * Hands the memory of this store back to its allocator. The store behaves as if it were empty
+   * after this call, and counts cannot be added to it anymore.
+   */
+  @Override
+  void close();
+}
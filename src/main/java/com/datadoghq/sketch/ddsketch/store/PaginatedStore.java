@@ -7,12 +7,14 @@ package com.datadoghq.sketch.ddsketch.store;
 
 import com.datadoghq.sketch.ddsketch.encoding.BinEncodingMode;
 import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.Input;
 import com.datadoghq.sketch.ddsketch.encoding.Output;
 import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 
 /**
  * This is an unbounded store which allocates storage for counts in aligned pages stored in an array
@@ -32,20 +34,38 @@ public final class PaginatedStore implements Store {
   private static final int PAGE_MASK = PAGE_SIZE - 1;
   private static final int PAGE_SHIFT = Integer.bitCount(PAGE_MASK);
 
+  private final StoreAllocator allocator;
   private double[][] pages = null;
   private int minPageIndex;
+  // The sum of the counts of the bins, which is maintained as the store is updated.
+  private double totalCount;
 
   public PaginatedStore() {
-    this(Integer.MAX_VALUE);
+    this(StoreAllocator.heap());
+  }
+
+  /**
+   * Constructs an initially empty store whose pages are obtained from the specified allocator.
+   *
+   * @param allocator the allocator of the pages of counts
+   */
+  public PaginatedStore(StoreAllocator allocator) {
+    this(Integer.MAX_VALUE, allocator);
   }
 
   PaginatedStore(int minPageIndex) {
+    this(minPageIndex, StoreAllocator.heap());
+  }
+
+  private PaginatedStore(int minPageIndex, StoreAllocator allocator) {
+    this.allocator = Objects.requireNonNull(allocator);
     this.minPageIndex = minPageIndex;
   }
 
   PaginatedStore(PaginatedStore store) {
-    this(store.minPageIndex);
+    this(store.minPageIndex, store.allocator);
     this.pages = store.isEmpty() ? null : deepCopy(store.pages);
+    this.totalCount = store.totalCount;
   }
 
   @Override
@@ -105,18 +125,7 @@ public final class PaginatedStore implements Store {
 
   @Override
   public double getTotalCount() {
-    if (isEmpty()) {
-      return 0D;
-    }
-    double total = 0D;
-    for (double[] page : pages) {
-      if (null != page) {
-        for (double count : page) {
-          total += count;
-        }
-      }
-    }
-    return total;
+    return totalCount;
   }
 
   @Override
@@ -125,13 +134,63 @@ public final class PaginatedStore implements Store {
       int alignedIndex = alignedIndex(index);
       double[] page = getPage(alignedIndex >>> PAGE_SHIFT);
       page[alignedIndex & PAGE_MASK] += count;
+      totalCount += count;
+    }
+  }
+
+  @Override
+  public void decodeAndMergeWith(Input input, BinEncodingMode encodingMode) throws IOException {
+    if (encodingMode != BinEncodingMode.CONTIGUOUS_COUNTS) {
+      Store.super.decodeAndMergeWith(input, encodingMode);
+      return;
+    }
+    final long numBins = VarEncodingHelper.decodeUnsignedVarLong(input);
+    long index = VarEncodingHelper.decodeSignedVarLong(input);
+    final long indexDelta = VarEncodingHelper.decodeSignedVarLong(input);
+    if (indexDelta != 1) {
+      for (long i = 0; i != numBins; i++, index += indexDelta) {
+        add(Math.toIntExact(index), VarEncodingHelper.decodeVarDouble(input));
+      }
+      return;
+    }
+
+    // Skip the leading empty counts, so that no page is created unless a value is added.
+    long i = 0;
+    double count = 0;
+    while (i != numBins && (count = VarEncodingHelper.decodeVarDouble(input)) <= 0) {
+      i++;
+    }
+    if (i == numBins) {
+      return;
+    }
+    final int firstIndex = Math.toIntExact(index + i);
+    final int lastIndex = Math.toIntExact(index + numBins - 1);
+    // Make room for the pages of the whole block at once, then fill them in place.
+    int alignedIndex = alignedIndex(firstIndex);
+    alignedIndex(lastIndex);
+    double[] page = getPage(alignedIndex >>> PAGE_SHIFT);
+    page[alignedIndex & PAGE_MASK] += count;
+    totalCount += count;
+    while (++i != numBins) {
+      if ((++alignedIndex & PAGE_MASK) == 0) {
+        // The next page is only looked up, and possibly allocated, once a value is added to it.
+        page = null;
+      }
+      count = VarEncodingHelper.decodeVarDouble(input);
+      if (count > 0) {
+        if (null == page) {
+          page = getPage(alignedIndex >>> PAGE_SHIFT);
+        }
+        page[alignedIndex & PAGE_MASK] += count;
+        totalCount += count;
+      }
     }
   }
 
   private double[] getPage(int pageIndex) {
     double[] page = pages[pageIndex];
     if (null == page) {
-      page = pages[pageIndex] = new double[PAGE_SIZE];
+      page = pages[pageIndex] = allocator.allocate(PAGE_SIZE);
     }
     return page;
   }
@@ -199,6 +258,7 @@ public final class PaginatedStore implements Store {
   }
 
   private void mergeWith(PaginatedStore store) {
+    totalCount += store.totalCount;
     if (isEmpty()) {
       this.pages = deepCopy(store.pages);
       this.minPageIndex = store.minPageIndex;
@@ -212,7 +272,7 @@ public final class PaginatedStore implements Store {
         for (int i = 0; i < store.pages.length; ++i) {
           double[] page = store.pages[i];
           if (null != page) {
-            pages[i + storeMin - min] = Arrays.copyOf(page, page.length);
+            pages[i + storeMin - min] = copyOf(page);
           }
         }
       } else if (min > storeMax) {
@@ -220,7 +280,7 @@ public final class PaginatedStore implements Store {
         for (int i = 0; i < store.pages.length; ++i) {
           double[] page = store.pages[i];
           if (null != page) {
-            pages[i] = Arrays.copyOf(page, page.length);
+            pages[i] = copyOf(page);
           }
         }
       } else if (min < storeMin) {
@@ -232,7 +292,7 @@ public final class PaginatedStore implements Store {
           if (null != page) {
             double[] target = pages[i + storeMin - min];
             if (null == target) {
-              pages[i + storeMin - min] = Arrays.copyOf(page, page.length);
+              pages[i + storeMin - min] = copyOf(page);
             } else {
               for (int j = 0; j < page.length; ++j) {
                 target[j] += page[j];
@@ -252,7 +312,7 @@ public final class PaginatedStore implements Store {
           if (null != page) {
             double[] target = pages[i];
             if (null == target) {
-              pages[i] = Arrays.copyOf(page, page.length);
+              pages[i] = copyOf(page);
             } else {
               for (int j = 0; j < page.length; ++j) {
                 target[j] += page[j];
@@ -274,11 +334,33 @@ public final class PaginatedStore implements Store {
     if (null != pages) {
       for (double[] page : pages) {
         if (null != page) {
+          // Keep the page, so that it does not need to be allocated again.
           Arrays.fill(page, 0D);
         }
       }
     }
     minPageIndex = Integer.MAX_VALUE;
+    totalCount = 0;
+  }
+
+  /**
+   * Clears the store and hands its pages back to the allocator they have been obtained from,
+   * unlike {@link #clear()}, which keeps them. The store can still be used afterwards, in which
+   * case it allocates new pages.
+   */
+  @Override
+  public void release() {
+    // The pages do not need to be zeroed, as allocators only hand out arrays of zeros.
+    if (null != pages) {
+      for (int i = 0; i < pages.length; ++i) {
+        if (null != pages[i]) {
+          allocator.release(pages[i]);
+          pages[i] = null;
+        }
+      }
+    }
+    minPageIndex = Integer.MAX_VALUE;
+    totalCount = 0;
   }
 
   @Override
@@ -291,17 +373,27 @@ public final class PaginatedStore implements Store {
     return new DescendingIterator();
   }
 
+  @Override
+  public BinCursor getAscendingCursor() {
+    return new AscendingCursor();
+  }
+
+  @Override
+  public BinCursor getDescendingCursor() {
+    return new DescendingCursor();
+  }
+
   private static int aligned(int required) {
     return (required + GROWTH - 1) & -GROWTH;
   }
 
-  private static double[][] deepCopy(double[][] pages) {
+  private double[][] deepCopy(double[][] pages) {
     if (null != pages) {
       double[][] copy = new double[pages.length][];
       for (int i = 0; i < pages.length; ++i) {
         double[] page = pages[i];
         if (null != page) {
-          copy[i] = Arrays.copyOf(page, page.length);
+          copy[i] = copyOf(page);
         }
       }
       return copy;
@@ -309,6 +401,12 @@ public final class PaginatedStore implements Store {
     return null;
   }
 
+  private double[] copyOf(double[] page) {
+    final double[] copy = allocator.allocate(page.length);
+    System.arraycopy(page, 0, copy, 0, page.length);
+    return copy;
+  }
+
   private final class AscendingIterator implements Iterator<Bin> {
 
     int pageIndex = 0;
@@ -421,6 +519,73 @@ public final class PaginatedStore implements Store {
     }
   }
 
+  private final class AscendingCursor implements BinCursor {
+
+    int pageIndex = 0;
+    int valueIndex = -1;
+    double count;
+
+    @Override
+    public boolean advance() {
+      if (null == pages) {
+        return false;
+      }
+      for (; pageIndex < pages.length; ++pageIndex, valueIndex = -1) {
+        final double[] page = pages[pageIndex];
+        if (null != page) {
+          while (++valueIndex < page.length) {
+            if ((count = page[valueIndex]) != 0D) {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int index() {
+      return ((pageIndex + minPageIndex) << PAGE_SHIFT) + valueIndex;
+    }
+
+    @Override
+    public double count() {
+      return count;
+    }
+  }
+
+  private final class DescendingCursor implements BinCursor {
+
+    int pageIndex = null == pages ? -1 : pages.length - 1;
+    int valueIndex = PAGE_SIZE;
+    double count;
+
+    @Override
+    public boolean advance() {
+      for (; pageIndex >= 0; --pageIndex, valueIndex = PAGE_SIZE) {
+        final double[] page = pages[pageIndex];
+        if (null != page) {
+          while (--valueIndex >= 0) {
+            if ((count = page[valueIndex]) != 0D) {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int index() {
+      return ((pageIndex + minPageIndex) << PAGE_SHIFT) + valueIndex;
+    }
+
+    @Override
+    public double count() {
+      return count;
+    }
+  }
+
   @Override
   public void encode(Output output, Flag.Type storeFlagType) throws IOException {
     if (isEmpty()) {
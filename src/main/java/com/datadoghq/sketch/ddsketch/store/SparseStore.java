@@ -19,6 +19,8 @@ import java.util.TreeMap;
 public class SparseStore implements Store {
 
   private final NavigableMap<Integer, Double> bins;
+  // The sum of the counts of the bins, which is maintained as the store is updated.
+  private double totalCount;
 
   public SparseStore() {
     this.bins = new TreeMap<>();
@@ -26,11 +28,13 @@ public class SparseStore implements Store {
 
   private SparseStore(SparseStore store) {
     this.bins = new TreeMap<>(store.bins);
+    this.totalCount = store.totalCount;
   }
 
   @Override
   public void add(int index) {
     bins.merge(index, 1.0, Double::sum);
+    totalCount++;
   }
 
   @Override
@@ -42,6 +46,7 @@ public class SparseStore implements Store {
       return;
     }
     bins.merge(index, count, Double::sum);
+    totalCount += count;
   }
 
   @Override
@@ -50,6 +55,7 @@ public class SparseStore implements Store {
       return;
     }
     bins.merge(bin.getIndex(), bin.getCount(), Double::sum);
+    totalCount += bin.getCount();
   }
 
   @Override
@@ -60,6 +66,12 @@ public class SparseStore implements Store {
   @Override
   public void clear() {
     this.bins.clear();
+    this.totalCount = 0;
+  }
+
+  @Override
+  public double getTotalCount() {
+    return totalCount;
   }
 
   @Override
@@ -87,6 +99,45 @@ public class SparseStore implements Store {
     return getBinIterator(bins.descendingMap());
   }
 
+  @Override
+  public BinCursor getAscendingCursor() {
+    return getBinCursor(bins);
+  }
+
+  @Override
+  public BinCursor getDescendingCursor() {
+    return getBinCursor(bins.descendingMap());
+  }
+
+  private static BinCursor getBinCursor(Map<Integer, Double> bins) {
+
+    final Iterator<Entry<Integer, Double>> iterator = bins.entrySet().iterator();
+
+    return new BinCursor() {
+
+      private Entry<Integer, Double> entry;
+
+      @Override
+      public boolean advance() {
+        if (!iterator.hasNext()) {
+          return false;
+        }
+        entry = iterator.next();
+        return true;
+      }
+
+      @Override
+      public int index() {
+        return entry.getKey();
+      }
+
+      @Override
+      public double count() {
+        return entry.getValue();
+      }
+    };
+  }
+
   private static Iterator<Bin> getBinIterator(Map<Integer, Double> bins) {
 
     final Iterator<Entry<Integer, Double>> iterator = bins.entrySet().iterator();
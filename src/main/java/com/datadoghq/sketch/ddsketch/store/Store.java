@@ -14,6 +14,7 @@ import com.datadoghq.sketch.ddsketch.encoding.Input;
 import com.datadoghq.sketch.ddsketch.encoding.Output;
 import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Spliterators;
@@ -64,6 +65,46 @@ public interface Store {
     add(bin.getIndex(), bin.getCount());
   }
 
+  /**
+   * Updates the counters of contiguous indices, starting at the specified index, with the remaining
+   * counts of the provided buffer, whose position is moved to its limit.
+   *
+   * <p>This is equivalent to calling {@link #add(int, double)} on each count, but implementations
+   * may process the counts in bulk.
+   *
+   * @param index the index of the counter to be updated with the first remaining count, such that
+   *     {@code index + contiguousCounts.remaining() - 1} does not overflow
+   * @param contiguousCounts the buffer that holds the non-negative counts
+   * @throws IllegalArgumentException if one of the counts is negative
+   */
+  default void add(int index, DoubleBuffer contiguousCounts) {
+    while (contiguousCounts.hasRemaining()) {
+      add(index++, contiguousCounts.get());
+    }
+  }
+
+  /**
+   * Increments the counters at the specified indices. An index that appears multiple times gets
+   * its counter incremented as many times.
+   *
+   * <p>This is equivalent to calling {@link #add(int)} on each index, but implementations may
+   * process the indices in bulk.
+   *
+   * @param indexes the array that holds the indices of the counters to be incremented
+   * @param from the position in {@code indexes} of the first index (inclusive)
+   * @param to the position in {@code indexes} of the last index (exclusive)
+   * @throws IndexOutOfBoundsException if {@code from} is negative, {@code to} is greater than the
+   *     length of {@code indexes} or {@code from} is greater than {@code to}
+   */
+  default void add(int[] indexes, int from, int to) {
+    if (from < 0 || from > to || to > indexes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    for (int i = from; i < to; i++) {
+      add(indexes[i]);
+    }
+  }
+
   /**
    * Merges another store into this one. This should be equivalent as running the {@code add}
    * operations that have been run on the other {@code store} on this one.
@@ -74,6 +115,61 @@ public interface Store {
     store.forEach(this::add);
   }
 
+  /**
+   * Merges other stores into this one. This should be equivalent to merging them one after the
+   * other using {@link #mergeWith(Store)}, but makes it possible for the store to size itself once
+   * for the bins of all the stores.
+   *
+   * <p>The default implementation {@linkplain #reserve reserves} the union of the index ranges of
+   * the stores before merging them one after the other.
+   *
+   * @param stores the stores to be merged into this one
+   */
+  default void mergeWith(Store... stores) {
+    int minIndex = Integer.MAX_VALUE;
+    int maxIndex = Integer.MIN_VALUE;
+    for (final Store store : stores) {
+      if (!store.isEmpty()) {
+        minIndex = Math.min(minIndex, store.getMinIndex());
+        maxIndex = Math.max(maxIndex, store.getMaxIndex());
+      }
+    }
+    if (minIndex <= maxIndex) {
+      reserve(minIndex, maxIndex);
+    }
+    for (final Store store : stores) {
+      mergeWith(store);
+    }
+  }
+
+  /**
+   * Hints that bins whose indices are in the specified range are about to be added to this store,
+   * for instance by merging other stores into it, so that it can allocate the memory they need at
+   * once rather than growing several times. This does not change the content of the store.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @param minIndex the minimum index of the bins that are about to be added
+   * @param maxIndex the maximum index of the bins that are about to be added
+   */
+  default void reserve(int minIndex, int maxIndex) {}
+
+  /**
+   * Multiplies all the counts of this store by the specified factor. Counts that underflow to zero
+   * are removed from the store.
+   *
+   * @param factor the positive and finite factor to multiply the counts by
+   * @throws IllegalArgumentException if {@code factor} is not positive or not finite
+   */
+  default void scale(double factor) {
+    if (!(factor > 0) || factor == Double.POSITIVE_INFINITY) {
+      throw new IllegalArgumentException("The scaling factor must be positive and finite.");
+    }
+    final Store store = copy();
+    clear();
+    store.forEach((index, count) -> add(index, count * factor));
+  }
+
   /** @return a (deep) copy of this store */
   Store copy();
 
@@ -83,12 +179,27 @@ public interface Store {
    */
   void clear();
 
+  /**
+   * Clears the store and hands the memory that holds its counts back to the allocator it has been
+   * obtained from, if any, so that it can be recycled, unlike {@link #clear()}, which keeps it. The
+   * store can still be used afterwards, in which case it allocates memory again.
+   *
+   * <p>The default implementation does nothing, for stores that do not obtain memory from an
+   * allocator. Those are not cleared.
+   */
+  default void release() {}
+
   /** @return {@code true} iff the {@code Store} does not contain any non-zero counter */
   default boolean isEmpty() {
     return getStream().mapToDouble(Bin::getCount).allMatch(count -> count == 0);
   }
 
-  /** @return the sum of the counters of this store */
+  /**
+   * Returns the sum of the counters of this store. The stores of this package keep track of it as
+   * they are updated, so that it is returned in constant time.
+   *
+   * @return the sum of the counters of this store
+   */
   default double getTotalCount() {
     return getStream().mapToDouble(Bin::getCount).sum();
   }
@@ -117,6 +228,54 @@ public interface Store {
         .getIndex();
   }
 
+  /**
+   * Returns the index of the bin that holds the element of the specified rank, elements being
+   * ordered from lowest to highest index. This is the lowest index such that the sum of the
+   * counters up to that index, included, is greater than {@code rank}.
+   *
+   * @param rank the rank, starting at zero
+   * @return the index of the bin that holds the element of the specified rank, or the highest
+   *     index of a non-empty bin if {@code rank} is not lower than the total count
+   * @throws java.util.NoSuchElementException if the store is empty
+   */
+  default int getAscendingIndexAtRank(double rank) {
+    final BinCursor cursor = getAscendingCursor();
+    if (!cursor.advance()) {
+      throw new NoSuchElementException();
+    }
+    int index = cursor.index();
+    double n = cursor.count();
+    while (n <= rank && cursor.advance()) {
+      index = cursor.index();
+      n += cursor.count();
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the bin that holds the element of the specified rank, elements being
+   * ordered from highest to lowest index. This is the highest index such that the sum of the
+   * counters down to that index, included, is greater than {@code rank}.
+   *
+   * @param rank the rank, starting at zero
+   * @return the index of the bin that holds the element of the specified rank, or the lowest index
+   *     of a non-empty bin if {@code rank} is not lower than the total count
+   * @throws java.util.NoSuchElementException if the store is empty
+   */
+  default int getDescendingIndexAtRank(double rank) {
+    final BinCursor cursor = getDescendingCursor();
+    if (!cursor.advance()) {
+      throw new NoSuchElementException();
+    }
+    int index = cursor.index();
+    double n = cursor.count();
+    while (n <= rank && cursor.advance()) {
+      index = cursor.index();
+      n += cursor.count();
+    }
+    return index;
+  }
+
   /**
    * Supplies each bin to the acceptor
    *
@@ -149,6 +308,28 @@ public interface Store {
         Spliterators.spliteratorUnknownSize(getDescendingIterator(), 0), false);
   }
 
+  /**
+   * Returns a cursor over the non-empty bins of this store, from lowest to highest index. Unlike
+   * {@link #getAscendingIterator()}, stores that implement it natively do not allocate objects for
+   * each bin.
+   *
+   * @return an ascending cursor over the non-empty bins of this store
+   */
+  default BinCursor getAscendingCursor() {
+    return BinCursor.of(getAscendingIterator());
+  }
+
+  /**
+   * Returns a cursor over the non-empty bins of this store, from highest to lowest index. Unlike
+   * {@link #getDescendingIterator()}, stores that implement it natively do not allocate objects for
+   * each bin.
+   *
+   * @return a descending cursor over the non-empty bins of this store
+   */
+  default BinCursor getDescendingCursor() {
+    return BinCursor.of(getDescendingIterator());
+  }
+
   /**
    * @return an iterator that iterates over the non-empty bins of this store, from lowest to highest
    *     index
@@ -0,0 +1,54 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+/**
+ * An object that provides heap stores, such as {@link DenseStore}s and {@link PaginatedStore}s,
+ * with the arrays that hold their counts.
+ *
+ * <p>Implementations must be thread-safe, as they may be shared by stores that are used by distinct
+ * threads.
+ */
+public interface StoreAllocator {
+
+  /**
+   * Allocates an array of counts.
+   *
+   * @param length the length of the array
+   * @return an array of length {@code length} whose counts are all zero
+   */
+  double[] allocate(int length);
+
+  /**
+   * Hands back an array that is no longer used by the store it has been allocated for. The array
+   * must not be used afterwards.
+   *
+   * @param array an array that has been returned by {@link #allocate} and not released yet
+   */
+  void release(double[] array);
+
+  /**
+   * Returns whether this allocator recycles the arrays that are released to it. If so, stores only
+   * request arrays of the lengths that they have already been allocated, for instance when they
+   * are copied, so that the arrays fall into the same size classes. Otherwise, copies only hold the
+   * counts of the non-empty range of the store that they are copied from.
+   *
+   * @return whether released arrays are recycled, which is the case unless overridden
+   */
+  default boolean isRecycling() {
+    return true;
+  }
+
+  /**
+   * Returns the allocator that stores use by default, which allocates a new array for each request
+   * and leaves released arrays to the garbage collector.
+   *
+   * @return the heap allocator
+   */
+  static StoreAllocator heap() {
+    return HeapAllocator.INSTANCE;
+  }
+}
@@ -7,6 +7,9 @@ package com.datadoghq.sketch.ddsketch.store;
 
 public class UnboundedSizeDenseStore extends DenseStore {
 
+  // Remaining counts up to that many ulps of the count before subtraction are rounding errors.
+  private static final int MAX_ROUNDING_ERROR_ULPS = 16;
+
   public UnboundedSizeDenseStore() {
     super();
   }
@@ -19,7 +22,29 @@ public class UnboundedSizeDenseStore extends DenseStore {
     super(arrayLengthGrowthIncrement, arrayLengthOverhead);
   }
 
-  private UnboundedSizeDenseStore(UnboundedSizeDenseStore store) {
+  public UnboundedSizeDenseStore(StoreAllocator allocator) {
+    super(allocator);
+  }
+
+  public UnboundedSizeDenseStore(
+      int arrayLengthGrowthIncrement, int arrayLengthOverhead, StoreAllocator allocator) {
+    super(arrayLengthGrowthIncrement, arrayLengthOverhead, allocator);
+  }
+
+  UnboundedSizeDenseStore(CountArray countArray) {
+    super(countArray);
+  }
+
+  UnboundedSizeDenseStore(int arrayLengthGrowthIncrement, CountArray countArray) {
+    super(arrayLengthGrowthIncrement, countArray);
+  }
+
+  UnboundedSizeDenseStore(
+      int arrayLengthGrowthIncrement, int arrayLengthOverhead, CountArray countArray) {
+    super(arrayLengthGrowthIncrement, arrayLengthOverhead, countArray);
+  }
+
+  UnboundedSizeDenseStore(UnboundedSizeDenseStore store) {
     super(store);
   }
 
@@ -53,13 +78,63 @@ public class UnboundedSizeDenseStore extends DenseStore {
       return;
     }
 
+    invalidateRankIndex();
+
     if (store.minIndex < minIndex || store.maxIndex > maxIndex) {
       extendRange(store.minIndex, store.maxIndex);
     }
 
-    for (int index = store.minIndex; index <= store.maxIndex; index++) {
-      counts[index - offset] += store.counts[index - store.offset];
+    addCounts(
+        store.minIndex - offset,
+        store,
+        store.minIndex - store.offset,
+        store.maxIndex - store.minIndex + 1);
+    totalCount += store.totalCount;
+  }
+
+  /**
+   * Subtracts the counts of another store from the counts of this store, which reverts {@link
+   * #mergeWith(Store)}. The counts of the other store are expected to have been added to this
+   * store; counts that would become negative or that are within a few ulps of zero after the
+   * subtraction, for instance because of floating-point rounding errors, are set to zero instead.
+   *
+   * @param store the store whose counts are to be subtracted from the counts of this store
+   */
+  public void subtract(Store store) {
+
+    if (store.isEmpty() || isEmpty()) {
+      return;
     }
+
+    invalidateRankIndex();
+
+    if (store instanceof DenseStore) {
+      final DenseStore denseStore = (DenseStore) store;
+      final int fromIndex = Math.max(denseStore.minIndex, minIndex);
+      final int toIndex = Math.min(denseStore.maxIndex, maxIndex);
+      for (int index = fromIndex; index <= toIndex; index++) {
+        subtract(index - offset, denseStore.getCount(index - denseStore.offset));
+      }
+    } else {
+      store.forEach(
+          (index, count) -> {
+            if (index >= minIndex && index <= maxIndex) {
+              subtract(index - offset, count);
+            }
+          });
+    }
+
+    trimRange();
+  }
+
+  private void subtract(int arrayIndex, double count) {
+    final double currentCount = getCount(arrayIndex);
+    final double subtractedCount =
+        currentCount - count <= MAX_ROUNDING_ERROR_ULPS * Math.ulp(currentCount)
+            ? currentCount
+            : count;
+    addToCount(arrayIndex, -subtractedCount);
+    totalCount -= subtractedCount;
   }
 
   @Override
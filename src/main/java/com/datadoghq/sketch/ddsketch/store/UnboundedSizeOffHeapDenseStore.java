@@ -0,0 +1,39 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+/** An {@link UnboundedSizeDenseStore} that keeps its counts off-heap. */
+public class UnboundedSizeOffHeapDenseStore extends UnboundedSizeDenseStore
+    implements OffHeapDenseStore {
+
+  public UnboundedSizeOffHeapDenseStore() {
+    this(OffHeapAllocator.direct());
+  }
+
+  public UnboundedSizeOffHeapDenseStore(OffHeapAllocator allocator) {
+    super(new OffHeapCountArray(allocator));
+  }
+
+  public UnboundedSizeOffHeapDenseStore(
+      OffHeapAllocator allocator, int arrayLengthGrowthIncrement, int arrayLengthOverhead) {
+    super(arrayLengthGrowthIncrement, arrayLengthOverhead, new OffHeapCountArray(allocator));
+  }
+
+  private UnboundedSizeOffHeapDenseStore(UnboundedSizeOffHeapDenseStore store) {
+    super(store);
+  }
+
+  @Override
+  public Store copy() {
+    return new UnboundedSizeOffHeapDenseStore(this);
+  }
+
+  @Override
+  public void close() {
+    release();
+    ((OffHeapCountArray) countArray).close();
+  }
+}
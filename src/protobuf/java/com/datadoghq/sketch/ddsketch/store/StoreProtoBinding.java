@@ -36,7 +36,7 @@ public class StoreProtoBinding {
       // For the dense store, we use the dense representation to encode the bin counts.
       builder.setContiguousBinIndexOffset(store.minIndex);
       for (int i = store.minIndex - store.offset; i <= store.maxIndex - store.offset; i++) {
-        builder.addContiguousBinCounts(store.counts[i]);
+        builder.addContiguousBinCounts(store.getCount(i));
       }
     }
     return builder.build();
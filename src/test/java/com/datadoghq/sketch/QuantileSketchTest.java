@@ -7,6 +7,7 @@ package com.datadoghq.sketch;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.offset;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -94,6 +95,10 @@ public abstract class QuantileSketchTest<QS extends QuantileSketch<QS>> {
     assertThrows(
         IllegalArgumentException.class,
         () -> nonEmptySketch.getValuesAtQuantiles(new double[] {1.1, 1}));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> nonEmptySketch.getValuesAtQuantiles(new double[] {0.5, 1}, new double[1]));
   }
 
   @Test
@@ -138,6 +143,21 @@ public abstract class QuantileSketchTest<QS extends QuantileSketch<QS>> {
         assertEquals(valueAtQuantile, valuesAtQuantiles[0]);
       }
 
+      // Quantiles in arbitrary order, queried at once.
+      final double[] quantiles = {0.99, 0.5, 0, 0.999, 1, 0.75, 0.5};
+      final double[] expectedValues =
+          Arrays.stream(quantiles).map(sketch::getValueAtQuantile).toArray();
+      assertArrayEquals(expectedValues, sketch.getValuesAtQuantiles(quantiles));
+      final double[] valueBuffer = new double[quantiles.length + 1];
+      sketch.getValuesAtQuantiles(quantiles, valueBuffer);
+      assertArrayEquals(expectedValues, Arrays.copyOf(valueBuffer, quantiles.length));
+
+      // Quantiles in ascending order, queried at once.
+      final double[] sortedQuantiles = {0, 0.001, 0.25, 0.5, 0.5, 0.75, 0.99, 1};
+      assertArrayEquals(
+          Arrays.stream(sortedQuantiles).map(sketch::getValueAtQuantile).toArray(),
+          sketch.getValuesAtQuantiles(sortedQuantiles));
+
       assertSumAccurate(values, sketch.getSum());
       assertAverageAccurate(values, sketch.getAverage());
     }
@@ -149,6 +169,11 @@ public abstract class QuantileSketchTest<QS extends QuantileSketch<QS>> {
       Arrays.stream(values).forEach(sketch);
       test(false, values, sketch);
     }
+    {
+      final QS sketch = newSketch();
+      sketch.accept(values);
+      test(false, values, sketch);
+    }
     {
       final QS sketch = newSketch();
       // Use LinkedHashMap to maintain order.
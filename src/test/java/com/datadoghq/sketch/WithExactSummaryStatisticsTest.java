@@ -106,7 +106,7 @@ public abstract class WithExactSummaryStatisticsTest<
       if (count == 0) {
         throw new NoSuchElementException();
       }
-      return new double[] {0};
+      return new double[quantiles.length];
     }
   }
 
@@ -0,0 +1,196 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.datadoghq.sketch.QuantileSketchTest;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import com.datadoghq.sketch.util.accuracy.AccuracyTester;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+abstract class ConcurrentDDSketchTest extends QuantileSketchTest<ConcurrentDDSketch> {
+
+  abstract double relativeAccuracy();
+
+  IndexMapping mapping() {
+    return new LogarithmicMapping(relativeAccuracy());
+  }
+
+  Supplier<Store> storeSupplier() {
+    return UnboundedSizeDenseStore::new;
+  }
+
+  @Override
+  public ConcurrentDDSketch newSketch() {
+    return new ConcurrentDDSketch(mapping(), storeSupplier(), 4);
+  }
+
+  @Override
+  protected void assertQuantileAccurate(
+      boolean merged, double[] sortedValues, double quantile, double actualQuantileValue) {
+    DDSketchTest.assertQuantileAccurate(
+        sortedValues, quantile, actualQuantileValue, relativeAccuracy());
+  }
+
+  @Override
+  protected void assertMinAccurate(double[] sortedValues, double actualMinValue) {
+    assertAccurate(sortedValues[0], actualMinValue);
+  }
+
+  @Override
+  protected void assertMaxAccurate(double[] sortedValues, double actualMaxValue) {
+    assertAccurate(sortedValues[sortedValues.length - 1], actualMaxValue);
+  }
+
+  @Override
+  protected void assertSumAccurate(double[] sortedValues, double actualSumValue) {
+    // The sum is accurate if the values that have been added to the sketch have same sign.
+    if (sortedValues[0] >= 0 || sortedValues[sortedValues.length - 1] <= 0) {
+      assertAccurate(Arrays.stream(sortedValues).sum(), actualSumValue);
+    }
+  }
+
+  @Override
+  protected void assertAverageAccurate(double[] sortedValues, double actualAverageValue) {
+    // The average is accurate if the values that have been added to the sketch have same sign.
+    if (sortedValues[0] >= 0 || sortedValues[sortedValues.length - 1] <= 0) {
+      assertAccurate(Arrays.stream(sortedValues).average().getAsDouble(), actualAverageValue);
+    }
+  }
+
+  private void assertAccurate(double expected, double actual) {
+    final double relaxedMinExpected =
+        expected > 0 ? expected * (1 - relativeAccuracy()) : expected * (1 + relativeAccuracy());
+    final double relaxedMaxExpected =
+        expected > 0 ? expected * (1 + relativeAccuracy()) : expected * (1 - relativeAccuracy());
+    if (actual < relaxedMinExpected - AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR
+        || actual > relaxedMaxExpected + AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR) {
+      fail();
+    }
+  }
+
+  @Test
+  void testNumStripes() {
+    assertThat(new ConcurrentDDSketch(mapping(), storeSupplier(), 1).getNumStripes()).isEqualTo(1);
+    assertThat(new ConcurrentDDSketch(mapping(), storeSupplier(), 3).getNumStripes()).isEqualTo(4);
+    assertThat(new ConcurrentDDSketch(mapping(), storeSupplier(), 8).getNumStripes()).isEqualTo(8);
+  }
+
+  @Test
+  void testInvalidNumStripes() {
+    try {
+      new ConcurrentDDSketch(mapping(), storeSupplier(), 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("positive");
+    }
+    try {
+      new ConcurrentDDSketch(mapping(), storeSupplier(), (1 << 30) + 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains(Integer.toString(1 << 30));
+    }
+  }
+
+  @Test
+  void testConcurrentAdding() throws Exception {
+    final int numThreads = 8;
+    final int numValuesPerThread = 10000;
+    final double[][] values = new double[numThreads][];
+    for (int i = 0; i < numThreads; i++) {
+      values[i] =
+          ThreadLocalRandom.current()
+              .doubles(numValuesPerThread, -1000, 1000)
+              .map(v -> Math.abs(v) < 1 ? 0 : v)
+              .toArray();
+    }
+
+    final ConcurrentDDSketch sketch = newSketch();
+    final DDSketch expected = new DDSketch(mapping(), storeSupplier());
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      final Future<?>[] futures = new Future<?>[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+        final double[] threadValues = values[i];
+        futures[i] =
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (final double value : threadValues) {
+                    sketch.accept(value);
+                    if (value > 999) {
+                      // Query while other threads are writing.
+                      sketch.getValueAtQuantile(0.5);
+                    }
+                  }
+                  return null;
+                });
+        Arrays.stream(threadValues).forEach(expected);
+      }
+      start.countDown();
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(sketch.getCount()).isEqualTo(expected.getCount());
+    final DDSketch folded = sketch.toDDSketch();
+    assertThat(folded.getCount()).isEqualTo(expected.getCount());
+    final double[] quantiles = {0, 0.01, 0.25, 0.5, 0.75, 0.99, 1};
+    assertThat(sketch.getValuesAtQuantiles(quantiles))
+        .containsExactly(expected.getValuesAtQuantiles(quantiles));
+    assertThat(sketch.getMinValue()).isEqualTo(expected.getMinValue());
+    assertThat(sketch.getMaxValue()).isEqualTo(expected.getMaxValue());
+  }
+
+  @Test
+  void testMergingIntoItself() {
+    final ConcurrentDDSketch sketch = newSketch();
+    sketch.accept(1);
+    sketch.accept(-2);
+    sketch.mergeWith(sketch);
+    assertThat(sketch.getCount()).isEqualTo(4);
+  }
+
+  static class ConcurrentDDSketchTest1 extends ConcurrentDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-1;
+    }
+  }
+
+  static class ConcurrentDDSketchTest2 extends ConcurrentDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-2;
+    }
+  }
+
+  static class ConcurrentDDSketchTest3 extends ConcurrentDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-3;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.offset;
+
+import com.datadoghq.sketch.ddsketch.mapping.CubicallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class DDSketchRecorderTest {
+
+  private static final IndexMapping MAPPING = new LogarithmicMapping(1e-2);
+
+  @Test
+  void testIntervals() {
+    final DDSketchRecorder recorder = new DDSketchRecorder(MAPPING, UnboundedSizeDenseStore::new);
+
+    recorder.accept(1);
+    recorder.accept(-2, 3);
+    final DDSketch firstInterval = recorder.getIntervalSketch();
+    assertThat(firstInterval.getCount()).isEqualTo(4);
+    assertThat(firstInterval.getMinValue()).isCloseTo(-2, offset(0.1));
+
+    final DDSketch emptyInterval = recorder.getIntervalSketch(firstInterval);
+    assertThat(emptyInterval).isSameAs(firstInterval);
+    assertThat(emptyInterval.isEmpty()).isTrue();
+
+    recorder.accept(0);
+    recorder.accept(5);
+    final DDSketch secondInterval = recorder.getIntervalSketch(emptyInterval);
+    assertThat(secondInterval.getCount()).isEqualTo(2);
+
+    recorder.accept(7);
+    recorder.reset();
+    assertThat(recorder.getIntervalSketch(secondInterval).isEmpty()).isTrue();
+  }
+
+  @Test
+  void testIndexMappingMismatch() {
+    final DDSketchRecorder recorder = new DDSketchRecorder(MAPPING, UnboundedSizeDenseStore::new);
+    recorder.accept(1);
+    final DDSketch sketchToRecycle =
+        new DDSketch(new CubicallyInterpolatedMapping(1e-2), UnboundedSizeDenseStore::new);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> recorder.getIntervalSketch(sketchToRecycle));
+    // Nothing has been lost.
+    assertThat(recorder.getIntervalSketch().getCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testConcurrentRecording() throws Exception {
+    final int numThreads = 4;
+    final int numValuesPerThread = 100000;
+    final DDSketchRecorder recorder = new DDSketchRecorder(MAPPING, UnboundedSizeDenseStore::new);
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    double totalCount = 0;
+    try {
+      final Future<?>[] futures = new Future<?>[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+        futures[i] =
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int j = 0; j < numValuesPerThread; j++) {
+                    recorder.accept(j % 1000 - 500);
+                  }
+                  return null;
+                });
+      }
+      start.countDown();
+      DDSketch intervalSketch = null;
+      for (final Future<?> future : futures) {
+        while (!future.isDone()) {
+          intervalSketch = recorder.getIntervalSketch(intervalSketch);
+          totalCount += intervalSketch.getCount();
+        }
+        future.get();
+      }
+      totalCount += recorder.getIntervalSketch(intervalSketch).getCount();
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(totalCount).isEqualTo((double) numThreads * numValuesPerThread);
+  }
+}
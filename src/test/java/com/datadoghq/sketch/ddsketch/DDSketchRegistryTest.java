@@ -0,0 +1,227 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
+import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import com.datadoghq.sketch.ddsketch.encoding.Output;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class DDSketchRegistryTest {
+
+  private static final IndexMapping INDEX_MAPPING = new LogarithmicMapping(0.01);
+
+  private static DDSketchRegistry newRegistry(int maxIdleFlushes) {
+    return new DDSketchRegistry(INDEX_MAPPING, UnboundedSizeDenseStore::new, maxIdleFlushes, 4);
+  }
+
+  private static Map<Long, DDSketchWithExactSummaryStatistics> flush(
+      DDSketchRegistry registry, boolean omitIndexMapping) throws IOException {
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    registry.flush(output, omitIndexMapping);
+    final Map<Long, DDSketchWithExactSummaryStatistics> sketches = new HashMap<>();
+    DDSketchRegistry.decodeFlushed(
+        ByteArrayInput.wrap(output.backingArray(), 0, output.numWrittenBytes()),
+        UnboundedSizeDenseStore::new,
+        omitIndexMapping ? INDEX_MAPPING : null,
+        (sketch, key) -> assertNull(sketches.put(key, sketch)));
+    return sketches;
+  }
+
+  @Test
+  void testInvalidParameters() {
+    assertThrows(IllegalArgumentException.class, () -> newRegistry(0));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new DDSketchRegistry(INDEX_MAPPING, UnboundedSizeDenseStore::new, 1, 0));
+    final IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                new DDSketchRegistry(
+                    INDEX_MAPPING, UnboundedSizeDenseStore::new, 1, (1 << 16) + 1));
+    assertTrue(exception.getMessage().contains("65536"));
+  }
+
+  @Test
+  void testNumStripes() {
+    assertEquals(
+        1, new DDSketchRegistry(INDEX_MAPPING, UnboundedSizeDenseStore::new, 1, 1).getNumStripes());
+    assertEquals(
+        8, new DDSketchRegistry(INDEX_MAPPING, UnboundedSizeDenseStore::new, 1, 5).getNumStripes());
+  }
+
+  @Test
+  void testFlushingEmpty() throws IOException {
+    assertTrue(flush(newRegistry(1), false).isEmpty());
+  }
+
+  @Test
+  void testFlushing() throws IOException {
+    for (final boolean omitIndexMapping : new boolean[] {false, true}) {
+      final DDSketchRegistry registry = newRegistry(3);
+      final Map<Long, DDSketchWithExactSummaryStatistics> expected = new HashMap<>();
+      // Enough keys for the tables to grow several times.
+      for (long key = -500; key < 500; key++) {
+        final DDSketchWithExactSummaryStatistics sketch =
+            new DDSketchWithExactSummaryStatistics(INDEX_MAPPING, UnboundedSizeDenseStore::new);
+        // Spread the keys over the whole range.
+        final long registryKey = key * (Long.MAX_VALUE / 500);
+        for (int i = 0; i <= Math.abs(key) % 7; i++) {
+          final double value = key * 31 + i;
+          registry.accept(registryKey, value);
+          sketch.accept(value);
+        }
+        registry.accept(registryKey, key, 0.5);
+        sketch.accept(key, 0.5);
+        expected.put(registryKey, sketch);
+      }
+      assertEquals(expected.size(), registry.getNumSketches());
+
+      final Map<Long, DDSketchWithExactSummaryStatistics> flushed =
+          flush(registry, omitIndexMapping);
+      assertEquals(expected.keySet(), flushed.keySet());
+      expected.forEach(
+          (key, sketch) -> {
+            final DDSketchWithExactSummaryStatistics actual = flushed.get(key);
+            assertEquals(sketch.getCount(), actual.getCount());
+            assertEquals(sketch.getSum(), actual.getSum());
+            assertEquals(sketch.getMinValue(), actual.getMinValue());
+            assertEquals(sketch.getMaxValue(), actual.getMaxValue());
+            assertEquals(sketch.getValueAtQuantile(0.5), actual.getValueAtQuantile(0.5));
+          });
+
+      // Flushed sketches are cleared and are not flushed again until they are written to.
+      assertTrue(flush(registry, omitIndexMapping).isEmpty());
+      registry.accept(0, 42);
+      final Map<Long, DDSketchWithExactSummaryStatistics> reflushed =
+          flush(registry, omitIndexMapping);
+      assertEquals(1, reflushed.size());
+      assertEquals(1, reflushed.get(0L).getCount());
+      assertEquals(42, reflushed.get(0L).getMaxValue());
+    }
+  }
+
+  @Test
+  void testRejectingInvalidValues() throws IOException {
+    final DDSketchRegistry registry = newRegistry(1);
+    final double untrackableValue = 2 * INDEX_MAPPING.maxIndexableValue();
+    assertThrows(IllegalArgumentException.class, () -> registry.accept(1, untrackableValue));
+    assertThrows(IllegalArgumentException.class, () -> registry.accept(2, -untrackableValue, 1));
+    assertThrows(IllegalArgumentException.class, () -> registry.accept(3, 1, -1));
+    // No sketch is created, so that nothing is flushed.
+    assertEquals(0, registry.getNumSketches());
+    assertTrue(flush(registry, false).isEmpty());
+  }
+
+  @Test
+  void testEvictingIdleSketches() throws IOException {
+    final DDSketchRegistry registry = newRegistry(2);
+    for (long key = 0; key < 100; key++) {
+      registry.accept(key, key);
+    }
+    assertEquals(100, flush(registry, false).size());
+    assertEquals(100, registry.getNumSketches());
+
+    // Keep writing to the even keys only.
+    for (int flush = 0; flush < 2; flush++) {
+      for (long key = 0; key < 100; key += 2) {
+        registry.accept(key, key);
+      }
+      assertEquals(50, flush(registry, false).size());
+    }
+    assertEquals(50, registry.getNumSketches());
+
+    // The remaining sketches are still found after the eviction of the other ones.
+    for (long key = 0; key < 100; key++) {
+      registry.accept(key, key);
+    }
+    assertEquals(100, registry.getNumSketches());
+    final Map<Long, DDSketchWithExactSummaryStatistics> flushed = flush(registry, false);
+    for (long key = 0; key < 100; key++) {
+      assertEquals(1, flushed.get(key).getCount());
+    }
+  }
+
+  @Test
+  void testWritingToOutputWithoutHoldingLocks() throws Exception {
+    final DDSketchRegistry registry = newRegistry(1);
+    for (long key = 0; key < 100; key++) {
+      registry.accept(key, key);
+    }
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final int[] numWrittenBytes = {0};
+      // Writes to every stripe would block if the output were written to while holding a lock.
+      final Output output =
+          value -> {
+            if (numWrittenBytes[0]++ == 0) {
+              try {
+                executor
+                    .submit(
+                        () -> {
+                          for (long key = 0; key < 100; key++) {
+                            registry.accept(key, key);
+                          }
+                        })
+                    .get(10, TimeUnit.SECONDS);
+              } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                throw new IOException(e);
+              }
+            }
+          };
+      registry.flush(output, false);
+      assertTrue(numWrittenBytes[0] > 0);
+    } finally {
+      executor.shutdown();
+    }
+    // The concurrent writes to the stripes that were already flushed are in the next flush.
+    assertFalse(flush(registry, false).isEmpty());
+  }
+
+  @Test
+  void testConcurrentWrites() throws Exception {
+    final DDSketchRegistry registry = newRegistry(1);
+    final int numThreads = 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      final Future<?>[] futures = new Future<?>[numThreads];
+      for (int t = 0; t < numThreads; t++) {
+        futures[t] =
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 10000; i++) {
+                    registry.accept(i % 100, i);
+                  }
+                });
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    final Map<Long, DDSketchWithExactSummaryStatistics> flushed = flush(registry, false);
+    assertEquals(100, flushed.size());
+    for (long key = 0; key < 100; key++) {
+      assertEquals(100 * numThreads, flushed.get(key).getCount());
+    }
+  }
+}
@@ -18,6 +18,7 @@ import com.datadoghq.sketch.ddsketch.mapping.CubicallyInterpolatedMapping;
 import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
 import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
 import com.datadoghq.sketch.ddsketch.mapping.QuadraticallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.store.Bin;
 import com.datadoghq.sketch.ddsketch.store.Store;
 import com.datadoghq.sketch.ddsketch.store.StoreTestCase;
 import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
@@ -25,7 +26,9 @@ import com.datadoghq.sketch.util.accuracy.AccuracyTester;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -314,6 +317,39 @@ abstract class DDSketchTest extends QuantileSketchTest<DDSketch> {
     assertEncodes(true, values, decoded);
   }
 
+  @Test
+  void testMergingMultiple() {
+    final double[] values = new double[] {0.33, -7, 0, 1e6, -1e-3, 42, 0};
+    final DDSketch sketch = newSketch();
+    sketch.accept(values[0]);
+    final DDSketch[] others = new DDSketch[values.length - 1];
+    for (int i = 1; i < values.length; i++) {
+      others[i - 1] = newSketch();
+      others[i - 1].accept(values[i]);
+    }
+    sketch.mergeWith(others);
+    assertEncodes(true, values, sketch);
+  }
+
+  @Test
+  void testFractionalCounts() {
+    // The total count is lower than that of a single value, so that all quantiles are the minimum.
+    final DDSketch sketch = newSketch();
+    sketch.accept(5, 0.5);
+    assertAccurate(5, sketch.getValueAtQuantile(0));
+    assertAccurate(5, sketch.getValueAtQuantile(0.5));
+    assertAccurate(5, sketch.getValueAtQuantile(1));
+    sketch.accept(-3, 0.25);
+    sketch.accept(0, 0.125);
+    final double[] quantiles = {0, 0.5, 1};
+    for (final double value : sketch.getValuesAtQuantiles(quantiles)) {
+      assertAccurate(-3, value);
+    }
+    for (final double quantile : quantiles) {
+      assertAccurate(-3, sketch.getValueAtQuantile(quantile));
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("values")
   void testConversion(double[] values) {
@@ -335,6 +371,57 @@ abstract class DDSketchTest extends QuantileSketchTest<DDSketch> {
     assertEncodes(false, values, convertedSketch);
   }
 
+  @ParameterizedTest
+  @MethodSource("values")
+  void testBatchAccept(double[] values) {
+    final DDSketch scalarSketch = newSketch();
+    Arrays.stream(values).forEach(scalarSketch);
+
+    final DDSketch batchSketch = newSketch();
+    final int middle = values.length / 3;
+    batchSketch.accept(values, 0, middle);
+    batchSketch.accept(values, middle, values.length);
+
+    assertSameBins(scalarSketch, batchSketch);
+  }
+
+  @Test
+  void testLongBatchAccept() {
+    final long[] values = IntStream.range(-1000, 1000).mapToLong(i -> (long) i * i * i).toArray();
+    final DDSketch scalarSketch = newSketch();
+    Arrays.stream(values).forEach(scalarSketch::accept);
+
+    final DDSketch batchSketch = newSketch();
+    batchSketch.accept(values);
+
+    assertSameBins(scalarSketch, batchSketch);
+  }
+
+  @Test
+  void testBatchAcceptUntrackableValue() {
+    final DDSketch sketch = newSketch();
+    final double[] values = {1, 2, Double.POSITIVE_INFINITY, 3};
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> sketch.accept(values));
+    assertThat(sketch.isEmpty()).isTrue();
+    assertThatExceptionOfType(IndexOutOfBoundsException.class)
+        .isThrownBy(() -> sketch.accept(values, 3, 2));
+    sketch.accept(values, 0, 2);
+    assertThat(sketch.getCount()).isEqualTo(2);
+  }
+
+  private static void assertSameBins(DDSketch expected, DDSketch actual) {
+    assertThat(actual.getZeroCount()).isEqualTo(expected.getZeroCount());
+    assertThat(getBins(actual.getNegativeValueStore()))
+        .isEqualTo(getBins(expected.getNegativeValueStore()));
+    assertThat(getBins(actual.getPositiveValueStore()))
+        .isEqualTo(getBins(expected.getPositiveValueStore()));
+  }
+
+  private static List<Bin> getBins(Store store) {
+    return store.getAscendingStream().collect(Collectors.toList());
+  }
+
   static Stream<Arguments> values() {
     return Stream.of(
         arguments(new Object[] {new double[] {0}}),
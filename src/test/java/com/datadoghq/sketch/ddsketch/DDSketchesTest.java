@@ -0,0 +1,95 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class DDSketchesTest {
+
+  private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.75, 0.99, 1};
+
+  private static void assertMergesAll(List<DDSketch> sketches) {
+    final DDSketch expected = sketches.get(0).copy();
+    for (final DDSketch sketch : sketches.subList(1, sketches.size())) {
+      expected.mergeWith(sketch);
+    }
+    final double[] counts = sketches.stream().mapToDouble(DDSketch::getCount).toArray();
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    final DDSketch merged;
+    try {
+      merged = DDSketches.mergeAll(sketches, pool);
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(expected.getCount(), merged.getCount(), 1e-9);
+    assertEquals(expected.getZeroCount(), merged.getZeroCount(), 1e-9);
+    assertEquals(expected.getMinValue(), merged.getMinValue());
+    assertEquals(expected.getMaxValue(), merged.getMaxValue());
+    assertArrayEquals(
+        expected.getValuesAtQuantiles(QUANTILES), merged.getValuesAtQuantiles(QUANTILES));
+    // The input sketches are not modified.
+    assertArrayEquals(counts, sketches.stream().mapToDouble(DDSketch::getCount).toArray());
+  }
+
+  @Test
+  void testMergingAll() {
+    for (final int numSketches : new int[] {1, 2, 100, 1000, 5000}) {
+      final List<DDSketch> sketches = new ArrayList<>();
+      for (int i = 0; i < numSketches; i++) {
+        final DDSketch sketch = DDSketches.unboundedDense(0.01);
+        // Sketches cover distinct ranges, so that the merged one needs to grow.
+        final double scale = Math.pow(1.01, i % 700);
+        for (int j = 0; j < 20; j++) {
+          sketch.accept(ThreadLocalRandom.current().nextGaussian() * scale);
+        }
+        if (i % 3 == 0) {
+          sketch.accept(0);
+        }
+        sketches.add(sketch);
+      }
+      assertMergesAll(sketches);
+    }
+  }
+
+  @Test
+  void testMergingAllWithEmptyAndMixedStores() {
+    final List<DDSketch> sketches = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      final DDSketch sketch =
+          i % 2 == 0 ? DDSketches.collapsingLowestDense(0.01, 2048) : DDSketches.sparse(0.01);
+      if (i % 5 != 0) {
+        sketch.accept(i);
+        sketch.accept(-i, 2);
+      }
+      sketches.add(sketch);
+    }
+    assertMergesAll(sketches);
+  }
+
+  @Test
+  void testMergingAllInvalid() {
+    assertThrows(
+        IllegalArgumentException.class, () -> DDSketches.mergeAll(Collections.emptyList()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            DDSketches.mergeAll(
+                Arrays.asList(
+                    DDSketches.unboundedDense(0.01),
+                    new DDSketch(new LogarithmicMapping(0.02), UnboundedSizeDenseStore::new))));
+  }
+}
@@ -0,0 +1,194 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.datadoghq.sketch.QuantileSketchTest;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import com.datadoghq.sketch.util.accuracy.AccuracyTester;
+import java.util.Arrays;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+abstract class DecayingDDSketchTest extends QuantileSketchTest<DecayingDDSketch> {
+
+  private static final long HALF_LIFE = 100;
+
+  private long time = 0;
+
+  abstract double relativeAccuracy();
+
+  IndexMapping mapping() {
+    return new LogarithmicMapping(relativeAccuracy());
+  }
+
+  Supplier<Store> storeSupplier() {
+    return UnboundedSizeDenseStore::new;
+  }
+
+  @Override
+  public DecayingDDSketch newSketch() {
+    return new DecayingDDSketch(mapping(), storeSupplier(), HALF_LIFE, () -> time);
+  }
+
+  @Override
+  protected void assertQuantileAccurate(
+      boolean merged, double[] sortedValues, double quantile, double actualQuantileValue) {
+    DDSketchTest.assertQuantileAccurate(
+        sortedValues, quantile, actualQuantileValue, relativeAccuracy());
+  }
+
+  @Override
+  protected void assertMinAccurate(double[] sortedValues, double actualMinValue) {
+    assertAccurate(sortedValues[0], actualMinValue);
+  }
+
+  @Override
+  protected void assertMaxAccurate(double[] sortedValues, double actualMaxValue) {
+    assertAccurate(sortedValues[sortedValues.length - 1], actualMaxValue);
+  }
+
+  @Override
+  protected void assertSumAccurate(double[] sortedValues, double actualSumValue) {
+    // The sum is accurate if the values that have been added to the sketch have same sign.
+    if (sortedValues[0] >= 0 || sortedValues[sortedValues.length - 1] <= 0) {
+      assertAccurate(Arrays.stream(sortedValues).sum(), actualSumValue);
+    }
+  }
+
+  @Override
+  protected void assertAverageAccurate(double[] sortedValues, double actualAverageValue) {
+    // The average is accurate if the values that have been added to the sketch have same sign.
+    if (sortedValues[0] >= 0 || sortedValues[sortedValues.length - 1] <= 0) {
+      assertAccurate(Arrays.stream(sortedValues).average().getAsDouble(), actualAverageValue);
+    }
+  }
+
+  private void assertAccurate(double expected, double actual) {
+    final double relaxedMinExpected =
+        expected > 0 ? expected * (1 - relativeAccuracy()) : expected * (1 + relativeAccuracy());
+    final double relaxedMaxExpected =
+        expected > 0 ? expected * (1 + relativeAccuracy()) : expected * (1 - relativeAccuracy());
+    if (actual < relaxedMinExpected - AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR
+        || actual > relaxedMaxExpected + AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR) {
+      fail();
+    }
+  }
+
+  @Test
+  void testInvalidHalfLife() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new DecayingDDSketch(mapping(), storeSupplier(), 0, () -> time));
+  }
+
+  @Test
+  void testDecayingCount() {
+    final DecayingDDSketch sketch = newSketch();
+    sketch.accept(1);
+    time = HALF_LIFE;
+    assertThat(sketch.getCount()).isCloseTo(0.5, offset(1e-12));
+    sketch.accept(2, 2);
+    assertThat(sketch.getCount()).isCloseTo(2.5, offset(1e-12));
+    time = 3 * HALF_LIFE;
+    assertThat(sketch.getCount()).isCloseTo(0.625, offset(1e-12));
+    assertAccurate(0.125 * 1 + 0.5 * 2, sketch.getSum());
+  }
+
+  @Test
+  void testWeighingRecentValuesMore() {
+    final DecayingDDSketch sketch = newSketch();
+    for (int i = 0; i < 1000; i++) {
+      sketch.accept(10);
+    }
+    time = 10 * HALF_LIFE;
+    sketch.accept(new double[] {1000, 1000, 1000});
+    // The 1000 old values weigh less than one recent value.
+    assertAccurate(1000, sketch.getValueAtQuantile(0.5));
+    assertAccurate(10, sketch.getValueAtQuantile(0));
+    assertAccurate(10, sketch.getMinValue());
+    assertThat(sketch.getCount()).isCloseTo(3 + 1000 / 1024.0, offset(1e-9));
+  }
+
+  @Test
+  void testMovingLandmark() {
+    final DecayingDDSketch sketch = newSketch();
+    sketch.accept(1);
+    // The weight of the values that are added after 40 half-lives would exceed 2^32.
+    time = 40 * HALF_LIFE;
+    sketch.accept(2, 2);
+    assertThat(sketch.getCount()).isCloseTo(2, offset(1e-9));
+    assertAccurate(1, sketch.getMinValue());
+    assertAccurate(2, sketch.getValueAtQuantile(0.5));
+
+    // The counts of the old values underflow when the landmark is moved, and are removed.
+    time = 2000 * HALF_LIFE;
+    sketch.accept(3);
+    assertThat(sketch.getCount()).isEqualTo(1);
+    assertAccurate(3, sketch.getMinValue());
+    assertAccurate(3, sketch.getMaxValue());
+  }
+
+  @Test
+  void testMergingWithDifferentLandmarks() {
+    final DecayingDDSketch sketch = newSketch();
+    sketch.accept(1, 4);
+    time = 50 * HALF_LIFE;
+    final DecayingDDSketch other = newSketch();
+    other.accept(2);
+    time = 51 * HALF_LIFE;
+
+    final DecayingDDSketch merged = sketch.copy();
+    merged.mergeWith(other);
+    final DecayingDDSketch reverseMerged = other.copy();
+    reverseMerged.mergeWith(sketch);
+    final double expectedCount = 4 * Math.pow(2, -51) + 0.5;
+    assertThat(merged.getCount()).isCloseTo(expectedCount, offset(1e-12));
+    assertThat(reverseMerged.getCount()).isCloseTo(expectedCount, offset(1e-12));
+    assertAccurate(1, merged.getMinValue());
+    assertAccurate(1, reverseMerged.getMinValue());
+
+    merged.mergeWith(merged);
+    assertThat(merged.getCount()).isCloseTo(2 * expectedCount, offset(1e-12));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            sketch.mergeWith(
+                new DecayingDDSketch(mapping(), storeSupplier(), 2 * HALF_LIFE, () -> time)));
+  }
+
+  static class DecayingDDSketchTest1 extends DecayingDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-1;
+    }
+  }
+
+  static class DecayingDDSketchTest2 extends DecayingDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-2;
+    }
+  }
+
+  static class DecayingDDSketchTest3 extends DecayingDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-3;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static com.datadoghq.sketch.ddsketch.footprint.Distributions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
+import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import com.datadoghq.sketch.ddsketch.footprint.Distribution;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.*;
+import com.datadoghq.sketch.util.accuracy.AccuracyTester;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class EncodedDDSketchViewTest {
+
+  private static final IndexMapping INDEX_MAPPING = new LogarithmicMapping(0.01);
+
+  private static final List<Supplier<Store>> STORE_SUPPLIERS =
+      Arrays.asList(
+          SparseStore::new,
+          HashSparseStore::new,
+          () -> new CollapsingLowestDenseStore(100),
+          UnboundedSizeDenseStore::new,
+          PaginatedStore::new);
+
+  private static final Distribution[] DISTRIBUTIONS = {
+    NORMAL.of(0, 1), NORMAL.of(100, 10), POISSON.of(0.99), POINT.of(0), UNIFORM.of(1000)
+  };
+
+  private static final double[] QUANTILES = {0, 0.001, 0.01, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+
+  @Test
+  void testEmpty() throws IOException {
+    final EncodedDDSketchView view =
+        EncodedDDSketchView.wrap(encode(new DDSketch(INDEX_MAPPING, SparseStore::new), false));
+    assertTrue(view.isEmpty());
+    assertEquals(0, view.getCount());
+    assertThrows(NoSuchElementException.class, view::getMinValue);
+    assertThrows(NoSuchElementException.class, view::getMaxValue);
+    assertThrows(NoSuchElementException.class, () -> view.getValueAtQuantile(0.5));
+  }
+
+  @Test
+  void testQueryingEncodedSketches() throws IOException {
+    for (final Supplier<Store> storeSupplier : STORE_SUPPLIERS) {
+      for (final Distribution distribution : DISTRIBUTIONS) {
+        final DDSketch sketch = new DDSketch(INDEX_MAPPING, storeSupplier);
+        for (int i = 0; i < 10_000; i++) {
+          sketch.accept(distribution.nextValue());
+        }
+        assertSameQueries(sketch, EncodedDDSketchView.wrap(encode(sketch, false)));
+        assertSameQueries(
+            sketch,
+            EncodedDDSketchView.of(
+                ByteArrayInput.wrap(encode(sketch, true).array()), INDEX_MAPPING));
+      }
+    }
+  }
+
+  @Test
+  void testQueryingNegativeValues() throws IOException {
+    final DDSketch sketch = new DDSketch(INDEX_MAPPING, UnboundedSizeDenseStore::new);
+    for (int i = -5000; i <= 1000; i++) {
+      sketch.accept(i / 10.0, 1 + (i & 3));
+    }
+    final ByteBuffer encoded = encode(sketch, false);
+    final ByteBuffer direct = ByteBuffer.allocateDirect(encoded.remaining() + 1);
+    direct.position(1);
+    direct.put(encoded.duplicate());
+    direct.position(1);
+    assertSameQueries(sketch, EncodedDDSketchView.wrap(direct));
+    assertEquals(1, direct.position());
+  }
+
+  @Test
+  void testQueryingExactSummaryStatistics() throws IOException {
+    final DDSketchWithExactSummaryStatistics sketch =
+        new DDSketchWithExactSummaryStatistics(INDEX_MAPPING, PaginatedStore::new);
+    for (int i = 0; i < 10_000; i++) {
+      sketch.accept(NORMAL.of(10, 100).nextValue());
+    }
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    sketch.encode(output, false);
+    final EncodedDDSketchView view =
+        EncodedDDSketchView.wrap(ByteBuffer.wrap(output.trimmedCopy()));
+    assertEquals(sketch.getCount(), view.getCount());
+    assertEquals(sketch.getSum(), view.getSum());
+    assertEquals(sketch.getMinValue(), view.getMinValue());
+    assertEquals(sketch.getMaxValue(), view.getMaxValue());
+    assertArrayEquals(sketch.getValuesAtQuantiles(QUANTILES), view.getValuesAtQuantiles(QUANTILES));
+  }
+
+  @Test
+  void testQueryingUnsortedBins() throws IOException {
+    final DDSketch sketch = new DDSketch(INDEX_MAPPING, UnboundedSizeDenseStore::new);
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    sketch.encode(output, false);
+    for (int i = 10; i > 0; i--) {
+      final Store store = new SparseStore();
+      store.add(i * 100, i);
+      store.add(-i * 100, i);
+      store.encode(output, Flag.Type.POSITIVE_STORE);
+      store.encode(output, Flag.Type.NEGATIVE_STORE);
+      sketch.getPositiveValueStore().mergeWith(store);
+      sketch.getNegativeValueStore().mergeWith(store);
+    }
+    assertSameQueries(sketch, EncodedDDSketchView.wrap(ByteBuffer.wrap(output.trimmedCopy())));
+  }
+
+  @Test
+  void testMissingIndexMapping() throws IOException {
+    final DDSketch sketch = new DDSketch(INDEX_MAPPING, SparseStore::new);
+    sketch.accept(1);
+    assertThrows(
+        IllegalArgumentException.class, () -> EncodedDDSketchView.wrap(encode(sketch, true)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> EncodedDDSketchView.wrap(encode(sketch, false), new LogarithmicMapping(0.02)));
+  }
+
+  private static ByteBuffer encode(DDSketch sketch, boolean omitIndexMapping) throws IOException {
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    sketch.encode(output, omitIndexMapping);
+    return ByteBuffer.wrap(output.trimmedCopy());
+  }
+
+  private static void assertSameQueries(DDSketch sketch, EncodedDDSketchView view) {
+    assertEquals(sketch.isEmpty(), view.isEmpty());
+    assertEquals(
+        sketch.getCount(), view.getCount(), AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+    assertEquals(
+        sketch.getSum(),
+        view.getSum(),
+        AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR * Math.max(1, Math.abs(sketch.getSum())));
+    assertEquals(sketch.getMinValue(), view.getMinValue());
+    assertEquals(sketch.getMaxValue(), view.getMaxValue());
+    for (final double quantile : QUANTILES) {
+      assertEquals(sketch.getValueAtQuantile(quantile), view.getValueAtQuantile(quantile));
+    }
+    assertArrayEquals(sketch.getValuesAtQuantiles(QUANTILES), view.getValuesAtQuantiles(QUANTILES));
+    assertThrows(IllegalArgumentException.class, () -> view.getValueAtQuantile(-0.1));
+    assertThrows(IllegalArgumentException.class, () -> view.getValueAtQuantile(1.1));
+  }
+}
@@ -0,0 +1,192 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static com.datadoghq.sketch.ddsketch.footprint.Distributions.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
+import com.datadoghq.sketch.ddsketch.encoding.Flag;
+import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
+import com.datadoghq.sketch.ddsketch.encoding.Input;
+import com.datadoghq.sketch.ddsketch.encoding.MalformedInputException;
+import com.datadoghq.sketch.ddsketch.footprint.Distribution;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.*;
+import com.datadoghq.sketch.util.accuracy.AccuracyTester;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class EncodedSketchMergerTest {
+
+  private static final IndexMapping INDEX_MAPPING = new LogarithmicMapping(0.01);
+
+  private static final List<Supplier<Store>> STORE_SUPPLIERS =
+      Arrays.asList(
+          SparseStore::new,
+          HashSparseStore::new,
+          () -> new CollapsingLowestDenseStore(100),
+          UnboundedSizeDenseStore::new,
+          PaginatedStore::new);
+
+  private static final Distribution[] DISTRIBUTIONS = {
+    NORMAL.of(0, 1), NORMAL.of(100, 10), POISSON.of(0.99), POINT.of(0), UNIFORM.of(1000)
+  };
+
+  private final EncodedSketchMerger merger = new EncodedSketchMerger();
+
+  @Test
+  void testMergingNothing() throws IOException {
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    merger.merge(Collections.emptyList(), output);
+    assertEquals(0, output.numWrittenBytes());
+  }
+
+  @Test
+  void testMerging() throws IOException {
+    for (int numSketches = 1; numSketches <= 12; numSketches += 5) {
+      final DDSketch expected = new DDSketch(INDEX_MAPPING, UnboundedSizeDenseStore::new);
+      final List<Input> inputs = new ArrayList<>();
+      for (int i = 0; i < numSketches; i++) {
+        final DDSketch sketch =
+            new DDSketch(INDEX_MAPPING, STORE_SUPPLIERS.get(i % STORE_SUPPLIERS.size()));
+        final Distribution distribution = DISTRIBUTIONS[i % DISTRIBUTIONS.length];
+        for (int j = 0; j < 1000 * i; j++) {
+          sketch.accept(distribution.nextValue());
+        }
+        expected.mergeWith(sketch);
+        // The index mapping may be omitted as long as one of the sketches encodes it.
+        inputs.add(encode(sketch, i % 2 == 1));
+      }
+
+      final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+      merger.merge(inputs, output);
+      for (final Input input : inputs) {
+        assertFalse(input.hasRemaining());
+      }
+
+      final DDSketch merged =
+          DDSketch.decode(
+              ByteArrayInput.wrap(output.trimmedCopy()), UnboundedSizeDenseStore::new);
+      assertEquals(INDEX_MAPPING, merged.getIndexMapping());
+      assertEquals(
+          expected.getZeroCount(),
+          merged.getZeroCount(),
+          AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+      assertSameBins(expected.getPositiveValueStore(), merged.getPositiveValueStore());
+      assertSameBins(expected.getNegativeValueStore(), merged.getNegativeValueStore());
+    }
+  }
+
+  @Test
+  void testMergingExactSummaryStatistics() throws IOException {
+    final DDSketchWithExactSummaryStatistics expected =
+        new DDSketchWithExactSummaryStatistics(INDEX_MAPPING, UnboundedSizeDenseStore::new);
+    final List<Input> inputs = new ArrayList<>();
+    for (final Distribution distribution : DISTRIBUTIONS) {
+      final DDSketchWithExactSummaryStatistics sketch =
+          new DDSketchWithExactSummaryStatistics(INDEX_MAPPING, PaginatedStore::new);
+      for (int j = 0; j < 1000; j++) {
+        sketch.accept(distribution.nextValue());
+      }
+      expected.mergeWith(sketch);
+      final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+      sketch.encode(output, false);
+      inputs.add(ByteArrayInput.wrap(output.trimmedCopy()));
+    }
+
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    merger.merge(inputs, output);
+    final DDSketchWithExactSummaryStatistics merged =
+        DDSketchWithExactSummaryStatistics.decode(
+            ByteArrayInput.wrap(output.trimmedCopy()), UnboundedSizeDenseStore::new);
+    assertEquals(expected.getCount(), merged.getCount());
+    assertEquals(expected.getMinValue(), merged.getMinValue());
+    assertEquals(expected.getMaxValue(), merged.getMaxValue());
+    assertEquals(
+        expected.getSum(),
+        merged.getSum(),
+        AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR * Math.abs(expected.getSum()));
+    assertEquals(expected.getValueAtQuantile(0.5), merged.getValueAtQuantile(0.5));
+  }
+
+  @Test
+  void testMergingIncompatibleIndexMappings() throws IOException {
+    final DDSketch sketch1 = new DDSketch(new LogarithmicMapping(0.01), SparseStore::new);
+    final DDSketch sketch2 = new DDSketch(new LogarithmicMapping(0.02), SparseStore::new);
+    final Input input1 = encode(sketch1, false);
+    final Input input2 = encode(sketch2, false);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> merger.merge(GrowingByteArrayOutput.withDefaultInitialCapacity(), input1, input2));
+  }
+
+  @Test
+  void testMergingUnsortedBins() throws IOException {
+    final Store store = new UnboundedSizeDenseStore();
+    final GrowingByteArrayOutput unsorted = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    store.add(10);
+    store.encode(unsorted, Flag.Type.POSITIVE_STORE);
+    store.clear();
+    store.add(5);
+    store.encode(unsorted, Flag.Type.POSITIVE_STORE);
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            merger.merge(
+                GrowingByteArrayOutput.withDefaultInitialCapacity(),
+                ByteArrayInput.wrap(unsorted.trimmedCopy())));
+
+    final GrowingByteArrayOutput negativeFirst =
+        GrowingByteArrayOutput.withDefaultInitialCapacity();
+    store.encode(negativeFirst, Flag.Type.NEGATIVE_STORE);
+    store.encode(negativeFirst, Flag.Type.POSITIVE_STORE);
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            merger.merge(
+                GrowingByteArrayOutput.withDefaultInitialCapacity(),
+                ByteArrayInput.wrap(negativeFirst.trimmedCopy())));
+  }
+
+  @Test
+  void testMergingInvalidInput() {
+    assertThrows(
+        MalformedInputException.class,
+        () ->
+            merger.merge(
+                GrowingByteArrayOutput.withDefaultInitialCapacity(),
+                ByteArrayInput.wrap(new byte[] {(byte) 0xFC})));
+  }
+
+  private static Input encode(DDSketch sketch, boolean omitIndexMapping) throws IOException {
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    sketch.encode(output, omitIndexMapping);
+    return ByteArrayInput.wrap(output.trimmedCopy());
+  }
+
+  private static void assertSameBins(Store expected, Store actual) {
+    final Iterator<Bin> expectedIterator = expected.getAscendingIterator();
+    final Iterator<Bin> actualIterator = actual.getAscendingIterator();
+    while (expectedIterator.hasNext() && actualIterator.hasNext()) {
+      final Bin expectedBin = expectedIterator.next();
+      final Bin actualBin = actualIterator.next();
+      assertEquals(expectedBin.getIndex(), actualBin.getIndex());
+      assertEquals(
+          expectedBin.getCount(),
+          actualBin.getCount(),
+          AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+    }
+    assertFalse(expectedIterator.hasNext() || actualIterator.hasNext());
+  }
+}
@@ -6,19 +6,25 @@
 package com.datadoghq.sketch.ddsketch;
 
 import static com.datadoghq.sketch.ddsketch.footprint.Distributions.*;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.datadoghq.sketch.ddsketch.encoding.MalformedInputException;
 import com.datadoghq.sketch.ddsketch.footprint.Distribution;
 import com.datadoghq.sketch.ddsketch.mapping.*;
 import com.datadoghq.sketch.ddsketch.store.*;
 import com.datadoghq.sketch.ddsketch.store.Store;
 import com.datadoghq.sketch.util.accuracy.AccuracyTester;
-import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -57,13 +63,71 @@ public class SerializerTest {
   @MethodSource("sketches")
   public void testProtobufSerialization(
       Supplier<DDSketch> sketchSupplier, Distribution distribution)
-      throws InvalidProtocolBufferException {
+      throws IOException {
     DDSketch sketch = load(sketchSupplier, distribution);
     assertEquals(sketch, sketch.serialize());
     sketch.clear();
     assertEquals(sketch, sketch.serialize());
   }
 
+  @ParameterizedTest
+  @MethodSource("sketches")
+  public void testSerializingIntoBuffer(
+      Supplier<DDSketch> sketchSupplier, Distribution distribution) {
+    final DDSketch sketch = load(sketchSupplier, distribution);
+    final ByteBuffer expected = sketch.serialize();
+    final int size = expected.remaining();
+    final Serializer serializer = new Serializer(ByteBuffer.allocate(0));
+    for (final ByteBuffer target :
+        new ByteBuffer[] {
+          ByteBuffer.allocate(size + 3), ByteBuffer.allocateDirect(size + 3).order(LITTLE_ENDIAN)
+        }) {
+      target.position(3);
+      sketch.serialize(target);
+      assertFalse(target.hasRemaining());
+      target.position(3);
+      Assertions.assertEquals(expected, target);
+
+      target.position(3);
+      sketch.serialize(serializer.reset(target));
+      assertFalse(target.hasRemaining());
+      target.position(3);
+      Assertions.assertEquals(expected, target);
+    }
+    final ByteBuffer tooSmall = ByteBuffer.allocate(size - 1);
+    assertThrows(BufferOverflowException.class, () -> sketch.serialize(tooSmall));
+    Assertions.assertEquals(0, tooSmall.position());
+  }
+
+  @Test
+  public void testDelimitedSerialization() throws IOException {
+    final List<DDSketch> sketches =
+        sketches()
+            .limit(20)
+            .map(
+                arguments -> {
+                  @SuppressWarnings("unchecked")
+                  final Supplier<DDSketch> sketchSupplier =
+                      (Supplier<DDSketch>) arguments.get()[0];
+                  return load(sketchSupplier, (Distribution) arguments.get()[1]);
+                })
+            .collect(Collectors.toList());
+    final ByteBuffer payload = DDSketch.serializeDelimited(sketches);
+    Assertions.assertEquals(
+        sketches.stream().mapToInt(DDSketch::serializedSizeDelimited).sum(), payload.remaining());
+    for (final DDSketch sketch : sketches) {
+      final DDSketch deserialized =
+          DDSketch.deserializeDelimited(payload, UnboundedSizeDenseStore::new);
+      Assertions.assertEquals(
+          sketch.getCount(),
+          deserialized.getCount(),
+          AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+      assertEquals(sketch.getPositiveValueStore(), deserialized.getPositiveValueStore());
+      assertEquals(sketch.getNegativeValueStore(), deserialized.getNegativeValueStore());
+    }
+    assertFalse(payload.hasRemaining());
+  }
+
   private void assertEquals(Store expected, Store actual) {
     Iterator<Bin> expectedIt = expected.getAscendingIterator();
     Iterator<Bin> actualIt = actual.getAscendingIterator();
@@ -78,11 +142,13 @@ public class SerializerTest {
   }
 
   private void assertEquals(DDSketch sketch, ByteBuffer buffer)
-      throws InvalidProtocolBufferException {
+      throws IOException {
     Assertions.assertEquals(
         DDSketchProtoBinding.toProto(sketch).getSerializedSize(), buffer.remaining());
 
     assertArrayEquals(DDSketchProtoBinding.toProto(sketch).toByteArray(), buffer.array());
+    assertDeserializes(sketch, buffer.duplicate());
+    assertDeserializes(sketch, ByteBuffer.wrap(DDSketchProtoBinding.toProto(sketch).toByteArray()));
     com.datadoghq.sketch.ddsketch.proto.DDSketch proto =
         com.datadoghq.sketch.ddsketch.proto.DDSketch.parseFrom(buffer);
 
@@ -105,6 +171,40 @@ public class SerializerTest {
     }
   }
 
+  private void assertDeserializes(DDSketch sketch, ByteBuffer buffer)
+      throws MalformedInputException {
+    final DDSketch deserialized = DDSketch.deserialize(buffer, UnboundedSizeDenseStore::new);
+    assertFalse(buffer.hasRemaining());
+    Assertions.assertEquals(
+        sketch.getCount(), deserialized.getCount(), AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+    Assertions.assertEquals(
+        sketch.getZeroCount(),
+        deserialized.getZeroCount(),
+        AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+    Assertions.assertEquals(
+        sketch.getIndexMapping().relativeAccuracy(),
+        deserialized.getIndexMapping().relativeAccuracy(),
+        AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+    assertEquals(sketch.getPositiveValueStore(), deserialized.getPositiveValueStore());
+    assertEquals(sketch.getNegativeValueStore(), deserialized.getNegativeValueStore());
+  }
+
+  @ParameterizedTest
+  @MethodSource("sketches")
+  public void testDeserializingTruncatedInput(
+      Supplier<DDSketch> sketchSupplier, Distribution distribution) {
+    final ByteBuffer buffer = load(sketchSupplier, distribution).serialize();
+    for (int length = 1; length < buffer.limit(); length += 1 + buffer.limit() / 20) {
+      final ByteBuffer truncated = buffer.duplicate();
+      truncated.limit(length);
+      try {
+        DDSketch.deserialize(truncated, UnboundedSizeDenseStore::new);
+      } catch (MalformedInputException | IllegalArgumentException e) {
+        // expected, unless the truncation happens to fall between fields
+      }
+    }
+  }
+
   private static DDSketch load(Supplier<DDSketch> sketchSupplier, Distribution distribution) {
     DDSketch sketch = sketchSupplier.get();
     for (int i = 0; i < 10_000; ++i) {
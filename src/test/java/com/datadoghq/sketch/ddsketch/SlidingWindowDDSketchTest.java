@@ -0,0 +1,256 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.datadoghq.sketch.QuantileSketchTest;
+import com.datadoghq.sketch.ddsketch.mapping.IndexMapping;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import com.datadoghq.sketch.util.accuracy.AccuracyTester;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+abstract class SlidingWindowDDSketchTest extends QuantileSketchTest<SlidingWindowDDSketch> {
+
+  private static final int NUM_INTERVALS = 6;
+  private static final long INTERVAL_LENGTH = 10;
+  private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.75, 0.99, 1};
+
+  private long time = 0;
+
+  abstract double relativeAccuracy();
+
+  IndexMapping mapping() {
+    return new LogarithmicMapping(relativeAccuracy());
+  }
+
+  @Override
+  public SlidingWindowDDSketch newSketch() {
+    return new SlidingWindowDDSketch(mapping(), NUM_INTERVALS, INTERVAL_LENGTH, () -> time);
+  }
+
+  private DDSketch newReferenceSketch() {
+    return new DDSketch(mapping(), UnboundedSizeDenseStore::new);
+  }
+
+  @Override
+  protected void assertQuantileAccurate(
+      boolean merged, double[] sortedValues, double quantile, double actualQuantileValue) {
+    DDSketchTest.assertQuantileAccurate(
+        sortedValues, quantile, actualQuantileValue, relativeAccuracy());
+  }
+
+  @Override
+  protected void assertMinAccurate(double[] sortedValues, double actualMinValue) {
+    assertAccurate(sortedValues[0], actualMinValue);
+  }
+
+  @Override
+  protected void assertMaxAccurate(double[] sortedValues, double actualMaxValue) {
+    assertAccurate(sortedValues[sortedValues.length - 1], actualMaxValue);
+  }
+
+  @Override
+  protected void assertSumAccurate(double[] sortedValues, double actualSumValue) {
+    // The sum is accurate if the values that have been added to the sketch have same sign.
+    if (sortedValues[0] >= 0 || sortedValues[sortedValues.length - 1] <= 0) {
+      assertAccurate(Arrays.stream(sortedValues).sum(), actualSumValue);
+    }
+  }
+
+  @Override
+  protected void assertAverageAccurate(double[] sortedValues, double actualAverageValue) {
+    // The average is accurate if the values that have been added to the sketch have same sign.
+    if (sortedValues[0] >= 0 || sortedValues[sortedValues.length - 1] <= 0) {
+      assertAccurate(Arrays.stream(sortedValues).average().getAsDouble(), actualAverageValue);
+    }
+  }
+
+  private void assertAccurate(double expected, double actual) {
+    final double relaxedMinExpected =
+        expected > 0 ? expected * (1 - relativeAccuracy()) : expected * (1 + relativeAccuracy());
+    final double relaxedMaxExpected =
+        expected > 0 ? expected * (1 + relativeAccuracy()) : expected * (1 - relativeAccuracy());
+    if (actual < relaxedMinExpected - AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR
+        || actual > relaxedMaxExpected + AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR) {
+      fail();
+    }
+  }
+
+  private static void assertSameContent(DDSketch expected, SlidingWindowDDSketch actual) {
+    assertThat(actual.getCount()).isEqualTo(expected.getCount());
+    assertThat(actual.isEmpty()).isEqualTo(expected.isEmpty());
+    if (!expected.isEmpty()) {
+      assertThat(actual.getValuesAtQuantiles(QUANTILES))
+          .containsExactly(expected.getValuesAtQuantiles(QUANTILES));
+      assertThat(actual.getMinValue()).isEqualTo(expected.getMinValue());
+      assertThat(actual.getMaxValue()).isEqualTo(expected.getMaxValue());
+    }
+  }
+
+  @Test
+  void testInvalidParameters() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SlidingWindowDDSketch(mapping(), 0, INTERVAL_LENGTH, () -> time));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new SlidingWindowDDSketch(mapping(), NUM_INTERVALS, 0, () -> time));
+  }
+
+  @Test
+  void testExpiringIntervals() {
+    final SlidingWindowDDSketch sketch = newSketch();
+    for (int i = 0; i < NUM_INTERVALS; i++) {
+      time = i * INTERVAL_LENGTH + 3;
+      sketch.accept(i + 1, i + 1);
+      sketch.accept(0);
+    }
+    assertThat(sketch.getCount()).isEqualTo(NUM_INTERVALS * (NUM_INTERVALS + 3) / 2);
+
+    // The first interval falls out of the window.
+    time = NUM_INTERVALS * INTERVAL_LENGTH;
+    final DDSketch expected = newReferenceSketch();
+    for (int i = 1; i < NUM_INTERVALS; i++) {
+      expected.accept(i + 1, i + 1);
+      expected.accept(0);
+    }
+    assertSameContent(expected, sketch);
+
+    // Skip two intervals, so that the next two intervals fall out of the window.
+    time = (NUM_INTERVALS + 2) * INTERVAL_LENGTH + 9;
+    sketch.accept(-1);
+    expected.clear();
+    for (int i = 3; i < NUM_INTERVALS; i++) {
+      expected.accept(i + 1, i + 1);
+      expected.accept(0);
+    }
+    expected.accept(-1);
+    assertSameContent(expected, sketch);
+
+    // The whole window falls out.
+    time += NUM_INTERVALS * INTERVAL_LENGTH;
+    assertThat(sketch.isEmpty()).isTrue();
+    assertThat(sketch.getCount()).isZero();
+  }
+
+  @Test
+  void testExpiringWeightedIntervals() {
+    final SlidingWindowDDSketch sketch = newSketch();
+    sketch.accept(5, 0.1);
+    sketch.accept(0, 0.1);
+    time = INTERVAL_LENGTH;
+    sketch.accept(5, 0.2);
+    sketch.accept(0, 0.2);
+
+    // Only the second interval remains.
+    time = NUM_INTERVALS * INTERVAL_LENGTH;
+    assertAccurate(5, sketch.getMaxValue());
+
+    // Expiring the second interval leaves no rounding errors behind.
+    time = (NUM_INTERVALS + 1) * INTERVAL_LENGTH;
+    assertThat(sketch.isEmpty()).isTrue();
+    assertThat(sketch.getCount()).isZero();
+    assertThrows(NoSuchElementException.class, () -> sketch.getValueAtQuantile(0.5));
+  }
+
+  @Test
+  void testMatchingMergedIntervals() {
+    final Random random = new Random(4);
+    final SlidingWindowDDSketch sketch = newSketch();
+    final DDSketch[] intervals = new DDSketch[1000];
+    final long[] intervalNumbers = new long[intervals.length];
+    for (int i = 0; i < intervals.length; i++) {
+      // Some intervals are skipped, and some get no values.
+      time += INTERVAL_LENGTH * (random.nextInt(10) == 0 ? 3 : 1) + random.nextInt(3) - 1;
+      intervals[i] = newReferenceSketch();
+      intervalNumbers[i] = Math.floorDiv(time, INTERVAL_LENGTH);
+      final int numValues = random.nextInt(4) == 0 ? 0 : random.nextInt(100);
+      for (int j = 0; j < numValues; j++) {
+        final double value = Math.exp(random.nextGaussian() * 3) * (random.nextInt(5) - 1);
+        sketch.accept(value);
+        intervals[i].accept(value);
+      }
+      final DDSketch expected = newReferenceSketch();
+      for (int k = i; k >= 0 && intervalNumbers[k] > intervalNumbers[i] - NUM_INTERVALS; k--) {
+        expected.mergeWith(intervals[k]);
+      }
+      assertSameContent(expected, sketch);
+    }
+  }
+
+  @Test
+  void testMergingAlignsIntervals() {
+    final SlidingWindowDDSketch sketch = newSketch();
+    final SlidingWindowDDSketch other = newSketch();
+    for (int i = 0; i < NUM_INTERVALS; i++) {
+      time = i * INTERVAL_LENGTH;
+      sketch.accept(1);
+      other.accept(2);
+    }
+    sketch.mergeWith(other);
+    assertThat(sketch.getCount()).isEqualTo(2 * NUM_INTERVALS);
+
+    // The merged intervals expire along with the intervals of the sketch.
+    time = (NUM_INTERVALS + 1) * INTERVAL_LENGTH;
+    assertThat(sketch.getCount()).isEqualTo(2 * (NUM_INTERVALS - 2));
+    assertThat(other.getCount()).isEqualTo(NUM_INTERVALS - 2);
+
+    sketch.mergeWith(sketch);
+    assertThat(sketch.getCount()).isEqualTo(4 * (NUM_INTERVALS - 2));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            sketch.mergeWith(
+                new SlidingWindowDDSketch(
+                    mapping(), NUM_INTERVALS, 2 * INTERVAL_LENGTH, () -> time)));
+  }
+
+  @Test
+  void testCopying() {
+    final SlidingWindowDDSketch sketch = newSketch();
+    sketch.accept(1);
+    time = INTERVAL_LENGTH;
+    sketch.accept(2);
+    final SlidingWindowDDSketch copy = sketch.copy();
+    sketch.accept(3);
+    assertThat(copy.getCount()).isEqualTo(2);
+    time = NUM_INTERVALS * INTERVAL_LENGTH;
+    assertThat(copy.getCount()).isEqualTo(1);
+    assertThat(sketch.getCount()).isEqualTo(2);
+  }
+
+  static class SlidingWindowDDSketchTest1 extends SlidingWindowDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-1;
+    }
+  }
+
+  static class SlidingWindowDDSketchTest2 extends SlidingWindowDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-2;
+    }
+  }
+
+  static class SlidingWindowDDSketchTest3 extends SlidingWindowDDSketchTest {
+
+    @Override
+    double relativeAccuracy() {
+      return 1e-3;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.encoding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.datadoghq.sketch.ddsketch.DDSketch;
+import com.datadoghq.sketch.ddsketch.DDSketches;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ByteBufferInputOutputTest {
+
+  private static DDSketch sketch() {
+    final DDSketch sketch = DDSketches.unboundedDense(0.01);
+    for (int i = 0; i < 1000; i++) {
+      sketch.accept(ThreadLocalRandom.current().nextGaussian() * 100);
+    }
+    return sketch;
+  }
+
+  private static byte[] encode(DDSketch sketch) throws IOException {
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    sketch.encode(output, false);
+    return output.trimmedCopy();
+  }
+
+  private static byte[] remainingBytes(ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static void assertEncodesAndDecodes(ByteBuffer buffer) throws IOException {
+    final DDSketch sketch = sketch();
+    final byte[] expected = encode(sketch);
+    final ByteOrder order = buffer.order();
+    final int start = buffer.position();
+
+    sketch.encode(ByteBufferOutput.wrap(buffer), false);
+    assertThat(buffer.position()).isEqualTo(start + expected.length);
+    buffer.flip().position(start);
+    assertThat(remainingBytes(buffer)).isEqualTo(expected);
+
+    final DDSketch decoded =
+        DDSketch.decode(ByteBufferInput.wrap(buffer), UnboundedSizeDenseStore::new);
+    assertThat(buffer.hasRemaining()).isFalse();
+    assertThat(encode(decoded)).isEqualTo(expected);
+    assertThat(buffer.order()).isEqualTo(order);
+  }
+
+  @Test
+  void testHeapBuffer() throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    buffer.position(3);
+    assertEncodesAndDecodes(buffer);
+  }
+
+  @Test
+  void testDirectBuffer() throws IOException {
+    assertEncodesAndDecodes(ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  @Test
+  void testMappedBuffer(@TempDir Path directory) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            directory.resolve("sketch"),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 1 << 16);
+      assertEncodesAndDecodes(buffer);
+    }
+  }
+
+  @Test
+  void testFixedCapacityOverflow() {
+    assertThrows(
+        BufferOverflowException.class,
+        () -> sketch().encode(ByteBufferOutput.wrap(ByteBuffer.allocate(4)), false));
+  }
+
+  @Test
+  void testTruncatedInput() throws IOException {
+    final byte[] bytes = encode(sketch());
+    assertThrows(
+        EOFException.class,
+        () ->
+            DDSketch.decode(
+                ByteBufferInput.wrap(ByteBuffer.wrap(bytes, 0, bytes.length - 1)),
+                UnboundedSizeDenseStore::new));
+  }
+
+  @Test
+  void testGrowingOutput() throws IOException {
+    final DDSketch sketch = sketch();
+    final byte[] expected = encode(sketch);
+    for (final GrowingByteBufferOutput output :
+        new GrowingByteBufferOutput[] {
+          GrowingByteBufferOutput.withInitialCapacity(0),
+          GrowingByteBufferOutput.directWithDefaultInitialCapacity()
+        }) {
+      sketch.encode(output, false);
+      assertThat(output.numWrittenBytes()).isEqualTo(expected.length);
+      assertThat(remainingBytes(output.writtenBytes())).isEqualTo(expected);
+
+      output.clear();
+      assertThat(output.numWrittenBytes()).isZero();
+      sketch.encode(output, false);
+      assertThat(remainingBytes(output.writtenBytes())).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void testWritingBytesInBulk() throws IOException {
+    final byte[] bytes = encode(sketch());
+    final GrowingByteArrayOutput arrayOutput = GrowingByteArrayOutput.withInitialCapacity(0);
+    final GrowingByteBufferOutput bufferOutput = GrowingByteBufferOutput.withInitialCapacity(0);
+    final ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+    for (final Output output :
+        new Output[] {arrayOutput, bufferOutput, ByteBufferOutput.wrap(buffer)}) {
+      output.writeByte(bytes[0]);
+      output.writeBytes(bytes, 1, bytes.length - 1);
+    }
+    assertThat(arrayOutput.trimmedCopy()).isEqualTo(bytes);
+    assertThat(remainingBytes(bufferOutput.writtenBytes())).isEqualTo(bytes);
+    assertThat(buffer.array()).isEqualTo(bytes);
+    assertThrows(
+        BufferOverflowException.class, () -> ByteBufferOutput.wrap(buffer).writeBytes(bytes, 0, 1));
+  }
+}
@@ -7,10 +7,15 @@ package com.datadoghq.sketch.ddsketch.footprint;
 
 import static com.datadoghq.sketch.ddsketch.footprint.Distributions.*;
 import static java.util.concurrent.TimeUnit.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.datadoghq.sketch.ddsketch.DDSketch;
 import com.datadoghq.sketch.ddsketch.mapping.BitwiseLinearlyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.mapping.CubicallyInterpolatedMapping;
+import com.datadoghq.sketch.ddsketch.store.CompactDenseStore;
+import com.datadoghq.sketch.ddsketch.store.HashSparseStore;
 import com.datadoghq.sketch.ddsketch.store.PaginatedStore;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
 import java.util.concurrent.TimeUnit;
 import java.util.function.DoubleFunction;
 import java.util.stream.Stream;
@@ -21,8 +26,7 @@ import org.openjdk.jol.info.GraphLayout;
 
 public class FootprintTest {
 
-  public static Stream<Arguments> parameters() {
-    // cross product of distribution, sketch constructor and timeunit
+  private static Stream<Distribution> distributions() {
     return Stream.of(
             POINT.of(42),
             NORMAL.of(0, 1),
@@ -41,7 +45,12 @@ public class FootprintTest {
             POISSON.of(0.5).composeWith(POISSON.of(0.9)),
             POISSON.of(0.7).composeWith(POISSON.of(0.9)),
             POISSON.of(0.01).composeWith(POISSON.of(0.99)),
-            POISSON.of(0.001).composeWith(POISSON.of(0.999)))
+            POISSON.of(0.001).composeWith(POISSON.of(0.999)));
+  }
+
+  public static Stream<Arguments> parameters() {
+    // cross product of distribution, sketch constructor and timeunit
+    return distributions()
         .flatMap(
             dist ->
                 Stream.of(
@@ -50,6 +59,12 @@ public class FootprintTest {
                         re ->
                             new DDSketch(
                                 new BitwiseLinearlyInterpolatedMapping(re), PaginatedStore::new),
+                        re ->
+                            new DDSketch(
+                                new CubicallyInterpolatedMapping(re), CompactDenseStore::new),
+                        re ->
+                            new DDSketch(
+                                new CubicallyInterpolatedMapping(re), HashSparseStore::new),
                         (DoubleFunction<DDSketch>) DDSketch::fast)
                     .flatMap(
                         ctor ->
@@ -71,6 +86,36 @@ public class FootprintTest {
     }
   }
 
+  public static Stream<Arguments> compactParameters() {
+    return distributions()
+        .flatMap(
+            dist ->
+                Stream.of(NANOSECONDS, MICROSECONDS, MILLISECONDS)
+                    .map(timeUnit -> Arguments.of(timeUnit, dist)));
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("compactParameters")
+  public void testCompactFootprint(TimeUnit timeUnit, Distribution distribution) {
+    for (double relativeError = 1e-5; relativeError < 1e-2; relativeError *= 10) {
+      final CubicallyInterpolatedMapping mapping = new CubicallyInterpolatedMapping(relativeError);
+      final DDSketch sketch = new DDSketch(mapping, UnboundedSizeDenseStore::new);
+      final DDSketch compactSketch = new DDSketch(mapping, CompactDenseStore::new);
+      for (int i = 0; i < 100_000; ++i) {
+        long nanos = timeUnit.toNanos(Math.round(distribution.nextValue()));
+        sketch.accept(nanos);
+        compactSketch.accept(nanos);
+      }
+      final long size = GraphLayout.parseInstance(sketch).totalSize();
+      final long compactSize = GraphLayout.parseInstance(compactSketch).totalSize();
+      System.out.println(
+          String.format(
+              "%s (%g): %d bytes, %d bytes with compact counters (%.1fx smaller)",
+              distribution, relativeError, size, compactSize, (double) size / compactSize));
+      assertTrue(compactSize < size);
+    }
+  }
+
   private static void printFootprint(Distribution distribution, Object instance) {
     GraphLayout layout = GraphLayout.parseInstance(instance);
     System.out.println(distribution);
@@ -12,6 +12,8 @@ import static org.assertj.core.api.Assertions.offset;
 
 import com.datadoghq.sketch.ddsketch.store.Bin;
 import com.datadoghq.sketch.ddsketch.store.BinAcceptor;
+import com.datadoghq.sketch.ddsketch.store.Store;
+import com.datadoghq.sketch.ddsketch.store.UnboundedSizeDenseStore;
 import com.datadoghq.sketch.util.accuracy.AccuracyTester;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -107,6 +109,27 @@ public class IndexMappingConverterTest {
     assertThat(outBins).usingRecursiveComparison(BIN_COMPARISON_CONFIG).isEqualTo(shiftedBins);
   }
 
+  @ParameterizedTest
+  @MethodSource("twoMappingsAndBins")
+  void testConvertingCursor(IndexMapping inMapping, IndexMapping outMapping, List<Bin> bins) {
+    final IndexMappingConverter converter =
+        IndexMappingConverter.distributingUniformly(inMapping, outMapping);
+    final List<Bin> expectedBins = new ArrayList<>();
+    converter.convertAscendingIterator(bins.iterator(), listAdder(expectedBins));
+
+    final Store store = new UnboundedSizeDenseStore();
+    bins.forEach(store::add);
+    final List<Bin> outBins = new ArrayList<>();
+    converter.convertAscendingCursor(store.getAscendingCursor(), listAdder(outBins));
+    assertThat(outBins).usingRecursiveComparison(BIN_COMPARISON_CONFIG).isEqualTo(expectedBins);
+
+    // Converters that only implement the iterator-based conversion also accept cursors.
+    final IndexMappingConverter iteratorConverter = converter::convertAscendingIterator;
+    outBins.clear();
+    iteratorConverter.convertAscendingCursor(store.getAscendingCursor(), listAdder(outBins));
+    assertThat(outBins).usingRecursiveComparison(BIN_COMPARISON_CONFIG).isEqualTo(expectedBins);
+  }
+
   static Stream<Arguments> mappingAndBins() {
     return product(mappings(), bins());
   }
@@ -7,9 +7,12 @@ package com.datadoghq.sketch.ddsketch.mapping;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.offset;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.datadoghq.sketch.util.accuracy.AccuracyTester;
 import com.datadoghq.sketch.util.accuracy.RelativeAccuracyTester;
+import java.util.Arrays;
+import java.util.Random;
 import org.assertj.core.data.Offset;
 import org.junit.jupiter.api.Test;
 
@@ -57,6 +60,47 @@ abstract class IndexMappingTest {
     }
   }
 
+  @Test
+  void testIndices() {
+    final Random random = new Random(1);
+    for (double relativeAccuracy = maxTestedRelativeAccuracy;
+        relativeAccuracy >= minTestedRelativeAccuracy;
+        relativeAccuracy *= maxTestedRelativeAccuracy) {
+      final IndexMapping mapping = getMapping(relativeAccuracy);
+      final double minLog = Math.log(mapping.minIndexableValue());
+      final double maxLog = Math.log(mapping.maxIndexableValue());
+      final double[] values = new double[100];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = Math.exp(minLog + (maxLog - minLog) * random.nextDouble());
+      }
+      values[0] = mapping.minIndexableValue();
+      values[1] = mapping.maxIndexableValue();
+      values[2] = 1;
+
+      final int offset = 3;
+      final int[] indices = new int[values.length];
+      mapping.indices(values, offset, values.length - offset, indices);
+      for (int i = 0; i < values.length - offset; i++) {
+        assertThat(indices[i]).isEqualTo(mapping.index(values[offset + i]));
+      }
+      mapping.indices(values, 0, offset, indices);
+      for (int i = 0; i < offset; i++) {
+        assertThat(indices[i]).isEqualTo(mapping.index(values[i]));
+      }
+    }
+  }
+
+  @Test
+  void testIndicesOutOfBounds() {
+    final IndexMapping mapping = getMapping(1e-2);
+    final double[] values = new double[10];
+    Arrays.fill(values, 1);
+    assertThrows(
+        IndexOutOfBoundsException.class, () -> mapping.indices(values, -1, 5, new int[10]));
+    assertThrows(IndexOutOfBoundsException.class, () -> mapping.indices(values, 6, 5, new int[10]));
+    assertThrows(IndexOutOfBoundsException.class, () -> mapping.indices(values, 0, 5, new int[4]));
+  }
+
   @Test
   abstract void testProtoRoundTrip();
 
@@ -0,0 +1,41 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+abstract class CollapsingHighestOffHeapDenseStoreTest extends CollapsingHighestDenseStoreTest {
+
+  @Override
+  Store newStore() {
+    return new CollapsingHighestOffHeapDenseStore(maxNumBins());
+  }
+
+  static class CollapsingHighestOffHeapDenseStoreTest1
+      extends CollapsingHighestOffHeapDenseStoreTest {
+
+    @Override
+    int maxNumBins() {
+      return 1;
+    }
+  }
+
+  static class CollapsingHighestOffHeapDenseStoreTest20
+      extends CollapsingHighestOffHeapDenseStoreTest {
+
+    @Override
+    int maxNumBins() {
+      return 20;
+    }
+  }
+
+  static class CollapsingHighestOffHeapDenseStoreTest1000
+      extends CollapsingHighestOffHeapDenseStoreTest {
+
+    @Override
+    int maxNumBins() {
+      return 1000;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+abstract class CollapsingLowestOffHeapDenseStoreTest extends CollapsingLowestDenseStoreTest {
+
+  @Override
+  Store newStore() {
+    return new CollapsingLowestOffHeapDenseStore(maxNumBins());
+  }
+
+  static class CollapsingLowestOffHeapDenseStoreTest1
+      extends CollapsingLowestOffHeapDenseStoreTest {
+
+    @Override
+    int maxNumBins() {
+      return 1;
+    }
+  }
+
+  static class CollapsingLowestOffHeapDenseStoreTest20
+      extends CollapsingLowestOffHeapDenseStoreTest {
+
+    @Override
+    int maxNumBins() {
+      return 20;
+    }
+  }
+
+  static class CollapsingLowestOffHeapDenseStoreTest1000
+      extends CollapsingLowestOffHeapDenseStoreTest {
+
+    @Override
+    int maxNumBins() {
+      return 1000;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class CompactDenseStoreTest extends ExhaustiveStoreTest {
+
+  @Override
+  Store newStore() {
+    return new CompactDenseStore();
+  }
+
+  @Override
+  void testExtremeValues() {
+    // CompactDenseStore is not meant to be used with values that are extremely far from one another
+    // as it would allocate an excessively large array.
+  }
+
+  @Override
+  void testMergingExtremeValues() {
+    // CompactDenseStore is not meant to be used with values that are extremely far from one another
+    // as it would allocate an excessively large array.
+  }
+
+  @Test
+  void testWidening() {
+    testAdding(new Bin(0, 255), new Bin(0, 1), new Bin(1, 1));
+    testAdding(new Bin(0, 65535), new Bin(0, 1), new Bin(1, 1));
+    testAdding(new Bin(0, 4294967295L), new Bin(0, 1), new Bin(1, 1));
+    testAdding(new Bin(0, 1), new Bin(1, 0.5), new Bin(2, 1));
+    testMerging(new Bin[] {new Bin(0, 200), new Bin(1, 1)}, new Bin[] {new Bin(0, 100)});
+    testMerging(new Bin[] {new Bin(0, 70000)}, new Bin[] {new Bin(1, 1), new Bin(0, 0.25)});
+  }
+
+  @Test
+  void testLongOverflow() {
+    final Store store = newStore();
+    store.add(0, Long.MAX_VALUE);
+    store.add(0, Long.MAX_VALUE);
+    store.add(1);
+    assertEquals(2 * (double) Long.MAX_VALUE, getCount(store, 0));
+    assertEquals(1, getCount(store, 1));
+    assertEquals(2 * (double) Long.MAX_VALUE + 1, store.getTotalCount());
+  }
+
+  private static double getCount(Store store, int index) {
+    final double[] count = {0};
+    store.forEach(
+        (binIndex, binCount) -> {
+          if (binIndex == index) {
+            count[0] = binCount;
+          }
+        });
+    return count[0];
+  }
+}
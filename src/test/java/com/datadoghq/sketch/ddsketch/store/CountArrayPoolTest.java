@@ -0,0 +1,149 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.datadoghq.sketch.ddsketch.DDSketch;
+import com.datadoghq.sketch.ddsketch.mapping.LogarithmicMapping;
+import org.junit.jupiter.api.Test;
+
+class CountArrayPoolTest {
+
+  @Test
+  void testReleasedArraysAreReused() {
+    final CountArrayPool pool = new CountArrayPool();
+    final double[] array = pool.allocate(64);
+    assertEquals(0, pool.getHits());
+    assertEquals(1, pool.getMisses());
+    array[3] = 1;
+    pool.release(array);
+    assertEquals(64 * Double.BYTES, pool.getPooledBytes());
+    assertEquals(32, pool.allocate(32).length);
+    final double[] reused = pool.allocate(64);
+    assertSame(array, reused);
+    assertEquals(0, reused[3]);
+    assertEquals(1, pool.getHits());
+    assertEquals(2, pool.getMisses());
+    assertEquals(0, pool.getPooledBytes());
+  }
+
+  @Test
+  void testMaxPooledBytes() {
+    final CountArrayPool pool = new CountArrayPool(64 * Double.BYTES);
+    pool.release(new double[64]);
+    pool.release(new double[64]);
+    assertEquals(64 * Double.BYTES, pool.getPooledBytes());
+    pool.clear();
+    assertEquals(0, pool.getPooledBytes());
+    assertThrows(IllegalArgumentException.class, () -> new CountArrayPool(-1));
+  }
+
+  @Test
+  void testClearedStoresKeepTheirArrays() {
+    final CountArrayPool pool = new CountArrayPool();
+    for (final Store store : newStores(pool)) {
+      addIndexes(store);
+      final long pooledBytes = pool.getPooledBytes();
+      store.clear();
+      assertEquals(pooledBytes, pool.getPooledBytes());
+      final long misses = pool.getMisses();
+      addIndexes(store);
+      assertEquals(200, store.getTotalCount());
+      assertEquals(misses, pool.getMisses());
+    }
+  }
+
+  @Test
+  void testReleasedStoresReleaseTheirArrays() {
+    final CountArrayPool pool = new CountArrayPool();
+    for (final Store store : newStores(pool)) {
+      addIndexes(store);
+      final long pooledBytes = pool.getPooledBytes();
+      store.release();
+      assertTrue(store.isEmpty());
+      assertTrue(pool.getPooledBytes() > pooledBytes);
+      final long misses = pool.getMisses();
+      addIndexes(store);
+      assertEquals(200, store.getTotalCount());
+      assertEquals(misses, pool.getMisses());
+      pool.clear();
+    }
+  }
+
+  @Test
+  void testReleasedSketchesReleaseTheirArrays() {
+    final CountArrayPool pool = new CountArrayPool();
+    final DDSketch sketch =
+        new DDSketch(new LogarithmicMapping(0.01), () -> new UnboundedSizeDenseStore(pool));
+    for (int value = 1; value <= 100; value++) {
+      sketch.accept(value);
+      sketch.accept(-value);
+    }
+    sketch.accept(0);
+    sketch.release();
+    assertTrue(sketch.isEmpty());
+    assertTrue(pool.getPooledBytes() > 0);
+    final long misses = pool.getMisses();
+    sketch.accept(1);
+    sketch.accept(-1);
+    assertEquals(2, sketch.getCount());
+    assertEquals(misses, pool.getMisses());
+  }
+
+  @Test
+  void testArraysAreNotPooledOnceFull() {
+    final CountArrayPool pool = new CountArrayPool(64 * Double.BYTES);
+    final double[] pooled = new double[64];
+    final double[] notPooled = new double[64];
+    pooled[0] = 1;
+    notPooled[0] = 1;
+    pool.release(pooled);
+    pool.release(notPooled);
+    // Arrays are zeroed when handed out, so the array that is not pooled is left as it is.
+    assertEquals(1, notPooled[0]);
+    assertSame(pooled, pool.allocate(64));
+    assertEquals(0, pooled[0]);
+  }
+
+  private static Store[] newStores(CountArrayPool pool) {
+    return new Store[] {
+      new UnboundedSizeDenseStore(pool),
+      new CollapsingLowestDenseStore(100, pool),
+      new CollapsingHighestDenseStore(100, pool),
+      new PaginatedStore(pool)
+    };
+  }
+
+  private static void addIndexes(Store store) {
+    for (int index = 0; index < 200; index++) {
+      store.add(index);
+    }
+  }
+
+  static class PooledUnboundedSizeDenseStoreTest extends UnboundedSizeDenseStoreTest {
+
+    private final CountArrayPool pool = new CountArrayPool();
+
+    @Override
+    Store newStore() {
+      return new UnboundedSizeDenseStore(pool);
+    }
+  }
+
+  static class PooledPaginatedStoreTest extends PaginatedStoreTest {
+
+    private final CountArrayPool pool = new CountArrayPool();
+
+    @Override
+    Store newStore() {
+      return new PaginatedStore(pool);
+    }
+  }
+}
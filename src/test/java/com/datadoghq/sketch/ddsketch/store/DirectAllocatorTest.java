@@ -0,0 +1,46 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Test;
+
+class DirectAllocatorTest {
+
+  private static final int LENGTH = 1 << 20;
+
+  @Test
+  void testFreeingReleasesMemory() {
+    final long memoryUsed = directMemoryUsed();
+    final OffHeapAllocator allocator = OffHeapAllocator.direct();
+    allocator.free(allocator.allocate(LENGTH));
+    assertEquals(memoryUsed, directMemoryUsed());
+  }
+
+  @Test
+  void testClosingStoreReleasesMemory() {
+    final long memoryUsed = directMemoryUsed();
+    final UnboundedSizeOffHeapDenseStore store =
+        new UnboundedSizeOffHeapDenseStore(OffHeapAllocator.direct(), LENGTH, 0);
+    store.add(0);
+    assertEquals(memoryUsed + (long) LENGTH * Double.BYTES, directMemoryUsed());
+    store.close();
+    assertEquals(memoryUsed, directMemoryUsed());
+  }
+
+  private static long directMemoryUsed() {
+    for (final BufferPoolMXBean pool :
+        ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if (pool.getName().equals("direct")) {
+        return pool.getMemoryUsed();
+      }
+    }
+    throw new IllegalStateException("The direct buffer pool is not available.");
+  }
+}
@@ -0,0 +1,125 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class HybridStoreTest extends ExhaustiveStoreTest {
+
+  @Override
+  Store newStore() {
+    return new HybridStore();
+  }
+
+  @Test
+  void testPromotionOnNumberOfBins() {
+    final HybridStore store = new HybridStore(8);
+    for (int index = 0; index < 8; index++) {
+      store.add(100 * index);
+    }
+    assertFalse(store.isDense());
+    store.add(-100);
+    assertTrue(store.isDense());
+    assertEquals(9, store.getTotalCount());
+    assertEquals(-100, store.getMinIndex());
+    assertEquals(700, store.getMaxIndex());
+  }
+
+  @Test
+  void testPromotionOnDensity() {
+    final HybridStore store = new HybridStore(32);
+    for (int index = 0; index < 15; index++) {
+      store.add(2 * index);
+    }
+    assertFalse(store.isDense());
+    store.add(1);
+    assertTrue(store.isDense());
+  }
+
+  @Test
+  void testMergingPromotes() {
+    final HybridStore store = new HybridStore(8);
+    final HybridStore other = new HybridStore(8);
+    for (int index = 0; index < 5; index++) {
+      store.add(100 * index);
+      other.add(100 * index + 50);
+    }
+    store.mergeWith(other);
+    assertTrue(store.isDense());
+    assertFalse(other.isDense());
+    assertEquals(10, store.getTotalCount());
+  }
+
+  @Test
+  void testMergingOtherStores() {
+    final Store few = new UnboundedSizeDenseStore();
+    final Store many = new UnboundedSizeDenseStore();
+    for (int index = 0; index < 20; index++) {
+      many.add(3 * index, 1 + (index & 3));
+    }
+    few.add(-10, 2);
+    few.add(1000);
+
+    final HybridStore store = new HybridStore(8);
+    store.add(5);
+    store.mergeWith(few);
+    assertFalse(store.isDense());
+    store.mergeWith(many);
+    assertTrue(store.isDense());
+
+    final HybridStore bulkStore = new HybridStore(8);
+    bulkStore.add(5);
+    bulkStore.mergeWith(few, many, store.copy());
+
+    final Store expected = new UnboundedSizeDenseStore();
+    for (int i = 0; i < 2; i++) {
+      expected.add(5);
+      expected.mergeWith(few);
+      expected.mergeWith(many);
+    }
+    assertEquals(getCounts(expected), getCounts(bulkStore));
+    assertEquals(expected.getTotalCount(), bulkStore.getTotalCount());
+  }
+
+  private static TreeMap<Integer, Double> getCounts(Store store) {
+    final TreeMap<Integer, Double> counts = new TreeMap<>();
+    store.forEach(counts::put);
+    return counts;
+  }
+
+  static class AlwaysDenseHybridStoreTest extends ExhaustiveStoreTest {
+
+    @Override
+    Store newStore() {
+      return new HybridStore(0);
+    }
+
+    @Override
+    void testExtremeValues() {
+      // The dense representation is not meant to be used with values that are extremely far from
+      // one another as it would allocate an excessively large array.
+    }
+
+    @Override
+    void testMergingExtremeValues() {
+      // The dense representation is not meant to be used with values that are extremely far from
+      // one another as it would allocate an excessively large array.
+    }
+  }
+
+  static class NeverDenseHybridStoreTest extends ExhaustiveStoreTest {
+
+    @Override
+    Store newStore() {
+      return new HybridStore(Integer.MAX_VALUE);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/* Unless explicitly stated otherwise all files in this repository are licensed under the Apache License 2.0.
+ * This product includes software developed at Datadog (https://www.datadoghq.com/).
+ * Copyright 2021 Datadog, Inc.
+ */
+
+package com.datadoghq.sketch.ddsketch.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class OffHeapArenaTest {
+
+  @Test
+  void testFreedBuffersAreReused() {
+    try (OffHeapArena arena = new OffHeapArena(64)) {
+      final ByteBuffer buffer = arena.allocate(32);
+      buffer.putDouble(3 * Double.BYTES, 1);
+      arena.free(buffer);
+      final ByteBuffer reused = arena.allocate(32);
+      assertThat(reused).isSameAs(buffer);
+      assertEquals(0, reused.getDouble(3 * Double.BYTES));
+      arena.allocate(32);
+      assertEquals(1, arena.getNumSlabs());
+      arena.allocate(32);
+      assertEquals(2, arena.getNumSlabs());
+    }
+  }
+
+  @Test
+  void testLargeAllocation() {
+    try (OffHeapArena arena = new OffHeapArena(64)) {
+      assertEquals(128 * Double.BYTES, arena.allocate(128).capacity());
+      assertEquals(0, arena.getNumSlabs());
+    }
+  }
+
+  @Test
+  void testStoresShareSlabs() {
+    try (OffHeapArena arena = new OffHeapArena()) {
+      final UnboundedSizeOffHeapDenseStore store1 = new UnboundedSizeOffHeapDenseStore(arena);
+      final UnboundedSizeOffHeapDenseStore store2 = new UnboundedSizeOffHeapDenseStore(arena);
+      for (int index = -100; index <= 100; index++) {
+        store1.add(index);
+        store2.add(2 * index, 2);
+      }
+      store1.mergeWith(store2);
+      assertEquals(603, store1.getTotalCount());
+      assertEquals(1, arena.getNumSlabs());
+      store1.close();
+      store2.close();
+    }
+  }
+
+  @Test
+  void testClosedArena() {
+    final OffHeapArena arena = new OffHeapArena();
+    final Store store = new CollapsingLowestOffHeapDenseStore(100, arena);
+    arena.close();
+    assertThrows(IllegalStateException.class, () -> store.add(0));
+  }
+
+  @Test
+  void testClosedStore() {
+    final UnboundedSizeOffHeapDenseStore store = new UnboundedSizeOffHeapDenseStore();
+    store.add(0);
+    store.close();
+    assertThrows(IllegalStateException.class, () -> store.add(1));
+  }
+}
@@ -13,6 +13,7 @@ import com.datadoghq.sketch.ddsketch.encoding.ByteArrayInput;
 import com.datadoghq.sketch.ddsketch.encoding.Flag;
 import com.datadoghq.sketch.ddsketch.encoding.GrowingByteArrayOutput;
 import com.datadoghq.sketch.ddsketch.encoding.Input;
+import com.datadoghq.sketch.ddsketch.encoding.VarEncodingHelper;
 import com.datadoghq.sketch.util.accuracy.AccuracyTester;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.io.IOException;
@@ -43,6 +44,18 @@ abstract class StoreTest {
     return getCounts(StreamSupport.stream(Spliterators.spliteratorUnknownSize(bins, 0), false));
   }
 
+  private static Map<Integer, Double> getCounts(BinCursor cursor, boolean ascending) {
+    final Map<Integer, Double> counts = new TreeMap<>();
+    long previousIndex = ascending ? Long.MIN_VALUE : Long.MAX_VALUE;
+    while (cursor.advance()) {
+      assertTrue(ascending ? cursor.index() > previousIndex : cursor.index() < previousIndex);
+      previousIndex = cursor.index();
+      counts.put(cursor.index(), cursor.count());
+    }
+    assertFalse(cursor.advance());
+    return counts;
+  }
+
   private static Map<Integer, Double> getCounts(Store store) {
     Map<Integer, Double> counts = new TreeMap<>();
     store.forEach(counts::put);
@@ -109,6 +122,7 @@ abstract class StoreTest {
         expectedCounts.values().stream().mapToDouble(count -> count).sum();
     assertEquals(
         expectedTotalCount, store.getTotalCount(), AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+    assertTotalCountMatchesBins(store);
     if (expectedTotalCount == 0) {
       assertTrue(store.isEmpty());
       assertThrows(NoSuchElementException.class, store::getMinIndex);
@@ -129,15 +143,49 @@ abstract class StoreTest {
               .max()
               .getAsInt();
       assertEquals(expectedMaxIndex, store.getMaxIndex());
+      assertIndexesAtRanks(expectedCounts, store);
+      if (store instanceof DenseStore) {
+        assertIndexesAtRanks(expectedCounts, ((DenseStore) store.copy()).enableRankIndex());
+      }
     }
     assertSameCounts(expectedCounts, getCounts(store.getStream()));
     assertSameCounts(expectedCounts, getCounts(store.getAscendingStream()));
     assertSameCounts(expectedCounts, getCounts(store.getDescendingStream()));
     assertSameCounts(expectedCounts, getCounts(store.getAscendingIterator()));
     assertSameCounts(expectedCounts, getCounts(store.getDescendingIterator()));
+    assertSameCounts(expectedCounts, getCounts(store.getAscendingCursor(), true));
+    assertSameCounts(expectedCounts, getCounts(store.getDescendingCursor(), false));
     assertSameCounts(expectedCounts, getCounts(store));
   }
 
+  private static void assertTotalCountMatchesBins(Store store) {
+    // The total count is maintained as the store is updated, so it must match the recomputed one.
+    assertEquals(
+        getCounts(store).values().stream().mapToDouble(count -> count).sum(),
+        store.getTotalCount(),
+        AccuracyTester.FLOATING_POINT_ACCEPTABLE_ERROR);
+  }
+
+  private static void assertIndexesAtRanks(Map<Integer, Double> expectedCounts, Store store) {
+    final NavigableMap<Integer, Double> sortedCounts =
+        new TreeMap<>(getNonZeroCounts(expectedCounts));
+    final double totalCount = sortedCounts.values().stream().mapToDouble(count -> count).sum();
+    // Check the middle rank of a sample of the bins, as well as out-of-range ranks.
+    final int step = Math.max(1, sortedCounts.size() / 20);
+    int i = 0;
+    double ascendingRank = 0;
+    for (final Entry<Integer, Double> entry : sortedCounts.entrySet()) {
+      if (i++ % step == 0) {
+        final double rank = ascendingRank + entry.getValue() / 2;
+        assertEquals((int) entry.getKey(), store.getAscendingIndexAtRank(rank));
+        assertEquals((int) entry.getKey(), store.getDescendingIndexAtRank(totalCount - rank));
+      }
+      ascendingRank += entry.getValue();
+    }
+    assertEquals((int) sortedCounts.lastKey(), store.getAscendingIndexAtRank(totalCount));
+    assertEquals((int) sortedCounts.firstKey(), store.getDescendingIndexAtRank(totalCount));
+  }
+
   private static Bin[] toBins(int... values) {
     return Arrays.stream(values).mapToObj(value -> new Bin(value, 1)).toArray(Bin[]::new);
   }
@@ -147,6 +195,10 @@ abstract class StoreTest {
     Arrays.stream(values).forEach(store::add);
     test(toBins(values), store);
 
+    final Store batchStore = newStore();
+    batchStore.add(values, 0, values.length);
+    test(toBins(values), batchStore);
+
     testAdding(toBins(values));
   }
 
@@ -212,6 +264,48 @@ abstract class StoreTest {
               });
       test(Arrays.stream(bins).flatMap(Arrays::stream).toArray(Bin[]::new), store);
     }
+    {
+      // Merging stores of another type.
+      final Store store = newStore();
+      Arrays.stream(bins)
+          .forEach(
+              storeBins -> {
+                final Store intermediateStore = new SparseStore();
+                Arrays.stream(storeBins).forEach(intermediateStore::add);
+                store.mergeWith(intermediateStore);
+              });
+      test(Arrays.stream(bins).flatMap(Arrays::stream).toArray(Bin[]::new), store);
+    }
+    {
+      // Merging all the stores at once.
+      final Store store = newStore();
+      store.mergeWith(
+          Arrays.stream(bins)
+              .map(
+                  storeBins -> {
+                    final Store intermediateStore = newStore();
+                    Arrays.stream(storeBins).forEach(intermediateStore::add);
+                    return intermediateStore;
+                  })
+              .toArray(Store[]::new));
+      test(Arrays.stream(bins).flatMap(Arrays::stream).toArray(Bin[]::new), store);
+    }
+    {
+      // Merging all the stores of another type at once, into a non-empty store.
+      final Store store = newStore();
+      Arrays.stream(bins[0]).forEach(store::add);
+      store.mergeWith(
+          Arrays.stream(bins)
+              .skip(1)
+              .map(
+                  storeBins -> {
+                    final Store intermediateStore = new SparseStore();
+                    Arrays.stream(storeBins).forEach(intermediateStore::add);
+                    return intermediateStore;
+                  })
+              .toArray(Store[]::new));
+      test(Arrays.stream(bins).flatMap(Arrays::stream).toArray(Bin[]::new), store);
+    }
   }
 
   @Test
@@ -332,6 +426,162 @@ abstract class StoreTest {
     testMerging(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE}, new int[] {0});
   }
 
+  @Test
+  void testAddingBatches() {
+    final int[] values = IntStream.range(0, 1000).map(i -> (i * 7919) % 500 - 250).toArray();
+    final Store store = newStore();
+    store.add(values, 0, 0);
+    store.add(values, 0, 300);
+    store.add(values, 300, 301);
+    store.add(values, 301, values.length);
+    test(toBins(values), store);
+
+    assertThrows(IndexOutOfBoundsException.class, () -> store.add(values, -1, 2));
+    assertThrows(IndexOutOfBoundsException.class, () -> store.add(values, 2, 1));
+    assertThrows(IndexOutOfBoundsException.class, () -> store.add(values, 0, values.length + 1));
+    test(toBins(values), store);
+  }
+
+  @Test
+  void testDecodingContiguousCounts() throws IOException {
+    final double[] smallBlock = {0, 0, 1.5, 0, 2, 3, 0, 0.5, 0, 0};
+    final double[] largeBlock = IntStream.range(0, 3000).mapToDouble(i -> i % 7 % 3).toArray();
+    final List<Bin> bins = new ArrayList<>();
+    final Store store = newStore();
+    store.add(3, 2);
+    bins.add(new Bin(3, 2));
+    for (final int firstIndex : new int[] {-4, 1000, -4, -2000}) {
+      for (final double[] counts : new double[][] {smallBlock, largeBlock}) {
+        store.decodeAndMergeWith(
+            encodeContiguousCounts(firstIndex, counts), BinEncodingMode.CONTIGUOUS_COUNTS);
+        for (int i = 0; i < counts.length; i++) {
+          if (counts[i] != 0) {
+            bins.add(new Bin(firstIndex + i, counts[i]));
+          }
+        }
+        test(bins.toArray(new Bin[0]), store);
+      }
+    }
+
+    final Store emptyBlockStore = newStore();
+    emptyBlockStore.decodeAndMergeWith(
+        encodeContiguousCounts(0, new double[] {0, 0}), BinEncodingMode.CONTIGUOUS_COUNTS);
+    test(new Bin[0], emptyBlockStore);
+  }
+
+  private static Input encodeContiguousCounts(int firstIndex, double[] counts) throws IOException {
+    final GrowingByteArrayOutput output = GrowingByteArrayOutput.withDefaultInitialCapacity();
+    VarEncodingHelper.encodeUnsignedVarLong(output, counts.length);
+    VarEncodingHelper.encodeSignedVarLong(output, firstIndex);
+    VarEncodingHelper.encodeSignedVarLong(output, 1);
+    for (final double count : counts) {
+      VarEncodingHelper.encodeVarDouble(output, count);
+    }
+    return ByteArrayInput.wrap(output.trimmedCopy());
+  }
+
+  @Test
+  void testTotalCountMaintained() throws IOException {
+    final Store store = newStore();
+    assertEquals(0, store.getTotalCount());
+    store.add(-5);
+    store.add(12, 2.5);
+    store.add(new Bin(3000, 0.25));
+    store.add(IntStream.range(-100, 200).toArray(), 0, 300);
+    assertTotalCountMatchesBins(store);
+
+    final Store other = newStore();
+    other.add(-20000, 3);
+    other.add(7, 1.5);
+    final Store sparse = new SparseStore();
+    sparse.add(40, 4);
+    sparse.add(-40000, 0.5);
+    store.mergeWith(other);
+    store.mergeWith(sparse);
+    store.mergeWith(newStore());
+    assertTotalCountMatchesBins(store);
+    assertEquals(312.75, store.getTotalCount(), 1e-9);
+
+    store.decodeAndMergeWith(
+        encodeContiguousCounts(-60000, new double[] {0, 1, 0, 2.5, 0}),
+        BinEncodingMode.CONTIGUOUS_COUNTS);
+    assertTotalCountMatchesBins(store);
+
+    final Store copy = store.copy();
+    assertTotalCountMatchesBins(copy);
+    assertEquals(store.getTotalCount(), copy.getTotalCount());
+
+    store.clear();
+    assertEquals(0, store.getTotalCount());
+    store.add(1, 2);
+    assertTotalCountMatchesBins(store);
+    assertEquals(2, store.getTotalCount());
+    assertEquals(316.25, copy.getTotalCount(), 1e-9);
+  }
+
+  @Test
+  void testScaling() {
+    final Store store = newStore();
+    final List<Bin> bins = new ArrayList<>();
+    for (int index = -100; index <= 100; index += 3) {
+      store.add(index, 1 + (index & 7));
+      bins.add(new Bin(index, (1 + (index & 7)) * 0.25));
+    }
+    store.scale(0.25);
+    test(bins.toArray(new Bin[0]), store);
+
+    assertThrows(IllegalArgumentException.class, () -> store.scale(0));
+    assertThrows(IllegalArgumentException.class, () -> store.scale(-1));
+    assertThrows(IllegalArgumentException.class, () -> store.scale(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> store.scale(Double.POSITIVE_INFINITY));
+    test(bins.toArray(new Bin[0]), store);
+
+    // Counts that underflow are removed, after bins have possibly been collapsed.
+    final Bin[] underflowingBins = {
+      new Bin(5, 4 * Double.MIN_VALUE), new Bin(10, 1), new Bin(15, 2 * Double.MIN_VALUE)
+    };
+    final Store underflowing = newStore();
+    for (final Bin bin : underflowingBins) {
+      underflowing.add(bin);
+    }
+    underflowing.scale(0.1);
+    final List<Bin> scaledBins = new ArrayList<>();
+    getCounts(underflowingBins)
+        .forEach(
+            (index, count) -> {
+              if (count * 0.1 > 0) {
+                scaledBins.add(new Bin(index, count * 0.1));
+              }
+            });
+    test(scaledBins.toArray(new Bin[0]), underflowing);
+    underflowing.scale(Double.MIN_VALUE);
+    test(new Bin[0], underflowing);
+  }
+
+  @Test
+  void testReserving() {
+    final Store store = newStore();
+    store.reserve(-10, 10);
+    test(new Bin[0], store);
+    final List<Bin> bins = new ArrayList<>();
+    for (int index = -8; index <= 8; index += 3) {
+      store.add(index);
+      bins.add(new Bin(index, 1));
+    }
+    store.reserve(-1000, -900);
+    store.reserve(5000, 5100);
+    test(bins.toArray(new Bin[0]), store);
+    for (int index = -1000; index <= -900; index += 7) {
+      store.add(index, 2);
+      bins.add(new Bin(index, 2));
+    }
+    for (int index = 5000; index <= 5100; index += 9) {
+      store.add(index, 3);
+      bins.add(new Bin(index, 3));
+    }
+    test(bins.toArray(new Bin[0]), store);
+  }
+
   @Test
   void testCopyingEmpty() {
     newStore().copy();
@@ -17,10 +17,18 @@ import org.junit.jupiter.params.provider.Arguments;
 public enum StoreTestCase {
   PAGINATED(PaginatedStore::new, UnaryOperator.identity(), false),
   SPARSE(SparseStore::new, UnaryOperator.identity(), true),
+  HASH_SPARSE(HashSparseStore::new, UnaryOperator.identity(), true),
+  HYBRID(HybridStore::new, UnaryOperator.identity(), false),
   DENSE_UNBOUNDED(UnboundedSizeDenseStore::new, UnaryOperator.identity(), false),
+  DENSE_COMPACT(CompactDenseStore::new, UnaryOperator.identity(), false),
   DENSE_COLLAPSING_LOWEST_100(() -> new CollapsingLowestDenseStore(100), collapseLowest(100), true),
   DENSE_COLLAPSING_HIGHEST_100(
-      () -> new CollapsingHighestDenseStore(100), collapseHighest(100), true);
+      () -> new CollapsingHighestDenseStore(100), collapseHighest(100), true),
+  OFF_HEAP_DENSE_UNBOUNDED(UnboundedSizeOffHeapDenseStore::new, UnaryOperator.identity(), false),
+  OFF_HEAP_DENSE_COLLAPSING_LOWEST_100(
+      () -> new CollapsingLowestOffHeapDenseStore(100), collapseLowest(100), true),
+  OFF_HEAP_DENSE_COLLAPSING_HIGHEST_100(
+      () -> new CollapsingHighestOffHeapDenseStore(100), collapseHighest(100), true);
 
   private final Supplier<Store> storeSupplier;
   private final UnaryOperator<Collection<Bin>> binTransformer; // does not necessarily return a copy
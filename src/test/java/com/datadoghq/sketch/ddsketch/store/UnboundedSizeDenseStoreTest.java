@@ -5,6 +5,19 @@
 
 package com.datadoghq.sketch.ddsketch.store;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
 class UnboundedSizeDenseStoreTest extends ExhaustiveStoreTest {
 
   @Override
@@ -23,4 +36,107 @@ class UnboundedSizeDenseStoreTest extends ExhaustiveStoreTest {
     // UnboundedSizeDenseStore is not meant to be used with values that are extremely far from one
     // another as it would allocate an excessively large array.
   }
+
+  @Test
+  void testSubtracting() {
+    final Store dense = new UnboundedSizeDenseStore();
+    final Store sparse = new SparseStore();
+    for (int index = -50; index <= 50; index++) {
+      dense.add(index, 1 + (index & 3));
+      sparse.add(3 * index + 1, 0.5);
+    }
+    final UnboundedSizeDenseStore store = new UnboundedSizeDenseStore();
+    store.mergeWith(sparse);
+    store.mergeWith(dense);
+
+    store.subtract(dense);
+    assertEquals(getCounts(sparse), getCounts(store));
+    assertEquals(sparse.getTotalCount(), store.getTotalCount());
+    assertEquals(sparse.getMinIndex(), store.getMinIndex());
+    assertEquals(sparse.getMaxIndex(), store.getMaxIndex());
+
+    store.subtract(sparse);
+    assertTrue(store.isEmpty());
+    assertEquals(0, store.getTotalCount());
+    assertThrows(NoSuchElementException.class, store::getMinIndex);
+
+    store.add(7);
+    assertEquals(7, store.getMinIndex());
+    assertEquals(1, store.getTotalCount());
+  }
+
+  @Test
+  void testSubtractingWeightedCounts() {
+    final Store first = new UnboundedSizeDenseStore();
+    first.add(80, 0.1);
+    first.add(81, 0.3);
+    final Store second = new UnboundedSizeDenseStore();
+    second.add(80, 0.2);
+    second.add(81, 0.7);
+    final UnboundedSizeDenseStore store = new UnboundedSizeDenseStore();
+    store.mergeWith(first);
+    store.mergeWith(second);
+
+    // The counts are not exactly those of the second store, because of rounding errors.
+    store.subtract(first);
+    assertEquals(80, store.getMinIndex());
+    store.subtract(second);
+    assertTrue(store.isEmpty());
+    assertEquals(0, store.getTotalCount());
+  }
+
+  @Test
+  void testRankIndexAfterUpdates() {
+    final DenseStore store = new UnboundedSizeDenseStore();
+    final DenseStore indexedStore = new UnboundedSizeDenseStore().enableRankIndex();
+    for (int round = 0; round < 10; round++) {
+      for (int index = -500; index < 500; index += round + 1) {
+        store.add(index, 1 + (index & 3));
+        indexedStore.add(index, 1 + (index & 3));
+      }
+      for (double rank = 0; rank <= store.getTotalCount(); rank += 97.5) {
+        assertEquals(
+            store.getAscendingIndexAtRank(rank), indexedStore.getAscendingIndexAtRank(rank));
+        assertEquals(
+            store.getDescendingIndexAtRank(rank), indexedStore.getDescendingIndexAtRank(rank));
+      }
+    }
+  }
+
+  @Test
+  void testConcurrentRankQueries() throws Exception {
+    final DenseStore store = new UnboundedSizeDenseStore().enableRankIndex();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int round = 0; round < 100; round++) {
+        store.add(round * 100, 1);
+        for (int index = -1000; index < 1000; index++) {
+          store.add(index);
+        }
+        final double maxRank = store.getTotalCount() - 1;
+        final int expectedAscendingIndex = store.copy().getAscendingIndexAtRank(maxRank);
+        final int expectedDescendingIndex = store.copy().getDescendingIndexAtRank(maxRank);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+          futures.add(
+              executor.submit(
+                  () -> {
+                    assertEquals(expectedAscendingIndex, store.getAscendingIndexAtRank(maxRank));
+                    assertEquals(expectedDescendingIndex, store.getDescendingIndexAtRank(maxRank));
+                  }));
+        }
+        for (final Future<?> future : futures) {
+          future.get();
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static TreeMap<Integer, Double> getCounts(Store store) {
+    final TreeMap<Integer, Double> counts = new TreeMap<>();
+    store.forEach(counts::put);
+    return counts;
+  }
 }